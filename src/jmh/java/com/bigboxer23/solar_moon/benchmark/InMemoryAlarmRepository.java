@@ -0,0 +1,96 @@
+package com.bigboxer23.solar_moon.benchmark;
+
+import com.bigboxer23.solar_moon.alarm.AlarmRepository;
+import com.bigboxer23.solar_moon.alarm.IAlarmConstants;
+import com.bigboxer23.solar_moon.data.Alarm;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/** {@link AlarmRepository} backed by a map, answers the same queries the DynamoDB indexes do */
+public class InMemoryAlarmRepository implements AlarmRepository, IAlarmConstants {
+	private final Map<String, Alarm> alarms = new ConcurrentHashMap<>();
+
+	@Override
+	public Optional<Alarm> findMostRecentAlarm(String deviceId) {
+		return alarms.values().stream()
+				.filter(a -> deviceId.equals(a.getDeviceId()))
+				.max(Comparator.comparingLong(Alarm::getStartDate));
+	}
+
+	@Override
+	public List<Alarm> findAlarmsByDevice(String customerId, String deviceId) {
+		return findAll(a -> customerId.equals(a.getCustomerId()) && deviceId.equals(a.getDeviceId()));
+	}
+
+	@Override
+	public List<Alarm> findAlarmsBySite(String customerId, String siteId) {
+		return findAll(a -> customerId.equals(a.getCustomerId()) && siteId.equals(a.getSiteId()));
+	}
+
+	@Override
+	public List<Alarm> findNonEmailedAlarms(String customerId) {
+		return findAll(a -> customerId.equals(a.getCustomerId()) && a.getEmailed() == NEEDS_EMAIL);
+	}
+
+	@Override
+	public List<Alarm> findNonEmailedActiveAlarms() {
+		return findAll(a -> a.getEmailed() == NEEDS_EMAIL);
+	}
+
+	@Override
+	public List<Alarm> findNonEmailedResolvedAlarms() {
+		return findAll(a -> a.getResolveEmailed() == NEEDS_EMAIL);
+	}
+
+	@Override
+	public List<Alarm> findAlarms(String customerId) {
+		return findAll(a -> customerId.equals(a.getCustomerId()));
+	}
+
+	@Override
+	public Optional<Alarm> findAlarmByAlarmId(String alarmId, String customerId) {
+		return Optional.ofNullable(alarms.get(alarmId)).filter(a -> customerId.equals(a.getCustomerId()));
+	}
+
+	@Override
+	public List<Alarm> findActiveAlarms() {
+		return findAll(a -> a.getState() == ACTIVE);
+	}
+
+	@Override
+	public List<Alarm> findActiveAlarms(String customerId) {
+		return findAll(a -> a.getState() == ACTIVE && customerId.equals(a.getCustomerId()));
+	}
+
+	@Override
+	public List<Alarm> findAlarmsByStateAndDateLessThan(int state, long deleteOlderThan) {
+		return findAll(a -> a.getState() == state && a.getStartDate() < deleteOlderThan);
+	}
+
+	@Override
+	public Alarm add(Alarm alarm) {
+		alarms.put(alarm.getAlarmId(), alarm);
+		return alarm;
+	}
+
+	@Override
+	public Optional<Alarm> update(Alarm alarm) {
+		alarms.put(alarm.getAlarmId(), alarm);
+		return Optional.of(alarm);
+	}
+
+	@Override
+	public void updateAlarms(Collection<Alarm> toUpdate) {
+		toUpdate.forEach(alarm -> alarms.put(alarm.getAlarmId(), alarm));
+	}
+
+	@Override
+	public void delete(Alarm alarm) {
+		alarms.remove(alarm.getAlarmId());
+	}
+
+	private List<Alarm> findAll(Predicate<Alarm> filter) {
+		return alarms.values().stream().filter(filter).toList();
+	}
+}
@@ -0,0 +1,104 @@
+package com.bigboxer23.solar_moon.benchmark;
+
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.device.DeviceRepository;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/** {@link DeviceRepository} backed by a map, answers the same queries the DynamoDB indexes do */
+public class InMemoryDeviceRepository implements DeviceRepository {
+	private final Map<String, Device> devices = new ConcurrentHashMap<>();
+
+	@Override
+	public Optional<Device> findDeviceByDeviceName(String customerId, String deviceName) {
+		return findFirst(d -> customerId.equals(d.getClientId()) && deviceName.equals(d.getDeviceName()));
+	}
+
+	@Override
+	public Optional<Device> findDeviceByName(String customerId, String name) {
+		return findFirst(d -> customerId.equals(d.getClientId()) && name.equals(d.getName()));
+	}
+
+	@Override
+	public Optional<Device> findDeviceByDeviceKey(String deviceKey) {
+		return findFirst(d -> deviceKey.equals(d.getDeviceKey()));
+	}
+
+	@Override
+	public List<Device> getDevicesBySiteId(String customerId, String siteId) {
+		return findAll(d -> customerId.equals(d.getClientId()) && siteId.equals(d.getSiteId()));
+	}
+
+	@Override
+	public List<Device> getDevicesBySite(String customerId, String site) {
+		return findAll(d -> customerId.equals(d.getClientId()) && site.equals(d.getSite()));
+	}
+
+	@Override
+	public List<Device> getDevices(boolean isVirtual) {
+		return findAll(d -> d.isVirtual() == isVirtual);
+	}
+
+	@Override
+	public List<Device> getSites() {
+		return findAll(Device::isDeviceSite);
+	}
+
+	@Override
+	public List<Device> getDevicesForCustomerId(String customerId) {
+		return findAll(d -> customerId.equals(d.getClientId()));
+	}
+
+	@Override
+	public Optional<Device> findDeviceById(String id) {
+		return Optional.ofNullable(devices.get(id));
+	}
+
+	@Override
+	public Optional<Device> findDeviceById(String id, String customerId) {
+		return findDeviceById(id).filter(d -> customerId.equals(d.getClientId()));
+	}
+
+	@Override
+	public Map<String, Device> findDevicesByIds(Collection<String> ids, String customerId) {
+		Map<String, Device> found = new HashMap<>();
+		ids.forEach(id -> findDeviceById(id, customerId).ifPresent(d -> found.put(id, d)));
+		return found;
+	}
+
+	@Override
+	public Device add(Device device) {
+		devices.put(device.getId(), device);
+		return device;
+	}
+
+	@Override
+	public Optional<Device> update(Device device) {
+		devices.put(device.getId(), device);
+		return Optional.of(device);
+	}
+
+	@Override
+	public void delete(Device device) {
+		devices.remove(device.getId());
+	}
+
+	@Override
+	public void updateDevices(Collection<Device> devices) {
+		devices.forEach(this::update);
+	}
+
+	@Override
+	public void deleteDevices(Collection<Device> devices) {
+		devices.forEach(this::delete);
+	}
+
+	private Optional<Device> findFirst(Predicate<Device> filter) {
+		return devices.values().stream().filter(filter).findFirst();
+	}
+
+	private List<Device> findAll(Predicate<Device> filter) {
+		return devices.values().stream().filter(filter).toList();
+	}
+}
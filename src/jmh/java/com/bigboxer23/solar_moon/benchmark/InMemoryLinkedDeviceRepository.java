@@ -0,0 +1,49 @@
+package com.bigboxer23.solar_moon.benchmark;
+
+import com.bigboxer23.solar_moon.data.LinkedDevice;
+import com.bigboxer23.solar_moon.device.LinkedDeviceRepository;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** {@link LinkedDeviceRepository} backed by a map keyed by customer and serial number */
+public class InMemoryLinkedDeviceRepository implements LinkedDeviceRepository {
+	private final Map<String, LinkedDevice> linkedDevices = new ConcurrentHashMap<>();
+
+	@Override
+	public LinkedDevice add(LinkedDevice linkedDevice) {
+		linkedDevices.put(getKey(linkedDevice.getId(), linkedDevice.getCustomerId()), linkedDevice);
+		return linkedDevice;
+	}
+
+	@Override
+	public Optional<LinkedDevice> update(LinkedDevice linkedDevice) {
+		return Optional.of(add(linkedDevice));
+	}
+
+	@Override
+	public void delete(String serialNumber, String customerId) {
+		linkedDevices.remove(getKey(serialNumber, customerId));
+	}
+
+	@Override
+	public void deleteByCustomerId(String customerId) {
+		linkedDevices.values().removeIf(d -> customerId.equals(d.getCustomerId()));
+	}
+
+	@Override
+	public Optional<LinkedDevice> findBySerialNumber(String serialNumber, String customerId) {
+		return Optional.ofNullable(linkedDevices.get(getKey(serialNumber, customerId)));
+	}
+
+	@Override
+	public Map<String, LinkedDevice> findBySerialNumbers(Collection<String> serialNumbers, String customerId) {
+		Map<String, LinkedDevice> found = new HashMap<>();
+		serialNumbers.forEach(serialNumber -> findBySerialNumber(serialNumber, customerId)
+				.ifPresent(d -> found.put(serialNumber, d)));
+		return found;
+	}
+
+	private String getKey(String serialNumber, String customerId) {
+		return customerId + ":" + serialNumber;
+	}
+}
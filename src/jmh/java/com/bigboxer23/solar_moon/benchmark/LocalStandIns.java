@@ -0,0 +1,368 @@
+package com.bigboxer23.solar_moon.benchmark;
+
+import com.bigboxer23.solar_moon.IComponentRegistry;
+import com.bigboxer23.solar_moon.RegistryOverrides;
+import com.bigboxer23.solar_moon.alarm.AlarmComponent;
+import com.bigboxer23.solar_moon.alarm.AlarmRepository;
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceUpdateData;
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import com.bigboxer23.solar_moon.data.LastReadingData;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
+import com.bigboxer23.solar_moon.device.*;
+import com.bigboxer23.solar_moon.mapping.AttributeMap;
+import com.bigboxer23.solar_moon.mapping.MappingComponent;
+import com.bigboxer23.solar_moon.mapping.MappingRepository;
+import com.bigboxer23.solar_moon.search.OpenSearchComponent;
+import com.bigboxer23.solar_moon.weather.CachingPirateWeatherComponent;
+import com.bigboxer23.solar_moon.weather.PirateWeatherComponent;
+import com.bigboxer23.solar_moon.weather.PirateWeatherData;
+import com.bigboxer23.solar_moon.weather.StoredWeatherData;
+import com.bigboxer23.solar_moon.weather.WeatherRepository;
+import com.squareup.moshi.Moshi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Swaps the {@link IComponentRegistry} singletons on the ingest path for the real components backed
+ * by in-memory repositories (and {@link StubOpenSearchComponent}), so benchmarks exercise all of
+ * our code without DynamoDB, OpenSearch or weather calls. Install once per fork, before anything
+ * touches the registry, as overrides are only read when it initializes.
+ */
+public class LocalStandIns {
+	public static final String CUSTOMER_ID = "benchmark-customer";
+
+	public static final double LATITUDE = 44.98;
+
+	public static final double LONGITUDE = -93.27;
+
+	private static LocalStandIns installed;
+
+	private final InMemoryDeviceRepository deviceRepository = new InMemoryDeviceRepository();
+
+	private final InMemoryAlarmRepository alarmRepository = new InMemoryAlarmRepository();
+
+	private final InMemoryLinkedDeviceRepository linkedDeviceRepository = new InMemoryLinkedDeviceRepository();
+
+	private final InMemoryLastReadingRepository lastReadingRepository = new InMemoryLastReadingRepository();
+
+	private final InMemorySiteIntervalRepository siteIntervalRepository = new InMemorySiteIntervalRepository();
+
+	private final StubOpenSearchComponent openSearchComponent = new StubOpenSearchComponent();
+
+	public static synchronized LocalStandIns install() {
+		if (installed == null) {
+			installed = new LocalStandIns();
+			installed.register();
+		}
+		return installed;
+	}
+
+	private void register() {
+		DeviceVersionRepository deviceVersions = new InMemoryDeviceVersionRepository();
+		RegistryOverrides.override(DeviceComponent.class, new CachingDeviceComponent() {
+			@Override
+			protected DeviceRepository getRepository() {
+				return deviceRepository;
+			}
+
+			@Override
+			protected DeviceVersionRepository getVersionRepository() {
+				return deviceVersions;
+			}
+		});
+		RegistryOverrides.override(AlarmComponent.class, new AlarmComponent() {
+			@Override
+			protected AlarmRepository getRepository() {
+				return alarmRepository;
+			}
+		});
+		RegistryOverrides.override(LinkedDeviceComponent.class, new LinkedDeviceComponent() {
+			@Override
+			protected LinkedDeviceRepository getRepository() {
+				return linkedDeviceRepository;
+			}
+		});
+		RegistryOverrides.override(LastReadingComponent.class, new LastReadingComponent() {
+			@Override
+			protected LastReadingRepository getRepository() {
+				return lastReadingRepository;
+			}
+		});
+		RegistryOverrides.override(SiteAggregationComponent.class, new SiteAggregationComponent() {
+			@Override
+			protected SiteIntervalRepository getRepository() {
+				return siteIntervalRepository;
+			}
+		});
+		DeviceUpdateRepository deviceUpdates = new InMemoryDeviceUpdateRepository();
+		RegistryOverrides.override(DeviceUpdateComponent.class, new DeviceUpdateComponent() {
+			@Override
+			protected DeviceUpdateRepository getRepository() {
+				return deviceUpdates;
+			}
+		});
+		MappingRepository mappings = new NoMappingRepository();
+		RegistryOverrides.override(MappingComponent.class, new MappingComponent() {
+			@Override
+			protected MappingRepository getRepository() {
+				return mappings;
+			}
+		});
+		WeatherRepository weather = new FreshWeatherRepository();
+		RegistryOverrides.override(PirateWeatherComponent.class, new CachingPirateWeatherComponent() {
+			@Override
+			protected WeatherRepository getRepository() {
+				return weather;
+			}
+		});
+		RegistryOverrides.override(OpenSearchComponent.class, openSearchComponent);
+	}
+
+	/**
+	 * Add a site (with its virtual site device) and devices reporting to it
+	 *
+	 * @param siteName
+	 * @param deviceNames names devices report themselves as
+	 * @return the devices, site device first
+	 */
+	public List<Device> addSite(String siteName, List<String> deviceNames) {
+		Device site = new Device(siteName + "-site", CUSTOMER_ID);
+		site.setName(siteName);
+		site.setSite(siteName);
+		site.setSiteId(site.getId());
+		site.setIsSite("1");
+		site.setVirtual(true);
+		site.setLatitude(LATITUDE);
+		site.setLongitude(LONGITUDE);
+		deviceRepository.add(site);
+		List<Device> devices = new ArrayList<>(List.of(site));
+		deviceNames.forEach(deviceName -> {
+			Device device = new Device(siteName + "-" + deviceName, CUSTOMER_ID, deviceName);
+			device.setSite(siteName);
+			device.setSiteId(site.getId());
+			device.setSerialNumber("SN-" + deviceName);
+			device.setLatitude(LATITUDE);
+			device.setLongitude(LONGITUDE);
+			deviceRepository.add(device);
+			devices.add(device);
+		});
+		return devices;
+	}
+
+	/** Drop site intervals aggregated so far, so repeated runs don't grow the store */
+	public void clearSiteIntervals() {
+		siteIntervalRepository.items.clear();
+	}
+
+	public StubOpenSearchComponent getOpenSearchComponent() {
+		return openSearchComponent;
+	}
+
+	/** @return contents of a file within src/jmh/resources/fixtures */
+	public static String loadFixture(String name) {
+		try (InputStream stream = LocalStandIns.class.getResourceAsStream("/fixtures/" + name)) {
+			if (stream == null) {
+				throw new IllegalArgumentException("missing fixture " + name);
+			}
+			return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class InMemoryLastReadingRepository implements LastReadingRepository {
+		private final Map<String, LastReadingData> readings = new ConcurrentHashMap<>();
+
+		@Override
+		public boolean update(LastReadingData reading) {
+			LastReadingData stored = readings.get(reading.getDeviceId());
+			if (stored != null && stored.getDate() > reading.getDate()) {
+				return false;
+			}
+			readings.put(reading.getDeviceId(), reading);
+			return true;
+		}
+
+		@Override
+		public void delete(String deviceId) {
+			readings.remove(deviceId);
+		}
+
+		@Override
+		public Optional<LastReadingData> findByDeviceId(String deviceId) {
+			return Optional.ofNullable(readings.get(deviceId));
+		}
+
+		@Override
+		public Map<String, LastReadingData> findByDeviceIds(Collection<String> deviceIds) {
+			Map<String, LastReadingData> found = new HashMap<>();
+			deviceIds.forEach(id -> findByDeviceId(id).ifPresent(reading -> found.put(id, reading)));
+			return found;
+		}
+	}
+
+	/** Versioned like the DynamoDB table, a stale save returns false */
+	private static class InMemorySiteIntervalRepository implements SiteIntervalRepository {
+		private final Map<String, SiteIntervalData> items = new ConcurrentHashMap<>();
+
+		@Override
+		public Optional<SiteIntervalData> findById(String id) {
+			return Optional.ofNullable(items.get(id)).map(InMemorySiteIntervalRepository::copy);
+		}
+
+		@Override
+		public synchronized boolean save(SiteIntervalData siteInterval) {
+			SiteIntervalData stored = items.get(siteInterval.getId());
+			if (!Objects.equals(stored == null ? null : stored.getVersion(), siteInterval.getVersion())) {
+				return false;
+			}
+			SiteIntervalData copy = copy(siteInterval);
+			copy.setVersion(siteInterval.getVersion() == null ? 1 : siteInterval.getVersion() + 1);
+			items.put(copy.getId(), copy);
+			return true;
+		}
+
+		@Override
+		public List<SiteIntervalData> findPendingPastDeadline(long time) {
+			return items.values().stream()
+					.filter(siteInterval -> !siteInterval.isEmitted() && siteInterval.getDeadline() <= time)
+					.map(InMemorySiteIntervalRepository::copy)
+					.toList();
+		}
+
+		private static SiteIntervalData copy(SiteIntervalData siteInterval) {
+			SiteIntervalData copy = new SiteIntervalData();
+			copy.setId(siteInterval.getId());
+			copy.setSiteId(siteInterval.getSiteId());
+			copy.setCustomerId(siteInterval.getCustomerId());
+			copy.setInterval(siteInterval.getInterval());
+			copy.setDate(siteInterval.getDate());
+			copy.setDeviceIds(new HashSet<>(siteInterval.getDeviceIds()));
+			copy.setEnergyConsumed(siteInterval.getEnergyConsumed());
+			copy.setTotalRealPower(siteInterval.getTotalRealPower());
+			copy.setTotalEnergyConsumed(siteInterval.getTotalEnergyConsumed());
+			copy.setInformationalError(siteInterval.getInformationalError());
+			copy.setCriticalError(siteInterval.getCriticalError());
+			copy.setEmitted(siteInterval.isEmitted());
+			copy.setDeadline(siteInterval.getDeadline());
+			copy.setVersion(siteInterval.getVersion());
+			copy.setCreatedAt(siteInterval.getCreatedAt());
+			copy.setUpdatedAt(siteInterval.getUpdatedAt());
+			return copy;
+		}
+	}
+
+	private static class InMemoryDeviceVersionRepository implements DeviceVersionRepository {
+		private final Map<String, DeviceVersionData> versions = new ConcurrentHashMap<>();
+
+		@Override
+		public Optional<DeviceVersionData> findVersion(String customerId) {
+			return Optional.ofNullable(versions.get(customerId));
+		}
+
+		@Override
+		public long bump(String customerId) {
+			return versions.merge(
+							customerId,
+							new DeviceVersionData(customerId, 1),
+							(stored, bumped) -> new DeviceVersionData(customerId, stored.getVersion() + 1))
+					.getVersion();
+		}
+	}
+
+	private static class InMemoryDeviceUpdateRepository implements DeviceUpdateRepository {
+		private final Map<String, DeviceUpdateData> updates = new ConcurrentHashMap<>();
+
+		@Override
+		public DeviceUpdateData update(DeviceUpdateData deviceUpdate) {
+			updates.put(deviceUpdate.getDeviceId(), deviceUpdate);
+			return deviceUpdate;
+		}
+
+		@Override
+		public void delete(String deviceId) {
+			updates.remove(deviceId);
+		}
+
+		@Override
+		public Optional<Long> findLastUpdateByDeviceId(String deviceId) {
+			return Optional.ofNullable(updates.get(deviceId)).map(DeviceUpdateData::getLastUpdate);
+		}
+
+		@Override
+		public Iterable<DeviceUpdateData> findAll() {
+			return updates.values();
+		}
+
+		@Override
+		public Iterable<DeviceUpdateData> findByTimeRangeLessThan(long olderThan) {
+			return updates.values().stream()
+					.filter(update -> update.getLastUpdate() < olderThan)
+					.toList();
+		}
+	}
+
+	/** Customers in the benchmarks use the built in point names */
+	private static class NoMappingRepository implements MappingRepository {
+		@Override
+		public List<AttributeMap> findByCustomerId(String customerId) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Optional<AttributeMap> findByCustomerIdAndMappingName(String customerId, String mappingName) {
+			return Optional.empty();
+		}
+
+		@Override
+		public AttributeMap add(AttributeMap attributeMap) {
+			return attributeMap;
+		}
+
+		@Override
+		public Optional<AttributeMap> update(AttributeMap attributeMap) {
+			return Optional.of(attributeMap);
+		}
+
+		@Override
+		public void deleteByCustomerIdAndMappingName(String customerId, String mappingName) {}
+
+		@Override
+		public void deleteByCustomerId(String customerId) {}
+	}
+
+	/** Always has a just-fetched forecast, so readings get stamped with weather */
+	private static class FreshWeatherRepository implements WeatherRepository {
+		private final String weather;
+
+		FreshWeatherRepository() {
+			PirateWeatherData data = new PirateWeatherData();
+			data.setSummary("Clear");
+			data.setIcon("clear-day");
+			data.setTemperature(21.5);
+			data.setCloudCover(0.1);
+			data.setVisibility(16);
+			data.setUvIndex(4);
+			weather = new Moshi.Builder().build().adapter(PirateWeatherData.class).toJson(data);
+		}
+
+		@Override
+		public Optional<StoredWeatherData> findByLatitudeLongitude(double latitude, double longitude) {
+			return Optional.of(new StoredWeatherData(latitude, longitude, weather, System.currentTimeMillis()));
+		}
+
+		@Override
+		public StoredWeatherData add(StoredWeatherData weatherData) {
+			return weatherData;
+		}
+
+		@Override
+		public Optional<StoredWeatherData> update(StoredWeatherData weatherData) {
+			return Optional.of(weatherData);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.bigboxer23.solar_moon.benchmark;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.search.OpenSearchComponent;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import org.opensearch.client.opensearch.OpenSearchClient;
+
+/**
+ * OpenSearch stand-in: writes are counted and recorded in the last reading store exactly as a
+ * successful bulk request would, previous totals are answered from that store. Anything which would
+ * reach the cluster fails, so a benchmark can't silently measure network time.
+ */
+public class StubOpenSearchComponent extends OpenSearchComponent {
+	private final LongAdder written = new LongAdder();
+
+	@Override
+	public List<String> bulkLogData(Date fetchDate, List<DeviceData> deviceDatas, boolean waitForSearch) {
+		deviceDatas.forEach(data -> data.setDate(data.getDate() == null ? fetchDate : data.getDate()));
+		getLastReadingComponent().update(deviceDatas);
+		written.add(deviceDatas.size());
+		return new ArrayList<>(Collections.nCopies(deviceDatas.size(), null));
+	}
+
+	@Override
+	public float getMaxTotalEnergyConsumed(String customerId, String deviceId, long offset) {
+		return getLastReadingComponent()
+				.getLastReading(deviceId)
+				.map(DeviceData::getTotalEnergyConsumed)
+				.orElse(0f);
+	}
+
+	@Override
+	protected OpenSearchClient getClient() {
+		throw new UnsupportedOperationException("benchmarks don't talk to OpenSearch");
+	}
+
+	/** @return number of documents written since creation */
+	public long getWritten() {
+		return written.sum();
+	}
+}
@@ -0,0 +1,68 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.IComponentRegistry;
+import com.bigboxer23.solar_moon.benchmark.LocalStandIns;
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One full site interval through {@link VirtualDeviceComponent#handleVirtualDevice}: every device
+ * in the site reports once, the last report emits and writes the virtual site device. Each
+ * invocation aggregates the next 15 minute interval.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class VirtualDeviceBenchmark {
+	@Param({"4", "24"})
+	private int deviceCount;
+
+	private LocalStandIns standIns;
+
+	private List<Device> devices;
+
+	private long interval;
+
+	@Setup
+	public void setup() {
+		standIns = LocalStandIns.install();
+		devices = standIns
+				.addSite(
+						"virtual-" + deviceCount,
+						IntStream.range(0, deviceCount)
+								.mapToObj(i -> "Inverter " + i)
+								.toList())
+				.stream()
+				.filter(device -> !device.isVirtual())
+				.toList();
+		interval = SiteAggregationComponent.getInterval(new Date());
+	}
+
+	@Setup(Level.Iteration)
+	public void clear() {
+		standIns.clearSiteIntervals();
+	}
+
+	@Benchmark
+	public long aggregateInterval() {
+		interval += TimeConstants.FIFTEEN_MINUTES;
+		Date date = new Date(interval);
+		for (Device device : devices) {
+			DeviceData deviceData = new DeviceData(device.getSiteId(), device.getClientId(), device.getId());
+			deviceData.setDate(date);
+			deviceData.setEnergyConsumed(6.1f);
+			deviceData.setTotalRealPower(24.1f);
+			deviceData.setTotalEnergyConsumed(5123.4f);
+			IComponentRegistry.virtualDeviceComponent.handleVirtualDevice(deviceData);
+		}
+		return standIns.getOpenSearchComponent().getWritten();
+	}
+}
@@ -0,0 +1,75 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import com.bigboxer23.solar_moon.data.Device;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+/**
+ * Per-call cost of getting a table handle: what {@link AbstractDynamodbComponent#getTable()} used to
+ * do (introspect the bean on every call), building a handle around the static schema, and the
+ * cached handle repositories get now. {@code beanSchemaPerCall} and {@code staticSchemaPerCall}
+ * also approximate the one-off cost a cold start pays for the first call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class TableSchemaBenchmark {
+	private DynamoDbClient dynamoDbClient;
+
+	private DynamoDbEnhancedClient client;
+
+	private AbstractDynamodbComponent<Device> component;
+
+	@Setup
+	public void setup() {
+		dynamoDbClient = DynamoDbClient.builder()
+				.region(Region.US_EAST_1)
+				.credentialsProvider(AnonymousCredentialsProvider.create())
+				.build();
+		client = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+		component = new AbstractDynamodbComponent<>() {
+			@Override
+			protected DynamoDbEnhancedClient getClient() {
+				return client;
+			}
+
+			@Override
+			protected String getTableName() {
+				return "benchmark_devices";
+			}
+
+			@Override
+			protected Class<Device> getObjectClass() {
+				return Device.class;
+			}
+		};
+	}
+
+	@TearDown
+	public void tearDown() {
+		dynamoDbClient.close();
+	}
+
+	@Benchmark
+	public DynamoDbTable<Device> beanSchemaPerCall() {
+		return client.table("benchmark_devices", TableSchema.fromBean(Device.class));
+	}
+
+	@Benchmark
+	public DynamoDbTable<Device> staticSchemaPerCall() {
+		return client.table("benchmark_devices", StaticTableSchemas.DEVICE);
+	}
+
+	@Benchmark
+	public DynamoDbTable<Device> cachedTable() {
+		return component.getTable();
+	}
+}
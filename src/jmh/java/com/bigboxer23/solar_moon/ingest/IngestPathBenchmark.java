@@ -0,0 +1,91 @@
+package com.bigboxer23.solar_moon.ingest;
+
+import com.bigboxer23.solar_moon.IComponentRegistry;
+import com.bigboxer23.solar_moon.benchmark.LocalStandIns;
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.ingest.sma.SMAIngestComponent;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import javax.xml.xpath.XPathExpressionException;
+import org.opensearch.client.ResponseException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End to end cost of the ingest entry points with every repository and OpenSearch replaced by
+ * {@link LocalStandIns}: an Obvius push for one meter, an SMA upload for a 12 inverter site and a
+ * single already parsed reading through {@link IngestComponent#handleDevice}. Timestamps in the
+ * fixtures are refreshed each iteration so readings are always recent enough to take the alarm and
+ * weather paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class IngestPathBenchmark implements MeterConstants {
+	private static final String OBVIUS_FIXTURE = LocalStandIns.loadFixture("obvius.xml");
+
+	private static final String SMA_FIXTURE = LocalStandIns.loadFixture("sma.xml");
+
+	private LocalStandIns standIns;
+
+	private Device meter;
+
+	private Device inverter;
+
+	private String obviusBody;
+
+	private String smaBody;
+
+	private float totalEnergyConsumed = 1000;
+
+	@Setup
+	public void setup() {
+		standIns = LocalStandIns.install();
+		meter = standIns.addSite("obvius", List.of("Benchmark Meter")).get(1);
+		inverter = standIns.addSite(
+						"sma",
+						IntStream.range(0, 12)
+								.mapToObj(i -> String.valueOf(300001000 + i))
+								.toList())
+				.get(1);
+	}
+
+	@Setup(Level.Iteration)
+	public void refreshTimestamps() {
+		SimpleDateFormat utc = new SimpleDateFormat(DATE_PATTERN_UTC);
+		utc.setTimeZone(TimeZone.getTimeZone("UTC"));
+		obviusBody = OBVIUS_FIXTURE.replace("{{TIME}}", utc.format(new Date()));
+		smaBody = SMA_FIXTURE.replace(
+				"{{TIMESTAMP}}", SMAIngestComponent.getDateFormatter(inverter).format(new Date()));
+		standIns.clearSiteIntervals();
+	}
+
+	@Benchmark
+	public DeviceData obviusHandleDeviceBody() throws XPathExpressionException, ResponseException {
+		return IComponentRegistry.obviousIngestComponent.handleDeviceBody(obviusBody, LocalStandIns.CUSTOMER_ID);
+	}
+
+	@Benchmark
+	public long smaIngestXMLFile() throws XPathExpressionException {
+		IComponentRegistry.smaIngestComponent.ingestXMLFile(smaBody, LocalStandIns.CUSTOMER_ID);
+		return standIns.getOpenSearchComponent().getWritten();
+	}
+
+	@Benchmark
+	public DeviceData handleDevice() throws ResponseException {
+		DeviceData deviceData = new DeviceData(meter.getSiteId(), meter.getClientId(), meter.getId());
+		deviceData.setDate(new Date());
+		deviceData.setTotalEnergyConsumed(totalEnergyConsumed++);
+		deviceData.setTotalRealPower(84.6f);
+		deviceData.setAverageVoltage(277.4f);
+		deviceData.setAverageCurrent(101.7f);
+		deviceData.setPowerFactor(99.8f);
+		return IComponentRegistry.generationComponent.handleDevice(meter, deviceData);
+	}
+}
@@ -0,0 +1,83 @@
+package com.bigboxer23.solar_moon.ingest;
+
+import com.bigboxer23.solar_moon.util.XPathRegistry;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Compares reading an Obvius push with one streaming pass against the per-lookup xpath evaluation
+ * handleDeviceBody used to do (linked check, device name x2, serial, error, points, timestamp), and
+ * against the same lookups run through {@link XPathRegistry} on a single parsed document
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ObviusIngestBenchmark implements MeterConstants {
+	private static final String[] PATHS = {
+		POINT_PATH, DEVICE_NAME_PATH, DEVICE_NAME_PATH, SERIAL_PATH, ERROR_PATH, POINT_PATH, DATE_PATH
+	};
+
+	@Param({"8", "40"})
+	private int pointCount;
+
+	private String body;
+
+	@Setup
+	public void setup() {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<DAS><mode>LOGFILEUPLOAD</mode><serial>ABC123456</serial><devices><device>"
+				+ "<name>Benchmark Meter</name><records><record>"
+				+ "<time zone=\"UTC\">2025-01-15 10:30:00</time>"
+				+ "<error text=\"Ok\">0</error>");
+		xml.append("<point name=\"" + TOTAL_ENG_CONS + "\" value=\"1000.5\"/>")
+				.append("<point name=\"" + AVG_CURRENT + "\" value=\"10.5\"/>")
+				.append("<point name=\"" + AVG_VOLT + "\" value=\"240.0\"/>")
+				.append("<point name=\"" + TOTAL_PF + "\" value=\"95.0\"/>");
+		for (int i = 4; i < pointCount; i++) {
+			xml.append("<point name=\"Unmapped point ").append(i).append("\" value=\"").append(i).append("\"/>");
+		}
+		body = xml.append("</record></records></device></devices></DAS>").toString();
+	}
+
+	@Benchmark
+	public void streaming(Blackhole blackhole) throws XPathExpressionException {
+		ObviusEnvelope envelope = ObviusEnvelope.parse(body);
+		blackhole.consume(envelope.getDeviceName());
+		blackhole.consume(envelope.getSerialNumber());
+		blackhole.consume(envelope.getError());
+		blackhole.consume(envelope.getTime());
+		blackhole.consume(envelope.getPoints());
+	}
+
+	@Benchmark
+	public void xpath(Blackhole blackhole) throws XPathExpressionException {
+		for (String path : PATHS) {
+			blackhole.consume(evaluate(path));
+		}
+	}
+
+	@Benchmark
+	public void xpathRegistry(Blackhole blackhole) throws XPathExpressionException {
+		Document document = XPathRegistry.parse(body);
+		for (String path : PATHS) {
+			blackhole.consume(XPathRegistry.getNodeList(document, path));
+		}
+	}
+
+	private NodeList evaluate(String path) throws XPathExpressionException {
+		return (NodeList) XPathFactory.newInstance()
+				.newXPath()
+				.compile(path)
+				.evaluate(new InputSource(new StringReader(body)), XPathConstants.NODESET);
+	}
+}
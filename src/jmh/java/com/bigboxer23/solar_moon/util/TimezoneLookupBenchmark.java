@@ -0,0 +1,97 @@
+package com.bigboxer23.solar_moon.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * {@link TimezoneGrid} against the {@link TimezoneMapper} decision tree it stands in front of.
+ * {@code firstGridLookup} and {@code firstMapperLookup} are single shots in a fresh JVM, so they time
+ * loading (the grid resource, or the mapper's classes and polygons) plus one lookup, what a cold start
+ * pays. Fork them more than the profile's default for a stable number, e.g. {@code
+ * -Djmh.args="TimezoneLookupBenchmark.first -f 10"}. The rest are steady state lookups over a fixed set
+ * of coordinates, {@code memoizedGridLookup} being what {@link TimezoneGrid#latLngToTimezoneString}
+ * costs once the few thousand site coordinates we see have been looked up.
+ */
+public class TimezoneLookupBenchmark {
+	private static final double[] COLD_START_SITE = {44.986, -93.37777};
+
+	/** Random coordinates, the same for every benchmark */
+	@State(Scope.Benchmark)
+	public static class Coordinates {
+		@Param({"2000"})
+		private int count;
+
+		private float[] lats;
+
+		private float[] lngs;
+
+		private int next;
+
+		@Setup
+		public void setup() {
+			Random random = new Random(23);
+			lats = new float[count];
+			lngs = new float[count];
+			for (int i = 0; i < count; i++) {
+				lats[i] = (float) (random.nextDouble() * 180 - 90);
+				lngs[i] = (float) (random.nextDouble() * 360 - 180);
+			}
+		}
+
+		int next() {
+			next = (next + 1) % count;
+			return next;
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public String firstGridLookup() {
+		return TimezoneGrid.latLngToTimezoneString(COLD_START_SITE[0], COLD_START_SITE[1]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(10)
+	public String firstMapperLookup() {
+		return TimezoneMapper.latLngToTimezoneString(COLD_START_SITE[0], COLD_START_SITE[1]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public String mapperLookup(Coordinates coordinates) {
+		int i = coordinates.next();
+		return TimezoneMapper.latLngToTimezoneString(coordinates.lats[i], coordinates.lngs[i]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public String gridLookup(Coordinates coordinates) {
+		int i = coordinates.next();
+		return TimezoneGrid.lookup(coordinates.lats[i], coordinates.lngs[i]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public String memoizedGridLookup(Coordinates coordinates) {
+		int i = coordinates.next();
+		return TimezoneGrid.latLngToTimezoneString(coordinates.lats[i], coordinates.lngs[i]);
+	}
+}
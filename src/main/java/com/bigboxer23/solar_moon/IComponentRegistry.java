@@ -16,6 +16,7 @@ import com.bigboxer23.solar_moon.maintenance.MaintenanceComponent;
 import com.bigboxer23.solar_moon.mapping.MappingComponent;
 import com.bigboxer23.solar_moon.notifications.NotificationComponent;
 import com.bigboxer23.solar_moon.ops.LogMonitorComponent;
+import com.bigboxer23.solar_moon.search.CachingOpenSearchComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.search.status.OpenSearchStatusComponent;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
@@ -38,17 +39,19 @@ public interface IComponentRegistry {
 
 	SubscriptionComponent subscriptionComponent = new SubscriptionComponent();
 
-	DeviceComponent deviceComponent = new CachingDeviceComponent();
+	DeviceComponent deviceComponent = RegistryOverrides.get(DeviceComponent.class, CachingDeviceComponent::new);
 
-	OpenSearchComponent OSComponent = new OpenSearchComponent();
+	OpenSearchComponent OSComponent =
+			RegistryOverrides.get(OpenSearchComponent.class, CachingOpenSearchComponent::new);
 
 	OpenSearchStatusComponent OpenSearchStatusComponent = new OpenSearchStatusComponent();
 
-	PirateWeatherComponent weatherComponent = new CachingPirateWeatherComponent();
+	PirateWeatherComponent weatherComponent =
+			RegistryOverrides.get(PirateWeatherComponent.class, CachingPirateWeatherComponent::new);
 
 	NotificationComponent notificationComponent = new NotificationComponent();
 
-	AlarmComponent alarmComponent = new AlarmComponent();
+	AlarmComponent alarmComponent = RegistryOverrides.get(AlarmComponent.class, AlarmComponent::new);
 
 	VirtualDeviceComponent virtualDeviceComponent = new VirtualDeviceComponent();
 
@@ -64,11 +67,12 @@ public interface IComponentRegistry {
 
 	MaintenanceComponent maintenanceComponent = new MaintenanceComponent();
 
-	DeviceUpdateComponent deviceUpdateComponent = new DeviceUpdateComponent();
+	DeviceUpdateComponent deviceUpdateComponent =
+			RegistryOverrides.get(DeviceUpdateComponent.class, DeviceUpdateComponent::new);
 
 	LocationComponent locationComponent = new LocationComponent();
 
-	MappingComponent mappingComponent = new MappingComponent();
+	MappingComponent mappingComponent = RegistryOverrides.get(MappingComponent.class, MappingComponent::new);
 
 	OverviewComponent overviewComponent = new OverviewComponent();
 
@@ -76,5 +80,12 @@ public interface IComponentRegistry {
 
 	DownloadComponent downloadComponent = new DownloadComponent();
 
-	LinkedDeviceComponent linkedDeviceComponent = new LinkedDeviceComponent();
+	LinkedDeviceComponent linkedDeviceComponent =
+			RegistryOverrides.get(LinkedDeviceComponent.class, LinkedDeviceComponent::new);
+
+	LastReadingComponent lastReadingComponent =
+			RegistryOverrides.get(LastReadingComponent.class, LastReadingComponent::new);
+
+	SiteAggregationComponent siteAggregationComponent =
+			RegistryOverrides.get(SiteAggregationComponent.class, SiteAggregationComponent::new);
 }
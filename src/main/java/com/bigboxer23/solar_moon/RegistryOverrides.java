@@ -0,0 +1,35 @@
+package com.bigboxer23.solar_moon;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets tests and benchmarks provide their own {@link IComponentRegistry} components. Overrides are
+ * read once, when the registry initializes, so they must be in place before it's first used.
+ */
+public final class RegistryOverrides {
+	private static final Map<Class<?>, Object> overrides = new ConcurrentHashMap<>();
+
+	private static volatile boolean initialized;
+
+	private RegistryOverrides() {}
+
+	/**
+	 * Use {@code component} as the registry's component of {@code type}
+	 *
+	 * @throws IllegalStateException if the registry has already been initialized
+	 */
+	public static synchronized <T> void override(Class<T> type, T component) {
+		if (initialized) {
+			throw new IllegalStateException("registry already initialized, can't override " + type.getSimpleName());
+		}
+		overrides.put(type, component);
+	}
+
+	static synchronized <T> T get(Class<T> type, Supplier<? extends T> defaultComponent) {
+		initialized = true;
+		Object component = overrides.get(type);
+		return component != null ? type.cast(component) : defaultComponent.get();
+	}
+}
@@ -8,6 +8,7 @@ import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchConstants;
+import com.bigboxer23.solar_moon.search.SearchBatch;
 import com.bigboxer23.solar_moon.search.SearchJSON;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
@@ -32,12 +33,14 @@ public class OverviewComponent implements IComponentRegistry {
 								|| alarm.getState() == IAlarmConstants.ACTIVE)
 						.toList());
 		getSubscriptionComponent().addSubscriptionInformation(data, search.getCustomerId());
-		fillSiteInfo(data, search);
-		fillInOverallInfo(data, search);
+		SearchBatch batch = createSearchBatch();
+		fillSiteInfo(data, search, batch);
+		fillInOverallInfo(data, search, batch);
+		data.setPartial(!batch.execute());
 		return data;
 	}
 
-	private void fillSiteInfo(OverviewData data, SearchJSON searchJson) {
+	private void fillSiteInfo(OverviewData data, SearchJSON searchJson, SearchBatch batch) {
 		if (data == null || data.getDevices() == null) {
 			log.warn("data or devices null, cannot fill data");
 			return;
@@ -46,14 +49,14 @@ public class OverviewComponent implements IComponentRegistry {
 		data.getDevices().stream().filter(Device::isDeviceSite).forEach(site -> data.getSitesOverviewData()
 				.put(
 						site.getDisplayName(),
-						getData(site, searchJson, OpenSearchConstants.TIME_SERIES_WITH_ERRORS_SEARCH_TYPE)));
+						getData(site, searchJson, OpenSearchConstants.TIME_SERIES_WITH_ERRORS_SEARCH_TYPE, batch)));
 	}
 
-	private void fillInOverallInfo(OverviewData data, SearchJSON searchJson) {
+	private void fillInOverallInfo(OverviewData data, SearchJSON searchJson, SearchBatch batch) {
 		if (searchJson == null || StringUtils.isBlank(searchJson.getTimeZone())) {
 			return;
 		}
-		data.setOverall(getData(null, searchJson, OpenSearchConstants.STACKED_TIME_SERIES_SEARCH_TYPE));
+		data.setOverall(getData(null, searchJson, OpenSearchConstants.STACKED_TIME_SERIES_SEARCH_TYPE, batch));
 
 		SearchJSON search = new SearchJSON(searchJson);
 		Date start = TimeUtils.getStartOfDay(search.getTimeZone());
@@ -63,28 +66,33 @@ public class OverviewComponent implements IComponentRegistry {
 		search.setDaylight(true);
 		// This is necessary because the period can shift to wk/mo/yr, and always need to get daily
 		// for overview as well.
-		data.getOverall().setDailyEnergyConsumedTotal(getOSComponent().search(search));
-		data.getOverall().setDailyEnergyConsumedAverage(getOSComponent().getAverageEnergyConsumedPerDay(search));
+		batch.add(search, data.getOverall()::setDailyEnergyConsumedTotal);
+		// 90 day daily histogram, kept out of the batch since it rewrites its own search
+		data.getOverall()
+				.setDailyEnergyConsumedAverage(getOSComponent().getAverageEnergyConsumedPerDay(new SearchJSON(search)));
 	}
 
-	private OverviewSiteData getData(Device device, SearchJSON searchJson, String timeSeriesType) {
+	private OverviewSiteData getData(Device device, SearchJSON searchJson, String timeSeriesType, SearchBatch batch) {
 		OverviewSiteData data = new OverviewSiteData();
-		SearchJSON search = new SearchJSON(searchJson);
-		search.setDeviceId(Optional.ofNullable(device).map(Device::getId).orElse(null));
-		search.setType(OpenSearchConstants.TOTAL_SEARCH_TYPE);
-		data.setTotal(getOSComponent().search(search));
-		search.setType(timeSeriesType);
-		data.setTimeSeries(getOSComponent().search(search));
-		search.setType(OpenSearchConstants.AVG_SEARCH_TYPE);
-		data.setAvg(getOSComponent().search(search));
+		batch.add(getSearch(device, searchJson, OpenSearchConstants.TOTAL_SEARCH_TYPE), data::setTotal);
+		batch.add(getSearch(device, searchJson, timeSeriesType), data::setTimeSeries);
+		batch.add(getSearch(device, searchJson, OpenSearchConstants.AVG_SEARCH_TYPE), data::setAvg);
 		if (device != null) {
-			data.setWeeklyMaxPower(
-					getSitesOverviewComponent().getMaxInformation(device.getId(), searchJson.getCustomerId()));
+			batch.add(
+					SitesOverviewComponent.getMaxInformationSearch(device.getId(), searchJson.getCustomerId()),
+					data::setWeeklyMaxPower);
 			data.setWeather(getSitesOverviewComponent().getWeatherInformation(device));
 		}
 		return data;
 	}
 
+	private SearchJSON getSearch(Device device, SearchJSON searchJson, String type) {
+		SearchJSON search = new SearchJSON(searchJson);
+		search.setDeviceId(Optional.ofNullable(device).map(Device::getId).orElse(null));
+		search.setType(type);
+		return search;
+	}
+
 	protected DeviceComponent getDeviceComponent() {
 		return deviceComponent;
 	}
@@ -104,4 +112,8 @@ public class OverviewComponent implements IComponentRegistry {
 	protected SitesOverviewComponent getSitesOverviewComponent() {
 		return sitesOverviewComponent;
 	}
+
+	protected SearchBatch createSearchBatch() {
+		return SearchBatch.forOverview(getOSComponent());
+	}
 }
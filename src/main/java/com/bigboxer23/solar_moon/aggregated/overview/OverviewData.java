@@ -25,4 +25,7 @@ public class OverviewData implements IHasSubscription {
 	private OverviewSiteData overall;
 
 	private Map<String, OverviewSiteData> sitesOverviewData;
+
+	/** Some searches missed the page deadline, their results are null */
+	private boolean partial;
 }
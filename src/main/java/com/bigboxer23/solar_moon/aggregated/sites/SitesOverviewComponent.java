@@ -9,7 +9,7 @@ import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchConstants;
-import com.bigboxer23.solar_moon.search.OpenSearchQueries;
+import com.bigboxer23.solar_moon.search.SearchBatch;
 import com.bigboxer23.solar_moon.search.SearchJSON;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
@@ -30,34 +30,36 @@ public class SitesOverviewComponent implements IComponentRegistry {
 	public SitesSiteData getExtendedSiteOverviewData(String siteId, SearchJSON search) {
 		TransactionUtil.addDeviceId(siteId, siteId);
 		log.info("Fetching site data");
+		SearchBatch batch = createSearchBatch();
 		SitesSiteData data = getDeviceComponent()
 				.findDeviceById(siteId, search.getCustomerId())
-				.map(site -> getSiteOverviewData(site, search))
-				.map(siteOverview -> fillExtendedSiteOverviewData(siteOverview, search))
+				.map(site -> getSiteOverviewData(site, search, batch))
+				.map(siteOverview -> fillExtendedSiteOverviewData(siteOverview, search, batch))
 				.orElse(null);
+		boolean complete = batch.execute();
+		Optional.ofNullable(data).ifPresent(siteData -> siteData.setPartial(!complete));
 		getSubscriptionComponent().addSubscriptionInformation(data, search.getCustomerId());
 		return data;
 	}
 
-	private SitesSiteData getSiteOverviewData(Device site, SearchJSON search) {
+	private SitesSiteData getSiteOverviewData(Device site, SearchJSON search, SearchBatch batch) {
 		SitesSiteData siteData = new SitesSiteData();
 		siteData.setSite(site);
 		fillLocalTimeInformation(siteData, site);
 		siteData.setWeather(getWeatherInformation(site));
-		fillAvgTotalInformation(siteData, site, search);
-		siteData.setWeeklyMaxPower(getMaxInformation(site.getId(), site.getClientId()));
+		fillAvgTotalInformation(siteData, site, search, batch);
+		batch.add(getMaxInformationSearch(site.getId(), site.getClientId()), siteData::setWeeklyMaxPower);
 		return siteData;
 	}
 
-	private void fillSiteInformation(SitesOverviewData data, SearchJSON search) {
+	private void fillSiteInformation(SitesOverviewData data, SearchJSON search, SearchBatch batch) {
 		data.setSites(new HashMap<>());
 		data.getDevices().stream().filter(Device::isDeviceSite).forEach(site -> data.getSites()
-				.put(site.getId(), getSiteOverviewData(site, search)));
+				.put(site.getId(), getSiteOverviewData(site, search, batch)));
 	}
 
 	public SiteWeatherData getWeatherInformation(Device site) {
-		return Optional.ofNullable(getOSComponent()
-						.getLastDeviceEntry(site.getId(), OpenSearchQueries.getDeviceIdQuery(site.getId())))
+		return Optional.ofNullable(getOSComponent().getLastDeviceEntry(site.getId()))
 				.filter(deviceData -> !StringUtils.isEmpty(deviceData.getWeatherSummary())) // No weather stamped for
 				// some reason
 				.map(SiteWeatherData::new)
@@ -71,18 +73,24 @@ public class SitesOverviewComponent implements IComponentRegistry {
 				.ifPresent(siteData::setLocalTime);
 	}
 
-	private void fillAvgTotalInformation(SitesSiteData siteData, Device site, SearchJSON search) {
-		SearchJSON searchJSON = new SearchJSON(search);
-		searchJSON.setDeviceId(site.getId());
-		searchJSON.setType(OpenSearchConstants.TOTAL_SEARCH_TYPE);
-		siteData.setTotal(getOSComponent().search(searchJSON));
+	private void fillAvgTotalInformation(SitesSiteData siteData, Device site, SearchJSON search, SearchBatch batch) {
+		SearchJSON total = new SearchJSON(search);
+		total.setDeviceId(site.getId());
+		total.setType(OpenSearchConstants.TOTAL_SEARCH_TYPE);
+		batch.add(total, siteData::setTotal);
 
-		searchJSON.setType(OpenSearchConstants.AVG_SEARCH_TYPE);
-		searchJSON.setDaylight(true);
-		siteData.setAvg(getOSComponent().search(searchJSON));
+		SearchJSON avg = new SearchJSON(total);
+		avg.setType(OpenSearchConstants.AVG_SEARCH_TYPE);
+		avg.setDaylight(true);
+		batch.add(avg, siteData::setAvg);
 	}
 
 	public SearchResponse<DeviceData> getMaxInformation(String deviceId, String customerId) {
+		return getOSComponent().search(getMaxInformationSearch(deviceId, customerId));
+	}
+
+	/** Search for the device's max power in 3h buckets over the last week */
+	public static SearchJSON getMaxInformationSearch(String deviceId, String customerId) {
 		SearchJSON search = new SearchJSON();
 		search.setCustomerId(customerId);
 		search.setType(OpenSearchConstants.MAX_CURRENT_SEARCH_TYPE);
@@ -91,10 +99,11 @@ public class SitesOverviewComponent implements IComponentRegistry {
 		search.setDeviceId(deviceId);
 		search.setEndDate(end.getTime());
 		search.setStartDate(end.getTime() - TimeConstants.WEEK);
-		return getOSComponent().search(search);
+		return search;
 	}
 
-	private SitesSiteData fillExtendedSiteOverviewData(SitesSiteData siteOverview, SearchJSON search) {
+	private SitesSiteData fillExtendedSiteOverviewData(
+			SitesSiteData siteOverview, SearchJSON search, SearchBatch batch) {
 		siteOverview.setDevices(getDeviceComponent()
 				.getDevicesBySiteId(
 						search.getCustomerId(), siteOverview.getSite().getSiteId()));
@@ -107,13 +116,19 @@ public class SitesOverviewComponent implements IComponentRegistry {
 										&& search.getEndDate() > alarm.getStartDate())
 								|| alarm.getState() == IAlarmConstants.ACTIVE)
 						.toList());
-		fillSiteTimeSeries(siteOverview, search);
-		fillDevicesTimeSeries(siteOverview, search);
-		fillDevicesAverageTotal(siteOverview, search);
+		fillSiteTimeSeries(siteOverview, search, batch);
+		fillDevicesTimeSeries(siteOverview, search, batch);
+		fillDevicesAverageTotal(siteOverview, search, batch);
 		return siteOverview;
 	}
 
 	protected void fillSiteTimeSeries(SitesSiteData siteOverview, SearchJSON search) {
+		SearchBatch batch = new SearchBatch(getOSComponent());
+		fillSiteTimeSeries(siteOverview, search, batch);
+		batch.execute();
+	}
+
+	private void fillSiteTimeSeries(SitesSiteData siteOverview, SearchJSON search, SearchBatch batch) {
 		SearchJSON searchJson = new SearchJSON(search);
 		searchJson.setDeviceId(
 				siteOverview.getSite().isSubtraction() ? siteOverview.getSite().getId() : null);
@@ -125,29 +140,38 @@ public class SitesOverviewComponent implements IComponentRegistry {
 				siteOverview.getSite().isSubtraction()
 						? OpenSearchConstants.TIME_SERIES_SEARCH_TYPE
 						: OpenSearchConstants.STACKED_TIME_SERIES_SEARCH_TYPE);
-		siteOverview.setTimeSeries(getOSComponent().search(searchJson));
+		batch.add(searchJson, siteOverview::setTimeSeries);
 	}
 
-	private void fillDevicesAverageTotal(SitesSiteData siteOverview, SearchJSON search) {
+	private void fillDevicesAverageTotal(SitesSiteData siteOverview, SearchJSON search, SearchBatch batch) {
 		siteOverview.setDeviceAvg(new HashMap<>());
-		fillDeviceMap(siteOverview, search, true, OpenSearchConstants.AVG_SEARCH_TYPE, siteOverview.getDeviceAvg());
+		fillDeviceMap(
+				siteOverview, search, true, OpenSearchConstants.AVG_SEARCH_TYPE, siteOverview.getDeviceAvg(), batch);
 		siteOverview.setDeviceTotals(new HashMap<>());
 		fillDeviceMap(
-				siteOverview, search, false, OpenSearchConstants.TOTAL_SEARCH_TYPE, siteOverview.getDeviceTotals());
+				siteOverview,
+				search,
+				false,
+				OpenSearchConstants.TOTAL_SEARCH_TYPE,
+				siteOverview.getDeviceTotals(),
+				batch);
 		siteOverview.setDeviceWeeklyMaxPower(new HashMap<>());
-		siteOverview.getDevices().stream().filter(d -> !d.isDeviceSite()).forEach(d -> siteOverview
-				.getDeviceWeeklyMaxPower()
-				.put(d.getId(), getMaxInformation(d.getId(), d.getClientId())));
+		siteOverview.getDevices().stream()
+				.filter(d -> !d.isDeviceSite())
+				.forEach(d -> batch.add(
+						getMaxInformationSearch(d.getId(), d.getClientId()),
+						response -> siteOverview.getDeviceWeeklyMaxPower().put(d.getId(), response)));
 	}
 
-	private void fillDevicesTimeSeries(SitesSiteData siteOverview, SearchJSON search) {
+	private void fillDevicesTimeSeries(SitesSiteData siteOverview, SearchJSON search, SearchBatch batch) {
 		siteOverview.setDeviceTimeSeries(new HashMap<>());
 		fillDeviceMap(
 				siteOverview,
 				search,
 				search.isDaylight(),
 				OpenSearchConstants.TIME_SERIES_WITH_ERRORS_SEARCH_TYPE,
-				siteOverview.getDeviceTimeSeries());
+				siteOverview.getDeviceTimeSeries(),
+				batch);
 	}
 
 	private void fillDeviceMap(
@@ -155,14 +179,15 @@ public class SitesOverviewComponent implements IComponentRegistry {
 			SearchJSON search,
 			boolean daylight,
 			String type,
-			Map<String, SearchResponse<DeviceData>> map) {
-		SearchJSON searchJson = new SearchJSON(search);
-		searchJson.setSiteId(null);
-		searchJson.setDaylight(daylight);
-		searchJson.setType(type);
+			Map<String, SearchResponse<DeviceData>> map,
+			SearchBatch batch) {
 		siteOverview.getDevices().stream().filter(d -> !d.isDeviceSite()).forEach(d -> {
+			SearchJSON searchJson = new SearchJSON(search);
+			searchJson.setSiteId(null);
+			searchJson.setDaylight(daylight);
+			searchJson.setType(type);
 			searchJson.setDeviceId(d.getId());
-			map.put(d.getId(), getOSComponent().search(searchJson));
+			batch.add(searchJson, response -> map.put(d.getId(), response));
 		});
 	}
 
@@ -185,4 +210,8 @@ public class SitesOverviewComponent implements IComponentRegistry {
 	protected LocationComponent getLocationComponent() {
 		return locationComponent;
 	}
+
+	protected SearchBatch createSearchBatch() {
+		return SearchBatch.forOverview(getOSComponent());
+	}
 }
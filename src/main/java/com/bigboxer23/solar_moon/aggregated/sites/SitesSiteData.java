@@ -39,5 +39,8 @@ public class SitesSiteData implements IHasSubscription {
 
 	private Map<String, SearchResponse<DeviceData>> deviceWeeklyMaxPower;
 
+	/** Some searches missed the page deadline, their results are null */
+	private boolean partial;
+
 	private Subscription subscription;
 }
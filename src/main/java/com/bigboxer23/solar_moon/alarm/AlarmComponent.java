@@ -4,15 +4,17 @@ import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.*;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.device.DeviceUpdateComponent;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
+import com.bigboxer23.solar_moon.ingest.MeterConstants;
 import com.bigboxer23.solar_moon.notifications.AlarmEmailTemplateContent;
 import com.bigboxer23.solar_moon.notifications.ResolvedAlertEmailTemplateContent;
-import com.bigboxer23.solar_moon.search.OpenSearchQueries;
 import com.bigboxer23.solar_moon.util.TimeConstants;
 import com.bigboxer23.solar_moon.util.TokenGenerator;
 import com.bigboxer23.solar_moon.weather.IWeatherConstants;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
 import java.io.IOException;
 import java.util.*;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.utils.StringUtils;
 
@@ -21,6 +23,9 @@ import software.amazon.awssdk.utils.StringUtils;
 public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 	protected static final long QUICK_CHECK_THRESHOLD = TimeConstants.FORTY_FIVE_MINUTES;
 
+	/** Past this many non-responsive devices, quick check loads all devices instead of each one */
+	protected static final int QUICK_CHECK_BULK_LOAD_THRESHOLD = 25;
+
 	private AlarmRepository repository;
 
 	protected AlarmRepository getRepository() {
@@ -62,6 +67,10 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 		return IComponentRegistry.notificationComponent;
 	}
 
+	protected com.bigboxer23.solar_moon.device.VirtualDeviceComponent getVirtualDeviceComponent() {
+		return IComponentRegistry.virtualDeviceComponent;
+	}
+
 	public Optional<Alarm> getMostRecentAlarm(String deviceId) {
 		return getRepository().findMostRecentAlarm(deviceId);
 	}
@@ -73,7 +82,50 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 			return;
 		}
 		getDeviceUpdateComponent().update(deviceData.getDeviceId());
-		Optional<Alarm> maybeAlarm = findAlarmsByDevice(deviceData.getCustomerId(), deviceData.getDeviceId()).stream()
+		resolveActiveAlarm(deviceData, findAlarmsByDevice(deviceData.getCustomerId(), deviceData.getDeviceId()));
+	}
+
+	/**
+	 * Resolve active alarms for a batch of device data. Active alarms are fetched once per customer in
+	 * the batch rather than queried per device.
+	 *
+	 * @param deviceDatas
+	 */
+	public void resolveActiveAlarms(List<DeviceData> deviceDatas) {
+		List<DeviceData> recent = deviceDatas.stream()
+				.filter(deviceData -> {
+					if (deviceData.getDate() == null
+							|| deviceData.getDate().getTime() <= System.currentTimeMillis() - TimeConstants.HOUR) {
+						log.warn("old data, not adding device update or resolving active alarms "
+								+ deviceData.getDate());
+						return false;
+					}
+					return true;
+				})
+				.toList();
+		if (recent.isEmpty()) {
+			return;
+		}
+		Map<String, List<Alarm>> activeAlarms = new HashMap<>();
+		recent.stream()
+				.map(DeviceData::getCustomerId)
+				.filter(customerId -> !StringUtils.isBlank(customerId))
+				.distinct()
+				.flatMap(customerId -> getRepository().findActiveAlarms(customerId).stream())
+				.forEach(alarm -> activeAlarms
+						.computeIfAbsent(alarm.getCustomerId() + ":" + alarm.getDeviceId(), k -> new ArrayList<>())
+						.add(alarm));
+		recent.forEach(deviceData -> {
+			getDeviceUpdateComponent().update(deviceData.getDeviceId());
+			resolveActiveAlarm(
+					deviceData,
+					activeAlarms.getOrDefault(
+							deviceData.getCustomerId() + ":" + deviceData.getDeviceId(), Collections.emptyList()));
+		});
+	}
+
+	private void resolveActiveAlarm(DeviceData deviceData, List<Alarm> deviceAlarms) {
+		Optional<Alarm> maybeAlarm = deviceAlarms.stream()
 				.filter(a -> a.getState() == ACTIVE)
 				.max(Comparator.comparingLong(Alarm::getStartDate));
 		if (maybeAlarm.isEmpty()) {
@@ -161,14 +213,24 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 	}
 
 	protected Alarm getNewAlarm(String customerId, String deviceId, String siteId, String content) {
+		return getNewAlarm(
+				customerId,
+				deviceId,
+				siteId,
+				content,
+				getDeviceComponent()
+						.findDeviceById(deviceId, customerId)
+						.map(Device::isNotificationsDisabled)
+						.orElse(false));
+	}
+
+	protected Alarm getNewAlarm(
+			String customerId, String deviceId, String siteId, String content, boolean notificationsDisabled) {
 		Alarm newAlarm = new Alarm(TokenGenerator.generateNewToken(), customerId, deviceId, siteId);
 		newAlarm.setStartDate(System.currentTimeMillis());
 		newAlarm.setState(ACTIVE);
 		newAlarm.setMessage(content);
-		if (!getDeviceComponent()
-				.findDeviceById(deviceId, customerId)
-				.map(Device::isNotificationsDisabled)
-				.orElse(false)) {
+		if (!notificationsDisabled) {
 			newAlarm.setEmailed(NEEDS_EMAIL);
 		}
 		return newAlarm;
@@ -337,38 +399,172 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 		return getRepository().findAlarmByAlarmId(alarmId, customerId);
 	}
 
+	/**
+	 * Flag devices which haven't reported recently. Devices, their sites and active alarms are read in
+	 * bulk rather than per device, daylight is computed once per site location, and alarms are written
+	 * in batches. Sites still waiting on a device past the deadline are written first, this runs even
+	 * when nothing is ingesting.
+	 */
 	public List<Alarm> quickCheckDevices() {
+		getVirtualDeviceComponent().writeExpiredSites();
 		log.info("Checking for non-responsive devices");
-		List<Alarm> alarms = new ArrayList<>();
+		List<DeviceUpdateData> updates = new ArrayList<>();
 		getDeviceUpdateComponent()
 				.queryByTimeRange(System.currentTimeMillis() - QUICK_CHECK_THRESHOLD)
-				.forEach(d -> getDeviceComponent()
-						.findDeviceById(d.getDeviceId())
-						.filter(d2 -> !d2.isDisabled())
-						.filter(d2 -> {
-							boolean isDay = getDeviceComponent()
-									.findDeviceById(d2.getSiteId(), d2.getClientId())
-									.map(site -> getLocationComponent()
-											.isDay(new Date(), site.getLatitude(), site.getLongitude())
-											.orElse(true))
-									.orElse(true);
-							TransactionUtil.updateCustomerId(d2.getClientId());
-							// TODO:remove this after  burn in
-							TransactionUtil.addDeviceId(d2.getId(), d2.getSiteId());
-							log.info("quickCheck is day: " + isDay);
-							return isDay;
-						})
-						.flatMap(d2 -> {
-							TransactionUtil.updateCustomerId(d2.getClientId());
-							TransactionUtil.addDeviceId(d2.getId(), d2.getSiteId());
-							log.warn("Quick check shows no updates for" + " device in last 45 min.");
-							return alarmConditionDetected(
-									d2.getClientId(), d2.getId(), d2.getSiteId(), NO_DATA_RECENTLY + d.getLastUpdate());
-						})
-						.ifPresent(alarms::add));
-		return alarms;
+				.forEach(updates::add);
+		if (updates.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (getMaintenanceComponent().isInMaintenanceMode()) {
+			log.warn("Maintenance mode activated, not flagging alarm condition.");
+			return Collections.emptyList();
+		}
+		Map<String, Device> devices =
+				findDevices(updates.stream().map(DeviceUpdateData::getDeviceId).toList());
+		List<Device> enabled = updates.stream()
+				.map(update -> devices.get(update.getDeviceId()))
+				.filter(device -> device != null && !device.isDisabled())
+				.distinct()
+				.toList();
+		if (enabled.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Map<String, Device> sites = findSites(enabled, devices);
+		Map<Location, Boolean> isDayByLocation = new HashMap<>();
+		Date now = new Date();
+		Map<String, List<Alarm>> activeAlarms = null;
+		List<Alarm> alarms = new ArrayList<>();
+		for (DeviceUpdateData update : updates) {
+			Device device = devices.get(update.getDeviceId());
+			if (device == null || device.isDisabled()) {
+				continue;
+			}
+			boolean isDay = Optional.ofNullable(sites.get(device.getClientId() + ":" + device.getSiteId()))
+					.map(site -> isDayByLocation.computeIfAbsent(
+							new Location(site.getLatitude(), site.getLongitude()),
+							location -> getLocationComponent()
+									.isDay(now, location.latitude(), location.longitude())
+									.orElse(true)))
+					.orElse(true);
+			TransactionUtil.updateCustomerId(device.getClientId());
+			// TODO:remove this after  burn in
+			TransactionUtil.addDeviceId(device.getId(), device.getSiteId());
+			log.info("quickCheck is day: " + isDay);
+			if (!isDay) {
+				continue;
+			}
+			log.warn("Quick check shows no updates for" + " device in last 45 min.");
+			if (activeAlarms == null) {
+				activeAlarms = findActiveAlarmsByDevice();
+			}
+			alarms.add(getNoDataAlarm(
+					device,
+					activeAlarms.getOrDefault(device.getClientId() + ":" + device.getId(), Collections.emptyList()),
+					NO_DATA_RECENTLY + update.getLastUpdate()));
+		}
+		return updateAlarms(alarms);
+	}
+
+	/**
+	 * Devices keyed by id. Few ids are looked up one at a time, past {@link
+	 * #QUICK_CHECK_BULK_LOAD_THRESHOLD} all devices (sites included) are loaded at once, falling back
+	 * to single lookups for any not found that way.
+	 */
+	private Map<String, Device> findDevices(List<String> ids) {
+		Map<String, Device> devices = new HashMap<>();
+		if (ids.size() > QUICK_CHECK_BULK_LOAD_THRESHOLD) {
+			Stream.concat(
+							getDeviceComponent().getDevices(false).stream(),
+							getDeviceComponent().getDevices(true).stream())
+					.forEach(device -> devices.putIfAbsent(device.getId(), device));
+		}
+		ids.stream()
+				.filter(id -> !devices.containsKey(id))
+				.distinct()
+				.forEach(id -> getDeviceComponent().findDeviceById(id).ifPresent(device -> devices.put(id, device)));
+		return devices;
+	}
+
+	/** Sites of the devices keyed by customer and site id, fetched in one batch per customer */
+	private Map<String, Device> findSites(List<Device> devices, Map<String, Device> loaded) {
+		Map<String, Device> sites = new HashMap<>();
+		Map<String, Set<String>> missing = new HashMap<>();
+		devices.stream()
+				.filter(device -> !StringUtils.isBlank(device.getSiteId()))
+				.forEach(device -> {
+					Device site = loaded.get(device.getSiteId());
+					if (site != null && Objects.equals(site.getClientId(), device.getClientId())) {
+						sites.put(device.getClientId() + ":" + site.getId(), site);
+					} else {
+						missing.computeIfAbsent(device.getClientId(), k -> new HashSet<>())
+								.add(device.getSiteId());
+					}
+				});
+		missing.forEach((customerId, siteIds) -> getDeviceComponent()
+				.findDevicesByIds(siteIds, customerId)
+				.forEach((siteId, site) -> sites.put(customerId + ":" + siteId, site)));
+		return sites;
+	}
+
+	private Map<String, List<Alarm>> findActiveAlarmsByDevice() {
+		Map<String, List<Alarm>> activeAlarms = new HashMap<>();
+		getRepository()
+				.findActiveAlarms()
+				.forEach(alarm -> activeAlarms
+						.computeIfAbsent(alarm.getCustomerId() + ":" + alarm.getDeviceId(), k -> new ArrayList<>())
+						.add(alarm));
+		return activeAlarms;
+	}
+
+	/** Same alarm {@link #alarmConditionDetected} would write, from an already loaded device */
+	private Alarm getNoDataAlarm(Device device, List<Alarm> deviceAlarms, String content) {
+		Alarm alarm = deviceAlarms.stream()
+				.filter(a -> a.getState() == ACTIVE)
+				.findAny()
+				.orElseGet(() -> getNewAlarm(
+						device.getClientId(),
+						device.getId(),
+						device.getSiteId(),
+						content,
+						device.isNotificationsDisabled()));
+		if (alarm.getEmailed() == DONT_EMAIL && !device.isNotificationsDisabled()) {
+			alarm.setEmailed(NEEDS_EMAIL); // We're turning a "fault" into an alert, should send email now
+		}
+		alarm.setLastUpdate(System.currentTimeMillis());
+		if (StringUtils.isBlank(alarm.getMessage())) {
+			alarm.setMessage(content);
+		}
+		return alarm;
+	}
+
+	/**
+	 * Write alarms in batches rather than one update each. Invalid alarms are skipped.
+	 *
+	 * @return the alarms written
+	 * @throws BatchWriteException if some alarms couldn't be written
+	 */
+	public List<Alarm> updateAlarms(List<Alarm> alarms) {
+		List<Alarm> valid = alarms.stream()
+				.filter(alarm -> {
+					if (alarm == null
+							|| StringUtils.isBlank(alarm.getCustomerId())
+							|| StringUtils.isBlank(alarm.getAlarmId())) {
+						log.warn("invalid alarm, not updating");
+						return false;
+					}
+					return true;
+				})
+				.toList();
+		if (valid.isEmpty()) {
+			return Collections.emptyList();
+		}
+		log.warn("Updating alarms: " + valid.stream().map(Alarm::getAlarmId).toList());
+		getRepository().updateAlarms(valid);
+		return valid;
 	}
 
+	private record Location(double latitude, double longitude) {}
+
 	public Optional<Alarm> checkDevice(Device device) {
 		if (device == null) {
 			log.warn("Null device, can't check.");
@@ -376,8 +572,7 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 		}
 		TransactionUtil.updateCustomerId(device.getClientId());
 		TransactionUtil.addDeviceId(device.getId(), device.getSiteId());
-		DeviceData data = getOpenSearchComponent()
-				.getLastDeviceEntry(device.getId(), OpenSearchQueries.getDeviceIdQuery(device.getId()));
+		DeviceData data = getOpenSearchComponent().getLastDeviceEntry(device.getId());
 		// Check disabled or new
 		if (data == null || device.isDisabled()) {
 			log.debug("likely new device with no data (or disabled) " + device.getId());
@@ -500,7 +695,7 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 
 	/**
 	 * Parse other site devices to see if they're producing power or not. If they are not, device
-	 * may be ok.
+	 * may be ok. Only readings from the same two hours the device's own data is checked over count.
 	 *
 	 * @param device
 	 * @return true if site or device is not within a site or if any site devices report power > .1
@@ -514,28 +709,28 @@ public class AlarmComponent implements IAlarmConstants, ISolectriaConstants {
 			log.info("no site attached to device or is site. Won't include in OK check.");
 			return true;
 		}
-		List<Device> siteDevices = getDeviceComponent().getDevicesBySiteId(device.getClientId(), device.getSiteId());
-		boolean hasValidSiteDeviceData = false;
-		for (Device siteDevice : siteDevices) {
-			if (!device.getId().equalsIgnoreCase(siteDevice.getId()) && !siteDevice.isDeviceSite()) {
-				DeviceData siteDeviceData = getOpenSearchComponent()
-						.getLastDeviceEntry(siteDevice.getId(), OpenSearchQueries.getDeviceIdQuery(siteDevice.getId()));
-				hasValidSiteDeviceData = hasValidSiteDeviceData || siteDeviceData != null;
-				if (siteDeviceData != null && siteDeviceData.getTotalRealPower() > 0.25) {
-					log.info(
-							"average production over .25kW detected on site device {} : {} : {}",
-							siteDevice.getId(),
-							siteDeviceData.getTotalRealPower(),
-							siteDeviceData.getDate());
-					return true;
-				}
-			}
-		}
-		if (!hasValidSiteDeviceData) {
+		List<String> siteDeviceIds =
+				getDeviceComponent().getDevicesBySiteId(device.getClientId(), device.getSiteId()).stream()
+						.filter(siteDevice ->
+								!device.getId().equalsIgnoreCase(siteDevice.getId()) && !siteDevice.isDeviceSite())
+						.map(Device::getId)
+						.toList();
+		Collection<DeviceData> siteDeviceData = getOpenSearchComponent()
+				.getLastDeviceEntries(siteDeviceIds, TimeConstants.HOUR * 2, MeterConstants.TOTAL_REAL_POWER)
+				.values();
+		if (siteDeviceData.isEmpty()) {
 			log.warn("no other valid site data exists to check, returning true");
 			return true;
 		}
-		return false;
+		Optional<DeviceData> producing = siteDeviceData.stream()
+				.filter(data -> data.getTotalRealPower() > 0.25)
+				.findFirst();
+		producing.ifPresent(data -> log.info(
+				"average production over .25kW detected on site device {} : {} : {}",
+				data.getDeviceId(),
+				data.getTotalRealPower(),
+				data.getDate()));
+		return producing.isPresent();
 	}
 
 	public void clearDisabledResolvedAlarms() {
@@ -1,6 +1,8 @@
 package com.bigboxer23.solar_moon.alarm;
 
 import com.bigboxer23.solar_moon.data.Alarm;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,11 +26,20 @@ public interface AlarmRepository {
 
 	List<Alarm> findActiveAlarms();
 
+	List<Alarm> findActiveAlarms(String customerId);
+
 	List<Alarm> findAlarmsByStateAndDateLessThan(int state, long deleteOlderThan);
 
 	Alarm add(Alarm alarm);
 
 	Optional<Alarm> update(Alarm alarm);
 
+	/**
+	 * Save alarms in batches rather than one write each
+	 *
+	 * @throws BatchWriteException if some alarms couldn't be saved
+	 */
+	void updateAlarms(Collection<Alarm> alarms);
+
 	void delete(Alarm alarm);
 }
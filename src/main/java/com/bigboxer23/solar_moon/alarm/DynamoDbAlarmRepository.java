@@ -2,6 +2,7 @@ package com.bigboxer23.solar_moon.alarm;
 
 import com.bigboxer23.solar_moon.data.Alarm;
 import com.bigboxer23.solar_moon.dynamodb.AuditableAbstractDynamodbRepository;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -90,6 +91,20 @@ public class DynamoDbAlarmRepository extends AuditableAbstractDynamodbRepository
 				.toList();
 	}
 
+	@Override
+	public List<Alarm> findActiveAlarms(String customerId) {
+		if (StringUtils.isBlank(customerId)) {
+			return Collections.emptyList();
+		}
+		return getTable()
+				.index(Alarm.STATE_CUSTOMER_INDEX)
+				.query(QueryConditional.keyEqualTo(
+						builder -> builder.partitionValue(ACTIVE).sortValue(customerId)))
+				.stream()
+				.flatMap(page -> page.items().stream())
+				.toList();
+	}
+
 	@Override
 	public List<Alarm> findAlarmsByStateAndDateLessThan(int state, long deleteOlderThan) {
 		return getTable()
@@ -101,6 +116,15 @@ public class DynamoDbAlarmRepository extends AuditableAbstractDynamodbRepository
 				.toList();
 	}
 
+	@Override
+	public void updateAlarms(Collection<Alarm> alarms) {
+		if (alarms == null || alarms.isEmpty()) {
+			return;
+		}
+		alarms.forEach(Alarm::markUpdated);
+		batchWrite(alarms, Collections.emptyList());
+	}
+
 	@Override
 	public void delete(Alarm alarm) {
 		getTable().deleteItem(alarm);
@@ -0,0 +1,34 @@
+package com.bigboxer23.solar_moon.data;
+
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import lombok.Data;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/** Stamp changed whenever any of a customer's devices are written, lets device caches check they're current */
+@Data
+@DynamoDbBean
+public class DeviceVersionData {
+	private String customerId;
+
+	private long version;
+
+	/** When the version was stored, the devices index may not show the write for a short while after */
+	private long bumpedAt;
+
+	private long expiration;
+
+	public DeviceVersionData() {}
+
+	public DeviceVersionData(String customerId, long version) {
+		setCustomerId(customerId);
+		setVersion(version);
+		setBumpedAt(System.currentTimeMillis());
+		setExpiration((System.currentTimeMillis() + TimeConstants.THIRTY_DAYS) / 1000);
+	}
+
+	@DynamoDbPartitionKey
+	public String getCustomerId() {
+		return customerId;
+	}
+}
@@ -0,0 +1,37 @@
+package com.bigboxer23.solar_moon.data;
+
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import lombok.Data;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/** Most recent reading stored for a device, kept so ingest and alarm checks don't need a search */
+@Data
+@DynamoDbBean
+public class LastReadingData {
+	private String deviceId;
+
+	private String customerId;
+
+	private long date;
+
+	/** The device data document as written to OpenSearch */
+	private String reading;
+
+	private long expiration;
+
+	public LastReadingData() {}
+
+	public LastReadingData(DeviceData deviceData, String reading) {
+		setDeviceId(deviceData.getDeviceId());
+		setCustomerId(deviceData.getCustomerId());
+		setDate(deviceData.getDate().getTime());
+		setReading(reading);
+		setExpiration((System.currentTimeMillis() + TimeConstants.THIRTY_DAYS) / 1000);
+	}
+
+	@DynamoDbPartitionKey
+	public String getDeviceId() {
+		return deviceId;
+	}
+}
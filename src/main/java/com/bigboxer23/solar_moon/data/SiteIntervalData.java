@@ -0,0 +1,101 @@
+package com.bigboxer23.solar_moon.data;
+
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbVersionAttribute;
+
+/** Running totals of the devices which have reported for a site within a 15 minute interval */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@DynamoDbBean
+public class SiteIntervalData extends AuditableEntity {
+	public static final String PENDING_INDEX = "pending-deadline-index";
+
+	public static final String PENDING = "1";
+
+	private String id;
+
+	private String siteId;
+
+	private String customerId;
+
+	/** Start of the 15 minute interval */
+	private long interval;
+
+	/** Timestamp of the first reading, used for the site's data */
+	private long date;
+
+	private Set<String> deviceIds = new HashSet<>();
+
+	private float energyConsumed = -1;
+
+	private float totalRealPower = -1;
+
+	private float totalEnergyConsumed = -1;
+
+	private int informationalError = -1;
+
+	private int criticalError = -1;
+
+	/** Whether the site's data has been written */
+	private boolean emitted;
+
+	/** Set only while not emitted, so {@link #PENDING_INDEX} holds just the intervals still to write */
+	private String pending;
+
+	/** When the site is written with whatever devices have reported */
+	private long deadline;
+
+	private Long version;
+
+	private long expiration;
+
+	public SiteIntervalData() {}
+
+	public SiteIntervalData(DeviceData deviceData, long interval) {
+		setId(getId(deviceData.getSiteId(), interval));
+		setSiteId(deviceData.getSiteId());
+		setCustomerId(deviceData.getCustomerId());
+		setInterval(interval);
+		setDate(deviceData.getDate().getTime());
+		setEmitted(false);
+		setExpiration((System.currentTimeMillis() + TimeConstants.DAY) / 1000);
+		markCreated();
+	}
+
+	public static String getId(String siteId, long interval) {
+		return siteId + ":" + interval;
+	}
+
+	@DynamoDbPartitionKey
+	public String getId() {
+		return id;
+	}
+
+	public void setEmitted(boolean emitted) {
+		this.emitted = emitted;
+		pending = emitted ? null : PENDING;
+	}
+
+	@DynamoDbSecondaryPartitionKey(indexNames = PENDING_INDEX)
+	public String getPending() {
+		return pending;
+	}
+
+	@DynamoDbSecondarySortKey(indexNames = PENDING_INDEX)
+	public long getDeadline() {
+		return deadline;
+	}
+
+	@DynamoDbVersionAttribute
+	public Long getVersion() {
+		return version;
+	}
+}
@@ -1,34 +1,152 @@
 package com.bigboxer23.solar_moon.device;
 
+import static com.bigboxer23.solar_moon.util.PropertyConstants.*;
+
 import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import com.bigboxer23.solar_moon.util.PropertyValues;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import software.amazon.awssdk.utils.StringUtils;
 
-/** */
+/**
+ * Caches devices per customer. All of a customer's devices are loaded with one query and indexed by
+ * id, device name, site id and device key, so lookups for any of a customer's devices share one
+ * entry. Lookups of a single device the entry doesn't hold are read from the table, the index can
+ * lag a write. Writes of a single device through this component update it within the customer's
+ * entry rather than dropping it. Cache size is the total number of devices held, set by {@link
+ * com.bigboxer23.solar_moon.util.PropertyConstants#DEVICE_CACHE_MAX_DEVICES}.
+ *
+ * <p>Entries live for a long time, to pick up writes made by other processes each write also bumps
+ * the customer's stored {@link DeviceVersionRepository version}. An entry older than the check
+ * interval reads the version (a single item) and only reloads the customer's devices if it changed.
+ * An entry updated by a write keeps the version it was loaded with, so however many devices are
+ * written it's reloaded once, at the next check, picking up any writes made elsewhere meanwhile.
+ * Devices' own update timestamps can't be used for this, a deleted device leaves nothing behind to
+ * compare.
+ *
+ * <p>Customers' devices are read from an index which can briefly lag a write. An entry loaded within
+ * {@link #INDEX_SETTLE_TIME} of a bump may be missing it while already carrying the new version, so
+ * until it's reloaded after that (each check interval, whatever the version) lookups of a single
+ * device or site read the table instead. Only the customer's full device list is served from it.
+ */
 public class CachingDeviceComponent extends DeviceComponent {
-	private final LoadingCache<String, Optional<Device>> deviceCache = Caffeine.newBuilder()
-			.maximumSize(1000)
-			.expireAfterWrite(Duration.ofSeconds(10))
-			.build(key -> CachingDeviceComponent.super.findDeviceById(
-					key.substring(key.indexOf(":") + 1), key.substring(0, key.indexOf(":"))));
-
-	private final LoadingCache<String, List<Device>> devicesBySiteIdCache = Caffeine.newBuilder()
-			.maximumSize(10)
-			.expireAfterWrite(Duration.ofSeconds(10))
-			.build(key -> CachingDeviceComponent.super.getDevicesBySiteId(
-					key.substring(0, key.indexOf(":")), key.substring(key.indexOf(":") + 1)));
+	public static final int DEFAULT_MAX_DEVICES = 10000;
+
+	public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+
+	public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(10);
+
+	/** How long after a version bump the customer index may still return devices from before it */
+	static final long INDEX_SETTLE_TIME = 10 * TimeConstants.SECOND;
+
+	private static final String SITES = "sites";
+
+	private final LoadingCache<String, CustomerDevices> customerCache;
+
+	/** Customer owning each device key seen, so key lookups can be answered from that customer's entry */
+	private final Cache<String, String> customerByDeviceKey;
+
+	private final LoadingCache<String, List<Device>> sitesCache;
+
+	private final long checkInterval;
+
+	private DeviceVersionRepository versionRepository;
+
+	public CachingDeviceComponent() {
+		this(
+				PropertyValues.getInt(DEVICE_CACHE_MAX_DEVICES, DEFAULT_MAX_DEVICES),
+				PropertyValues.getDuration(DEVICE_CACHE_TTL, DEFAULT_TTL),
+				PropertyValues.getDuration(DEVICE_CACHE_CHECK_INTERVAL, DEFAULT_CHECK_INTERVAL));
+	}
+
+	/**
+	 * @param maxDevices most devices held across all customers
+	 * @param ttl how long a customer's devices are kept
+	 * @param checkInterval how often a customer's version is checked, sites (across all customers)
+	 *     aren't versioned and are only kept this long
+	 */
+	public CachingDeviceComponent(int maxDevices, Duration ttl, Duration checkInterval) {
+		this.checkInterval = checkInterval.toMillis();
+		customerCache = Caffeine.newBuilder()
+				.maximumWeight(maxDevices)
+				.weigher((String customerId, CustomerDevices devices) ->
+						devices.devices().size() + 1)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build(this::loadCustomer);
+		customerByDeviceKey = Caffeine.newBuilder().maximumSize(maxDevices).build();
+		sitesCache = Caffeine.newBuilder()
+				.maximumSize(1)
+				.expireAfterWrite(checkInterval)
+				.build(key -> CachingDeviceComponent.super.getSites());
+	}
+
+	protected DeviceVersionRepository getVersionRepository() {
+		if (versionRepository == null) {
+			versionRepository = new DynamoDbDeviceVersionRepository();
+		}
+		return versionRepository;
+	}
+
+	@Override
+	public Optional<Device> findDeviceByDeviceName(String customerId, String deviceName) {
+		if (StringUtils.isBlank(deviceName) || StringUtils.isBlank(customerId)) {
+			return Optional.empty();
+		}
+		return getSettledCustomer(customerId)
+				.map(devices -> devices.byDeviceName().get(deviceName))
+				.or(() -> super.findDeviceByDeviceName(customerId, deviceName));
+	}
+
+	@Override
+	public Device findDeviceByDeviceKey(String deviceKey) {
+		if (StringUtils.isBlank(deviceKey)) {
+			return null;
+		}
+		String customerId = customerByDeviceKey.getIfPresent(deviceKey);
+		if (customerId != null) {
+			Device device = getSettledCustomer(customerId)
+					.map(devices -> devices.byDeviceKey().get(deviceKey))
+					.orElse(null);
+			if (device != null) {
+				return device;
+			}
+		}
+		Device device = super.findDeviceByDeviceKey(deviceKey);
+		if (device != null && !StringUtils.isBlank(device.getClientId())) {
+			customerByDeviceKey.put(deviceKey, device.getClientId());
+		}
+		return device;
+	}
 
 	@Override
 	public List<Device> getDevicesBySiteId(String customerId, String siteId) {
 		if (customerId == null || siteId == null || siteId.isBlank() || customerId.isBlank()) {
 			return Collections.emptyList();
 		}
-		return devicesBySiteIdCache.get(customerId + ":" + siteId);
+		return getSettledCustomer(customerId)
+				.map(devices -> devices.bySiteId().get(siteId))
+				.orElseGet(() -> super.getDevicesBySiteId(customerId, siteId));
+	}
+
+	@Override
+	public List<Device> getSites() {
+		return sitesCache.get(SITES);
+	}
+
+	@Override
+	public List<Device> getDevicesForCustomerId(String customerId) {
+		if (StringUtils.isBlank(customerId)) {
+			return Collections.emptyList();
+		}
+		return getCustomer(customerId).devices();
 	}
 
 	@Override
@@ -36,45 +154,200 @@ public class CachingDeviceComponent extends DeviceComponent {
 		if (StringUtils.isBlank(id) || StringUtils.isBlank(customerId)) {
 			return Optional.empty();
 		}
-		return deviceCache.get(customerId + ":" + id);
+		return getSettledCustomer(customerId)
+				.map(devices -> devices.byId().get(id))
+				.or(() -> super.findDeviceById(id, customerId));
 	}
 
 	@Override
 	public Device addDevice(Device device) {
 		Device d = super.addDevice(device);
-		invalidate(device.getClientId(), device.getId(), device.getSiteId());
+		if (d != null) {
+			written(d.getClientId(), d.getId(), d);
+		}
 		return d;
 	}
 
 	@Override
 	public void deleteDevice(String id, String customerId) {
-		String siteId = findDeviceById(id, customerId).map(Device::getSiteId).orElse(null);
-		invalidate(customerId, id, siteId);
 		super.deleteDevice(id, customerId);
-		invalidate(customerId, id, siteId);
+		written(customerId, id, null);
 	}
 
 	@Override
 	public Optional<Device> updateDevice(Device device) {
-		invalidate(device.getClientId(), device.getId(), device.getSiteId());
 		Optional<Device> d = super.updateDevice(device);
-		invalidate(device.getClientId(), device.getId(), device.getSiteId());
+		d.ifPresent(updated -> written(updated.getClientId(), updated.getId(), updated));
 		return d;
 	}
 
-	private void invalidate(String customerId, String deviceId, String siteId) {
-		deviceCache.invalidate(customerId + ":" + deviceId);
-		devicesBySiteIdCache.invalidate(customerId + ":" + siteId);
+	@Override
+	public void updateDevices(Collection<Device> devices) {
+		try {
+			super.updateDevices(devices);
+		} catch (RuntimeException e) {
+			// some may have been written even if others weren't
+			devices.stream().map(Device::getClientId).distinct().forEach(this::invalidateAllForCustomer);
+			throw e;
+		}
+		// one bump per customer however many of their devices were saved
+		devices.stream()
+				.map(Device::getClientId)
+				.filter(customerId -> !StringUtils.isBlank(customerId))
+				.distinct()
+				.forEach(getVersionRepository()::bump);
+		devices.forEach(device -> apply(device.getClientId(), device.getId(), device));
+		sitesCache.invalidateAll();
 	}
 
 	@Override
 	public void deleteDevicesByCustomerId(String customerId) {
-		super.deleteDevicesByCustomerId(customerId);
-		invalidateAllForCustomer(customerId);
+		try {
+			super.deleteDevicesByCustomerId(customerId);
+		} finally {
+			invalidateAllForCustomer(customerId);
+		}
 	}
 
+	/** Drop the customer's cached devices here and, by bumping their version, in other processes */
 	public void invalidateAllForCustomer(String customerId) {
-		deviceCache.invalidateAll();
-		devicesBySiteIdCache.invalidateAll();
+		if (!StringUtils.isBlank(customerId)) {
+			getVersionRepository().bump(customerId);
+		}
+		invalidate(customerId);
+	}
+
+	/** Tell other processes about a single device write and apply it to the customer's entry */
+	private void written(String customerId, String id, Device device) {
+		if (!StringUtils.isBlank(customerId)) {
+			getVersionRepository().bump(customerId);
+		}
+		apply(customerId, id, device);
+		sitesCache.invalidateAll();
+	}
+
+	/**
+	 * Update the customer's entry (if held) with a written device. The entry keeps its version, so it's
+	 * still reloaded at the next check.
+	 *
+	 * @param device the stored device, null if it was deleted
+	 */
+	private void apply(String customerId, String id, Device device) {
+		if (StringUtils.isBlank(customerId)) {
+			return;
+		}
+		customerCache.asMap().computeIfPresent(customerId, (key, devices) -> devices.replace(id, device));
+		if (device != null && !StringUtils.isBlank(device.getDeviceKey())) {
+			customerByDeviceKey.put(device.getDeviceKey(), customerId);
+		}
+	}
+
+	private void invalidate(String customerId) {
+		if (!StringUtils.isBlank(customerId)) {
+			customerCache.invalidate(customerId);
+		}
+		sitesCache.invalidateAll();
+	}
+
+	/** The customer's cached devices, reloaded first if checking shows they were written elsewhere */
+	private CustomerDevices getCustomer(String customerId) {
+		CustomerDevices devices = customerCache.get(customerId);
+		long now = System.currentTimeMillis();
+		if (now - devices.checkedAt().get() < checkInterval) {
+			return devices;
+		}
+		if (devices.settled() && getVersion(customerId).getVersion() == devices.version()) {
+			devices.checkedAt().set(now);
+			return devices;
+		}
+		customerCache.asMap().remove(customerId, devices);
+		return customerCache.get(customerId);
+	}
+
+	/** The customer's entry if single device lookups can be answered from it, see {@link #INDEX_SETTLE_TIME} */
+	private Optional<CustomerDevices> getSettledCustomer(String customerId) {
+		return Optional.of(getCustomer(customerId)).filter(CustomerDevices::settled);
+	}
+
+	/** Hit/miss counts and load times of customers' device lists */
+	public CacheStats getDeviceCacheStats() {
+		return customerCache.stats();
+	}
+
+	/** Version is read first, a write landing during the load then shows up as a changed version */
+	private CustomerDevices loadCustomer(String customerId) {
+		DeviceVersionData version = getVersion(customerId);
+		boolean settled = System.currentTimeMillis() - version.getBumpedAt() >= INDEX_SETTLE_TIME;
+		CustomerDevices devices =
+				CustomerDevices.of(version.getVersion(), settled, super.getDevicesForCustomerId(customerId));
+		devices.byDeviceKey().keySet().forEach(deviceKey -> customerByDeviceKey.put(deviceKey, customerId));
+		return devices;
+	}
+
+	private DeviceVersionData getVersion(String customerId) {
+		return getVersionRepository().findVersion(customerId).orElseGet(DeviceVersionData::new);
+	}
+
+	/**
+	 * A customer's devices and their indexes, the first device wins where a name or key repeats.
+	 * Unsettled devices were loaded too soon after a bump to be sure they include it.
+	 */
+	private record CustomerDevices(
+			long version,
+			boolean settled,
+			AtomicLong checkedAt,
+			List<Device> devices,
+			Map<String, Device> byId,
+			Map<String, Device> byDeviceName,
+			Map<String, List<Device>> bySiteId,
+			Map<String, Device> byDeviceKey) {
+		static CustomerDevices of(long version, boolean settled, List<Device> devices) {
+			return of(version, settled, new AtomicLong(System.currentTimeMillis()), devices);
+		}
+
+		private static CustomerDevices of(long version, boolean settled, AtomicLong checkedAt, List<Device> devices) {
+			Map<String, Device> byId = new HashMap<>();
+			Map<String, Device> byDeviceName = new HashMap<>();
+			Map<String, List<Device>> bySiteId = new HashMap<>();
+			Map<String, Device> byDeviceKey = new HashMap<>();
+			devices.forEach(device -> {
+				byId.putIfAbsent(device.getId(), device);
+				if (device.getDeviceName() != null) {
+					byDeviceName.putIfAbsent(device.getDeviceName(), device);
+				}
+				if (device.getSiteId() != null) {
+					bySiteId.computeIfAbsent(device.getSiteId(), siteId -> new ArrayList<>())
+							.add(device);
+				}
+				if (!StringUtils.isBlank(device.getDeviceKey())) {
+					byDeviceKey.putIfAbsent(device.getDeviceKey(), device);
+				}
+			});
+			return new CustomerDevices(
+					version,
+					settled,
+					checkedAt,
+					List.copyOf(devices),
+					byId,
+					byDeviceName,
+					bySiteId,
+					byDeviceKey);
+		}
+
+		/** A copy with the device of the id swapped for (or added as) {@code device}, removed if it's null */
+		CustomerDevices replace(String id, Device device) {
+			List<Device> replaced = new ArrayList<>();
+			devices.forEach(existing -> {
+				if (!Objects.equals(id, existing.getId())) {
+					replaced.add(existing);
+				} else if (device != null) {
+					replaced.add(device);
+				}
+			});
+			if (device != null && !byId.containsKey(id)) {
+				replaced.add(device);
+			}
+			return of(version, settled, checkedAt, replaced);
+		}
 	}
 }
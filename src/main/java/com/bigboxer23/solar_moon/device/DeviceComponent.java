@@ -3,9 +3,12 @@ package com.bigboxer23.solar_moon.device;
 import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.Subscription;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.utils.StringUtils;
@@ -66,6 +69,23 @@ public class DeviceComponent {
 		return getRepository().findDeviceById(id, customerId);
 	}
 
+	/** Devices found for the ids, keyed by id, fetched in batches rather than one read per id */
+	public Map<String, Device> findDevicesByIds(Collection<String> ids, String customerId) {
+		return getRepository().findDevicesByIds(ids, customerId);
+	}
+
+	/**
+	 * Save devices in batches, skipping the per device checks and cascades of {@link
+	 * #updateDevice(Device)}. Used for cascades where only derived fields of already stored devices
+	 * change.
+	 *
+	 * @throws BatchWriteException if some devices couldn't be saved, so the cascade is reported as
+	 *     failed rather than partly applied
+	 */
+	public void updateDevices(Collection<Device> devices) {
+		getRepository().updateDevices(devices);
+	}
+
 	public boolean isValidAdd(Device device) {
 		return !StringUtils.isBlank(device.getClientId())
 				&& !StringUtils.isBlank(device.getDeviceName())
@@ -86,13 +106,15 @@ public class DeviceComponent {
 						List<Double> points = location.place().geometry().point();
 						device.setLatitude(points.get(1));
 						device.setLongitude(points.get(0));
-						getDevicesBySiteId(device.getClientId(), device.getSiteId()).stream()
-								.filter(d -> !d.isDeviceSite())
-								.forEach(d -> {
-									d.setLatitude(device.getLatitude());
-									d.setLongitude(device.getLongitude());
-									updateDevice(d);
-								});
+						List<Device> children =
+								getDevicesBySiteId(device.getClientId(), device.getSiteId()).stream()
+										.filter(d -> !d.isDeviceSite())
+										.toList();
+						children.forEach(d -> {
+							d.setLatitude(device.getLatitude());
+							d.setLongitude(device.getLongitude());
+						});
+						updateDevices(children);
 					});
 		}
 		// If device, remove or set lat/long based on site status
@@ -155,15 +177,17 @@ public class DeviceComponent {
 			return Optional.empty();
 		}
 		if (device.isDeviceSite()) {
-			Device site = findDeviceById(device.getId(), device.getClientId()).get();
-			if (!site.getName().equals(device.getName())) {
-				getDevicesBySiteId(site.getClientId(), site.getSiteId()).forEach(childDevice -> {
-					childDevice.setSite(device.getName());
-					updateDevice(childDevice);
-				});
-			}
+			// a site not stored yet has no children to rename
+			findDeviceById(device.getId(), device.getClientId())
+					.filter(site -> !site.getName().equals(device.getName()))
+					.ifPresent(site -> {
+						List<Device> children = getDevicesBySiteId(site.getClientId(), site.getSiteId()).stream()
+								.filter(childDevice -> !childDevice.getId().equals(device.getId()))
+								.toList();
+						children.forEach(childDevice -> childDevice.setSite(device.getName()));
+						updateDevices(children);
+					});
 		}
-		// TODO: could more efficiently update child devices?
 		maybeUpdateLocationData(device);
 		return getRepository().update(device);
 	}
@@ -175,20 +199,40 @@ public class DeviceComponent {
 		}
 		logAction("delete " + device.get().getDisplayName(), id, device.get().getSiteId());
 		if (device.get().isDeviceSite()) {
-			getDevicesBySiteId(customerId, device.get().getId()).forEach(childDevice -> {
+			List<Device> children = getDevicesBySiteId(customerId, device.get().getId()).stream()
+					.filter(childDevice -> !childDevice.getId().equals(id))
+					.toList();
+			children.forEach(childDevice -> {
 				childDevice.setSite(NO_SITE);
 				childDevice.setSiteId(NO_SITE);
-				updateDevice(childDevice);
+				childDevice.setLatitude(-1);
+				childDevice.setLongitude(-1);
 			});
+			updateDevices(children);
 		}
 		getRepository().delete(device.get());
-		IComponentRegistry.deviceUpdateComponent.delete(device.get().getId());
-		IComponentRegistry.alarmComponent.deleteAlarmByDeviceId(
-				device.get().getClientId(), device.get().getId());
+		deleteDeviceData(device.get());
 	}
 
 	public void deleteDevicesByCustomerId(String customerId) {
-		getDevicesForCustomerId(customerId).forEach(device -> deleteDevice(device.getId(), customerId));
+		List<Device> devices = getDevicesForCustomerId(customerId);
+		devices.forEach(device -> logAction("delete " + device.getDisplayName(), device.getId(), device.getSiteId()));
+		try {
+			getRepository().deleteDevices(devices);
+		} catch (BatchWriteException e) {
+			// devices still stored keep their data so deleting the customer again finds both
+			devices.stream()
+					.filter(device -> !e.getUnprocessedDeletes().contains(device))
+					.forEach(this::deleteDeviceData);
+			throw e;
+		}
+		devices.forEach(this::deleteDeviceData);
+	}
+
+	/** Remove what other tables hold for a deleted device */
+	protected void deleteDeviceData(Device device) {
+		IComponentRegistry.deviceUpdateComponent.delete(device.getId());
+		IComponentRegistry.alarmComponent.deleteAlarmByDeviceId(device.getClientId(), device.getId());
 	}
 
 	public void logAction(String action, String id, String siteId) {
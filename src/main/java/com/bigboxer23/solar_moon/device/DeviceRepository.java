@@ -1,7 +1,10 @@
 package com.bigboxer23.solar_moon.device;
 
 import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -31,9 +34,22 @@ public interface DeviceRepository {
 
 	Optional<Device> findDeviceById(String id, String customerId);
 
+	/** Devices found for the ids, keyed by id. Ids without a device are left out. */
+	Map<String, Device> findDevicesByIds(Collection<String> ids, String customerId);
+
 	Device add(Device device);
 
 	Optional<Device> update(Device device);
 
 	void delete(Device device);
+
+	/**
+	 * Save each device in full, overwriting what's stored
+	 *
+	 * @throws BatchWriteException if some devices couldn't be saved
+	 */
+	void updateDevices(Collection<Device> devices);
+
+	/** @throws BatchWriteException if some devices couldn't be deleted */
+	void deleteDevices(Collection<Device> devices);
 }
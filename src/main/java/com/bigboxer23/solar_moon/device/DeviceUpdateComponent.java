@@ -1,16 +1,52 @@
 package com.bigboxer23.solar_moon.device;
 
+import static com.bigboxer23.solar_moon.util.PropertyConstants.DEVICE_UPDATE_GRANULARITY;
+
 import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.DeviceUpdateData;
+import com.bigboxer23.solar_moon.util.PropertyValues;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.utils.StringUtils;
 
-/** */
+/**
+ * Tracks when each device last reported. Updates land on every reading but the stored time only
+ * needs to be good enough for the 45 minute quick check, so an update within the granularity of the
+ * last one this process wrote for the device is skipped. The granularity stays under the reporting
+ * interval so it only coalesces bursts (uploads carrying several readings, retries, backfills).
+ */
 @Slf4j
 public class DeviceUpdateComponent {
+	public static final long DEFAULT_GRANULARITY = TimeConstants.ONE_MINUTE * 5;
+
+	private static final int MAX_TRACKED_DEVICES = 10000;
+
+	private final long granularity;
+
+	/** Last update time written for each device by this process */
+	private final Cache<String, Long> writtenUpdates;
 
 	private DeviceUpdateRepository repository;
 
+	public DeviceUpdateComponent() {
+		this(PropertyValues.getLong(DEVICE_UPDATE_GRANULARITY, DEFAULT_GRANULARITY));
+	}
+
+	/**
+	 * @param granularity updates within this many ms of the last written for a device are skipped, 0
+	 *     writes every update
+	 */
+	public DeviceUpdateComponent(long granularity) {
+		this.granularity = granularity;
+		writtenUpdates = Caffeine.newBuilder()
+				.maximumSize(MAX_TRACKED_DEVICES)
+				.expireAfterWrite(Duration.ofMillis(granularity))
+				.build();
+	}
+
 	protected DeviceUpdateRepository getRepository() {
 		if (repository == null) {
 			repository = new DynamoDbDeviceUpdateRepository();
@@ -27,10 +63,17 @@ public class DeviceUpdateComponent {
 			log.warn("invalid device id, not updating");
 			return;
 		}
+		Long written = writtenUpdates.getIfPresent(deviceId);
+		if (written != null && time - written < granularity) {
+			log.debug("device update within " + granularity + "ms of last, not writing");
+			return;
+		}
 		getRepository().update(new DeviceUpdateData(deviceId, time));
+		writtenUpdates.put(deviceId, time);
 	}
 
 	public void delete(String deviceId) {
+		writtenUpdates.invalidate(deviceId);
 		getRepository().delete(deviceId);
 	}
 
@@ -0,0 +1,19 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import java.util.Optional;
+
+public interface DeviceVersionRepository {
+
+	/**
+	 * @return the customer's current device version, empty if none is stored
+	 */
+	Optional<DeviceVersionData> findVersion(String customerId);
+
+	/**
+	 * Store a new device version for the customer, call after writing any of their devices
+	 *
+	 * @return the new version
+	 */
+	long bump(String customerId);
+}
@@ -2,13 +2,13 @@ package com.bigboxer23.solar_moon.device;
 
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.dynamodb.AuditableAbstractDynamodbRepository;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
 import software.amazon.awssdk.utils.StringUtils;
 
 /**
@@ -17,6 +17,7 @@ import software.amazon.awssdk.utils.StringUtils;
  */
 @Slf4j
 public class DynamoDbDeviceRepository extends AuditableAbstractDynamodbRepository<Device> implements DeviceRepository {
+	private static final int BATCH_GET_LIMIT = 100;
 
 	@Override
 	public Optional<Device> findDeviceByDeviceName(String customerId, String deviceName) {
@@ -145,6 +146,29 @@ public class DynamoDbDeviceRepository extends AuditableAbstractDynamodbRepositor
 		return Optional.ofNullable(getTable().getItem(new Device(id, customerId)));
 	}
 
+	@Override
+	public Map<String, Device> findDevicesByIds(Collection<String> ids, String customerId) {
+		if (ids == null || ids.isEmpty() || StringUtils.isBlank(customerId)) {
+			return Collections.emptyMap();
+		}
+		List<String> keys =
+				ids.stream().filter(id -> !StringUtils.isBlank(id)).distinct().toList();
+		DynamoDbTable<Device> table = getTable();
+		Map<String, Device> devices = new HashMap<>();
+		for (int i = 0; i < keys.size(); i += BATCH_GET_LIMIT) {
+			ReadBatch.Builder<Device> batch = ReadBatch.builder(Device.class).mappedTableResource(table);
+			keys.subList(i, Math.min(i + BATCH_GET_LIMIT, keys.size()))
+					.forEach(id -> batch.addGetItem(
+							Key.builder().partitionValue(id).sortValue(customerId).build()));
+			// unprocessed keys are requested again as additional result pages
+			getClient()
+					.batchGetItem(builder -> builder.readBatches(batch.build()))
+					.resultsForTable(table)
+					.forEach(device -> devices.put(device.getId(), device));
+		}
+		return devices;
+	}
+
 	@Override
 	public void delete(Device device) {
 		if (device != null) {
@@ -152,6 +176,23 @@ public class DynamoDbDeviceRepository extends AuditableAbstractDynamodbRepositor
 		}
 	}
 
+	@Override
+	public void updateDevices(Collection<Device> devices) {
+		if (devices == null || devices.isEmpty()) {
+			return;
+		}
+		devices.forEach(Device::markUpdated);
+		batchWrite(devices, Collections.emptyList());
+	}
+
+	@Override
+	public void deleteDevices(Collection<Device> devices) {
+		if (devices == null || devices.isEmpty()) {
+			return;
+		}
+		batchWrite(Collections.emptyList(), devices);
+	}
+
 	@Override
 	protected String getTableName() {
 		return "devices";
@@ -0,0 +1,47 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import com.bigboxer23.solar_moon.dynamodb.AbstractDynamodbComponent;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.utils.StringUtils;
+
+/**
+ * Versions are random rather than counted, readers only compare them for equality and a put is
+ * cheaper than an atomic increment. Reads are strongly consistent so a bump is seen immediately.
+ */
+public class DynamoDbDeviceVersionRepository extends AbstractDynamodbComponent<DeviceVersionData>
+		implements DeviceVersionRepository {
+
+	@Override
+	public Optional<DeviceVersionData> findVersion(String customerId) {
+		if (StringUtils.isBlank(customerId)) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(getTable()
+				.getItem(builder -> builder.key(
+								Key.builder().partitionValue(customerId).build())
+						.consistentRead(true)));
+	}
+
+	@Override
+	public long bump(String customerId) {
+		if (StringUtils.isBlank(customerId)) {
+			return 0;
+		}
+		long version = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+		getTable().putItem(new DeviceVersionData(customerId, version));
+		return version;
+	}
+
+	@Override
+	protected String getTableName() {
+		return "device_versions";
+	}
+
+	@Override
+	protected Class<DeviceVersionData> getObjectClass() {
+		return DeviceVersionData.class;
+	}
+}
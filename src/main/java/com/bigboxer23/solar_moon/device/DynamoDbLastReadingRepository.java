@@ -0,0 +1,92 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.LastReadingData;
+import com.bigboxer23.solar_moon.dynamodb.AbstractDynamodbComponent;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.utils.StringUtils;
+
+@Slf4j
+public class DynamoDbLastReadingRepository extends AbstractDynamodbComponent<LastReadingData>
+		implements LastReadingRepository {
+	private static final int BATCH_GET_LIMIT = 100;
+
+	@Override
+	public boolean update(LastReadingData reading) {
+		try {
+			getTable()
+					.putItem(PutItemEnhancedRequest.builder(LastReadingData.class)
+							.item(reading)
+							.conditionExpression(Expression.builder()
+									.expression("attribute_not_exists(deviceId) OR #date <= :date")
+									.putExpressionName("#date", "date")
+									.putExpressionValue(
+											":date",
+											AttributeValue.fromN(String.valueOf(reading.getDate())))
+									.build())
+							.build());
+			return true;
+		} catch (ConditionalCheckFailedException e) {
+			log.debug("newer reading already stored for " + reading.getDeviceId());
+			return false;
+		}
+	}
+
+	@Override
+	public void delete(String deviceId) {
+		if (StringUtils.isBlank(deviceId)) {
+			log.warn("invalid delete query");
+			return;
+		}
+		getTable().deleteItem(Key.builder().partitionValue(deviceId).build());
+	}
+
+	@Override
+	public Optional<LastReadingData> findByDeviceId(String deviceId) {
+		if (StringUtils.isBlank(deviceId)) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(getTable().getItem(Key.builder().partitionValue(deviceId).build()));
+	}
+
+	@Override
+	public Map<String, LastReadingData> findByDeviceIds(Collection<String> deviceIds) {
+		if (deviceIds == null || deviceIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		List<String> keys = deviceIds.stream()
+				.filter(deviceId -> !StringUtils.isBlank(deviceId))
+				.distinct()
+				.toList();
+		DynamoDbTable<LastReadingData> table = getTable();
+		Map<String, LastReadingData> readings = new HashMap<>();
+		for (int i = 0; i < keys.size(); i += BATCH_GET_LIMIT) {
+			ReadBatch.Builder<LastReadingData> batch = ReadBatch.builder(LastReadingData.class).mappedTableResource(table);
+			keys.subList(i, Math.min(i + BATCH_GET_LIMIT, keys.size()))
+					.forEach(deviceId -> batch.addGetItem(Key.builder().partitionValue(deviceId).build()));
+			// unprocessed keys are requested again as additional result pages
+			getClient()
+					.batchGetItem(builder -> builder.readBatches(batch.build()))
+					.resultsForTable(table)
+					.forEach(reading -> readings.put(reading.getDeviceId(), reading));
+		}
+		return readings;
+	}
+
+	@Override
+	protected String getTableName() {
+		return "last_readings";
+	}
+
+	@Override
+	protected Class<LastReadingData> getObjectClass() {
+		return LastReadingData.class;
+	}
+}
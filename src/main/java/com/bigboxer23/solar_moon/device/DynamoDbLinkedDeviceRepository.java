@@ -3,14 +3,18 @@ package com.bigboxer23.solar_moon.device;
 import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.LinkedDevice;
 import com.bigboxer23.solar_moon.dynamodb.AuditableAbstractDynamodbRepository;
-import java.util.Optional;
+import java.util.*;
 import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
 import software.amazon.awssdk.utils.StringUtils;
 
 @Slf4j
 public class DynamoDbLinkedDeviceRepository extends AuditableAbstractDynamodbRepository<LinkedDevice>
 		implements LinkedDeviceRepository {
+	private static final int BATCH_GET_LIMIT = 100;
 
 	@Override
 	public void delete(String serialNumber, String customerId) {
@@ -44,6 +48,33 @@ public class DynamoDbLinkedDeviceRepository extends AuditableAbstractDynamodbRep
 				.findAny();
 	}
 
+	@Override
+	public Map<String, LinkedDevice> findBySerialNumbers(Collection<String> serialNumbers, String customerId) {
+		if (serialNumbers == null || serialNumbers.isEmpty() || StringUtils.isBlank(customerId)) {
+			return Collections.emptyMap();
+		}
+		List<String> keys = serialNumbers.stream()
+				.filter(serialNumber -> !StringUtils.isBlank(serialNumber))
+				.distinct()
+				.toList();
+		DynamoDbTable<LinkedDevice> table = getTable();
+		Map<String, LinkedDevice> linkedDevices = new HashMap<>();
+		for (int i = 0; i < keys.size(); i += BATCH_GET_LIMIT) {
+			ReadBatch.Builder<LinkedDevice> batch = ReadBatch.builder(LinkedDevice.class).mappedTableResource(table);
+			keys.subList(i, Math.min(i + BATCH_GET_LIMIT, keys.size()))
+					.forEach(serialNumber -> batch.addGetItem(Key.builder()
+							.partitionValue(serialNumber)
+							.sortValue(customerId)
+							.build()));
+			// unprocessed keys are requested again as additional result pages
+			getClient()
+					.batchGetItem(builder -> builder.readBatches(batch.build()))
+					.resultsForTable(table)
+					.forEach(linkedDevice -> linkedDevices.put(linkedDevice.getId(), linkedDevice));
+		}
+		return linkedDevices;
+	}
+
 	@Override
 	protected String getTableName() {
 		return "linked_devices";
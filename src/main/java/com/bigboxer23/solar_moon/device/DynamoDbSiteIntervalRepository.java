@@ -0,0 +1,59 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
+import com.bigboxer23.solar_moon.dynamodb.AbstractDynamodbComponent;
+import java.util.List;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.utils.StringUtils;
+
+@Slf4j
+public class DynamoDbSiteIntervalRepository extends AbstractDynamodbComponent<SiteIntervalData>
+		implements SiteIntervalRepository {
+	@Override
+	public Optional<SiteIntervalData> findById(String id) {
+		if (StringUtils.isBlank(id)) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(getTable()
+				.getItem(builder -> builder.key(Key.builder().partitionValue(id).build())
+						.consistentRead(true)));
+	}
+
+	@Override
+	public boolean save(SiteIntervalData siteInterval) {
+		siteInterval.markUpdated();
+		try {
+			// version attribute makes this conditional on no one else having written the item
+			getTable().putItem(siteInterval);
+			return true;
+		} catch (ConditionalCheckFailedException e) {
+			log.debug("site interval changed, retrying " + siteInterval.getId());
+			return false;
+		}
+	}
+
+	@Override
+	public List<SiteIntervalData> findPendingPastDeadline(long time) {
+		return getTable()
+				.index(SiteIntervalData.PENDING_INDEX)
+				.query(QueryConditional.sortLessThanOrEqualTo(
+						builder -> builder.partitionValue(SiteIntervalData.PENDING).sortValue(time)))
+				.stream()
+				.flatMap(page -> page.items().stream())
+				.toList();
+	}
+
+	@Override
+	protected String getTableName() {
+		return "site_intervals";
+	}
+
+	@Override
+	protected Class<SiteIntervalData> getObjectClass() {
+		return SiteIntervalData.class;
+	}
+}
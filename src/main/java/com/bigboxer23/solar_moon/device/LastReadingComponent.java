@@ -0,0 +1,124 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.data.LastReadingData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.utils.StringUtils;
+
+/**
+ * Keeps the most recent reading for each device, written through as data is logged. Lookups are
+ * served from a short lived local cache, then the stored item. The stored item is shared between
+ * invocations, the local cache only briefly so a newer reading written elsewhere is picked up.
+ * Readings are cached as written, each lookup returns its own copy so callers can't change what
+ * others see.
+ */
+@Slf4j
+public class LastReadingComponent {
+	private static final ObjectMapper mapper =
+			new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private final Cache<String, CachedReading> readingCache = Caffeine.newBuilder()
+			.maximumSize(1000)
+			.expireAfterWrite(Duration.ofSeconds(10))
+			.build();
+
+	private LastReadingRepository repository;
+
+	protected LastReadingRepository getRepository() {
+		if (repository == null) {
+			repository = new DynamoDbLastReadingRepository();
+		}
+		return repository;
+	}
+
+	public Optional<DeviceData> getLastReading(String deviceId) {
+		if (StringUtils.isBlank(deviceId)) {
+			return Optional.empty();
+		}
+		CachedReading cached = readingCache.getIfPresent(deviceId);
+		if (cached != null) {
+			return toDeviceData(deviceId, cached.reading());
+		}
+		return getRepository().findByDeviceId(deviceId).flatMap(stored -> cache(deviceId, stored.getReading()));
+	}
+
+	/**
+	 * @return last readings keyed by device id, devices without a stored reading are absent
+	 */
+	public Map<String, DeviceData> getLastReadings(Collection<String> deviceIds) {
+		Map<String, DeviceData> readings = new HashMap<>();
+		readingCache.getAllPresent(deviceIds).forEach((deviceId, cached) -> toDeviceData(deviceId, cached.reading())
+				.ifPresent(data -> readings.put(deviceId, data)));
+		List<String> missing = deviceIds.stream().filter(id -> !readings.containsKey(id)).toList();
+		if (missing.isEmpty()) {
+			return readings;
+		}
+		getRepository()
+				.findByDeviceIds(missing)
+				.forEach((deviceId, stored) ->
+						cache(deviceId, stored.getReading()).ifPresent(data -> readings.put(deviceId, data)));
+		return readings;
+	}
+
+	/**
+	 * Record readings which have been written to OpenSearch. Readings older than what's already
+	 * known for a device are ignored, so backfilled data doesn't replace the latest reading.
+	 *
+	 * @param deviceDatas
+	 */
+	public void update(List<DeviceData> deviceDatas) {
+		deviceDatas.stream()
+				.filter(data -> !StringUtils.isBlank(data.getDeviceId()) && data.getDate() != null)
+				.forEach(data -> {
+					CachedReading cached = readingCache.getIfPresent(data.getDeviceId());
+					if (cached != null && cached.date() > data.getDate().getTime()) {
+						return;
+					}
+					try {
+						String reading = mapper.writeValueAsString(data);
+						if (getRepository().update(new LastReadingData(data, reading))) {
+							readingCache.put(
+									data.getDeviceId(),
+									new CachedReading(data.getDate().getTime(), reading));
+						} else {
+							readingCache.invalidate(data.getDeviceId());
+						}
+					} catch (JsonProcessingException e) {
+						log.warn("update " + data.getDeviceId(), e);
+					}
+				});
+	}
+
+	public void delete(String deviceId) {
+		readingCache.invalidate(deviceId);
+		getRepository().delete(deviceId);
+	}
+
+	private Optional<DeviceData> cache(String deviceId, String reading) {
+		return toDeviceData(deviceId, reading).map(data -> {
+			readingCache.put(
+					deviceId,
+					new CachedReading(data.getDate() != null ? data.getDate().getTime() : 0, reading));
+			return data;
+		});
+	}
+
+	private Optional<DeviceData> toDeviceData(String deviceId, String reading) {
+		try {
+			return Optional.ofNullable(mapper.readValue(reading, DeviceData.class));
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			log.warn("toDeviceData " + deviceId, e);
+			return Optional.empty();
+		}
+	}
+
+	/** Reading as written, parsed again for each lookup */
+	private record CachedReading(long date, String reading) {}
+}
@@ -0,0 +1,25 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.LastReadingData;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+public interface LastReadingRepository {
+
+	/**
+	 * Store the reading, unless a newer reading is already stored for the device
+	 *
+	 * @return false if a newer reading was already stored
+	 */
+	boolean update(LastReadingData reading);
+
+	void delete(String deviceId);
+
+	Optional<LastReadingData> findByDeviceId(String deviceId);
+
+	/**
+	 * @return readings keyed by device id, devices without a stored reading are absent
+	 */
+	Map<String, LastReadingData> findByDeviceIds(Collection<String> deviceIds);
+}
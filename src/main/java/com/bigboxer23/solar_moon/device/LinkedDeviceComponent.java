@@ -6,8 +6,7 @@ import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.data.LinkedDevice;
 import com.bigboxer23.solar_moon.util.TimeConstants;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.utils.StringUtils;
 
@@ -81,7 +80,41 @@ public class LinkedDeviceComponent {
 				|| StringUtils.isBlank(device.getClientId())) {
 			return;
 		}
-		Optional<LinkedDevice> linkedDevice = queryBySerialNumber(device.getSerialNumber(), deviceData.getCustomerId());
+		applyLinkedDevice(deviceData, queryBySerialNumber(device.getSerialNumber(), deviceData.getCustomerId()));
+	}
+
+	/**
+	 * Add linked device data for a batch of devices, linked devices are fetched once per customer
+	 * instead of per device
+	 *
+	 * @param devices devices, index aligned with deviceDatas
+	 * @param deviceDatas
+	 */
+	public void addLinkedDeviceData(List<Device> devices, List<DeviceData> deviceDatas) {
+		Map<String, List<Integer>> indexesByCustomer = new HashMap<>();
+		for (int i = 0; i < devices.size(); i++) {
+			Device device = devices.get(i);
+			DeviceData deviceData = deviceDatas.get(i);
+			if (device == null
+					|| deviceData == null
+					|| StringUtils.isBlank(device.getSerialNumber())
+					|| StringUtils.isBlank(device.getClientId())
+					|| StringUtils.isBlank(deviceData.getCustomerId())) {
+				continue;
+			}
+			indexesByCustomer.computeIfAbsent(deviceData.getCustomerId(), k -> new ArrayList<>()).add(i);
+		}
+		indexesByCustomer.forEach((customerId, indexes) -> {
+			Map<String, LinkedDevice> linkedDevices = getRepository()
+					.findBySerialNumbers(
+							indexes.stream().map(i -> devices.get(i).getSerialNumber()).toList(), customerId);
+			indexes.forEach(i -> applyLinkedDevice(
+					deviceDatas.get(i),
+					Optional.ofNullable(linkedDevices.get(devices.get(i).getSerialNumber()))));
+		});
+	}
+
+	private void applyLinkedDevice(DeviceData deviceData, Optional<LinkedDevice> linkedDevice) {
 		if (linkedDevice.isEmpty()) {
 			return;
 		}
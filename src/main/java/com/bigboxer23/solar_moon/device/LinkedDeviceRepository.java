@@ -1,6 +1,8 @@
 package com.bigboxer23.solar_moon.device;
 
 import com.bigboxer23.solar_moon.data.LinkedDevice;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface LinkedDeviceRepository {
@@ -14,4 +16,9 @@ public interface LinkedDeviceRepository {
 	void deleteByCustomerId(String customerId);
 
 	Optional<LinkedDevice> findBySerialNumber(String serialNumber, String customerId);
+
+	/**
+	 * @return linked devices keyed by serial number, serial numbers without a linked device are absent
+	 */
+	Map<String, LinkedDevice> findBySerialNumbers(Collection<String> serialNumbers, String customerId);
 }
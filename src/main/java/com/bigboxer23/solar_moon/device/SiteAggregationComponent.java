@@ -0,0 +1,143 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Folds each device reading into a running total for its site's 15 minute interval, so the virtual
+ * site device can be written without searching for every device in the site. Totals are shared
+ * between invocations through DynamoDB, concurrent updates are resolved with the item's version.
+ * Intervals some device never reports for are written by {@link #expirePastDeadline()}.
+ */
+@Slf4j
+public class SiteAggregationComponent implements TimeConstants {
+	/** How long after the first reading a site is written with whatever devices have reported */
+	public static final long DEADLINE = ONE_MINUTE * 10;
+
+	private static final int MAX_ATTEMPTS = 5;
+
+	private SiteIntervalRepository repository;
+
+	protected SiteIntervalRepository getRepository() {
+		if (repository == null) {
+			repository = new DynamoDbSiteIntervalRepository();
+		}
+		return repository;
+	}
+
+	/**
+	 * Add a reading which has been written to its site's interval
+	 *
+	 * @param deviceData
+	 * @param virtualDevice the site's virtual device
+	 * @param expectedDevices number of enabled devices reporting for the site
+	 * @return the interval if it should be written, either all devices have reported or the deadline
+	 *     has passed. Readings arriving after an interval has been written return the interval again
+	 *     so the site can be rewritten with them included.
+	 */
+	public Optional<SiteIntervalData> add(DeviceData deviceData, Device virtualDevice, int expectedDevices) {
+		return fold(deviceData, virtualDevice.isSubtraction(), expectedDevices, getInterval(deviceData.getDate()));
+	}
+
+	/**
+	 * Mark intervals of any site still waiting on some device once they're past their deadline
+	 *
+	 * @return the intervals, which should now be written with whatever devices have reported
+	 */
+	public List<SiteIntervalData> expirePastDeadline() {
+		List<SiteIntervalData> expired = new ArrayList<>();
+		getRepository()
+				.findPendingPastDeadline(System.currentTimeMillis())
+				.forEach(pending -> expire(pending.getId()).ifPresent(expired::add));
+		return expired;
+	}
+
+	private Optional<SiteIntervalData> fold(
+			DeviceData deviceData, boolean isSubtraction, int expectedDevices, long interval) {
+		String id = SiteIntervalData.getId(deviceData.getSiteId(), interval);
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			SiteIntervalData siteInterval =
+					getRepository().findById(id).orElseGet(() -> create(deviceData, interval));
+			if (!siteInterval.getDeviceIds().add(deviceData.getDeviceId())) {
+				log.debug(deviceData.getDeviceId() + " already added to " + id);
+				return Optional.empty();
+			}
+			siteInterval.setEnergyConsumed(
+					fold(siteInterval.getEnergyConsumed(), deviceData.getEnergyConsumed(), isSubtraction));
+			siteInterval.setTotalRealPower(
+					fold(siteInterval.getTotalRealPower(), deviceData.getTotalRealPower(), isSubtraction));
+			siteInterval.setTotalEnergyConsumed(fold(
+					siteInterval.getTotalEnergyConsumed(), deviceData.getTotalEnergyConsumed(), isSubtraction));
+			siteInterval.setInformationalError(
+					foldError(siteInterval.getInformationalError(), deviceData.getInformationalError()));
+			siteInterval.setCriticalError(foldError(siteInterval.getCriticalError(), deviceData.getCriticalError()));
+			boolean wasEmitted = siteInterval.isEmitted();
+			siteInterval.setEmitted(wasEmitted
+					|| siteInterval.getDeviceIds().size() >= expectedDevices
+					|| isPastDeadline(siteInterval));
+			if (getRepository().save(siteInterval)) {
+				if (wasEmitted) {
+					log.info(deviceData.getDeviceId() + " reported after " + id + " was written, rewriting");
+				}
+				return siteInterval.isEmitted() ? Optional.of(siteInterval) : Optional.empty();
+			}
+		}
+		log.warn("couldn't add " + deviceData.getDeviceId() + " to " + id);
+		return Optional.empty();
+	}
+
+	private static SiteIntervalData create(DeviceData deviceData, long interval) {
+		SiteIntervalData siteInterval = new SiteIntervalData(deviceData, interval);
+		siteInterval.setDeadline(siteInterval.getCreatedAt() + DEADLINE);
+		return siteInterval;
+	}
+
+	/** Re-read so an interval written (or one more device added) since it was found isn't clobbered */
+	private Optional<SiteIntervalData> expire(String id) {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			Optional<SiteIntervalData> siteInterval = getRepository()
+					.findById(id)
+					.filter(stored -> !stored.isEmitted() && isPastDeadline(stored));
+			if (siteInterval.isEmpty()) {
+				return Optional.empty();
+			}
+			siteInterval.get().setEmitted(true);
+			if (getRepository().save(siteInterval.get())) {
+				log.info("writing " + id + " with " + siteInterval.get().getDeviceIds().size() + " devices");
+				return siteInterval;
+			}
+		}
+		return Optional.empty();
+	}
+
+	private boolean isPastDeadline(SiteIntervalData siteInterval) {
+		return System.currentTimeMillis() - siteInterval.getCreatedAt() >= DEADLINE;
+	}
+
+	/** Same reduction as summing (or differencing for subtraction sites) each device's value */
+	static float fold(float total, float value, boolean isSubtraction) {
+		if (value < 0) {
+			return total;
+		}
+		if (total < 0) {
+			return value;
+		}
+		return isSubtraction ? Math.abs(total - value) : total + value;
+	}
+
+	private static int foldError(int error, int value) {
+		if (value < 0) {
+			return error;
+		}
+		return error < 0 ? value : error | value;
+	}
+
+	/** Nearest 15 minute boundary, readings from a site's devices can be a few minutes apart */
+	static long getInterval(Date date) {
+		return Math.round((double) date.getTime() / FIFTEEN_MINUTES) * FIFTEEN_MINUTES;
+	}
+}
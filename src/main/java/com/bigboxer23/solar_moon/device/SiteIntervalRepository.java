@@ -0,0 +1,22 @@
+package com.bigboxer23.solar_moon.device;
+
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
+import java.util.List;
+import java.util.Optional;
+
+public interface SiteIntervalRepository {
+	Optional<SiteIntervalData> findById(String id);
+
+	/**
+	 * @param siteInterval
+	 * @return false if the stored item was changed since siteInterval was read
+	 */
+	boolean save(SiteIntervalData siteInterval);
+
+	/**
+	 * @param time
+	 * @return intervals not yet written whose deadline is at or before time, read from an index so
+	 *     they may briefly lag a save
+	 */
+	List<SiteIntervalData> findPendingPastDeadline(long time);
+}
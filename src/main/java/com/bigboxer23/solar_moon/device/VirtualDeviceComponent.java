@@ -3,20 +3,25 @@ package com.bigboxer23.solar_moon.device;
 import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
-import com.bigboxer23.solar_moon.dynamodb.DynamoLockUtils;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
-import com.bigboxer23.solar_moon.search.OpenSearchUtils;
+import com.bigboxer23.solar_moon.util.TimeConstants;
 import com.bigboxer23.solar_moon.weather.PirateWeatherComponent;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.client.ResponseException;
 
 /** Component to stash all the logic related to aggregating virtual site devices */
 @Slf4j
 public class VirtualDeviceComponent {
+	/** How often ingesting checks for site intervals past their deadline */
+	static final long EXPIRE_CHECK_INTERVAL = TimeConstants.ONE_MINUTE;
+
+	private final AtomicLong lastExpireCheck = new AtomicLong();
+
 	protected DeviceComponent getDeviceComponent() {
 		return IComponentRegistry.deviceComponent;
 	}
@@ -37,91 +42,85 @@ public class VirtualDeviceComponent {
 		return IComponentRegistry.linkedDeviceComponent;
 	}
 
-	public void handleVirtualDevice(DeviceData device) {
-		if (!shouldAddVirtualDevice(device)) {
-			return;
-		}
-		log.info("Trying to aquire lock");
-		DynamoLockUtils.doLockedCommand(
-				device.getSiteId() + "-" + device.getDate().getTime(), () -> {
-					Device virtualDevice =
-							getDeviceComponent().getDevicesBySiteId(device.getCustomerId(), device.getSiteId()).stream()
-									.filter(Device::isVirtual)
-									.findAny()
-									.orElse(null);
-					if (virtualDevice == null) {
-						log.warn("cannot find virtualDevice " + device.getCustomerId() + ":" + device.getSiteId());
-						return;
-					}
-					TransactionUtil.addDeviceId(virtualDevice.getId(), virtualDevice.getSiteId());
-					List<DeviceData> siteDevices = getOSComponent()
-							.getDevicesForSiteByTimePeriod(
-									device.getCustomerId(), device.getSiteId(), device.getDate());
-					DeviceData virtualDeviceData = new DeviceData(
-							virtualDevice.getSiteId(), virtualDevice.getClientId(), virtualDevice.getId());
-					virtualDeviceData.setVirtual(true);
-					if (virtualDevice.isDeviceSite()) {
-						virtualDeviceData.setSite(true);
-					}
-					virtualDeviceData.setDate(device.getDate());
-					virtualDeviceData.setEnergyConsumed(Math.max(
-							0, getPushedDeviceValues(siteDevices, virtualDevice, DeviceData::getEnergyConsumed)));
-					virtualDeviceData.setTotalRealPower(Math.max(
-							0, getPushedDeviceValues(siteDevices, virtualDevice, DeviceData::getTotalRealPower)));
-					virtualDeviceData.setTotalEnergyConsumed(Math.max(
-							0, getPushedDeviceValues(siteDevices, virtualDevice, DeviceData::getTotalEnergyConsumed)));
-					getLocationComponent().addLocationData(virtualDeviceData, virtualDevice);
-					getWeatherComponent().addWeatherData(virtualDeviceData, virtualDevice);
-					getLinkedDeviceComponent().addLinkedDeviceDataVirtual(virtualDeviceData, siteDevices);
-					log.info("updating virtual device: " + device.getDate());
-					try {
-						getOSComponent()
-								.logData(virtualDeviceData.getDate(), Collections.singletonList(virtualDeviceData));
-						OpenSearchUtils.waitForIndexing();
-					} catch (ResponseException e) {
-						log.error("handleVirtualDevice", e);
-					}
-				});
+	protected SiteAggregationComponent getSiteAggregationComponent() {
+		return IComponentRegistry.siteAggregationComponent;
 	}
 
-	private boolean shouldAddVirtualDevice(DeviceData device) {
+	/**
+	 * Add a device's reading to its site's running totals, writing the virtual site device once all
+	 * enabled devices have reported (or the deadline passes)
+	 *
+	 * @param device data which has been written
+	 */
+	public void handleVirtualDevice(DeviceData device) {
+		long now = System.currentTimeMillis();
+		long lastChecked = lastExpireCheck.get();
+		if (now - lastChecked >= EXPIRE_CHECK_INTERVAL && lastExpireCheck.compareAndSet(lastChecked, now)) {
+			writeExpiredSites();
+		}
 		if (DeviceComponent.NO_SITE.equals(device.getSiteId())) {
-			return false;
+			return;
 		}
 		List<Device> devices = getDeviceComponent().getDevicesBySiteId(device.getCustomerId(), device.getSiteId());
-		if (devices.stream().noneMatch(Device::isVirtual)) {
-			return false;
-		}
-		OpenSearchUtils.waitForIndexing();
-		int openSearchDeviceCount = getOSComponent()
-				.getSiteDevicesCountByTimePeriod(device.getCustomerId(), device.getSiteId(), device.getDate());
-		if (devices.stream().filter(d -> !d.isDisabled()).toList().size() - 1 != openSearchDeviceCount) {
-			log.debug("not calculating site "
-					+ device.getSiteId()
-					+ ". Only "
-					+ openSearchDeviceCount
-					+ " devices have written data out of "
-					+ devices.size()
-					+ ".");
-			return false;
+		Device virtualDevice = devices.stream().filter(Device::isVirtual).findAny().orElse(null);
+		if (virtualDevice == null) {
+			return;
 		}
-		return true;
+		int expectedDevices = (int) devices.stream()
+				.filter(d -> !d.isDisabled() && !d.isVirtual())
+				.count();
+		getSiteAggregationComponent()
+				.add(device, virtualDevice, expectedDevices)
+				.ifPresent(siteInterval -> writeVirtualDevice(virtualDevice, siteInterval));
 	}
 
 	/**
-	 * Query OpenSearch for the most recent data (within the ${scheduler-time} window) because this
-	 * data is pushed to us from the devices
-	 *
-	 * @param servers
-	 * @param site
-	 * @param mapper
-	 * @return
+	 * Write sites whose intervals are past the deadline with whatever devices have reported, for sites
+	 * where some device never reports. Run while ingesting and on a schedule, so a site's last
+	 * interval is written even once nothing reports anymore.
 	 */
-	private float getPushedDeviceValues(List<DeviceData> devices, Device site, Function<DeviceData, Float> mapper) {
-		return devices.stream()
-				.map(mapper)
-				.filter(energy -> energy >= 0)
-				.reduce((val1, val2) -> site.isSubtraction() ? Math.abs(val1 - val2) : val1 + val2)
-				.orElse(-1f);
+	public void writeExpiredSites() {
+		try {
+			getSiteAggregationComponent().expirePastDeadline().forEach(siteInterval -> getDeviceComponent()
+					.getDevicesBySiteId(siteInterval.getCustomerId(), siteInterval.getSiteId())
+					.stream()
+					.filter(Device::isVirtual)
+					.findAny()
+					.ifPresentOrElse(
+							virtualDevice -> writeVirtualDevice(virtualDevice, siteInterval),
+							() -> log.warn("no virtual device for " + siteInterval.getId())));
+		} catch (RuntimeException e) {
+			// the caller's own work (a reading, the alarm check) goes ahead, the next check retries
+			log.error("writeExpiredSites", e);
+		}
+	}
+
+	private void writeVirtualDevice(Device virtualDevice, SiteIntervalData siteInterval) {
+		TransactionUtil.addDeviceId(virtualDevice.getId(), virtualDevice.getSiteId());
+		DeviceData virtualDeviceData =
+				new DeviceData(virtualDevice.getSiteId(), virtualDevice.getClientId(), virtualDevice.getId());
+		virtualDeviceData.setVirtual(true);
+		if (virtualDevice.isDeviceSite()) {
+			virtualDeviceData.setSite(true);
+		}
+		virtualDeviceData.setDate(new Date(siteInterval.getDate()));
+		virtualDeviceData.setEnergyConsumed(Math.max(0, siteInterval.getEnergyConsumed()));
+		virtualDeviceData.setTotalRealPower(Math.max(0, siteInterval.getTotalRealPower()));
+		virtualDeviceData.setTotalEnergyConsumed(Math.max(0, siteInterval.getTotalEnergyConsumed()));
+		getLocationComponent().addLocationData(virtualDeviceData, virtualDevice);
+		getWeatherComponent().addWeatherData(virtualDeviceData, virtualDevice);
+		// errors are already combined across the site's devices
+		DeviceData siteErrors = new DeviceData();
+		siteErrors.setInformationalError(siteInterval.getInformationalError());
+		siteErrors.setCriticalError(siteInterval.getCriticalError());
+		getLinkedDeviceComponent().addLinkedDeviceDataVirtual(virtualDeviceData, Collections.singletonList(siteErrors));
+		log.info("updating virtual device: " + virtualDeviceData.getDate() + " with "
+				+ siteInterval.getDeviceIds().size() + " devices");
+		try {
+			getOSComponent()
+					.logData(virtualDeviceData.getDate(), Collections.singletonList(virtualDeviceData), true);
+		} catch (ResponseException e) {
+			log.error("handleVirtualDevice", e);
+		}
 	}
 }
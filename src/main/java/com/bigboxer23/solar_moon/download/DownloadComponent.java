@@ -1,13 +1,67 @@
 package com.bigboxer23.solar_moon.download;
 
+import static com.bigboxer23.solar_moon.ingest.MeterConstants.*;
+import static com.bigboxer23.solar_moon.search.OpenSearchConstants.TIMESTAMP;
+import static com.bigboxer23.solar_moon.util.PropertyConstants.DOWNLOAD_EXPORT_PARALLELISM;
+import static com.bigboxer23.solar_moon.util.PropertyConstants.DOWNLOAD_S3_BUCKET;
+
+import com.bigboxer23.solar_moon.IComponentRegistry;
+import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.data.DownloadRequest;
-import java.util.Optional;
+import com.bigboxer23.solar_moon.search.OpenSearchComponent;
+import com.bigboxer23.solar_moon.search.OpenSearchConstants;
+import com.bigboxer23.solar_moon.search.SearchJSON;
+import com.bigboxer23.solar_moon.util.PropertyValues;
+import com.bigboxer23.solar_moon.web.TransactionUtil;
+import com.bigboxer23.utils.properties.PropertyUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.s3.S3Client;
 
+@Slf4j
 public class DownloadComponent {
 
 	private static final int recordsPerDayPerDevice = 96;
 	private static final int maxOpenSearchPageSize = 10000;
 
+	/** Exported columns, in order, keyed by header */
+	private static final Map<String, Function<DeviceData, Object>> COLUMNS = new LinkedHashMap<>();
+
+	static {
+		COLUMNS.put(TIMESTAMP, data -> data.getDate() == null ? null : data.getDate().toInstant());
+		COLUMNS.put(SITE_ID, DeviceData::getSiteId);
+		COLUMNS.put(DEVICE_ID, DeviceData::getDeviceId);
+		COLUMNS.put(TOTAL_REAL_POWER, DeviceData::getTotalRealPower);
+		COLUMNS.put(ENG_CONS, DeviceData::getEnergyConsumed);
+		COLUMNS.put(TOTAL_ENG_CONS, DeviceData::getTotalEnergyConsumed);
+		COLUMNS.put(AVG_VOLT, DeviceData::getAverageVoltage);
+		COLUMNS.put(AVG_CURRENT, DeviceData::getAverageCurrent);
+		COLUMNS.put(TOTAL_PF, DeviceData::getPowerFactor);
+		COLUMNS.put(DAYLIGHT, DeviceData::isDaylight);
+		COLUMNS.put(TEMPERATURE, DeviceData::getTemperature);
+		COLUMNS.put(WEATHER_SUMMARY, DeviceData::getWeatherSummary);
+	}
+
+	private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * Held while a customer's sliced export streams, so only one streams per customer at a time. Weak
+	 * values drop a customer's permit once no export holds or waits on it
+	 */
+	private static final Cache<String, Semaphore> customerPermits =
+			Caffeine.newBuilder().weakValues().build();
+
 	private final DownloadRepository repository;
 
 	public DownloadComponent() {
@@ -18,6 +72,7 @@ public class DownloadComponent {
 		this.repository = repository;
 	}
 
+	/** Days of data fitting in one from/size page, {@link #export} streams and doesn't need this */
 	public int getPageSizeDays(int deviceCount) {
 		return deviceCount == 0
 				? 0
@@ -25,6 +80,208 @@ public class DownloadComponent {
 						.intValue();
 	}
 
+	/**
+	 * Write every reading matching the search to S3 as gzipped CSV, in timestamp order. Pages are
+	 * streamed from a point in time into a multipart upload, so memory use doesn't grow with the size of
+	 * the export. With a parallelism above 1 the point in time is split into that many slices streamed
+	 * concurrently, each spooled to a temp file, then merged into the upload. The request's progress is
+	 * updated as pages are read and its s3Key set once complete.
+	 *
+	 * @param downloadRequest
+	 * @param searchJSON readings to export
+	 * @return the updated request
+	 * @throws IOException if the export fails, nothing is left in S3
+	 */
+	public DownloadRequest export(DownloadRequest downloadRequest, SearchJSON searchJSON) throws IOException {
+		long total = getOpenSearchComponent().count(searchJSON);
+		AtomicLong read = new AtomicLong();
+		IntConsumer progress = count -> updateProgress(downloadRequest, read.addAndGet(count), total);
+		S3MultipartOutputStream upload =
+				new S3MultipartOutputStream(getS3Client(), getBucket(), getS3Key(downloadRequest));
+		Writer writer;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(upload), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			upload.abort();
+			throw e;
+		}
+		try {
+			writer.write(String.join(",", COLUMNS.keySet()) + "\n");
+			int parallelism = getParallelism();
+			if (parallelism > 1) {
+				exportSlices(downloadRequest.getCustomerId(), searchJSON, parallelism, writer, progress);
+			} else {
+				getOpenSearchComponent().streamData(searchJSON, OpenSearchConstants.STREAM_PAGE_SIZE, page -> {
+					try {
+						for (DeviceData data : page) {
+							writer.write(toRow(data));
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					progress.accept(page.size());
+				});
+			}
+			writer.close();
+		} catch (UncheckedIOException e) {
+			abort(upload, writer);
+			throw e.getCause();
+		} catch (IOException | RuntimeException e) {
+			abort(upload, writer);
+			throw e;
+		}
+		log.info("exported " + read.get() + " readings to " + upload.getKey());
+		downloadRequest.setS3Key(upload.getKey());
+		downloadRequest.setPercentComplete(100);
+		downloadRequest.setLastUpdate(System.currentTimeMillis());
+		update(downloadRequest);
+		return downloadRequest;
+	}
+
+	/**
+	 * Stream sliceCount slices of one point in time concurrently, then merge them into the writer in
+	 * timestamp order. A customer's sliced exports stream one at a time, so a customer never has more
+	 * than {@link #getParallelism()} slices streaming at once. The point in time is opened only once
+	 * the customer's permit is held, so it can't expire while the slices wait their turn.
+	 */
+	private void exportSlices(
+			String customerId, SearchJSON searchJSON, int sliceCount, Writer writer, IntConsumer progress)
+			throws IOException {
+		Semaphore permit = customerPermits.get(customerId, id -> new Semaphore(1, true));
+		List<ExportSlice> slices = new ArrayList<>();
+		try {
+			try {
+				permit.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted waiting to export slices");
+			}
+			try {
+				streamSlices(searchJSON, sliceCount, slices, progress);
+			} finally {
+				permit.release();
+			}
+			PriorityQueue<ExportSlice> merge = new PriorityQueue<>(ExportSlice.ORDER);
+			for (ExportSlice slice : slices) {
+				if (slice.startReading()) {
+					merge.add(slice);
+				}
+			}
+			while (!merge.isEmpty()) {
+				ExportSlice slice = merge.poll();
+				writer.write(slice.getRow());
+				if (slice.next()) {
+					merge.add(slice);
+				}
+			}
+		} finally {
+			slices.forEach(ExportSlice::close);
+		}
+	}
+
+	/** Stream every slice of a new point in time into its own file, closing the point in time after */
+	private void streamSlices(SearchJSON searchJSON, int sliceCount, List<ExportSlice> slices, IntConsumer progress)
+			throws IOException {
+		String pitId = getOpenSearchComponent().openPointInTime();
+		try {
+			List<Callable<Long>> tasks = new ArrayList<>();
+			for (int i = 0; i < sliceCount; i++) {
+				ExportSlice slice = new ExportSlice();
+				slices.add(slice);
+				Supplier<Long> work =
+						TransactionUtil.withContext(streamSlice(pitId, searchJSON, i, sliceCount, slice, progress));
+				tasks.add(work::get);
+			}
+			for (Future<Long> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted exporting slices");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException cause) {
+				throw cause.getCause();
+			}
+			throw new IOException("slice export failed", e.getCause());
+		} finally {
+			getOpenSearchComponent().closePointInTime(pitId);
+		}
+	}
+
+	private Supplier<Long> streamSlice(
+			String pitId, SearchJSON searchJSON, int slice, int sliceCount, ExportSlice file, IntConsumer progress) {
+		Consumer<List<DeviceData>> spool = page -> {
+			try {
+				for (DeviceData data : page) {
+					file.write(data, toRow(data));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			progress.accept(page.size());
+		};
+		return () -> {
+			try {
+				return getOpenSearchComponent()
+						.streamData(pitId, searchJSON, slice, sliceCount, OpenSearchConstants.STREAM_PAGE_SIZE, spool);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/**
+	 * Abort the upload, then close the writer so the gzip deflater's native memory is released. The
+	 * upload is aborted first so closing can't complete it, the close fails writing to it and is ignored
+	 */
+	private static void abort(S3MultipartOutputStream upload, Writer writer) {
+		upload.abort();
+		try {
+			writer.close();
+		} catch (IOException e) {
+			log.debug("closing aborted export " + upload.getKey(), e);
+		}
+	}
+
+	private static String getS3Key(DownloadRequest downloadRequest) {
+		return downloadRequest.getCustomerId() + "/" + downloadRequest.getRequestId() + ".csv.gz";
+	}
+
+	/**
+	 * Store progress only when the whole percentage goes up, 100 is left for completion. Locks only the
+	 * export's own request, so one export's slices don't write stale progress over each other while
+	 * other exports write theirs in parallel
+	 */
+	private void updateProgress(DownloadRequest downloadRequest, long written, long total) {
+		long percent = total <= 0 ? 0 : Math.min(99, written * 100 / total);
+		synchronized (downloadRequest) {
+			if (percent <= downloadRequest.getPercentComplete()) {
+				return;
+			}
+			downloadRequest.setPercentComplete(percent);
+			downloadRequest.setLastUpdate(System.currentTimeMillis());
+			update(downloadRequest);
+		}
+	}
+
+	static String toRow(DeviceData data) {
+		List<String> values = COLUMNS.values().stream()
+				.map(column -> escape(column.apply(data)))
+				.toList();
+		return String.join(",", values) + "\n";
+	}
+
+	private static String escape(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String text = value.toString();
+		if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+			return "\"" + text.replace("\"", "\"\"") + "\"";
+		}
+		return text;
+	}
+
 	public Optional<DownloadRequest> findByRequestId(String requestId) {
 		return repository.findByRequestId(requestId);
 	}
@@ -44,4 +301,21 @@ public class DownloadComponent {
 	protected DownloadRepository getRepository() {
 		return repository;
 	}
+
+	protected OpenSearchComponent getOpenSearchComponent() {
+		return IComponentRegistry.OSComponent;
+	}
+
+	protected S3Client getS3Client() {
+		return IComponentRegistry.smaIngestComponent.getS3Client();
+	}
+
+	protected String getBucket() {
+		return PropertyUtils.getProperty(DOWNLOAD_S3_BUCKET);
+	}
+
+	/** Slices an export is split into, and the most a customer can stream at once */
+	protected int getParallelism() {
+		return PropertyValues.getInt(DOWNLOAD_EXPORT_PARALLELISM, 1);
+	}
 }
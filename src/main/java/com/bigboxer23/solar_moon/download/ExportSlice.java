@@ -0,0 +1,89 @@
+package com.bigboxer23.solar_moon.download;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One slice of a parallel export, its rows spooled (compressed) to a temp file in the order they were
+ * streamed, then read back a row at a time so the slices can be merged in timestamp order. Closing
+ * deletes the file.
+ */
+@Slf4j
+class ExportSlice implements Closeable {
+	/** Timestamp then device id, the order rows are streamed in */
+	static final Comparator<ExportSlice> ORDER =
+			Comparator.comparingLong(ExportSlice::getTime).thenComparing(ExportSlice::getDeviceId);
+
+	private final Path file;
+
+	private final DataOutputStream out;
+
+	private DataInputStream in;
+
+	private long time;
+
+	private String deviceId;
+
+	private String row;
+
+	ExportSlice() throws IOException {
+		file = Files.createTempFile("export", ".slice");
+		out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))));
+	}
+
+	void write(DeviceData data, String row) throws IOException {
+		out.writeLong(data.getDate() == null ? 0 : data.getDate().getTime());
+		out.writeUTF(data.getDeviceId() == null ? "" : data.getDeviceId());
+		out.writeUTF(row);
+	}
+
+	/** Finish writing and move to the first row, false if the slice is empty */
+	boolean startReading() throws IOException {
+		out.close();
+		in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))));
+		return next();
+	}
+
+	/** Move to the next row, false once there are none left */
+	boolean next() throws IOException {
+		try {
+			time = in.readLong();
+		} catch (EOFException e) {
+			return false;
+		}
+		deviceId = in.readUTF();
+		row = in.readUTF();
+		return true;
+	}
+
+	long getTime() {
+		return time;
+	}
+
+	String getDeviceId() {
+		return deviceId;
+	}
+
+	String getRow() {
+		return row;
+	}
+
+	@Override
+	public void close() {
+		try {
+			out.close();
+			if (in != null) {
+				in.close();
+			}
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			log.warn("couldn't clean up " + file, e);
+		}
+	}
+}
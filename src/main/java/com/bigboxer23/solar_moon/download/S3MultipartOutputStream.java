@@ -0,0 +1,137 @@
+package com.bigboxer23.solar_moon.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+/**
+ * Writes an S3 object as a multipart upload, holding at most one part in memory. {@link #close()}
+ * completes the upload, {@link #abort()} discards the parts uploaded so far.
+ */
+@Slf4j
+public class S3MultipartOutputStream extends OutputStream {
+	/** S3 requires every part but the last to be at least 5MB */
+	public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+	private final S3Client s3;
+
+	private final String bucket;
+
+	private final String key;
+
+	private final int partSize;
+
+	private final String uploadId;
+
+	private final List<CompletedPart> parts = new ArrayList<>();
+
+	private final ByteArrayOutputStream buffer;
+
+	private boolean closed = false;
+
+	public S3MultipartOutputStream(S3Client s3, String bucket, String key) {
+		this(s3, bucket, key, DEFAULT_PART_SIZE);
+	}
+
+	public S3MultipartOutputStream(S3Client s3, String bucket, String key, int partSize) {
+		this.s3 = s3;
+		this.bucket = bucket;
+		this.key = key;
+		this.partSize = partSize;
+		buffer = new ByteArrayOutputStream(partSize);
+		uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+						.bucket(bucket)
+						.key(key)
+						.build())
+				.uploadId();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		buffer.write(b);
+		if (buffer.size() >= partSize) {
+			uploadPart();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int length = Math.min(len, partSize - buffer.size());
+			buffer.write(b, off, length);
+			off += length;
+			len -= length;
+			if (buffer.size() >= partSize) {
+				uploadPart();
+			}
+		}
+	}
+
+	/** Upload what's buffered as the last part and complete the upload */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (buffer.size() > 0 || parts.isEmpty()) {
+			uploadPart();
+		}
+		s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+				.bucket(bucket)
+				.key(key)
+				.uploadId(uploadId)
+				.multipartUpload(
+						CompletedMultipartUpload.builder().parts(parts).build())
+				.build());
+	}
+
+	/** Discard the upload, nothing is written to the key */
+	public void abort() {
+		closed = true;
+		try {
+			s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+					.bucket(bucket)
+					.key(key)
+					.uploadId(uploadId)
+					.build());
+		} catch (S3Exception e) {
+			log.warn("abort failed for " + key, e);
+		}
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	private void uploadPart() {
+		int partNumber = parts.size() + 1;
+		UploadPartResponse response = s3.uploadPart(
+				UploadPartRequest.builder()
+						.bucket(bucket)
+						.key(key)
+						.uploadId(uploadId)
+						.partNumber(partNumber)
+						.build(),
+				RequestBody.fromBytes(buffer.toByteArray()));
+		parts.add(CompletedPart.builder()
+				.partNumber(partNumber)
+				.eTag(response.eTag())
+				.build());
+		buffer.reset();
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("stream closed for " + key);
+		}
+	}
+}
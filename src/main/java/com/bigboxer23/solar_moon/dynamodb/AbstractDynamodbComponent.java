@@ -1,22 +1,109 @@
 package com.bigboxer23.solar_moon.dynamodb;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
 
-/** */
+/**
+ * Table handles and schemas are built once per JVM and shared by every repository instance, hot
+ * entities use a {@link StaticTableSchemas} definition so they skip bean introspection entirely
+ */
+@Slf4j
 public abstract class AbstractDynamodbComponent<T> {
+	/** Most put and delete requests DynamoDB accepts in one BatchWriteItem call */
+	protected static final int BATCH_WRITE_LIMIT = 25;
+
+	private static final int BATCH_WRITE_ATTEMPTS = 5;
+
+	private static final long BATCH_WRITE_BACKOFF = 50;
+
+	private static final Map<Class<?>, TableSchema<?>> schemas = new ConcurrentHashMap<>();
+
+	private static final Map<String, DynamoDbTable<?>> tables = new ConcurrentHashMap<>();
+
 	private static DynamoDbEnhancedClient client;
 
-	private DynamoDbEnhancedClient getClient() {
+	protected DynamoDbEnhancedClient getClient() {
 		if (client == null) {
 			client = DynamoDbEnhancedClient.create();
 		}
 		return client;
 	}
 
+	@SuppressWarnings("unchecked")
 	protected DynamoDbTable<T> getTable() {
-		return getClient().table(getTableName(), TableSchema.fromBean(getObjectClass()));
+		return (DynamoDbTable<T>)
+				tables.computeIfAbsent(getTableName(), tableName -> getClient().table(tableName, getTableSchema()));
+	}
+
+	@SuppressWarnings("unchecked")
+	protected TableSchema<T> getTableSchema() {
+		return (TableSchema<T>) schemas.computeIfAbsent(getObjectClass(), clazz -> StaticTableSchemas.get(clazz)
+				.orElseGet(() -> TableSchema.fromBean(clazz)));
+	}
+
+	/**
+	 * Put and delete items in as few BatchWriteItem calls as possible. Items DynamoDB leaves
+	 * unprocessed (throttling) are retried with backoff.
+	 *
+	 * @throws BatchWriteException with the items still unprocessed after that, everything else was
+	 *     written
+	 */
+	protected void batchWrite(Collection<T> puts, Collection<T> deletes) {
+		DynamoDbTable<T> table = getTable();
+		List<T> pendingPuts = new ArrayList<>(puts);
+		Map<Key, T> deletesByKey = new LinkedHashMap<>();
+		deletes.forEach(item -> deletesByKey.put(table.keyFrom(item), item));
+		List<Key> pendingDeletes = new ArrayList<>(deletesByKey.keySet());
+		for (int attempt = 0;
+				attempt < BATCH_WRITE_ATTEMPTS && (!pendingPuts.isEmpty() || !pendingDeletes.isEmpty());
+				attempt++) {
+			if (attempt > 0) {
+				try {
+					Thread.sleep(BATCH_WRITE_BACKOFF << (attempt - 1));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			List<T> unprocessedPuts = new ArrayList<>();
+			List<Key> unprocessedDeletes = new ArrayList<>();
+			int putIndex = 0;
+			int deleteIndex = 0;
+			while (putIndex < pendingPuts.size() || deleteIndex < pendingDeletes.size()) {
+				WriteBatch.Builder<T> batch = WriteBatch.builder(getObjectClass()).mappedTableResource(table);
+				int count = 0;
+				for (; putIndex < pendingPuts.size() && count < BATCH_WRITE_LIMIT; putIndex++, count++) {
+					batch.addPutItem(pendingPuts.get(putIndex));
+				}
+				for (; deleteIndex < pendingDeletes.size() && count < BATCH_WRITE_LIMIT; deleteIndex++, count++) {
+					batch.addDeleteItem(pendingDeletes.get(deleteIndex));
+				}
+				BatchWriteResult result = getClient().batchWriteItem(builder -> builder.writeBatches(batch.build()));
+				unprocessedPuts.addAll(result.unprocessedPutItemsForTable(table));
+				unprocessedDeletes.addAll(result.unprocessedDeleteItemsForTable(table));
+			}
+			pendingPuts = unprocessedPuts;
+			pendingDeletes = unprocessedDeletes;
+		}
+		if (!pendingPuts.isEmpty() || !pendingDeletes.isEmpty()) {
+			BatchWriteException e = new BatchWriteException(
+					getTableName(),
+					pendingPuts,
+					pendingDeletes.stream().map(deletesByKey::get).toList());
+			log.warn("batchWrite", e);
+			throw e;
+		}
 	}
 
 	protected abstract String getTableName();
@@ -0,0 +1,24 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import java.util.List;
+import lombok.Getter;
+
+/** Items DynamoDB still left unprocessed once a batch write ran out of retries */
+@Getter
+public class BatchWriteException extends RuntimeException {
+	private final List<?> unprocessedPuts;
+
+	private final List<?> unprocessedDeletes;
+
+	public BatchWriteException(String tableName, List<?> unprocessedPuts, List<?> unprocessedDeletes) {
+		super("batch write to "
+				+ tableName
+				+ " left "
+				+ unprocessedPuts.size()
+				+ " puts and "
+				+ unprocessedDeletes.size()
+				+ " deletes unprocessed");
+		this.unprocessedPuts = unprocessedPuts;
+		this.unprocessedDeletes = unprocessedDeletes;
+	}
+}
@@ -5,36 +5,84 @@ import static com.bigboxer23.solar_moon.dynamodb.DynamoDbLockRepository.LOCK_TAB
 import com.amazonaws.services.dynamodbv2.AcquireLockOptions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBLockClient;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBLockClientOptions;
+import com.amazonaws.services.dynamodbv2.LockItem;
 import com.amazonaws.services.dynamodbv2.model.LockCurrentlyUnavailableException;
-import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
-/** */
+/**
+ * Runs a command while holding a lock on a key, skipping the command if someone else holds it. Keys
+ * held by another thread in this JVM are skipped without asking DynamoDB, the lock client is created
+ * once and reused across invocations. {@link LockMetrics} are logged periodically as locks are
+ * attempted.
+ */
 @Slf4j
 public class DynamoLockUtils {
+	private static final Set<String> heldKeys = ConcurrentHashMap.newKeySet();
+
+	private static final LockMetrics metrics = new LockMetrics();
+
+	private static AmazonDynamoDBLockClient lockClient;
+
+	protected static synchronized AmazonDynamoDBLockClient getLockClient() {
+		if (lockClient == null) {
+			lockClient = new AmazonDynamoDBLockClient(
+					AmazonDynamoDBLockClientOptions.builder(DynamoDbClient.builder().build(), LOCK_TABLE)
+							.withTimeUnit(TimeUnit.SECONDS)
+							.withLeaseDuration(15L)
+							.withCreateHeartbeatBackgroundThread(false)
+							.build());
+		}
+		return lockClient;
+	}
+
+	static synchronized void setLockClient(AmazonDynamoDBLockClient client) {
+		lockClient = client;
+	}
+
 	public static void doLockedCommand(String key, Runnable command) {
-		try (AmazonDynamoDBLockClient client = new AmazonDynamoDBLockClient(
-				AmazonDynamoDBLockClientOptions.builder(DynamoDbClient.builder().build(), LOCK_TABLE)
-						.withTimeUnit(TimeUnit.SECONDS)
-						.withLeaseDuration(15L)
-						.withCreateHeartbeatBackgroundThread(false)
-						.build())) {
+		long start = System.nanoTime();
+		// a thread in this JVM has the key, DynamoDB would refuse it too
+		if (!heldKeys.add(key)) {
+			metrics.contended(System.nanoTime() - start);
+			log.info("Can't get lock " + key);
+			metrics.logIfDue(System.currentTimeMillis());
+			return;
+		}
+		try {
+			Optional<LockItem> lock = getLockClient()
+					.tryAcquireLock(AcquireLockOptions.builder(key)
+							.withShouldSkipBlockingWait(true)
+							.build());
+			if (lock.isEmpty()) {
+				metrics.contended(System.nanoTime() - start);
+				return;
+			}
+			long acquired = System.nanoTime();
+			log.debug("Got lock " + key);
 			try {
-				client.tryAcquireLock(AcquireLockOptions.builder(key)
-								.withShouldSkipBlockingWait(true)
-								.build())
-						.ifPresent(lock -> {
-							log.debug("Got lock " + key);
-							command.run();
-							client.releaseLock(lock);
-						});
-			} catch (LockCurrentlyUnavailableException e) {
-				log.info("Can't get lock " + key);
+				command.run();
+			} finally {
+				getLockClient().releaseLock(lock.get());
+				metrics.acquired(acquired - start, System.nanoTime() - acquired);
 			}
-		} catch (IOException | InterruptedException e) {
+		} catch (LockCurrentlyUnavailableException e) {
+			metrics.contended(System.nanoTime() - start);
+			log.info("Can't get lock " + key);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			log.warn("doLockedCommand", e);
+		} finally {
+			heldKeys.remove(key);
+			metrics.logIfDue(System.currentTimeMillis());
 		}
 	}
+
+	public static LockMetrics getMetrics() {
+		return metrics;
+	}
 }
@@ -0,0 +1,88 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counters for {@link DynamoLockUtils}, accumulated since the JVM started. Logged at most every
+ * {@link #LOG_INTERVAL} as locks are attempted.
+ */
+@Slf4j
+public class LockMetrics {
+	static final long LOG_INTERVAL = TimeConstants.FIFTEEN_MINUTES;
+
+	private final LongAdder acquired = new LongAdder();
+
+	private final LongAdder contended = new LongAdder();
+
+	private final LongAdder waitNanos = new LongAdder();
+
+	private final LongAdder holdNanos = new LongAdder();
+
+	private final AtomicLong lastLogged = new AtomicLong();
+
+	void acquired(long waitNanos, long holdNanos) {
+		acquired.increment();
+		this.waitNanos.add(waitNanos);
+		this.holdNanos.add(holdNanos);
+	}
+
+	void contended(long waitNanos) {
+		contended.increment();
+		this.waitNanos.add(waitNanos);
+	}
+
+	public long getAcquired() {
+		return acquired.sum();
+	}
+
+	public long getContended() {
+		return contended.sum();
+	}
+
+	/** @return fraction of lock attempts which found the key already held */
+	public double getContentionRate() {
+		long contended = getContended();
+		long attempts = getAcquired() + contended;
+		return attempts == 0 ? 0 : (double) contended / attempts;
+	}
+
+	/** @return average time spent acquiring (or failing to acquire) a lock */
+	public long getAverageWaitMillis() {
+		long attempts = getAcquired() + getContended();
+		return attempts == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / attempts);
+	}
+
+	/** @return average time a lock was held while running a command */
+	public long getAverageHoldMillis() {
+		long acquired = getAcquired();
+		return acquired == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(holdNanos.sum() / acquired);
+	}
+
+	/** @return true if the metrics were logged, only one caller per interval logs them */
+	boolean logIfDue(long now) {
+		long last = lastLogged.get();
+		if (now - last < LOG_INTERVAL || !lastLogged.compareAndSet(last, now)) {
+			return false;
+		}
+		log.info("lock metrics " + this);
+		return true;
+	}
+
+	void reset() {
+		lastLogged.set(0);
+		acquired.reset();
+		contended.reset();
+		waitNanos.reset();
+		holdNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "acquired:" + getAcquired() + " contended:" + getContended() + " avgWait:" + getAverageWaitMillis()
+				+ "ms avgHold:" + getAverageHoldMillis() + "ms";
+	}
+}
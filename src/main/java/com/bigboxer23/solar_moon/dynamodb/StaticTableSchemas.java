@@ -0,0 +1,216 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.*;
+
+import com.bigboxer23.solar_moon.data.Alarm;
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceUpdateData;
+import com.bigboxer23.solar_moon.weather.StoredWeatherData;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+
+/**
+ * Hand written schemas for the entities read on every ingest, {@code TableSchema.fromBean} walks the
+ * bean with reflection which is a noticeable part of a cold start. These mirror the {@code @DynamoDb*}
+ * annotations on each bean, StaticTableSchemasTest fails if the two drift apart.
+ */
+public class StaticTableSchemas {
+	public static final TableSchema<Device> DEVICE = StaticTableSchema.builder(Device.class)
+			.newItemSupplier(Device::new)
+			.addAttribute(String.class, a -> a.name("id")
+					.getter(Device::getId)
+					.setter(Device::setId)
+					.tags(primaryPartitionKey()))
+			.addAttribute(String.class, a -> a.name("clientId")
+					.getter(Device::getClientId)
+					.setter(Device::setClientId)
+					.tags(
+							primarySortKey(),
+							secondaryPartitionKey(Device.CLIENT_INDEX),
+							secondarySortKey(List.of(
+									Device.NAME_INDEX,
+									Device.DEVICE_NAME_INDEX,
+									Device.SITE_INDEX,
+									Device.SITEID_INDEX))))
+			.addAttribute(String.class, a -> a.name("name")
+					.getter(Device::getName)
+					.setter(Device::setName)
+					.tags(secondaryPartitionKey(Device.NAME_INDEX)))
+			.addAttribute(String.class, a -> a.name("deviceName")
+					.getter(Device::getDeviceName)
+					.setter(Device::setDeviceName)
+					.tags(secondaryPartitionKey(Device.DEVICE_NAME_INDEX)))
+			.addAttribute(String.class, a -> a.name("deviceKey")
+					.getter(Device::getDeviceKey)
+					.setter(Device::setDeviceKey)
+					.tags(secondaryPartitionKey(Device.DEVICE_KEY_INDEX)))
+			.addAttribute(String.class, a -> a.name("site")
+					.getter(Device::getSite)
+					.setter(Device::setSite)
+					.tags(secondaryPartitionKey(Device.SITE_INDEX)))
+			.addAttribute(String.class, a -> a.name("siteId")
+					.getter(Device::getSiteId)
+					.setter(Device::setSiteId)
+					.tags(secondaryPartitionKey(Device.SITEID_INDEX)))
+			.addAttribute(String.class, a -> a.name("virtualIndex")
+					.getter(Device::getVirtualIndex)
+					.setter(Device::setVirtualIndex)
+					.tags(secondaryPartitionKey(Device.VIRTUAL_INDEX)))
+			.addAttribute(String.class, a -> a.name("isSite")
+					.getter(Device::getIsSite)
+					.setter(Device::setIsSite)
+					.tags(secondaryPartitionKey(Device.IS_SITE_INDEX)))
+			.addAttribute(String.class, a -> a.name("address").getter(Device::getAddress).setter(Device::setAddress))
+			.addAttribute(String.class, a -> a.name("user").getter(Device::getUser).setter(Device::setUser))
+			.addAttribute(
+					String.class, a -> a.name("password").getter(Device::getPassword).setter(Device::setPassword))
+			.addAttribute(String.class, a -> a.name("type").getter(Device::getType).setter(Device::setType))
+			.addAttribute(String.class, a -> a.name("mock").getter(Device::getMock).setter(Device::setMock))
+			.addAttribute(String.class, a -> a.name("city").getter(Device::getCity).setter(Device::setCity))
+			.addAttribute(String.class, a -> a.name("state").getter(Device::getState).setter(Device::setState))
+			.addAttribute(String.class, a -> a.name("country").getter(Device::getCountry).setter(Device::setCountry))
+			.addAttribute(
+					String.class,
+					a -> a.name("serialNumber").getter(Device::getSerialNumber).setter(Device::setSerialNumber))
+			.addAttribute(
+					Boolean.class,
+					a -> a.name("subtraction").getter(Device::isSubtraction).setter(Device::setSubtraction))
+			.addAttribute(Boolean.class, a -> a.name("virtual").getter(Device::isVirtual).setter(Device::setVirtual))
+			.addAttribute(
+					Boolean.class, a -> a.name("disabled").getter(Device::isDisabled).setter(Device::setDisabled))
+			.addAttribute(
+					Boolean.class,
+					a -> a.name("notificationsDisabled")
+							.getter(Device::isNotificationsDisabled)
+							.setter(Device::setNotificationsDisabled))
+			.addAttribute(
+					Double.class, a -> a.name("latitude").getter(Device::getLatitude).setter(Device::setLatitude))
+			.addAttribute(
+					Double.class, a -> a.name("longitude").getter(Device::getLongitude).setter(Device::setLongitude))
+			.addAttribute(
+					Long.class, a -> a.name("createdAt").getter(Device::getCreatedAt).setter(Device::setCreatedAt))
+			.addAttribute(
+					Long.class, a -> a.name("updatedAt").getter(Device::getUpdatedAt).setter(Device::setUpdatedAt))
+			.build();
+
+	public static final TableSchema<Alarm> ALARM = StaticTableSchema.builder(Alarm.class)
+			.newItemSupplier(Alarm::new)
+			.addAttribute(String.class, a -> a.name("alarmId")
+					.getter(Alarm::getAlarmId)
+					.setter(Alarm::setAlarmId)
+					.tags(primaryPartitionKey()))
+			.addAttribute(String.class, a -> a.name("customerId")
+					.getter(Alarm::getCustomerId)
+					.setter(Alarm::setCustomerId)
+					.tags(
+							primarySortKey(),
+							secondaryPartitionKey(Alarm.CUSTOMER_INDEX),
+							secondarySortKey(List.of(
+									Alarm.SITE_CUSTOMER_INDEX,
+									Alarm.STATE_CUSTOMER_INDEX,
+									Alarm.DEVICE_CUSTOMER_INDEX,
+									Alarm.EMAILED_CUSTOMER_INDEX))))
+			.addAttribute(String.class, a -> a.name("deviceId")
+					.getter(Alarm::getDeviceId)
+					.setter(Alarm::setDeviceId)
+					.tags(secondaryPartitionKey(List.of(
+							Alarm.DEVICE_STATE_INDEX, Alarm.DEVICE_CUSTOMER_INDEX, Alarm.DEVICEID_STARTDATE_INDEX))))
+			.addAttribute(String.class, a -> a.name("siteId")
+					.getter(Alarm::getSiteId)
+					.setter(Alarm::setSiteId)
+					.tags(secondaryPartitionKey(List.of(Alarm.SITE_CUSTOMER_INDEX, Alarm.SITE_STATE_INDEX))))
+			.addAttribute(Integer.class, a -> a.name("state")
+					.getter(Alarm::getState)
+					.setter(Alarm::setState)
+					.tags(
+							secondaryPartitionKey(List.of(Alarm.STATE_CUSTOMER_INDEX, Alarm.STATE_STARTDATE_INDEX)),
+							secondarySortKey(List.of(Alarm.SITE_STATE_INDEX, Alarm.DEVICE_STATE_INDEX))))
+			.addAttribute(Long.class, a -> a.name("startDate")
+					.getter(Alarm::getStartDate)
+					.setter(Alarm::setStartDate)
+					.tags(secondarySortKey(List.of(Alarm.DEVICEID_STARTDATE_INDEX, Alarm.STATE_STARTDATE_INDEX))))
+			.addAttribute(Long.class, a -> a.name("emailed")
+					.getter(Alarm::getEmailed)
+					.setter(Alarm::setEmailed)
+					.tags(secondaryPartitionKey(Alarm.EMAILED_CUSTOMER_INDEX)))
+			.addAttribute(Long.class, a -> a.name("resolveEmailed")
+					.getter(Alarm::getResolveEmailed)
+					.setter(Alarm::setResolveEmailed)
+					.tags(secondaryPartitionKey(Alarm.RESOLVED_EMAILED_INDEX)))
+			.addAttribute(
+					Long.class, a -> a.name("lastUpdate").getter(Alarm::getLastUpdate).setter(Alarm::setLastUpdate))
+			.addAttribute(Long.class, a -> a.name("endDate").getter(Alarm::getEndDate).setter(Alarm::setEndDate))
+			.addAttribute(String.class, a -> a.name("message").getter(Alarm::getMessage).setter(Alarm::setMessage))
+			.addAttribute(
+					Long.class, a -> a.name("expiration").getter(Alarm::getExpiration).setter(Alarm::setExpiration))
+			.addAttribute(
+					Boolean.class,
+					a -> a.name("deviceDisabled").getter(Alarm::isDeviceDisabled).setter(Alarm::setDeviceDisabled))
+			.addAttribute(
+					Long.class, a -> a.name("createdAt").getter(Alarm::getCreatedAt).setter(Alarm::setCreatedAt))
+			.addAttribute(
+					Long.class, a -> a.name("updatedAt").getter(Alarm::getUpdatedAt).setter(Alarm::setUpdatedAt))
+			.build();
+
+	public static final TableSchema<DeviceUpdateData> DEVICE_UPDATE = StaticTableSchema.builder(
+					DeviceUpdateData.class)
+			.newItemSupplier(DeviceUpdateData::new)
+			.addAttribute(String.class, a -> a.name("deviceId")
+					.getter(DeviceUpdateData::getDeviceId)
+					.setter(DeviceUpdateData::setDeviceId)
+					.tags(primaryPartitionKey()))
+			.addAttribute(Long.class, a -> a.name("lastUpdate")
+					.getter(DeviceUpdateData::getLastUpdate)
+					.setter(DeviceUpdateData::setLastUpdate)
+					.tags(secondarySortKey(DeviceUpdateData.IDENTITY_UPDATE_INDEX)))
+			.addAttribute(String.class, a -> a.name("identity")
+					.getter(DeviceUpdateData::getIdentity)
+					.setter(DeviceUpdateData::setIdentity)
+					.tags(secondaryPartitionKey(DeviceUpdateData.IDENTITY_UPDATE_INDEX)))
+			.addAttribute(Long.class, a -> a.name("expiration")
+					.getter(DeviceUpdateData::getExpiration)
+					.setter(DeviceUpdateData::setExpiration))
+			.build();
+
+	public static final TableSchema<StoredWeatherData> STORED_WEATHER = StaticTableSchema.builder(
+					StoredWeatherData.class)
+			.newItemSupplier(StoredWeatherData::new)
+			.addAttribute(String.class, a -> a.name("latitudeLongitude")
+					.getter(StoredWeatherData::getLatitudeLongitude)
+					.setter(StoredWeatherData::setLatitudeLongitude)
+					.tags(primaryPartitionKey()))
+			.addAttribute(
+					String.class,
+					a -> a.name("weather").getter(StoredWeatherData::getWeather).setter(StoredWeatherData::setWeather))
+			.addAttribute(
+					Long.class,
+					a -> a.name("time").getter(StoredWeatherData::getTime).setter(StoredWeatherData::setTime))
+			.addAttribute(Long.class, a -> a.name("expiration")
+					.getter(StoredWeatherData::getExpiration)
+					.setter(StoredWeatherData::setExpiration))
+			.addAttribute(Long.class, a -> a.name("createdAt")
+					.getter(StoredWeatherData::getCreatedAt)
+					.setter(StoredWeatherData::setCreatedAt))
+			.addAttribute(Long.class, a -> a.name("updatedAt")
+					.getter(StoredWeatherData::getUpdatedAt)
+					.setter(StoredWeatherData::setUpdatedAt))
+			.build();
+
+	private static final Map<Class<?>, TableSchema<?>> schemas = Map.of(
+			Device.class,
+			DEVICE,
+			Alarm.class,
+			ALARM,
+			DeviceUpdateData.class,
+			DEVICE_UPDATE,
+			StoredWeatherData.class,
+			STORED_WEATHER);
+
+	/** @return the static schema for the class, empty if it should be built from the bean annotations */
+	public static Optional<TableSchema<?>> get(Class<?> clazz) {
+		return Optional.ofNullable(schemas.get(clazz));
+	}
+}
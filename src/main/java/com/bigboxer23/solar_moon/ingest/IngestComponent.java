@@ -6,6 +6,11 @@ import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.util.TokenGenerator;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.client.ResponseException;
 import software.amazon.awssdk.utils.StringUtils;
@@ -14,6 +19,12 @@ import software.amazon.awssdk.utils.StringUtils;
 // @Component
 @Slf4j
 public class IngestComponent implements MeterConstants {
+	private static final ExecutorService enrichmentExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+	protected ExecutorService getEnrichmentExecutor() {
+		return enrichmentExecutor;
+	}
+
 	public DeviceData handleDevice(Device device, DeviceData deviceData) throws ResponseException {
 		if (deviceData == null) {
 			log.info("deviceData was not valid, not handling.");
@@ -24,16 +35,10 @@ public class IngestComponent implements MeterConstants {
 			return null;
 		}
 
-		Optional<Device> site =
-				IComponentRegistry.deviceComponent.findDeviceById(device.getSiteId(), device.getClientId());
 		if (device.isDeviceSite()) {
 			deviceData.setSite(true);
 		}
-		calculateTotalEnergyConsumed(deviceData);
-		IComponentRegistry.locationComponent.addLocationData(deviceData, site.orElse(null));
-		IComponentRegistry.weatherComponent.addWeatherData(deviceData, site.orElse(null));
-		IComponentRegistry.alarmComponent.resolveActiveAlarms(deviceData);
-		IComponentRegistry.linkedDeviceComponent.addLinkedDeviceData(device, deviceData);
+		enrich(device, deviceData);
 		IComponentRegistry.OSComponent.logData(
 				deviceData.getDate() != null ? deviceData.getDate() : new Date(),
 				Collections.singletonList(deviceData));
@@ -42,11 +47,126 @@ public class IngestComponent implements MeterConstants {
 		return deviceData;
 	}
 
+	/**
+	 * Run the lookups a reading needs before it's written concurrently, returning once all are done.
+	 * Each branch sets different fields on deviceData. Location and weather wait on the site lookup,
+	 * alarms wait on location since resolving checks daylight.
+	 */
+	private void enrich(Device device, DeviceData deviceData) {
+		ExecutorService executor = getEnrichmentExecutor();
+		CompletableFuture<Device> site = CompletableFuture.supplyAsync(
+				TransactionUtil.withContext(() -> IComponentRegistry.deviceComponent
+						.findDeviceById(device.getSiteId(), device.getClientId())
+						.orElse(null)),
+				executor);
+		CompletableFuture<Void> energy = CompletableFuture.runAsync(
+				TransactionUtil.withContext(() -> calculateTotalEnergyConsumed(deviceData)), executor);
+		CompletableFuture<Void> linkedDevice = CompletableFuture.runAsync(
+				TransactionUtil.withContext(
+						() -> IComponentRegistry.linkedDeviceComponent.addLinkedDeviceData(device, deviceData)),
+				executor);
+		CompletableFuture<Void> weather = site.thenRunAsync(
+				TransactionUtil.withContext(
+						() -> IComponentRegistry.weatherComponent.addWeatherData(deviceData, site.join())),
+				executor);
+		CompletableFuture<Void> alarms = site.thenRunAsync(
+				TransactionUtil.withContext(() -> {
+					IComponentRegistry.locationComponent.addLocationData(deviceData, site.join());
+					IComponentRegistry.alarmComponent.resolveActiveAlarms(deviceData);
+				}),
+				executor);
+		try {
+			CompletableFuture.allOf(energy, linkedDevice, weather, alarms).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Handle a batch of devices (ex. every inverter within an SMA upload). Sites, previous totals,
+	 * active alarms and linked devices are looked up once for the batch and all data is written with
+	 * a single bulk request.
+	 *
+	 * @param items
+	 * @return the passed items, with error set on any which could not be stored
+	 * @throws ResponseException
+	 */
+	public List<IngestItem> handleDevices(List<IngestItem> items) throws ResponseException {
+		List<IngestItem> valid = new ArrayList<>();
+		items.forEach(item -> {
+			if (item.getDeviceData() == null) {
+				log.info("deviceData was not valid, not handling.");
+				item.setError("invalid device data");
+			} else if (item.getDevice() == null) {
+				log.info("device was not valid, not handling.");
+				item.setError("invalid device");
+			} else {
+				valid.add(item);
+			}
+		});
+		if (valid.isEmpty()) {
+			return items;
+		}
+		Map<String, Float> previousTotals = new HashMap<>(IComponentRegistry.OSComponent.getTotalEnergyConsumed(
+				valid.stream()
+						.map(IngestItem::getDeviceData)
+						.filter(data -> data.getDeviceId() != null && data.getTotalEnergyConsumed() >= 0)
+						.map(DeviceData::getDeviceId)
+						.collect(Collectors.toSet())));
+		Map<String, Optional<Device>> sites = new HashMap<>();
+		valid.forEach(item -> {
+			Device device = item.getDevice();
+			DeviceData deviceData = item.getDeviceData();
+			Optional<Device> site = sites.computeIfAbsent(
+					device.getClientId() + ":" + device.getSiteId(),
+					k -> IComponentRegistry.deviceComponent.findDeviceById(device.getSiteId(), device.getClientId()));
+			if (device.isDeviceSite()) {
+				deviceData.setSite(true);
+			}
+			calculateTotalEnergyConsumed(deviceData, previousTotals.get(deviceData.getDeviceId()));
+			// A device may appear more than once in a batch, the next reading diffs against this one
+			if (deviceData.getDeviceId() != null && deviceData.getTotalEnergyConsumed() >= 0) {
+				previousTotals.put(deviceData.getDeviceId(), deviceData.getTotalEnergyConsumed());
+			}
+			IComponentRegistry.locationComponent.addLocationData(deviceData, site.orElse(null));
+			IComponentRegistry.weatherComponent.addWeatherData(deviceData, site.orElse(null));
+		});
+		List<DeviceData> deviceDatas = valid.stream().map(IngestItem::getDeviceData).toList();
+		IComponentRegistry.alarmComponent.resolveActiveAlarms(deviceDatas);
+		IComponentRegistry.linkedDeviceComponent.addLinkedDeviceData(
+				valid.stream().map(IngestItem::getDevice).toList(), deviceDatas);
+		List<String> errors = IComponentRegistry.OSComponent.bulkLogData(new Date(), deviceDatas);
+		for (int i = 0; i < valid.size(); i++) {
+			valid.get(i).setError(errors.get(i));
+		}
+		// Each device's reading is folded into its site's running totals
+		valid.stream()
+				.filter(IngestItem::isSuccess)
+				.map(IngestItem::getDeviceData)
+				.forEach(IComponentRegistry.virtualDeviceComponent::handleVirtualDevice);
+		return items;
+	}
+
 	/**
 	 * Calculate the difference of power consumed since the last run. Add a new field with the
 	 * difference
 	 */
 	private void calculateTotalEnergyConsumed(DeviceData deviceData) {
+		if (deviceData.getDeviceId() == null) {
+			log.info("Can't calc total energy w/o device id");
+			return;
+		}
+		if (deviceData.getTotalEnergyConsumed() < 0) {
+			return;
+		}
+		calculateTotalEnergyConsumed(
+				deviceData, IComponentRegistry.OSComponent.getTotalEnergyConsumed(deviceData.getDeviceId()));
+	}
+
+	private void calculateTotalEnergyConsumed(DeviceData deviceData, Float previousTotalEnergyConsumed) {
 		if (deviceData.getDeviceId() == null) {
 			log.info("Can't calc total energy w/o device id");
 			return;
@@ -56,12 +176,10 @@ public class IngestComponent implements MeterConstants {
 		if (totalEnergyConsumption < 0) {
 			return;
 		}
-		deviceData.setEnergyConsumed(
-				Optional.ofNullable(IComponentRegistry.OSComponent.getTotalEnergyConsumed(deviceData.getDeviceId()))
-						.map(previousTotalEnergyConsumed -> zeroObviouslyBadValues(
-								maybeCorrectForRollover(previousTotalEnergyConsumed, totalEnergyConsumption)
-										- previousTotalEnergyConsumed))
-						.orElse(0f));
+		deviceData.setEnergyConsumed(Optional.ofNullable(previousTotalEnergyConsumed)
+				.map(previous ->
+						zeroObviouslyBadValues(maybeCorrectForRollover(previous, totalEnergyConsumption) - previous))
+				.orElse(0f));
 	}
 
 	private float zeroObviouslyBadValues(float energyConsumed) {
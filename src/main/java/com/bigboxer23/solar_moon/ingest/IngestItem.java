@@ -0,0 +1,25 @@
+package com.bigboxer23.solar_moon.ingest;
+
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceData;
+import lombok.Data;
+
+/** A device and its data handled as part of a batch ingest */
+@Data
+public class IngestItem {
+	private Device device;
+
+	private DeviceData deviceData;
+
+	/** Reason the data wasn't stored, null if it was stored successfully */
+	private String error;
+
+	public IngestItem(Device device, DeviceData deviceData) {
+		setDevice(device);
+		setDeviceData(deviceData);
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+}
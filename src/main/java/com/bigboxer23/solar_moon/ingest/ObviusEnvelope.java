@@ -0,0 +1,166 @@
+package com.bigboxer23.solar_moon.ingest;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathExpressionException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Everything the Obvius ingest needs from a device push, read in a single streaming pass over the
+ * body. Mirrors the first-match semantics of the xpath lookups in {@link MeterConstants}
+ */
+@Data
+public class ObviusEnvelope implements MeterConstants {
+	private static final XMLInputFactory factory = createFactory();
+
+	private String mode;
+
+	private String serialNumber;
+
+	private String deviceName;
+
+	private String errorText;
+
+	private String errorCode;
+
+	private boolean hasError;
+
+	private String time;
+
+	private String timeZone;
+
+	private List<Point> points = new ArrayList<>();
+
+	public static ObviusEnvelope parse(String body) throws XPathExpressionException {
+		ObviusEnvelope envelope = new ObviusEnvelope();
+		XMLStreamReader reader = null;
+		try {
+			reader = factory.createXMLStreamReader(new StringReader(body));
+			StringBuilder path = new StringBuilder();
+			StringBuilder text = new StringBuilder();
+			String capturing = null;
+			int capturingDepth = -1;
+			int depth = 0;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT -> {
+						depth++;
+						path.append('/').append(reader.getLocalName());
+						if (capturing != null) {
+							break;
+						}
+						String currentPath = path.toString();
+						switch (currentPath) {
+							case POINT_PATH ->
+								envelope.getPoints()
+										.add(new Point(
+												reader.getAttributeValue(null, "name"),
+												reader.getAttributeValue(null, "value")));
+							case ERROR_PATH -> {
+								if (!envelope.isHasError()) {
+									envelope.setErrorText(reader.getAttributeValue(null, "text"));
+									capturing = currentPath;
+								}
+							}
+							case DATE_PATH -> {
+								if (envelope.getTime() == null) {
+									envelope.setTimeZone(reader.getAttributeValue(null, ZONE));
+									capturing = currentPath;
+								}
+							}
+							case MODE_PATH, SERIAL_PATH, DEVICE_NAME_PATH -> {
+								if (envelope.getCaptured(currentPath) == null) {
+									capturing = currentPath;
+								}
+							}
+							default -> {}
+						}
+						if (capturing != null) {
+							capturingDepth = depth;
+							text.setLength(0);
+						}
+					}
+					case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+						if (capturing != null) {
+							text.append(reader.getText());
+						}
+					}
+					case XMLStreamConstants.END_ELEMENT -> {
+						if (capturing != null && depth == capturingDepth) {
+							envelope.setCaptured(capturing, text.toString());
+							capturing = null;
+						}
+						path.setLength(path.lastIndexOf("/"));
+						depth--;
+					}
+					default -> {}
+				}
+			}
+		} catch (XMLStreamException e) {
+			// Keep the contract of the previous xpath based parsing so callers handle bad bodies
+			// the same way
+			throw new XPathExpressionException(e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// nothing to do
+				}
+			}
+		}
+		return envelope;
+	}
+
+	/**
+	 * @return error string in the form used when reporting faults, null if no error node exists
+	 */
+	public String getError() {
+		return hasError ? errorText + " errorCode:" + errorCode : null;
+	}
+
+	private String getCaptured(String path) {
+		return switch (path) {
+			case MODE_PATH -> mode;
+			case SERIAL_PATH -> serialNumber;
+			case DEVICE_NAME_PATH -> deviceName;
+			default -> null;
+		};
+	}
+
+	private void setCaptured(String path, String value) {
+		switch (path) {
+			case MODE_PATH -> setMode(value);
+			case SERIAL_PATH -> setSerialNumber(value);
+			case DEVICE_NAME_PATH -> setDeviceName(value);
+			case DATE_PATH -> setTime(value);
+			case ERROR_PATH -> {
+				setErrorCode(value);
+				setHasError(true);
+			}
+			default -> {}
+		}
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return inputFactory;
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class Point {
+		private String name;
+
+		private String value;
+	}
+}
@@ -6,20 +6,14 @@ import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.data.LinkedDevice;
 import com.bigboxer23.solar_moon.util.TimeConstants;
-import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.client.ResponseException;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import software.amazon.awssdk.utils.StringUtils;
 
 /** */
@@ -59,23 +53,24 @@ public class ObviusIngestComponent implements MeterConstants {
 			log.error("no body, not doing anything.");
 			return null;
 		}
-		if (isLinkedDevice(body)) {
-			handleLinkedBody(body, customerId);
+		ObviusEnvelope envelope = ObviusEnvelope.parse(body);
+		if (isLinkedDevice(envelope)) {
+			handleLinkedBody(envelope, customerId);
 			return null;
 		}
-		Device device =
-				IComponentRegistry.generationComponent.findDeviceFromDeviceName(customerId, findDeviceName(body));
+		Device device = IComponentRegistry.generationComponent.findDeviceFromDeviceName(
+				customerId, envelope.getDeviceName());
 		if (device == null) {
-			log.error("error getting device for device name " + findDeviceName(body));
+			log.error("error getting device for device name " + envelope.getDeviceName());
 			return null;
 		}
-		handleSerialNumber(device, body);
+		handleSerialNumber(device, envelope);
 		log.debug("parsing device body: " + body);
 		return IComponentRegistry.generationComponent.handleDevice(
 				device,
 				Optional.of(device)
 						.map(server -> parseDeviceInformation(
-								body, server.getSiteId(), server.getDisplayName(), customerId, server.getId()))
+								envelope, server.getSiteId(), server.getDisplayName(), customerId, server.getId()))
 						.filter(DeviceData::isValid)
 						.orElse(null));
 	}
@@ -85,7 +80,15 @@ public class ObviusIngestComponent implements MeterConstants {
 			log.debug("not handling serial number, bad body, device or already exists on device");
 			return;
 		}
-		findSerialNumber(body).ifPresent(serialNumber -> {
+		handleSerialNumber(device, parse(body));
+	}
+
+	public void handleSerialNumber(Device device, ObviusEnvelope envelope) {
+		if (device == null || envelope == null || StringUtils.isNotBlank(device.getSerialNumber())) {
+			log.debug("not handling serial number, bad body, device or already exists on device");
+			return;
+		}
+		findSerialNumber(envelope).ifPresent(serialNumber -> {
 			log.info("adding serial number " + device.getSerialNumber());
 			device.setSerialNumber(serialNumber);
 			IComponentRegistry.deviceComponent.updateDevice(device);
@@ -93,26 +96,21 @@ public class ObviusIngestComponent implements MeterConstants {
 	}
 
 	protected Optional<String> findSerialNumber(String body) throws XPathExpressionException {
-		return getNodeListForPath(body, SERIAL_PATH).map(nodes -> {
-			if (nodes.getLength() > 0 && StringUtils.isNotBlank(nodes.item(0).getTextContent())) {
-				return nodes.item(0).getTextContent();
-			}
-			return null;
-		});
+		return findSerialNumber(parse(body));
+	}
+
+	protected Optional<String> findSerialNumber(ObviusEnvelope envelope) {
+		return Optional.ofNullable(envelope.getSerialNumber()).filter(StringUtils::isNotBlank);
 	}
 
 	public boolean isLinkedDevice(String body) throws XPathExpressionException {
-		Boolean[] isLinkedDevice = {false};
-		getNodeListForPath(body, POINT_PATH).ifPresent(nodes -> {
-			for (int i = 0; !isLinkedDevice[0] && i < nodes.getLength(); i++) {
-				String attributeName =
-						nodes.item(i).getAttributes().getNamedItem("name").getNodeValue();
-				if (CRITICAL_ALARMS.equals(attributeName) || INFORMATIVE_ALARMS.equals(attributeName)) {
-					isLinkedDevice[0] = true;
-				}
-			}
-		});
-		return isLinkedDevice[0];
+		return isLinkedDevice(parse(body));
+	}
+
+	public boolean isLinkedDevice(ObviusEnvelope envelope) {
+		return envelope.getPoints().stream()
+				.map(ObviusEnvelope.Point::getName)
+				.anyMatch(name -> CRITICAL_ALARMS.equals(name) || INFORMATIVE_ALARMS.equals(name));
 	}
 
 	public void handleLinkedBody(String body, String customerId) throws XPathExpressionException {
@@ -120,49 +118,46 @@ public class ObviusIngestComponent implements MeterConstants {
 			log.error("Customer id or body is invalid, cannot handle linked body");
 			return;
 		}
-		Optional<String> serial = findSerialNumber(body);
+		handleLinkedBody(parse(body), customerId);
+	}
+
+	public void handleLinkedBody(ObviusEnvelope envelope, String customerId) {
+		if (envelope == null || StringUtils.isBlank(customerId)) {
+			log.error("Customer id or body is invalid, cannot handle linked body");
+			return;
+		}
+		Optional<String> serial = findSerialNumber(envelope);
 		if (serial.isEmpty()) {
 			log.error("Can't find serial number, cannot handle linked body");
 			return;
 		}
 		log.info("handling linked device " + serial.get());
 		LinkedDevice linkedDevice = new LinkedDevice(serial.get(), customerId);
-		getTimestampFromBody(body).map(Date::getTime).ifPresent(linkedDevice::setDate);
+		getTimestampFromBody(envelope).map(Date::getTime).ifPresent(linkedDevice::setDate);
 		if (linkedDevice.getDate() <= 0) {
 			log.error(linkedDevice.getId() + " Can't find date, cannot handle linked body");
 			return;
 		}
-		getNodeListForPath(body, POINT_PATH).ifPresent(nodes -> {
-			for (int i = 0;
-					(linkedDevice.getCriticalAlarm() == -1 || linkedDevice.getInformativeAlarm() == -1)
-							&& i < nodes.getLength();
-					i++) {
-				String attributeName =
-						nodes.item(i).getAttributes().getNamedItem("name").getNodeValue();
-				if (CRITICAL_ALARMS.equals(attributeName)) {
-					linkedDevice.setCriticalAlarm(SolectriaErrorOracle.rawErrorToCode(
-							nodes.item(i).getAttributes().getNamedItem("value").getNodeValue()));
-				}
-				if (INFORMATIVE_ALARMS.equals(attributeName)) {
-					linkedDevice.setInformativeAlarm(SolectriaErrorOracle.rawErrorToCode(
-							nodes.item(i).getAttributes().getNamedItem("value").getNodeValue()));
-				}
+		for (ObviusEnvelope.Point point : envelope.getPoints()) {
+			if (linkedDevice.getCriticalAlarm() != -1 && linkedDevice.getInformativeAlarm() != -1) {
+				break;
 			}
-		});
+			if (CRITICAL_ALARMS.equals(point.getName())) {
+				linkedDevice.setCriticalAlarm(SolectriaErrorOracle.rawErrorToCode(point.getValue()));
+			}
+			if (INFORMATIVE_ALARMS.equals(point.getName())) {
+				linkedDevice.setInformativeAlarm(SolectriaErrorOracle.rawErrorToCode(point.getValue()));
+			}
+		}
 		IComponentRegistry.linkedDeviceComponent.update(linkedDevice);
 	}
 
 	public boolean isUpdateEvent(String body) throws XPathExpressionException {
-		return getNodeListForPath(body, MODE_PATH)
-				.map(nodes ->
-						nodes.getLength() > 0 && FILE_DATA.equals(nodes.item(0).getTextContent()))
-				.orElse(false);
+		return FILE_DATA.equals(parse(body).getMode());
 	}
 
 	public String findDeviceName(String body) throws XPathExpressionException {
-		return getNodeListForPath(body, DEVICE_NAME_PATH)
-				.map(nodes -> nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null)
-				.orElse(null);
+		return parse(body).getDeviceName();
 	}
 
 	public boolean isOK(String body) {
@@ -171,30 +166,27 @@ public class ObviusIngestComponent implements MeterConstants {
 				.orElse(false);
 	}
 
-	private Optional<NodeList> getNodeListForPath(String body, String path) throws XPathExpressionException {
+	public boolean isOK(ObviusEnvelope envelope) {
+		return Optional.ofNullable(envelope.getError())
+				.map("Ok errorCode:0"::equalsIgnoreCase)
+				.orElse(false);
+	}
+
+	/**
+	 * Parse the body into an envelope. Blank bodies produce an empty envelope, matching the old
+	 * behavior of returning no nodes for any path
+	 */
+	private ObviusEnvelope parse(String body) throws XPathExpressionException {
 		if (StringUtils.isBlank(body)) {
 			log.error("no body, not doing anything.");
-			return Optional.empty();
+			return new ObviusEnvelope();
 		}
-		return Optional.ofNullable((NodeList) XPathFactory.newInstance()
-				.newXPath()
-				.compile(path)
-				.evaluate(new InputSource(new StringReader(body)), XPathConstants.NODESET));
+		return ObviusEnvelope.parse(body);
 	}
 
 	public String findError(String body) {
 		try {
-			return getNodeListForPath(body, ERROR_PATH)
-					.map(nodes -> {
-						if (nodes.getLength() < 1) {
-							return null;
-						}
-						Node errorNode = nodes.item(0);
-						return errorNode.getAttributes().getNamedItem("text").getTextContent()
-								+ " errorCode:"
-								+ errorNode.getTextContent();
-					})
-					.orElse(null);
+			return parse(body).getError();
 		} catch (XPathExpressionException e) {
 			log.warn("findError", e);
 		}
@@ -205,77 +197,74 @@ public class ObviusIngestComponent implements MeterConstants {
 			String body, String siteId, String name, String customerId, String deviceId) {
 		try {
 			log.debug("parsing device info " + siteId + ":" + name + "\n" + body);
-			if (!isOK(body)) {
-				IComponentRegistry.alarmComponent.faultDetected(customerId, deviceId, siteId, findError(body));
-				return getTimestampFromBody(body)
-						.map(date -> {
-							DeviceData deviceData = DeviceData.createEmpty(siteId, customerId, deviceId, date);
-							deviceData.setTotalEnergyConsumed(IComponentRegistry.OSComponent.getMaxTotalEnergyConsumed(
-									customerId, deviceId, 7 * TimeConstants.DAY));
-							return deviceData;
-						})
-						.orElse(null);
-			}
-			DeviceData deviceData = new DeviceData(siteId, customerId, deviceId);
-			getNodeListForPath(body, POINT_PATH).ifPresent(nodes -> {
-				Map<String, String> mappingFields = new HashMap<>(fields);
-				IComponentRegistry.mappingComponent
-						.getMappings(customerId)
-						.forEach(a -> mappingFields.put(a.getMappingName(), a.getAttribute()));
-				for (int i = 0; i < nodes.getLength(); i++) {
-					String attributeName =
-							nodes.item(i).getAttributes().getNamedItem("name").getNodeValue();
-					if (mappingFields.containsKey(attributeName)) {
-						try {
-							float value = Float.parseFloat(nodes.item(i)
-									.getAttributes()
-									.getNamedItem("value")
-									.getNodeValue());
-							deviceData.addAttribute(mappingFields.get(attributeName), value);
-						} catch (NumberFormatException nfe) {
-							log.warn("bad value retrieved from xml " + attributeName + "\n" + body, nfe);
-							String value = nodes.item(i)
-									.getAttributes()
-									.getNamedItem("value")
-									.getNodeValue();
-							if (StringUtils.isEmpty(value) || "NULL".equalsIgnoreCase(value)) {
-								IComponentRegistry.alarmComponent.faultDetected(
-										customerId, deviceData.getDeviceId(), deviceData.getSiteId(), findError(body));
-							}
-						}
-					}
-				}
-			});
-			calculateTotalRealPower(deviceData);
-			getTimestampFromBody(body).ifPresent(deviceData::setDate);
-			return deviceData;
+			return parseDeviceInformation(parse(body), siteId, name, customerId, deviceId);
 		} catch (XPathExpressionException e) {
 			log.error("parseDeviceInformation", e);
 		}
 		return null;
 	}
 
-	protected Optional<Date> getTimestampFromBody(String body) throws XPathExpressionException {
-		return getNodeListForPath(body, DATE_PATH).map(nodes -> {
-			if (nodes.getLength() > 0) {
-				Node timeNode = nodes.item(0);
-				if (timeNode.getTextContent() == null
-						|| "NULL".equals(timeNode.getTextContent())
-						|| timeNode.getTextContent().isEmpty()
-						|| timeNode.getAttributes().getNamedItem(ZONE) == null) {
-					return null;
+	protected DeviceData parseDeviceInformation(
+			ObviusEnvelope envelope, String siteId, String name, String customerId, String deviceId) {
+		if (!isOK(envelope)) {
+			IComponentRegistry.alarmComponent.faultDetected(customerId, deviceId, siteId, envelope.getError());
+			return getTimestampFromBody(envelope)
+					.map(date -> {
+						DeviceData deviceData = DeviceData.createEmpty(siteId, customerId, deviceId, date);
+						deviceData.setTotalEnergyConsumed(IComponentRegistry.OSComponent.getMaxTotalEnergyConsumed(
+								customerId, deviceId, 7 * TimeConstants.DAY));
+						return deviceData;
+					})
+					.orElse(null);
+		}
+		DeviceData deviceData = new DeviceData(siteId, customerId, deviceId);
+		if (!envelope.getPoints().isEmpty()) {
+			Map<String, String> mappingFields = new HashMap<>(fields);
+			IComponentRegistry.mappingComponent
+					.getMappings(customerId)
+					.forEach(a -> mappingFields.put(a.getMappingName(), a.getAttribute()));
+			for (ObviusEnvelope.Point point : envelope.getPoints()) {
+				if (point.getName() == null || !mappingFields.containsKey(point.getName())) {
+					continue;
+				}
+				if (point.getValue() == null) {
+					log.warn("missing value retrieved from xml " + point.getName());
+					IComponentRegistry.alarmComponent.faultDetected(
+							customerId, deviceData.getDeviceId(), deviceData.getSiteId(), envelope.getError());
+					continue;
 				}
-				SimpleDateFormat sdf = new SimpleDateFormat(DATE_PATTERN);
 				try {
-					return sdf.parse(timeNode.getTextContent()
-							+ " "
-							+ timeNode.getAttributes().getNamedItem(ZONE).getNodeValue());
-				} catch (ParseException e) {
-					log.warn("cannot parse date string: " + body, e);
+					deviceData.addAttribute(mappingFields.get(point.getName()), Float.parseFloat(point.getValue()));
+				} catch (NumberFormatException e) {
+					log.warn("bad value retrieved from xml " + point.getName() + ":" + point.getValue(), e);
+					if (StringUtils.isEmpty(point.getValue()) || "NULL".equalsIgnoreCase(point.getValue())) {
+						IComponentRegistry.alarmComponent.faultDetected(
+								customerId, deviceData.getDeviceId(), deviceData.getSiteId(), envelope.getError());
+					}
 				}
 			}
-			return null;
-		});
+		}
+		calculateTotalRealPower(deviceData);
+		getTimestampFromBody(envelope).ifPresent(deviceData::setDate);
+		return deviceData;
+	}
+
+	protected Optional<Date> getTimestampFromBody(String body) throws XPathExpressionException {
+		return getTimestampFromBody(parse(body));
+	}
+
+	protected Optional<Date> getTimestampFromBody(ObviusEnvelope envelope) {
+		String time = envelope.getTime();
+		if (time == null || "NULL".equals(time) || time.isEmpty() || envelope.getTimeZone() == null) {
+			return Optional.empty();
+		}
+		SimpleDateFormat sdf = new SimpleDateFormat(DATE_PATTERN);
+		try {
+			return Optional.of(sdf.parse(time + " " + envelope.getTimeZone()));
+		} catch (ParseException e) {
+			log.warn("cannot parse date string: " + time + " " + envelope.getTimeZone(), e);
+		}
+		return Optional.empty();
 	}
 
 	private void calculateTotalRealPower(DeviceData deviceData) {
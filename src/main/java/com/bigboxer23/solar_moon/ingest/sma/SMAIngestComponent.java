@@ -7,25 +7,23 @@ import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
+import com.bigboxer23.solar_moon.ingest.IngestItem;
 import com.bigboxer23.solar_moon.util.TimeConstants;
 import com.bigboxer23.solar_moon.util.TimeUtils;
 import com.bigboxer23.solar_moon.util.XMLUtil;
+import com.bigboxer23.solar_moon.util.XPathRegistry;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
 import com.bigboxer23.utils.properties.PropertyUtils;
-import java.io.StringReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.client.ResponseException;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -68,44 +66,42 @@ public class SMAIngestComponent implements ISMAIngestConstants {
 			log.error("no xml body, not doing anything.");
 			return;
 		}
-		NodeList nodelist = (NodeList) XPathFactory.newInstance()
-				.newXPath()
-				.compile(CURRENT_PUBLIC)
-				.evaluate(new InputSource(new StringReader(xml)), XPathConstants.NODESET);
+		Document document = XPathRegistry.parse(xml);
 		Map<String, SMADevice> devices = new HashMap<>();
-		XMLUtil.iterableNodeList(nodelist).forEach(node -> {
-			SMARecord record = processChildNode(node);
-			devices.computeIfAbsent(record.getDevice(), k -> new SMADevice(customerId))
-					.addRecord(record);
-		});
-		nodelist = (NodeList) XPathFactory.newInstance()
-				.newXPath()
-				.compile(MEAN_PUBLIC)
-				.evaluate(new InputSource(new StringReader(xml)), XPathConstants.NODESET);
-		XMLUtil.iterableNodeList(nodelist).forEach(node -> {
-			SMARecord record = processChildNode(node);
-			devices.computeIfAbsent(record.getDevice(), k -> new SMADevice(customerId))
-					.addRecord(record);
-		});
+		for (String path : new String[] {CURRENT_PUBLIC, MEAN_PUBLIC}) {
+			XMLUtil.iterableNodeList(XPathRegistry.getNodeList(document, path)).forEach(node -> {
+				SMARecord record = processChildNode(node);
+				devices.computeIfAbsent(record.getDevice(), k -> new SMADevice(customerId))
+						.addRecord(record);
+			});
+		}
 		maybeAssignSite(customerId, devices);
 		addMissingDevices(customerId, devices);
 		checkForNewDevicesAndAssignSite(devices);
+		List<IngestItem> items = new ArrayList<>();
 		devices.forEach((key, smaDevice) -> {
 			if (smaDevice.getDevice() == null) {
 				TransactionUtil.addDeviceId(null, null);
 				log.warn("No device for " + smaDevice.getDeviceName() + ", not doing anything.");
 				return;
 			}
-			try {
-				TransactionUtil.addDeviceId(
-						smaDevice.getDevice().getId(), smaDevice.getDevice().getSiteId());
-				DeviceData data = IComponentRegistry.generationComponent.handleDevice(
-						smaDevice.getDevice(), translateToDeviceData(smaDevice));
-				log.info("successfully uploaded data: " + data.getDate());
-			} catch (ResponseException e) {
-				log.error("ingestXMLFile", e);
-			}
+			items.add(new IngestItem(smaDevice.getDevice(), translateToDeviceData(smaDevice)));
 		});
+		if (items.isEmpty()) {
+			return;
+		}
+		try {
+			IComponentRegistry.generationComponent.handleDevices(items).forEach(item -> {
+				TransactionUtil.addDeviceId(item.getDevice().getId(), item.getDevice().getSiteId());
+				if (item.isSuccess()) {
+					log.info("successfully uploaded data: " + item.getDeviceData().getDate());
+				} else {
+					log.warn("failed to upload data: " + item.getError());
+				}
+			});
+		} catch (ResponseException e) {
+			log.error("ingestXMLFile", e);
+		}
 	}
 
 	private void maybeAssignSite(String customerId, Map<String, SMADevice> devices) {
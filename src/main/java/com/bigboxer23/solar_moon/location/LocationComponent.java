@@ -4,9 +4,13 @@ import static com.bigboxer23.solar_moon.util.PropertyConstants.AWS_LOCATION_INDE
 
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
-import com.bigboxer23.solar_moon.util.TimezoneMapper;
+import com.bigboxer23.solar_moon.util.TimezoneGrid;
 import com.bigboxer23.utils.properties.PropertyUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
@@ -22,6 +26,37 @@ import software.amazon.awssdk.services.location.model.SearchPlaceIndexForTextRes
 /** */
 @Slf4j
 public class LocationComponent {
+	/** Enough for a week of local days for a few thousand sites */
+	public static final int DEFAULT_MAX_SIZE = 25000;
+
+	/** Days ahead {@link #precomputeSunTimes(Collection, int)} is typically asked to fill */
+	public static final int PRECOMPUTE_DAYS = 2;
+
+	/** Sunrise and sunset for a local date, epoch millis */
+	record SunTimes(long sunrise, long sunset) {
+		boolean isDay(long time) {
+			return sunrise <= time && time < sunset;
+		}
+	}
+
+	private record Coordinate(double latitude, double longitude) {}
+
+	private record SunKey(double latitude, double longitude, LocalDate date) {}
+
+	private final Cache<Coordinate, ZoneId> zones;
+
+	private final Cache<SunKey, Optional<SunTimes>> sunTimes;
+
+	public LocationComponent() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/** @param maxSize most location/date sunrise and sunset pairs (and location timezones) kept */
+	public LocationComponent(int maxSize) {
+		zones = Caffeine.newBuilder().maximumSize(maxSize).build();
+		sunTimes = Caffeine.newBuilder().maximumSize(maxSize).recordStats().build();
+	}
+
 	public Optional<SearchForTextResult> getLatLongFromText(String city, String state, String country) {
 		String locationString = city + ", " + state + ", " + country;
 		log.info("fetching location data for " + locationString);
@@ -59,24 +94,67 @@ public class LocationComponent {
 		isDay(data.getDate(), site.getLatitude(), site.getLongitude()).ifPresent(data::setDaylight);
 	}
 
+	/**
+	 * Whether the sun is up at the location. Sunrise and sunset are memoized per location and local
+	 * date, so once a day is known this is just two comparisons.
+	 */
 	public Optional<Boolean> isDay(Date dateToCheck, double latitude, double longitude) {
 		if (!isValidLatLong(latitude, longitude)) {
 			return Optional.empty();
 		}
-		SolarTime location = SolarTime.ofLocation(latitude, longitude);
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(dateToCheck);
-		getLocalTimeZone(latitude, longitude).ifPresent(tz -> calendar.setTimeZone(TimeZone.getTimeZone(tz)));
+		long time = dateToCheck.getTime();
+		LocalDate date = Instant.ofEpochMilli(time).atZone(getZone(latitude, longitude)).toLocalDate();
+		return getSunTimes(latitude, longitude, date).map(sunTimes -> sunTimes.isDay(time));
+	}
+
+	/**
+	 * Fill the sunrise/sunset memo for each site's next few local days, so ingest for those days never
+	 * computes them
+	 */
+	public void precomputeSunTimes(Collection<Device> sites, int days) {
+		sites.stream()
+				.filter(site -> isValidLatLong(site.getLatitude(), site.getLongitude()))
+				.forEach(site -> {
+					LocalDate today = LocalDate.now(getZone(site.getLatitude(), site.getLongitude()));
+					for (int i = 0; i < days; i++) {
+						getSunTimes(site.getLatitude(), site.getLongitude(), today.plusDays(i));
+					}
+				});
+	}
+
+	/** Hit/miss counts of the sunrise/sunset memo */
+	public CacheStats getSunTimesStats() {
+		return sunTimes.stats();
+	}
+
+	Optional<SunTimes> getSunTimes(double latitude, double longitude, LocalDate date) {
+		return sunTimes.get(new SunKey(latitude, longitude, date), LocationComponent::computeSunTimes);
+	}
+
+	/** The location's timezone, or the system's if it's unknown */
+	private ZoneId getZone(double latitude, double longitude) {
+		return zones.get(new Coordinate(latitude, longitude), coordinate -> getLocalTimeZone(latitude, longitude)
+				.map(ZoneId::of)
+				.orElse(ZoneId.systemDefault()));
+	}
+
+	private static Optional<SunTimes> computeSunTimes(SunKey key) {
+		SolarTime location = SolarTime.ofLocation(key.latitude(), key.longitude());
 		PlainDate plainDate = PlainDate.of(
-				calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DATE));
+				key.date().getYear(), key.date().getMonthValue(), key.date().getDayOfMonth());
 		Optional<Moment> sunrise = plainDate.get(location.sunrise());
 		Optional<Moment> sunset = plainDate.get(location.sunset());
 		if (sunrise.isEmpty() || sunset.isEmpty()) {
 			log.warn("Cannot find sunrise or sunset" + sunrise.isEmpty() + " " + sunset.isEmpty());
 			return Optional.empty();
 		}
-		return Optional.of(sunrise.get().compareTo(Moment.from(dateToCheck.toInstant())) <= 0
-				&& sunset.get().compareTo(Moment.from(dateToCheck.toInstant())) > 0);
+		return Optional.of(new SunTimes(toMillis(sunrise.get()), toMillis(sunset.get())));
+	}
+
+	/** Rounded up, so comparing whole milliseconds gives the same answer as comparing the moments */
+	private static long toMillis(Moment moment) {
+		Instant instant = moment.toTemporalAccessor();
+		return instant.toEpochMilli() + (instant.getNano() % 1_000_000 == 0 ? 0 : 1);
 	}
 
 	public Optional<LocalDateTime> getLocalTimeString(double latitude, double longitude) {
@@ -92,7 +170,7 @@ public class LocationComponent {
 		if (!isValidLatLong(latitude, longitude)) {
 			return Optional.empty();
 		}
-		String TZString = TimezoneMapper.latLngToTimezoneString(latitude, longitude);
+		String TZString = TimezoneGrid.latLngToTimezoneString(latitude, longitude);
 		if (TZString.equalsIgnoreCase("unknown")) {
 			log.info("unknown timezone: " + latitude + "," + longitude);
 			return Optional.empty();
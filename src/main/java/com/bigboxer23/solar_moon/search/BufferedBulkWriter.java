@@ -0,0 +1,356 @@
+package com.bigboxer23.solar_moon.search;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+
+/**
+ * Buffers device data and writes it to OpenSearch in bulk. A write is triggered when the buffer reaches
+ * maxDocuments or maxBytes, or when the oldest buffered document has waited maxLatency. Callers block
+ * in {@link #add(DeviceData)} once queueCapacity documents are waiting, until a write makes room.
+ * Items rejected with a retryable status, and whole requests failing with one (or failing to reach
+ * the cluster), are sent again, up to maxRetries times. A document whose rollup update fails is
+ * retried the same way, resending is safe as both its index operation and its rollups are idempotent.
+ *
+ * <p>{@link #flush()} must be called before a lambda invocation completes, background threads are
+ * frozen between invocations.
+ */
+@Slf4j
+public class BufferedBulkWriter implements OpenSearchConstants, AutoCloseable {
+	public static final int DEFAULT_MAX_DOCUMENTS = 500;
+
+	public static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024;
+
+	public static final long DEFAULT_MAX_LATENCY = TimeConstants.SECOND * 5;
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 5000;
+
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+
+	/** Serialized size of a document's field names, numbers, flags and timestamp, rounded up */
+	static final long FIXED_DOCUMENT_BYTES = 768;
+
+	private final Supplier<OpenSearchClient> client;
+
+	private final int maxDocuments;
+
+	private final long maxBytes;
+
+	private final long maxLatency;
+
+	private final int maxRetries;
+
+	private final BlockingQueue<Pending> queue;
+
+	/** Only accessed while holding flushLock */
+	private final Deque<Pending> retries = new ArrayDeque<>();
+
+	private final List<DeviceData> failed = Collections.synchronizedList(new ArrayList<>());
+
+	private final List<DeviceData> written = Collections.synchronizedList(new ArrayList<>());
+
+	private final AtomicLong bufferedBytes = new AtomicLong();
+
+	/** Set while a triggered write is waiting to run, so adds past the threshold don't each queue one */
+	private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final ScheduledExecutorService scheduler;
+
+	private Function<List<DeviceData>, List<RollupQueries.Update>> rollups = data -> Collections.emptyList();
+
+	public BufferedBulkWriter(Supplier<OpenSearchClient> client) {
+		this(
+				client,
+				DEFAULT_MAX_DOCUMENTS,
+				DEFAULT_MAX_BYTES,
+				DEFAULT_MAX_LATENCY,
+				DEFAULT_QUEUE_CAPACITY,
+				DEFAULT_MAX_RETRIES);
+	}
+
+	public BufferedBulkWriter(
+			Supplier<OpenSearchClient> client,
+			int maxDocuments,
+			long maxBytes,
+			long maxLatency,
+			int queueCapacity,
+			int maxRetries) {
+		if (maxDocuments <= 0 || maxBytes <= 0 || maxLatency <= 0 || queueCapacity <= 0 || maxRetries < 0) {
+			throw new IllegalArgumentException("invalid bulk writer limits " + maxDocuments + " " + maxBytes
+					+ " " + maxLatency + " " + queueCapacity + " " + maxRetries);
+		}
+		this.client = client;
+		this.maxDocuments = maxDocuments;
+		this.maxBytes = maxBytes;
+		this.maxLatency = maxLatency;
+		this.maxRetries = maxRetries;
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "opensearch-bulk-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(
+				this::flushIfDue, maxLatency, Math.max(maxLatency / 2, 1), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Buffer data to be written, blocks if the buffer is full until a write makes room
+	 *
+	 * @param data
+	 * @throws InterruptedException
+	 */
+	public void add(DeviceData data) throws InterruptedException {
+		data.setDate(data.getDate() == null ? new Date() : data.getDate());
+		Pending pending = new Pending(data, estimateBytes(data), System.currentTimeMillis(), 0);
+		if (!queue.offer(pending)) {
+			// full before reaching a write threshold (queueCapacity below maxDocuments)
+			scheduleWrite();
+			queue.put(pending);
+		}
+		bufferedBytes.addAndGet(pending.getBytes());
+		if (isWriteDue()) {
+			scheduleWrite();
+		}
+	}
+
+	/**
+	 * Write everything buffered, blocking until all documents are written or have exhausted their
+	 * retries
+	 *
+	 * @return documents which could not be written, or whose rollups could not be updated, since the
+	 *     last flush
+	 */
+	public List<DeviceData> flush() {
+		flushLock.lock();
+		try {
+			while (!queue.isEmpty() || !retries.isEmpty()) {
+				write();
+			}
+		} finally {
+			flushLock.unlock();
+		}
+		synchronized (failed) {
+			List<DeviceData> failures = new ArrayList<>(failed);
+			failed.clear();
+			return failures;
+		}
+	}
+
+	/**
+	 * Documents written since the last call, including those written in the background. Callers must
+	 * drain this regularly (e.g. after each {@link #flush()}) as it isn't bounded.
+	 */
+	public List<DeviceData> drainWritten() {
+		synchronized (written) {
+			List<DeviceData> drained = new ArrayList<>(written);
+			written.clear();
+			return drained;
+		}
+	}
+
+	/**
+	 * Rollup updates to send in the same bulk request as each batch of documents, after the
+	 * documents' own index operations. They must be safe to repeat as retried documents produce them
+	 * again.
+	 */
+	public BufferedBulkWriter withRollups(Function<List<DeviceData>, List<RollupQueries.Update>> rollups) {
+		this.rollups = rollups;
+		return this;
+	}
+
+	public int size() {
+		return queue.size() + retries.size();
+	}
+
+	@Override
+	public void close() {
+		flush();
+		scheduler.shutdown();
+	}
+
+	private void flushIfDue() {
+		Pending oldest = queue.peek();
+		if (oldest != null && oldest.getQueued() <= System.currentTimeMillis() - maxLatency) {
+			writeQuietly();
+		}
+	}
+
+	private boolean isWriteDue() {
+		return bufferedBytes.get() >= maxBytes || queue.size() >= maxDocuments;
+	}
+
+	/** Run a write on the writer's thread, unless one is already waiting to */
+	private void scheduleWrite() {
+		if (!writeScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		scheduler.execute(() -> {
+			writeScheduled.set(false);
+			if (writeQuietly() && isWriteDue()) {
+				scheduleWrite();
+			}
+		});
+	}
+
+	/** @return false if another write was in progress */
+	private boolean writeQuietly() {
+		if (!flushLock.tryLock()) {
+			return false;
+		}
+		try {
+			write();
+		} catch (RuntimeException e) {
+			log.error("writeQuietly", e);
+		} finally {
+			flushLock.unlock();
+		}
+		return true;
+	}
+
+	/** Write a single bulk request worth of documents, retries are sent first */
+	private void write() {
+		List<Pending> batch = new ArrayList<>();
+		long batchBytes = 0;
+		while (batch.size() < maxDocuments && !retries.isEmpty()) {
+			Pending pending = retries.poll();
+			batchBytes += pending.getBytes();
+			batch.add(pending);
+		}
+		while (batch.size() < maxDocuments && (batch.isEmpty() || batchBytes < maxBytes)) {
+			Pending pending = queue.poll();
+			if (pending == null) {
+				break;
+			}
+			bufferedBytes.addAndGet(-pending.getBytes());
+			batchBytes += pending.getBytes();
+			batch.add(pending);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		backoff(batch);
+		BulkRequest.Builder bulkRequest = new BulkRequest.Builder().index(INDEX_NAME);
+		batch.forEach(pending -> bulkRequest.operations(OpenSearchComponent.getIndexOperation(pending.getData())));
+		List<RollupQueries.Update> updates =
+				rollups.apply(batch.stream().map(Pending::getData).toList());
+		updates.forEach(update -> bulkRequest.operations(update.operation()));
+		log.debug("writing " + batch.size() + " buffered documents");
+		try {
+			BulkResponse response = client.get().bulk(bulkRequest.build());
+			if (!response.errors()) {
+				batch.forEach(pending -> written.add(pending.getData()));
+				return;
+			}
+			// items are returned in request order, documents first then their rollups
+			List<BulkResponseItem> items = response.items();
+			Set<Pending> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (int i = 0; i < batch.size() && i < items.size(); i++) {
+				BulkResponseItem item = items.get(i);
+				if (item.error() != null) {
+					handled.add(batch.get(i));
+					retryOrFail(batch.get(i), RETRYABLE_STATUS.contains(item.status()), item.error().reason());
+				}
+			}
+			Map<DeviceData, Pending> byData = new IdentityHashMap<>();
+			batch.forEach(pending -> byData.put(pending.getData(), pending));
+			for (int i = batch.size(); i < items.size() && i - batch.size() < updates.size(); i++) {
+				BulkResponseItem item = items.get(i);
+				if (item.error() == null) {
+					continue;
+				}
+				log.warn("rollup error:" + item.error().reason() + " " + item.id());
+				for (DeviceData reading : updates.get(i - batch.size()).readings()) {
+					Pending pending = byData.get(reading);
+					if (pending != null && handled.add(pending)) {
+						retryOrFail(pending, RETRYABLE_STATUS.contains(item.status()), item.error().reason());
+					}
+				}
+			}
+			batch.stream()
+					.filter(pending -> !handled.contains(pending))
+					.forEach(pending -> written.add(pending.getData()));
+		} catch (OpenSearchException e) {
+			// the cluster rejected the whole request
+			log.error("write", e);
+			batch.forEach(pending -> retryOrFail(pending, RETRYABLE_STATUS.contains(e.status()), e.getMessage()));
+		} catch (IOException | RuntimeException e) {
+			// connection failures and timeouts, the request may not have reached the cluster
+			log.error("write", e);
+			batch.forEach(pending -> retryOrFail(pending, true, e.getMessage()));
+		}
+	}
+
+	private void retryOrFail(Pending pending, boolean retryable, String reason) {
+		if (retryable && pending.getAttempts() < maxRetries) {
+			retries.add(new Pending(
+					pending.getData(), pending.getBytes(), pending.getQueued(), pending.getAttempts() + 1));
+			return;
+		}
+		log.warn("error:" + reason + " " + pending.getData().getDeviceId());
+		failed.add(pending.getData());
+	}
+
+	/** Retried documents wait a little longer each attempt so a rejecting cluster can recover */
+	private void backoff(List<Pending> batch) {
+		int attempts = batch.stream().mapToInt(Pending::getAttempts).max().orElse(0);
+		if (attempts == 0) {
+			return;
+		}
+		try {
+			Thread.sleep(100L * attempts);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Approximate serialized size, the fixed fields plus the variable length strings. Only compared
+	 * against maxBytes, so it isn't worth serializing each document twice to get it exactly
+	 */
+	static long estimateBytes(DeviceData data) {
+		return FIXED_DOCUMENT_BYTES
+				+ length(data.getSiteId())
+				+ length(data.getCustomerId())
+				+ length(data.getDeviceId())
+				+ length(data.getWeatherSummary())
+				+ length(data.getIcon())
+				+ length(data.getCriticalErrorString())
+				+ length(data.getInformationalErrorString());
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	@Data
+	@AllArgsConstructor
+	private static class Pending {
+		private DeviceData data;
+
+		private long bytes;
+
+		private long queued;
+
+		private int attempts;
+	}
+}
@@ -0,0 +1,264 @@
+package com.bigboxer23.solar_moon.search;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import software.amazon.awssdk.utils.StringUtils;
+
+/**
+ * Caches search responses so dashboards re-issuing the same search don't each go to OpenSearch.
+ * Only searches whose range starts and ends on bucket boundaries are cached, keyed by a normalized
+ * copy of the {@link SearchJSON}, and the caller's search is always sent as is. Ranges reaching the
+ * last hour are cached briefly, older ranges longer. Writes through this component drop cached
+ * responses which could include the written data, found through an index of cached keys by the
+ * customer, site and device they search. Writes from other processes are only picked up as entries
+ * expire.
+ */
+public class CachingOpenSearchComponent extends OpenSearchComponent {
+	public static final int DEFAULT_MAX_SIZE = 2000;
+
+	public static final Duration DEFAULT_LIVE_TTL = Duration.ofSeconds(30);
+
+	public static final Duration DEFAULT_HISTORICAL_TTL = Duration.ofMinutes(15);
+
+	/** Ranges ending within this long of now may still get (late) data */
+	private static final long LIVE_WINDOW = TimeConstants.HOUR;
+
+	private final Cache<SearchJSON, SearchResponse<DeviceData>> searchCache;
+
+	/** Cached keys by what they search, so a write only checks the keys it could affect */
+	private final Map<Scope, Set<SearchJSON>> keysByScope = new ConcurrentHashMap<>();
+
+	public CachingOpenSearchComponent() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_LIVE_TTL, DEFAULT_HISTORICAL_TTL);
+	}
+
+	public CachingOpenSearchComponent(int maxSize, Duration liveTtl, Duration historicalTtl) {
+		searchCache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfter(Expiry.<SearchJSON, SearchResponse<DeviceData>>writing((key, response) ->
+						isLive(key, System.currentTimeMillis()) ? liveTtl : historicalTtl))
+				.<SearchJSON, SearchResponse<DeviceData>>evictionListener((key, response, cause) -> unindex(key))
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public SearchResponse<DeviceData> search(SearchJSON searchJSON) {
+		Optional<SearchJSON> key = getCacheKey(searchJSON);
+		if (key.isEmpty()) {
+			return super.search(searchJSON);
+		}
+		SearchResponse<DeviceData> response = searchCache.get(key.get(), k -> super.search(searchJSON));
+		if (response != null) {
+			index(key.get());
+		}
+		return response;
+	}
+
+	@Override
+	public List<SearchResponse<DeviceData>> multiSearch(List<SearchJSON> searchJSONs) {
+		List<SearchResponse<DeviceData>> responses = new ArrayList<>(Collections.nCopies(searchJSONs.size(), null));
+		List<Integer> uncached = new ArrayList<>();
+		Map<Integer, SearchJSON> keys = new LinkedHashMap<>();
+		Map<SearchJSON, SearchJSON> searchesByKey = new HashMap<>();
+		for (int i = 0; i < searchJSONs.size(); i++) {
+			SearchJSON searchJSON = searchJSONs.get(i);
+			Optional<SearchJSON> key = getCacheKey(searchJSON);
+			if (key.isPresent()) {
+				keys.put(i, key.get());
+				searchesByKey.putIfAbsent(key.get(), searchJSON);
+			} else {
+				uncached.add(i);
+			}
+		}
+		if (!keys.isEmpty()) {
+			Map<SearchJSON, SearchResponse<DeviceData>> cached = searchCache.getAll(keys.values(), missing -> {
+				List<SearchJSON> pending = new ArrayList<>(missing);
+				List<SearchResponse<DeviceData>> loaded =
+						super.multiSearch(pending.stream().map(searchesByKey::get).toList());
+				Map<SearchJSON, SearchResponse<DeviceData>> results = new HashMap<>();
+				for (int i = 0; i < pending.size() && i < loaded.size(); i++) {
+					if (loaded.get(i) != null) {
+						results.put(pending.get(i), loaded.get(i));
+					}
+				}
+				return results;
+			});
+			cached.keySet().forEach(this::index);
+			keys.forEach((index, key) -> responses.set(index, cached.get(key)));
+		}
+		if (!uncached.isEmpty()) {
+			List<SearchResponse<DeviceData>> loaded = super.multiSearch(
+					uncached.stream().map(searchJSONs::get).toList());
+			for (int i = 0; i < uncached.size() && i < loaded.size(); i++) {
+				responses.set(uncached.get(i), loaded.get(i));
+			}
+		}
+		return responses;
+	}
+
+	@Override
+	public List<String> bulkLogData(Date fetchDate, List<DeviceData> deviceDatas, boolean waitForSearch)
+			throws ResponseException {
+		try {
+			return super.bulkLogData(fetchDate, deviceDatas, waitForSearch);
+		} finally {
+			invalidate(deviceDatas);
+		}
+	}
+
+	@Override
+	public void logDataBuffered(Date fetchDate, List<DeviceData> deviceDatas) throws InterruptedException {
+		super.logDataBuffered(fetchDate, deviceDatas);
+		invalidate(deviceDatas);
+	}
+
+	@Override
+	public void deleteByCustomerId(String customerId) {
+		super.deleteByCustomerId(customerId);
+		invalidateCustomer(customerId);
+	}
+
+	@Override
+	public void deleteBySiteId(String siteId, String customerId) {
+		super.deleteBySiteId(siteId, customerId);
+		invalidateCustomer(customerId);
+	}
+
+	@Override
+	public void deleteByDeviceId(String deviceId, String customerId) {
+		super.deleteByDeviceId(deviceId, customerId);
+		invalidateCustomer(customerId);
+	}
+
+	/** Hit/miss counts and load times of cached searches */
+	public CacheStats getSearchCacheStats() {
+		return searchCache.stats();
+	}
+
+	/** Drop cached responses whose search could match any of the written data */
+	private void invalidate(List<DeviceData> deviceDatas) {
+		Set<SearchJSON> affected = new HashSet<>();
+		for (DeviceData data : deviceDatas) {
+			for (Scope scope : Scope.of(data)) {
+				keysByScope.getOrDefault(scope, Set.of()).stream()
+						.filter(key -> isAffected(key, data))
+						.forEach(affected::add);
+			}
+		}
+		affected.forEach(this::remove);
+	}
+
+	private void invalidateCustomer(String customerId) {
+		searchCache.asMap().keySet().stream()
+				.filter(key -> Objects.equals(key.getCustomerId(), customerId))
+				.toList()
+				.forEach(this::remove);
+	}
+
+	/** Remove and unindex atomically with loads of the key, so a reloaded entry stays indexed */
+	private void remove(SearchJSON key) {
+		searchCache.asMap().compute(key, (k, response) -> {
+			unindex(k);
+			return null;
+		});
+	}
+
+	private void index(SearchJSON key) {
+		keysByScope
+				.computeIfAbsent(Scope.of(key), scope -> ConcurrentHashMap.newKeySet())
+				.add(key);
+	}
+
+	private void unindex(SearchJSON key) {
+		keysByScope.computeIfPresent(Scope.of(key), (scope, keys) -> {
+			keys.remove(key);
+			return keys.isEmpty() ? null : keys;
+		});
+	}
+
+	static boolean isAffected(SearchJSON key, DeviceData data) {
+		return Objects.equals(key.getCustomerId(), data.getCustomerId())
+				&& (StringUtils.isBlank(key.getSiteId()) || key.getSiteId().equals(data.getSiteId()))
+				&& (StringUtils.isBlank(key.getDeviceId()) || key.getDeviceId().equals(data.getDeviceId()))
+				&& (data.getDate() == null
+						|| (data.getDate().getTime() >= key.getStartDate()
+								&& data.getDate().getTime() <= key.getEndDate()));
+	}
+
+	private static boolean isLive(SearchJSON key, long now) {
+		return key.getEndDate() >= now - LIVE_WINDOW;
+	}
+
+	/**
+	 * Normalized copy of the search to cache it under. Only searches starting on a bucket boundary
+	 * and ending on (or a millisecond/second before) one are cached, in the search's timezone, as a
+	 * widened range would answer for data the caller didn't ask for. Paged raw data and searches with
+	 * a bucket size that can't be parsed aren't cached.
+	 */
+	static Optional<SearchJSON> getCacheKey(SearchJSON searchJSON) {
+		if (searchJSON.getType() == null || DATA_SEARCH_TYPE.equals(searchJSON.getType())) {
+			return Optional.empty();
+		}
+		SearchJSON key = new SearchJSON(searchJSON);
+		key.setTimeZone(StringUtils.isBlank(key.getTimeZone()) ? null : key.getTimeZone());
+		key.setBucketSize(StringUtils.isBlank(key.getBucketSize()) ? null : key.getBucketSize().trim());
+		long interval = RollupQueries.getInterval(key.getBucketSize());
+		if (interval <= 0) {
+			return Optional.empty();
+		}
+		ZoneId zone;
+		try {
+			zone = key.getTimeZone() == null ? ZoneId.of("UTC") : ZoneId.of(key.getTimeZone());
+		} catch (DateTimeException e) {
+			return Optional.empty();
+		}
+		long start = key.getStartDate();
+		long end = floor(key.getEndDate() + TimeConstants.SECOND, interval, zone);
+		if (floor(start, interval, zone) != start
+				|| (end != key.getEndDate() + 1 && end != key.getEndDate() + TimeConstants.SECOND)) {
+			return Optional.empty();
+		}
+		key.setEndDate(end - 1);
+		return Optional.of(key);
+	}
+
+	private static long floor(long time, long interval, ZoneId zone) {
+		long offset = zone.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * TimeConstants.SECOND;
+		return Math.floorDiv(time + offset, interval) * interval - offset;
+	}
+
+	/** Customer, site and device a search is limited to, null site or device searches all of them */
+	private record Scope(String customerId, String siteId, String deviceId) {
+		static Scope of(SearchJSON key) {
+			return new Scope(key.getCustomerId(), blankToNull(key.getSiteId()), blankToNull(key.getDeviceId()));
+		}
+
+		/** Scopes of the searches a write of the data could affect */
+		static Set<Scope> of(DeviceData data) {
+			String siteId = blankToNull(data.getSiteId());
+			String deviceId = blankToNull(data.getDeviceId());
+			return Set.copyOf(List.of(
+					new Scope(data.getCustomerId(), null, null),
+					new Scope(data.getCustomerId(), siteId, null),
+					new Scope(data.getCustomerId(), null, deviceId),
+					new Scope(data.getCustomerId(), siteId, deviceId)));
+		}
+
+		private static String blankToNull(String value) {
+			return StringUtils.isBlank(value) ? null : value;
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.bigboxer23.solar_moon.search;
 
 import static com.bigboxer23.solar_moon.util.PropertyConstants.*;
 
+import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.device.LastReadingComponent;
 import com.bigboxer23.solar_moon.ingest.MeterConstants;
 import com.bigboxer23.solar_moon.ops.LogEntry;
 import com.bigboxer23.solar_moon.util.TimeConstants;
@@ -11,6 +13,7 @@ import com.bigboxer23.utils.properties.PropertyUtils;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Consumer;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hc.client5.http.auth.AuthScope;
@@ -29,7 +32,12 @@ import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch._types.query_dsl.QueryBuilders;
 import org.opensearch.client.opensearch.core.*;
 import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
 import org.opensearch.client.opensearch.core.bulk.IndexOperation;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+import org.opensearch.client.opensearch.core.msearch.MultisearchBody;
+import org.opensearch.client.opensearch.core.msearch.MultisearchHeader;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
 import org.opensearch.client.opensearch.core.search.Hit;
 import org.opensearch.client.opensearch.core.search.SourceConfig;
 import org.opensearch.client.opensearch.core.search.SourceFilter;
@@ -42,45 +50,220 @@ import software.amazon.awssdk.utils.StringUtils;
 public class OpenSearchComponent implements OpenSearchConstants {
 	private OpenSearchClient client;
 
+	private BufferedBulkWriter bulkWriter;
+
 	private final String openSearchUrl;
 
 	private final String user;
 
 	private final String pass;
 
+	private final boolean rollupsEnabled;
+
 	public OpenSearchComponent() {
 		openSearchUrl = PropertyUtils.getProperty(OPENSEARCH_URL);
 		user = PropertyUtils.getProperty(OPENSEARCH_USER);
 		pass = PropertyUtils.getProperty(OPENSEARCH_PASSWORD);
+		rollupsEnabled = Boolean.parseBoolean(PropertyUtils.getProperty(OPENSEARCH_ROLLUPS));
+	}
+
+	/**
+	 * Whether writes maintain the {@link #ROLLUP_INDEX_NAME} rollups and aligned searches are answered
+	 * from them. Run {@link #compactRollups(String, Date, Date)} over existing data before enabling.
+	 */
+	protected boolean isRollupEnabled() {
+		return rollupsEnabled;
 	}
 
 	public void logData(Date fetchDate, List<DeviceData> deviceDatas) throws ResponseException {
+		logData(fetchDate, deviceDatas, false);
+	}
+
+	public void logData(Date fetchDate, List<DeviceData> deviceDatas, boolean waitForSearch)
+			throws ResponseException {
+		bulkLogData(fetchDate, deviceDatas, waitForSearch);
+	}
+
+	public List<String> bulkLogData(Date fetchDate, List<DeviceData> deviceDatas) throws ResponseException {
+		return bulkLogData(fetchDate, deviceDatas, false);
+	}
+
+	/**
+	 * Write the device data in a single bulk request
+	 *
+	 * @param fetchDate date to use for any data without one
+	 * @param deviceDatas
+	 * @param waitForSearch don't return until the data is visible to searches (refresh=wait_for), for
+	 *     callers which query for what was just written
+	 * @return error for each document, index aligned with deviceDatas. null entries were indexed
+	 *     successfully
+	 * @throws ResponseException
+	 */
+	public List<String> bulkLogData(Date fetchDate, List<DeviceData> deviceDatas, boolean waitForSearch)
+			throws ResponseException {
 		log.debug("sending to opensearch component");
+		List<String> errors = new ArrayList<>(Collections.nCopies(deviceDatas.size(), null));
+		if (deviceDatas.isEmpty()) {
+			return errors;
+		}
 		BulkRequest.Builder bulkRequest = new BulkRequest.Builder().index(INDEX_NAME);
+		if (waitForSearch) {
+			bulkRequest.refresh(Refresh.WaitFor);
+		}
 		deviceDatas.forEach(data -> {
 			data.setDate(data.getDate() == null ? fetchDate : data.getDate());
-			bulkRequest.operations(new BulkOperation.Builder()
-					.index(new IndexOperation.Builder<DeviceData>()
-							.id(data.getDeviceId() + ":" + data.getDate().getTime())
-							.document(data)
-							.build())
-					.build());
+			bulkRequest.operations(getIndexOperation(data));
 		});
+		// after the raw documents so response items stay index aligned with deviceDatas
+		List<RollupQueries.Update> rollups =
+				isRollupEnabled() ? RollupQueries.getUpdates(deviceDatas) : Collections.emptyList();
+		rollups.forEach(update -> bulkRequest.operations(update.operation()));
 		log.debug("Sending Request to open search");
+		Map<RollupQueries.Update, BulkResponseItem> failedRollups = new LinkedHashMap<>();
 		try {
 			BulkResponse response = getClient().bulk(bulkRequest.build());
 			if (response.errors()) {
-				response.items().forEach(item -> log.warn("error:" + item.error()));
+				// items are returned in request order
+				for (int i = 0; i < response.items().size(); i++) {
+					BulkResponseItem item = response.items().get(i);
+					log.warn("error:" + item.error());
+					if (item.error() == null) {
+						continue;
+					}
+					if (i < errors.size()) {
+						errors.set(i, item.error().reason());
+					} else if (i - errors.size() < rollups.size()) {
+						failedRollups.put(rollups.get(i - errors.size()), item);
+					}
+				}
 			}
 		} catch (IOException e) {
 			log.error("logStatusEvent", e);
 			if (e instanceof ResponseException) {
 				throw (ResponseException) e;
 			}
+			Collections.fill(errors, e.getMessage());
+			return errors;
 		}
+		// a reading isn't reported written until its rollups are, so the caller resends it
+		Map<DeviceData, Integer> indexes = new IdentityHashMap<>();
+		for (int i = 0; i < deviceDatas.size(); i++) {
+			indexes.put(deviceDatas.get(i), i);
+		}
+		retryRollups(failedRollups).forEach((update, reason) -> update.readings().forEach(reading -> {
+			int i = indexes.get(reading);
+			errors.set(i, errors.get(i) == null ? "rollup: " + reason : errors.get(i));
+		}));
+		List<DeviceData> written = new ArrayList<>();
+		for (int i = 0; i < deviceDatas.size(); i++) {
+			if (errors.get(i) == null) {
+				written.add(deviceDatas.get(i));
+			}
+		}
+		getLastReadingComponent().update(written);
+		return errors;
+	}
+
+	/**
+	 * Send rollup updates rejected with a retryable status once more, both the upserts and the
+	 * readings they merge are idempotent
+	 *
+	 * @param failed failed updates and their response items
+	 * @return reason for each update which still failed
+	 */
+	private Map<RollupQueries.Update, String> retryRollups(Map<RollupQueries.Update, BulkResponseItem> failed) {
+		Map<RollupQueries.Update, String> reasons = new LinkedHashMap<>();
+		List<RollupQueries.Update> retries = new ArrayList<>();
+		failed.forEach((update, item) -> {
+			reasons.put(update, item.error().reason());
+			if (BufferedBulkWriter.RETRYABLE_STATUS.contains(item.status())) {
+				retries.add(update);
+			}
+		});
+		if (retries.isEmpty()) {
+			return reasons;
+		}
+		try {
+			BulkResponse response = getClient()
+					.bulk(new BulkRequest.Builder()
+							.operations(retries.stream()
+									.map(RollupQueries.Update::operation)
+									.toList())
+							.build());
+			for (int i = 0; i < retries.size() && i < response.items().size(); i++) {
+				BulkResponseItem item = response.items().get(i);
+				if (item.error() == null) {
+					reasons.remove(retries.get(i));
+				} else {
+					log.warn("rollup error:" + item.error().reason() + " " + item.id());
+					reasons.put(retries.get(i), item.error().reason());
+				}
+			}
+		} catch (IOException | OpenSearchException e) {
+			log.warn("retryRollups", e);
+		}
+		return reasons;
+	}
+
+	/**
+	 * Buffered alternative to {@link #logData(Date, List)}, data is written in the background in
+	 * larger bulk requests. {@link #flushBufferedData()} must be called before the invocation ends.
+	 *
+	 * @param fetchDate date to use for any data without one
+	 * @param deviceDatas
+	 * @throws InterruptedException if interrupted while waiting for room in the buffer
+	 */
+	public void logDataBuffered(Date fetchDate, List<DeviceData> deviceDatas) throws InterruptedException {
+		BufferedBulkWriter writer = getBulkWriter();
+		for (DeviceData data : deviceDatas) {
+			data.setDate(data.getDate() == null ? fetchDate : data.getDate());
+			writer.add(data);
+		}
+	}
+
+	/**
+	 * Write anything buffered by {@link #logDataBuffered(Date, List)}, recording the written data as
+	 * each device's last reading
+	 *
+	 * @return data which could not be written
+	 */
+	public List<DeviceData> flushBufferedData() {
+		if (bulkWriter == null) {
+			return Collections.emptyList();
+		}
+		List<DeviceData> failed = bulkWriter.flush();
+		getLastReadingComponent().update(bulkWriter.drainWritten());
+		return failed;
+	}
+
+	protected synchronized BufferedBulkWriter getBulkWriter() {
+		if (bulkWriter == null) {
+			bulkWriter = new BufferedBulkWriter(this::getClient);
+			if (isRollupEnabled()) {
+				bulkWriter.withRollups(RollupQueries::getUpdates);
+			}
+		}
+		return bulkWriter;
+	}
+
+	static BulkOperation getIndexOperation(DeviceData data) {
+		return new BulkOperation.Builder()
+				.index(new IndexOperation.Builder<DeviceData>()
+						.id(data.getDeviceId() + ":" + data.getDate().getTime())
+						.document(data)
+						.build())
+				.build();
+	}
+
+	protected LastReadingComponent getLastReadingComponent() {
+		return IComponentRegistry.lastReadingComponent;
 	}
 
 	public Float getTotalEnergyConsumed(String deviceId) {
+		Optional<DeviceData> lastReading = getLastReadingComponent().getLastReading(deviceId);
+		if (lastReading.isPresent()) {
+			return lastReading.get().getTotalEnergyConsumed();
+		}
 		try {
 			SearchRequest request = OpenSearchQueries.getSearchRequestBuilder()
 					.query(OpenSearchQueries.getDeviceIdQuery(deviceId))
@@ -109,6 +292,45 @@ public class OpenSearchComponent implements OpenSearchConstants {
 		}
 	}
 
+	/**
+	 * Batch version of {@link #getTotalEnergyConsumed(String)}, one search for all the passed devices
+	 *
+	 * @param deviceIds
+	 * @return previous total keyed by device id, devices with no previous value are absent
+	 */
+	public Map<String, Float> getTotalEnergyConsumed(Collection<String> deviceIds) {
+		if (deviceIds == null || deviceIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Float> totals = new HashMap<>();
+		getLastReadingComponent()
+				.getLastReadings(deviceIds)
+				.forEach((deviceId, data) -> totals.put(deviceId, data.getTotalEnergyConsumed()));
+		List<String> missing = deviceIds.stream().filter(id -> !totals.containsKey(id)).toList();
+		if (missing.isEmpty()) {
+			return totals;
+		}
+		try {
+			getClient()
+					.search(
+							OpenSearchQueries.getLatestPerDeviceBuilder(missing, MeterConstants.TOTAL_ENG_CONS)
+									.build(),
+							DeviceData.class)
+					.hits()
+					.hits()
+					.stream()
+					.map(Hit::source)
+					.filter(data -> data != null && data.getDeviceId() != null)
+					.forEach(data -> totals.put(data.getDeviceId(), data.getTotalEnergyConsumed()));
+			missing.stream()
+					.filter(deviceId -> !totals.containsKey(deviceId))
+					.forEach(deviceId -> log.warn("couldn't find previous value for " + deviceId));
+		} catch (IOException e) {
+			log.error("getTotalEnergyConsumed", e);
+		}
+		return totals;
+	}
+
 	public DeviceData getDeviceEntryWithinLast15Min(String customerId, String deviceId) {
 		return getLastDeviceEntry(
 				deviceId,
@@ -117,6 +339,22 @@ public class OpenSearchComponent implements OpenSearchConstants {
 				OpenSearchQueries.getLast15MinQuery());
 	}
 
+	/**
+	 * Most recent data for the device, served from the last reading store when possible
+	 *
+	 * @param deviceId
+	 * @return last device data or null if none exists
+	 */
+	public DeviceData getLastDeviceEntry(String deviceId) {
+		return getLastReadingComponent().getLastReading(deviceId).orElseGet(() -> {
+			DeviceData data = getLastDeviceEntry(deviceId, OpenSearchQueries.getDeviceIdQuery(deviceId));
+			if (data != null) {
+				getLastReadingComponent().update(Collections.singletonList(data));
+			}
+			return data;
+		});
+	}
+
 	public DeviceData getLastDeviceEntry(String deviceId, Query query, Query... queries) {
 		try {
 			SearchRequest request = OpenSearchQueries.getSearchRequestBuilder()
@@ -138,10 +376,9 @@ public class OpenSearchComponent implements OpenSearchConstants {
 
 	public void deleteByCustomerId(String customerId) {
 		try {
-			getClient()
-					.deleteByQuery(OpenSearchQueries.getDeleteRequestBuilder()
-							.query(OpenSearchQueries.getCustomerIdQuery(customerId))
-							.build());
+			Query query = OpenSearchQueries.getCustomerIdQuery(customerId);
+			deleteLastReadings(query);
+			getClient().deleteByQuery(getDeleteWithRollupsBuilder().query(query).build());
 		} catch (IOException e) {
 			log.error("deleteByCustomerId: ", e);
 		}
@@ -163,24 +400,22 @@ public class OpenSearchComponent implements OpenSearchConstants {
 
 	public void deleteBySiteId(String siteId, String customerId) {
 		try {
-			getClient()
-					.deleteByQuery(OpenSearchQueries.getDeleteRequestBuilder()
-							.query(QueryBuilders.bool()
-									.filter(
-											OpenSearchQueries.getCustomerIdQuery(customerId),
-											OpenSearchQueries.getSiteIdQuery(siteId))
-									.build()
-									.toQuery())
-							.build());
+			Query query = QueryBuilders.bool()
+					.filter(OpenSearchQueries.getCustomerIdQuery(customerId), OpenSearchQueries.getSiteIdQuery(siteId))
+					.build()
+					.toQuery();
+			deleteLastReadings(query);
+			getClient().deleteByQuery(getDeleteWithRollupsBuilder().query(query).build());
 		} catch (IOException e) {
 			log.error("deleteByCustomerId: ", e);
 		}
 	}
 
 	public void deleteByDeviceId(String deviceId, String customerId) {
+		getLastReadingComponent().delete(deviceId);
 		try {
 			getClient()
-					.deleteByQuery(OpenSearchQueries.getDeleteRequestBuilder()
+					.deleteByQuery(getDeleteWithRollupsBuilder()
 							.query(QueryBuilders.bool()
 									.filter(
 											OpenSearchQueries.getCustomerIdQuery(customerId),
@@ -193,6 +428,27 @@ public class OpenSearchComponent implements OpenSearchConstants {
 		}
 	}
 
+	/** Clear the stored last reading of each device with data matching the query */
+	private void deleteLastReadings(Query query) throws IOException {
+		getClient()
+				.search(OpenSearchQueries.getDeviceIdFacet().query(query).build(), Map.class)
+				.aggregations()
+				.get("terms")
+				.sterms()
+				.buckets()
+				.array()
+				.forEach(bucket -> getLastReadingComponent().delete(bucket.key()));
+	}
+
+	/** Delete request which also clears the matching rollups when they're maintained */
+	private DeleteByQueryRequest.Builder getDeleteWithRollupsBuilder() {
+		DeleteByQueryRequest.Builder builder = OpenSearchQueries.getDeleteRequestBuilder();
+		if (isRollupEnabled()) {
+			builder.index(ROLLUP_INDEX_NAME).ignoreUnavailable(true);
+		}
+		return builder;
+	}
+
 	public void deleteById(String id) {
 		try {
 			getClient()
@@ -249,9 +505,16 @@ public class OpenSearchComponent implements OpenSearchConstants {
 		}
 	}
 
+	/**
+	 * Number of documents for the site within 5 minutes of the date, counted by OpenSearch rather than
+	 * fetched
+	 *
+	 * @return count, -1 if the count failed
+	 */
 	public int getSiteDevicesCountByTimePeriod(String customerId, String siteId, Date date) {
 		try {
-			SearchRequest request = OpenSearchQueries.getSearchRequestBuilder()
+			CountRequest request = new CountRequest.Builder()
+					.index(INDEX_NAME)
 					.query(QueryBuilders.bool()
 							.filter(
 									OpenSearchQueries.getCustomerIdQuery(customerId),
@@ -260,13 +523,60 @@ public class OpenSearchComponent implements OpenSearchConstants {
 							.build()
 							.toQuery())
 					.build();
-			return getClient().search(request, Map.class).hits().hits().size();
+			return (int) getClient().count(request).count();
 		} catch (IOException e) {
 			log.error("getDeviceCountByTimePeriod " + customerId + ":" + siteId, e);
 			return -1;
 		}
 	}
 
+	/**
+	 * Most recent reading within the lookback for each device. Served from the last reading store when
+	 * possible, the rest come from one aggregation with only the requested fields populated.
+	 *
+	 * @param deviceIds
+	 * @param lookback ms before now the reading must be from
+	 * @param fields source fields needed in addition to device id and date
+	 * @return last reading keyed by device id, devices without data in the lookback are absent
+	 */
+	public Map<String, DeviceData> getLastDeviceEntries(Collection<String> deviceIds, long lookback, String... fields) {
+		if (deviceIds == null || deviceIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Date since = new Date(System.currentTimeMillis() - lookback);
+		Map<String, DeviceData> stored = getLastReadingComponent().getLastReadings(deviceIds);
+		Map<String, DeviceData> entries = new HashMap<>();
+		stored.forEach((deviceId, data) -> {
+			if (data.getDate() != null && !data.getDate().before(since)) {
+				entries.put(deviceId, data);
+			}
+		});
+		// a stored reading is the device's latest, if it's too old there's nothing newer to search for
+		List<String> missing =
+				deviceIds.stream().filter(id -> !stored.containsKey(id)).toList();
+		if (missing.isEmpty()) {
+			return entries;
+		}
+		try {
+			getClient()
+					.search(OpenSearchQueries.getLatestPerDeviceAggregation(missing, since, fields).build(), Map.class)
+					.aggregations()
+					.get("terms")
+					.sterms()
+					.buckets()
+					.array()
+					.forEach(bucket -> bucket.aggregations().get("latest").topHits().hits().hits().stream()
+							.map(Hit::source)
+							.filter(Objects::nonNull)
+							.findFirst()
+							.map(source -> source.to(DeviceData.class))
+							.ifPresent(data -> entries.put(bucket.key(), data)));
+		} catch (IOException e) {
+			log.error("getLastDeviceEntries", e);
+		}
+		return entries;
+	}
+
 	public SearchResponse<LogEntry> searchLogs(SearchJSON searchJSON) {
 		try {
 			return getClient()
@@ -283,18 +593,43 @@ public class OpenSearchComponent implements OpenSearchConstants {
 
 	public SearchResponse<DeviceData> search(SearchJSON searchJSON) {
 		try {
-			return getClient()
-					.search(
-							getSearchRequest(searchJSON)
-									.query(getQuery(searchJSON))
-									.build(),
-							DeviceData.class);
+			return getClient().search(getFullSearchRequest(searchJSON), DeviceData.class);
 		} catch (IOException e) {
 			log.error("search " + searchJSON.getCustomerId() + ":" + searchJSON.getDeviceName(), e);
 		}
 		return null;
 	}
 
+	/**
+	 * Run many searches as msearch requests, {@link #MULTI_SEARCH_BATCH_SIZE} searches per round trip
+	 *
+	 * @param searchJSONs
+	 * @return responses in the same order as the searches, null for any search which failed
+	 */
+	public List<SearchResponse<DeviceData>> multiSearch(List<SearchJSON> searchJSONs) {
+		List<SearchResponse<DeviceData>> responses = new ArrayList<>(Collections.nCopies(searchJSONs.size(), null));
+		for (int start = 0; start < searchJSONs.size(); start += MULTI_SEARCH_BATCH_SIZE) {
+			List<SearchJSON> batch =
+					searchJSONs.subList(start, Math.min(start + MULTI_SEARCH_BATCH_SIZE, searchJSONs.size()));
+			try {
+				List<MultiSearchResponseItem<DeviceData>> items = getClient()
+						.msearch(getMultiSearchRequest(batch), DeviceData.class)
+						.responses();
+				for (int i = 0; i < items.size() && i < batch.size(); i++) {
+					if (items.get(i).isResult()) {
+						responses.set(start + i, items.get(i).result());
+					} else {
+						log.warn("multiSearch " + batch.get(i).getCustomerId() + ":" + batch.get(i).getDeviceId() + " "
+								+ items.get(i).failure().reason());
+					}
+				}
+			} catch (IOException e) {
+				log.error("multiSearch " + batch.getFirst().getCustomerId(), e);
+			}
+		}
+		return responses;
+	}
+
 	public UpdateByQueryResponse updateByQuery(SearchJSON searchJSON, String field, Object value) {
 		try {
 			UpdateByQueryRequest request = OpenSearchQueries.getUpdateByQueryRequestBuilder()
@@ -320,6 +655,155 @@ public class OpenSearchComponent implements OpenSearchConstants {
 		return null;
 	}
 
+	/** Number of documents matching the search, counted without fetching them */
+	public long count(SearchJSON searchJSON) throws IOException {
+		return getClient()
+				.count(new CountRequest.Builder()
+						.index(INDEX_NAME)
+						.query(getQuery(searchJSON))
+						.build())
+				.count();
+	}
+
+	/**
+	 * Stream every document matching the search, oldest first, a page at a time. Pages are read from a
+	 * point in time so the export is consistent while new data arrives, and search_after keeps the
+	 * last page as cheap as the first.
+	 *
+	 * @param searchJSON
+	 * @param pageSize
+	 * @param pageConsumer called with each page in order, pages aren't retained
+	 * @return number of documents streamed
+	 */
+	public long streamData(SearchJSON searchJSON, int pageSize, Consumer<List<DeviceData>> pageConsumer)
+			throws IOException {
+		String pitId = openPointInTime();
+		try {
+			return streamData(pitId, searchJSON, 0, 1, pageSize, pageConsumer);
+		} finally {
+			closePointInTime(pitId);
+		}
+	}
+
+	/**
+	 * Stream one slice of the documents matching the search from an open point in time. Each slice is
+	 * in timestamp order, slices of the same point in time can be streamed concurrently and together
+	 * hold every matching document once.
+	 *
+	 * @param pitId from {@link #openPointInTime()}
+	 * @param searchJSON
+	 * @param slice which slice to stream, from 0
+	 * @param sliceCount how many slices the documents are split into, 1 streams everything
+	 * @param pageSize
+	 * @param pageConsumer called with each page in order, pages aren't retained
+	 * @return number of documents streamed
+	 */
+	public long streamData(
+			String pitId,
+			SearchJSON searchJSON,
+			int slice,
+			int sliceCount,
+			int pageSize,
+			Consumer<List<DeviceData>> pageConsumer)
+			throws IOException {
+		Query query = getQuery(searchJSON);
+		long streamed = 0;
+		List<FieldValue> searchAfter = null;
+		while (true) {
+			SearchRequest.Builder request = OpenSearchQueries.getPointInTimeSearchBuilder(pitId, pageSize)
+					.query(query);
+			if (sliceCount > 1) {
+				request.slice(new SlicedScroll.Builder()
+						.id(String.valueOf(slice))
+						.max(sliceCount)
+						.build());
+			}
+			if (searchAfter != null) {
+				request.searchAfter(searchAfter);
+			}
+			List<Hit<DeviceData>> hits = getClient().search(request.build(), DeviceData.class).hits().hits();
+			if (!hits.isEmpty()) {
+				pageConsumer.accept(hits.stream().map(Hit::source).filter(Objects::nonNull).toList());
+				streamed += hits.size();
+			}
+			if (hits.size() < pageSize) {
+				return streamed;
+			}
+			searchAfter = hits.getLast().sort();
+		}
+	}
+
+	/** Point in time over the data index, kept alive between pages, close once done with it */
+	public String openPointInTime() throws IOException {
+		return getClient()
+				.createPit(new CreatePitRequest.Builder()
+						.targetIndexes(INDEX_NAME)
+						.keepAlive(new Time.Builder()
+								.time(POINT_IN_TIME_KEEP_ALIVE)
+								.build())
+						.build())
+				.pitId();
+	}
+
+	public void closePointInTime(String pitId) {
+		try {
+			getClient().deletePit(new DeletePitRequest.Builder().pitId(pitId).build());
+		} catch (IOException | OpenSearchException e) {
+			log.warn("couldn't delete point in time " + pitId, e);
+		}
+	}
+
+	/**
+	 * Roll up a customer's existing data, merging into any rollups already written so it is safe to
+	 * repeat. Needed once for historical data before enabling rollups.
+	 *
+	 * @return number of documents rolled up
+	 */
+	public long compactRollups(String customerId, Date start, Date end) throws IOException {
+		ensureRollupIndex();
+		long compacted = 0;
+		List<FieldValue> searchAfter = null;
+		while (true) {
+			SearchRequest.Builder request = RollupQueries.getCompactionSearchBuilder(
+					customerId, start, end, ROLLUP_COMPACTION_PAGE_SIZE);
+			if (searchAfter != null) {
+				request.searchAfter(searchAfter);
+			}
+			List<Hit<DeviceData>> hits =
+					getClient().search(request.build(), DeviceData.class).hits().hits();
+			List<DeviceData> page =
+					hits.stream().map(Hit::source).filter(Objects::nonNull).toList();
+			if (page.isEmpty()) {
+				log.info("compactRollups " + customerId + " " + compacted);
+				return compacted;
+			}
+			BulkResponse response = getClient()
+					.bulk(new BulkRequest.Builder()
+							.operations(RollupQueries.getUpdateOperations(page))
+							.build());
+			if (response.errors()) {
+				response.items().stream()
+						.filter(item -> item.error() != null)
+						.forEach(item -> log.warn("compactRollups " + item.id() + " " + item.error().reason()));
+			}
+			compacted += page.size();
+			searchAfter = hits.getLast().sort();
+		}
+	}
+
+	private void ensureRollupIndex() throws IOException {
+		if (getClient().indices().exists(builder -> builder.index(ROLLUP_INDEX_NAME)).value()) {
+			return;
+		}
+		getClient()
+				.indices()
+				.create(builder -> builder.index(ROLLUP_INDEX_NAME)
+						.mappings(mappings -> mappings.properties(TIMESTAMP, property -> property.date(date -> date))
+								.properties(
+										RollupQueries.READINGS,
+										property -> property.object(object -> object.enabled(false)))));
+	}
+
 	public double getAverageEnergyConsumedPerDay(SearchJSON searchJSON) {
 		searchJSON.setType(TOTAL_ENERGY_CONSUMED_SEARCH_TYPE);
 		searchJSON.setIsSite(true);
@@ -399,6 +883,51 @@ public class OpenSearchComponent implements OpenSearchConstants {
 		return filters;
 	}
 
+	private MsearchRequest getMultiSearchRequest(List<SearchJSON> searchJSONs) {
+		MsearchRequest.Builder builder = new MsearchRequest.Builder();
+		searchJSONs.forEach(searchJSON -> {
+			SearchRequest request = getFullSearchRequest(searchJSON);
+			builder.searches(new RequestItem.Builder()
+					.header(new MultisearchHeader.Builder()
+							.index(request.index())
+							.build())
+					.body(new MultisearchBody.Builder()
+							.query(request.query())
+							.aggregations(request.aggregations())
+							.docvalueFields(request.docvalueFields())
+							.storedFields(request.storedFields())
+							.sort(request.sort())
+							.source(request.source())
+							.size(request.size())
+							.from(request.from())
+							.build())
+					.build());
+		});
+		return builder.build();
+	}
+
+	/** Search request for the SearchJSON, against the rollups when they answer it identically */
+	private SearchRequest getFullSearchRequest(SearchJSON searchJSON) {
+		SearchRequest request =
+				getSearchRequest(searchJSON).query(getQuery(searchJSON)).build();
+		if (!isRollupEnabled()) {
+			return request;
+		}
+		return RollupQueries.getGranularity(searchJSON, System.currentTimeMillis())
+				.map(granularity -> {
+					List<Query> filters = getFiltersByType(searchJSON);
+					filters.addAll(RollupQueries.getRollupFilters(granularity, searchJSON.isDaylight()));
+					return RollupQueries.toRollupRequest(
+							request,
+							QueryBuilders.bool()
+									.filter(filters)
+									.mustNot(getMustNotByType(searchJSON))
+									.build()
+									.toQuery());
+				})
+				.orElse(request);
+	}
+
 	private SearchRequest.Builder getSearchRequest(SearchJSON searchJSON) {
 		SearchRequest.Builder builder =
 				switch (searchJSON.getType()) {
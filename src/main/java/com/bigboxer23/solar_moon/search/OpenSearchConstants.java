@@ -5,6 +5,8 @@ public interface OpenSearchConstants {
 	String TIMESTAMP = "@timestamp";
 	String INDEX_NAME = "generation-meter";
 
+	String ROLLUP_INDEX_NAME = "generation-meter-rollup";
+
 	String LOGS_INDEX_NAME = "logs-";
 
 	String LOGS_INDEX_DATE_FORMAT = "yyyy.MM";
@@ -30,4 +32,14 @@ public interface OpenSearchConstants {
 	String DATA_SEARCH_TYPE = "data";
 
 	String TOTAL_ENERGY_CONSUMED_SEARCH_TYPE = "totalEnergyConsumed";
+
+	/** Most searches sent in a single msearch round trip */
+	int MULTI_SEARCH_BATCH_SIZE = 50;
+
+	int ROLLUP_COMPACTION_PAGE_SIZE = 1000;
+
+	int STREAM_PAGE_SIZE = 1000;
+
+	/** How long a point in time is kept between pages of a stream */
+	String POINT_IN_TIME_KEEP_ALIVE = "5m";
 }
@@ -13,6 +13,7 @@ import org.opensearch.client.opensearch._types.query_dsl.QueryBuilders;
 import org.opensearch.client.opensearch.core.DeleteByQueryRequest;
 import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.core.UpdateByQueryRequest;
+import org.opensearch.client.opensearch.core.search.Pit;
 import org.opensearch.client.opensearch.core.search.SourceConfig;
 import org.opensearch.client.opensearch.core.search.SourceFilter;
 
@@ -70,6 +71,14 @@ public class OpenSearchQueries implements OpenSearchConstants, MeterConstants {
 				.toQuery();
 	}
 
+	public static Query getDeviceIdsQuery(Collection<String> ids) {
+		return QueryBuilders.terms()
+				.field(getKeywordField(DEVICE_ID))
+				.terms(builder -> builder.value(ids.stream().map(FieldValue::of).toList()))
+				.build()
+				.toQuery();
+	}
+
 	public static Query getCustomerIdQuery(String customerId) {
 		return QueryBuilders.match()
 				.field(getKeywordField(CUSTOMER_ID_ATTRIBUTE))
@@ -186,6 +195,15 @@ public class OpenSearchQueries implements OpenSearchConstants, MeterConstants {
 		return field + ".keyword";
 	}
 
+	public static SortOptions sortByTimeStampAsc() {
+		return new SortOptions.Builder()
+				.field(new FieldSort.Builder()
+						.field(TIMESTAMP)
+						.order(SortOrder.Asc)
+						.build())
+				.build();
+	}
+
 	public static SortOptions sortByTimeStampDesc() {
 		return new SortOptions.Builder()
 				.field(new FieldSort.Builder()
@@ -195,6 +213,96 @@ public class OpenSearchQueries implements OpenSearchConstants, MeterConstants {
 				.build();
 	}
 
+	/**
+	 * Most recent document for each of the passed devices, collapsed on device id so one request
+	 * covers a whole batch
+	 *
+	 * @param deviceIds
+	 * @param fields source fields to return in addition to the device id
+	 * @return
+	 */
+	public static SearchRequest.Builder getLatestPerDeviceBuilder(Collection<String> deviceIds, String... fields) {
+		List<String> includes = new ArrayList<>(Arrays.asList(fields));
+		includes.add(DEVICE_ID);
+		return getSearchRequestBuilder()
+				.query(getDeviceIdsQuery(deviceIds))
+				.collapse(builder -> builder.field(getKeywordField(DEVICE_ID)))
+				.sort(sortByTimeStampDesc())
+				.size(deviceIds.size())
+				.source(new SourceConfig.Builder()
+						.filter(new SourceFilter.Builder().includes(includes).build())
+						.build());
+	}
+
+	/**
+	 * Most recent document for each of the passed devices as a top hit under a terms aggregation on
+	 * device id. No hits are returned, only the aggregation.
+	 *
+	 * @param deviceIds
+	 * @param since only documents at or after this time are aggregated
+	 * @param fields source fields to return in addition to the device id and timestamp
+	 * @return
+	 */
+	public static SearchRequest.Builder getLatestPerDeviceAggregation(
+			Collection<String> deviceIds, Date since, String... fields) {
+		List<String> includes = new ArrayList<>(Arrays.asList(fields));
+		includes.add(DEVICE_ID);
+		includes.add(TIMESTAMP);
+		return getSearchRequestBuilder()
+				.size(0)
+				.query(QueryBuilders.bool()
+						.filter(
+								getDeviceIdsQuery(deviceIds),
+								QueryBuilders.range()
+										.field(TIMESTAMP)
+										.gte(JsonData.of(since.toInstant().toString()))
+										.format("strict_date_optional_time")
+										.build()
+										.toQuery())
+						.build()
+						.toQuery())
+				.aggregations(
+						"terms",
+						new Aggregation.Builder()
+								.terms(t -> t.field(getKeywordField(DEVICE_ID)).size(deviceIds.size()))
+								.aggregations(
+										"latest",
+										new Aggregation.Builder()
+												.topHits(top -> top.size(1)
+														.sort(sortByTimeStampDesc())
+														.source(new SourceConfig.Builder()
+																.filter(new SourceFilter.Builder()
+																		.includes(includes)
+																		.build())
+																.build()))
+												.build())
+								.build());
+	}
+
+	/**
+	 * Page of documents from a point in time, sorted on timestamp then device id (together unique
+	 * per document) for search_after paging
+	 */
+	public static SearchRequest.Builder getPointInTimeSearchBuilder(String pitId, int size) {
+		return new SearchRequest.Builder()
+				.pit(new Pit.Builder()
+						.id(pitId)
+						.keepAlive(POINT_IN_TIME_KEEP_ALIVE)
+						.build())
+				.sort(sortByTimeStampAsc())
+				.sort(sortByDeviceIdAsc())
+				.size(size);
+	}
+
+	public static SortOptions sortByDeviceIdAsc() {
+		return new SortOptions.Builder()
+				.field(new FieldSort.Builder()
+						.field(getKeywordField(DEVICE_ID))
+						.order(SortOrder.Asc)
+						.build())
+				.build();
+	}
+
 	public static SearchRequest.Builder getLogSearchBuilder(int count) {
 		return getLogSearchRequestBuilder()
 				.storedFields("*")
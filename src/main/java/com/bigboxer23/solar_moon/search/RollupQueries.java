@@ -0,0 +1,306 @@
+package com.bigboxer23.solar_moon.search;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.ingest.MeterConstants;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.opensearch.client.json.JsonData;
+import org.opensearch.client.opensearch._types.*;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.query_dsl.QueryBuilders;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import software.amazon.awssdk.utils.StringUtils;
+
+/**
+ * Hourly and daily rollups of device data, kept in {@link OpenSearchConstants#ROLLUP_INDEX_NAME}. A rollup document
+ * holds every reading a device made in the bucket (keyed by the reading's offset into the bucket so
+ * writing the same reading again changes nothing), the summed energy consumed and each reading's real
+ * power as a multi valued field. Field names match the raw index, so the existing sum/avg/max
+ * aggregations return the same values over rollups as they do over raw readings. Document counts
+ * don't: hits.total and histogram doc_count count rollup documents, not readings.
+ *
+ * <p>Each bucket has an "all readings" document and, when any reading was in daylight, a daylight
+ * only document flagged with {@link #DAYLIGHT}. Searches route to rollups only when the answer is
+ * identical: the range and any histogram buckets line up with rollup buckets in the search's
+ * timezone and no filter needs fields rollups don't carry. Daily rollups are UTC days so are only
+ * used for UTC searches.
+ */
+public class RollupQueries implements OpenSearchConstants, MeterConstants {
+	public static final String HOURLY = "1h";
+
+	public static final String DAILY = "1d";
+
+	/** Granularity of the rollup document, {@link #HOURLY} or {@link #DAILY} */
+	public static final String ROLLUP = "rollup";
+
+	public static final String READINGS = "readings";
+
+	public static final String READING_COUNT = "readingCount";
+
+	private static final Set<String> ROUTABLE_TYPES = Set.of(
+			TOTAL_SEARCH_TYPE,
+			AVG_SEARCH_TYPE,
+			AVG_TOTAL_SEARCH_TYPE,
+			TIME_SERIES_SEARCH_TYPE,
+			TIME_SERIES_MAX_SEARCH_TYPE,
+			STACKED_TIME_SERIES_SEARCH_TYPE,
+			GROUPED_BAR_SEARCH_TYPE,
+			TOTAL_ENERGY_CONSUMED_SEARCH_TYPE);
+
+	private static final Set<String> HISTOGRAM_TYPES = Set.of(
+			TIME_SERIES_SEARCH_TYPE,
+			TIME_SERIES_MAX_SEARCH_TYPE,
+			STACKED_TIME_SERIES_SEARCH_TYPE,
+			GROUPED_BAR_SEARCH_TYPE,
+			TOTAL_ENERGY_CONSUMED_SEARCH_TYPE);
+
+	private static final Pattern INTERVAL = Pattern.compile("(\\d+)(ms|s|m|h|d)");
+
+	/** Replaces readings at the same offset so re-sending a reading leaves the rollup unchanged */
+	private static final String MERGE_SCRIPT = "def readings = ctx._source." + READINGS + " == null"
+			+ " ? new ArrayList() : ctx._source." + READINGS + ";"
+			+ "for (def reading : params." + READINGS + ") {"
+			+ "  readings.removeIf(r -> r.t == reading.t); readings.add(reading);"
+			+ "}"
+			+ "double energy = 0; def power = new ArrayList();"
+			+ "for (def reading : readings) { energy += reading.e; power.add(reading.p); }"
+			+ "ctx._source." + READINGS + " = readings;"
+			+ "ctx._source['" + ENG_CONS + "'] = energy;"
+			+ "ctx._source['" + TOTAL_REAL_POWER + "'] = power;"
+			+ "ctx._source." + READING_COUNT + " = readings.size();";
+
+	/** A rollup upsert and the readings it merges, so a failed upsert can be traced to its readings */
+	public record Update(BulkOperation operation, List<DeviceData> readings) {}
+
+	/**
+	 * Upserts merging the passed readings into their hourly and daily rollups, one operation per
+	 * rollup document
+	 *
+	 * @param deviceDatas readings with dates set
+	 */
+	public static List<BulkOperation> getUpdateOperations(List<DeviceData> deviceDatas) {
+		return getUpdates(deviceDatas).stream().map(Update::operation).toList();
+	}
+
+	/**
+	 * Same as {@link #getUpdateOperations(List)}, each operation with the readings it merges
+	 *
+	 * @param deviceDatas readings with dates set
+	 */
+	public static List<Update> getUpdates(List<DeviceData> deviceDatas) {
+		Map<Rollup, List<DeviceData>> byRollup = new LinkedHashMap<>();
+		for (DeviceData data : deviceDatas) {
+			if (data.getDate() == null || StringUtils.isBlank(data.getDeviceId())) {
+				continue;
+			}
+			for (String granularity : List.of(HOURLY, DAILY)) {
+				byRollup.computeIfAbsent(Rollup.of(data, granularity, false), rollup -> new ArrayList<>())
+						.add(data);
+				if (data.isDaylight()) {
+					byRollup.computeIfAbsent(Rollup.of(data, granularity, true), rollup -> new ArrayList<>())
+							.add(data);
+				}
+			}
+		}
+		List<Update> updates = new ArrayList<>();
+		byRollup.forEach((rollup, readings) -> updates.add(new Update(getUpdateOperation(rollup, readings), readings)));
+		return updates;
+	}
+
+	private static BulkOperation getUpdateOperation(Rollup rollup, List<DeviceData> readings) {
+		List<Map<String, Object>> values = new ArrayList<>();
+		readings.forEach(reading -> {
+			Map<String, Object> value = getReading(reading, rollup.bucket());
+			values.removeIf(existing -> existing.get("t").equals(value.get("t")));
+			values.add(value);
+		});
+		return new BulkOperation.Builder()
+				.update(update -> update.index(ROLLUP_INDEX_NAME)
+						.id(rollup.getId())
+						.retryOnConflict(3)
+						.script(getMergeScript(values))
+						.upsert(getDocument(readings.getFirst(), rollup, values)))
+				.build();
+	}
+
+	private static Script getMergeScript(List<Map<String, Object>> readings) {
+		return new Script.Builder()
+				.inline(new InlineScript.Builder()
+						.lang(builder -> builder.builtin(BuiltinScriptLanguage.Painless))
+						.source(MERGE_SCRIPT)
+						.params(READINGS, JsonData.of(readings))
+						.build())
+				.build();
+	}
+
+	private static Map<String, Object> getReading(DeviceData data, long bucket) {
+		Map<String, Object> reading = new HashMap<>();
+		reading.put("t", data.getDate().getTime() - bucket);
+		reading.put("e", data.getEnergyConsumed());
+		reading.put("p", data.getTotalRealPower());
+		return reading;
+	}
+
+	static Map<String, Object> getDocument(DeviceData data, Rollup rollup, List<Map<String, Object>> readings) {
+		Map<String, Object> document = new HashMap<>();
+		document.put(TIMESTAMP, Instant.ofEpochMilli(rollup.bucket()).toString());
+		document.put(ROLLUP, rollup.granularity());
+		document.put(DEVICE_ID, data.getDeviceId());
+		document.put(CUSTOMER_ID_ATTRIBUTE, data.getCustomerId());
+		document.put(SITE_ID, data.getSiteId());
+		document.put(VIRTUAL, data.isVirtual());
+		document.put(IS_SITE, data.isSite());
+		document.put(DAYLIGHT, rollup.daylight());
+		document.put(READINGS, readings);
+		document.put(
+				ENG_CONS,
+				readings.stream()
+						.mapToDouble(reading -> (Float) reading.get("e"))
+						.sum());
+		document.put(
+				TOTAL_REAL_POWER, readings.stream().map(reading -> reading.get("p")).toList());
+		document.put(READING_COUNT, readings.size());
+		return document;
+	}
+
+	/**
+	 * Rollup document a reading belongs in
+	 *
+	 * @param bucket start of the UTC hour or day
+	 */
+	record Rollup(String deviceId, String granularity, boolean daylight, long bucket) {
+		static Rollup of(DeviceData data, String granularity, boolean daylight) {
+			long size = HOURLY.equals(granularity) ? TimeConstants.HOUR : TimeConstants.DAY;
+			return new Rollup(
+					data.getDeviceId(),
+					granularity,
+					daylight,
+					Math.floorDiv(data.getDate().getTime(), size) * size);
+		}
+
+		String getId() {
+			return deviceId + ":" + granularity + ":" + daylight + ":" + bucket;
+		}
+	}
+
+	/**
+	 * Rollup granularity which answers the search exactly, if any
+	 *
+	 * @param searchJSON
+	 * @param now current time, a range ending after it includes everything written so far
+	 * @return {@link #DAILY}, {@link #HOURLY} or empty if the search must use raw readings
+	 */
+	public static Optional<String> getGranularity(SearchJSON searchJSON, long now) {
+		if (searchJSON.getType() == null
+				|| !ROUTABLE_TYPES.contains(searchJSON.getType())
+				|| !StringUtils.isBlank(searchJSON.getDeviceName())
+				|| !StringUtils.isBlank(searchJSON.getSite())
+				|| !StringUtils.isEmpty(searchJSON.getId())
+				|| searchJSON.isFilterErrors()
+				|| searchJSON.isLargeEnergyConsumed()
+				|| searchJSON.getAdditionalFields() != null) {
+			return Optional.empty();
+		}
+		if (isAligned(searchJSON, TimeConstants.DAY, now)) {
+			return Optional.of(DAILY);
+		}
+		if (isAligned(searchJSON, TimeConstants.HOUR, now)) {
+			return Optional.of(HOURLY);
+		}
+		return Optional.empty();
+	}
+
+	private static boolean isAligned(SearchJSON searchJSON, long size, long now) {
+		long start = searchJSON.getStartDate();
+		long end = searchJSON.getEndDate();
+		if (start % size != 0
+				|| !(end >= now || (end + 1) % size == 0 || (end + TimeConstants.SECOND) % size == 0)) {
+			return false;
+		}
+		if (!HISTOGRAM_TYPES.contains(searchJSON.getType())) {
+			return true;
+		}
+		long interval = getInterval(searchJSON.getBucketSize());
+		if (interval <= 0 || interval % size != 0) {
+			return false;
+		}
+		ZoneId zone = StringUtils.isBlank(searchJSON.getTimeZone())
+				? ZoneId.of("UTC")
+				: ZoneId.of(searchJSON.getTimeZone());
+		return Stream.of(start, Math.min(end, now))
+				.map(time -> zone.getRules().getOffset(Instant.ofEpochMilli(time)))
+				.allMatch(offset -> offset.getTotalSeconds() * TimeConstants.SECOND % size == 0);
+	}
+
+	/** @return fixed interval (1h, 7d, ...) in milliseconds, -1 if it can't be parsed */
+	static long getInterval(String bucketSize) {
+		Matcher matcher = INTERVAL.matcher(StringUtils.isBlank(bucketSize) ? "" : bucketSize.trim());
+		if (!matcher.matches()) {
+			return -1;
+		}
+		long value = Long.parseLong(matcher.group(1));
+		return switch (matcher.group(2)) {
+			case "ms" -> value;
+			case "s" -> value * TimeConstants.SECOND;
+			case "m" -> value * TimeConstants.ONE_MINUTE;
+			case "h" -> value * TimeConstants.HOUR;
+			default -> value * TimeConstants.DAY;
+		};
+	}
+
+	/**
+	 * Filters selecting the rollup documents standing in for the raw readings. Daylight searches
+	 * already filter on {@link #DAYLIGHT} which only daylight rollups have set.
+	 */
+	public static List<Query> getRollupFilters(String granularity, boolean daylight) {
+		List<Query> filters = new ArrayList<>();
+		filters.add(QueryBuilders.term()
+				.field(OpenSearchQueries.getKeywordField(ROLLUP))
+				.value(FieldValue.of(granularity))
+				.build()
+				.toQuery());
+		if (!daylight) {
+			filters.add(QueryBuilders.term()
+					.field(DAYLIGHT)
+					.value(FieldValue.of(false))
+					.build()
+					.toQuery());
+		}
+		return filters;
+	}
+
+	/** Same search against the rollup index with the passed query */
+	public static SearchRequest toRollupRequest(SearchRequest request, Query query) {
+		return new SearchRequest.Builder()
+				.index(ROLLUP_INDEX_NAME)
+				.query(query)
+				.aggregations(request.aggregations())
+				.docvalueFields(request.docvalueFields())
+				.storedFields(request.storedFields())
+				.sort(request.sort())
+				.source(request.source())
+				.size(request.size())
+				.from(request.from())
+				.build();
+	}
+
+	/** Raw readings for a customer in time order, paged with search_after for compaction */
+	public static SearchRequest.Builder getCompactionSearchBuilder(String customerId, Date start, Date end, int size) {
+		return OpenSearchQueries.getSearchRequestBuilder()
+				.query(QueryBuilders.bool()
+						.filter(
+								OpenSearchQueries.getCustomerIdQuery(customerId),
+								OpenSearchQueries.getDateRangeQuery(start, end))
+						.build()
+						.toQuery())
+				.sort(OpenSearchQueries.sortByTimeStampAsc())
+				.sort(OpenSearchQueries.sortByDeviceIdAsc())
+				.size(size);
+	}
+}
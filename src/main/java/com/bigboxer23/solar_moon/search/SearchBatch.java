@@ -0,0 +1,175 @@
+package com.bigboxer23.solar_moon.search;
+
+import static com.bigboxer23.solar_moon.util.PropertyConstants.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.util.PropertyValues;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import com.bigboxer23.solar_moon.web.TransactionUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+/**
+ * Collects the searches needed to render a page so they can be sent together as msearch requests
+ * instead of one round trip each. Searches are added along with where their response should go, and
+ * nothing is sent until {@link #execute()}. Added {@link SearchJSON}s must not be modified until the
+ * batch has executed.
+ *
+ * <p>With maxConcurrent above 1 the searches are split into up to maxConcurrent msearch requests run
+ * together on virtual threads. Requests from every concurrent batch in the process share one pool of
+ * permits, so pages rendered at the same time don't multiply the load on the cluster. Whatever hasn't
+ * come back by the deadline (waiting for a permit included) is cancelled, its consumers get null and
+ * {@link #execute()} reports the results as partial.
+ */
+@Slf4j
+public class SearchBatch implements OpenSearchConstants {
+	public static final long DEFAULT_DEADLINE = TimeConstants.SECOND * 10;
+
+	private static final int OVERVIEW_CONCURRENCY = PropertyValues.getInt(OVERVIEW_SEARCH_CONCURRENCY, 1);
+
+	private static final long OVERVIEW_DEADLINE = PropertyValues.getLong(OVERVIEW_SEARCH_DEADLINE, DEFAULT_DEADLINE);
+
+	private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/** Concurrent msearch requests in flight across all batches */
+	private static final Semaphore overviewPermits = new Semaphore(Math.max(1, OVERVIEW_CONCURRENCY), true);
+
+	private final OpenSearchComponent component;
+
+	private final int maxConcurrent;
+
+	private final long deadline;
+
+	private final Semaphore permits;
+
+	private final List<SearchJSON> searches = new ArrayList<>();
+
+	private final List<Consumer<SearchResponse<DeviceData>>> consumers = new ArrayList<>();
+
+	public SearchBatch(OpenSearchComponent component) {
+		this(component, 1, DEFAULT_DEADLINE);
+	}
+
+	/**
+	 * @param component
+	 * @param maxConcurrent msearch requests to split the searches across, 1 runs them sequentially.
+	 *     Requests in flight are capped by the permits shared with other batches
+	 * @param deadline milliseconds to wait for concurrent searches before giving up on them
+	 */
+	public SearchBatch(OpenSearchComponent component, int maxConcurrent, long deadline) {
+		this(component, maxConcurrent, deadline, overviewPermits);
+	}
+
+	/** @param permits shared by every batch whose requests count towards the same limit */
+	SearchBatch(OpenSearchComponent component, int maxConcurrent, long deadline, Semaphore permits) {
+		this.component = component;
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+		this.deadline = deadline;
+		this.permits = permits;
+	}
+
+	/** Batch configured by the overview.search.* properties, sequential unless they opt in */
+	public static SearchBatch forOverview(OpenSearchComponent component) {
+		return new SearchBatch(component, OVERVIEW_CONCURRENCY, OVERVIEW_DEADLINE);
+	}
+
+	public SearchBatch add(SearchJSON search, Consumer<SearchResponse<DeviceData>> consumer) {
+		searches.add(search);
+		consumers.add(consumer);
+		return this;
+	}
+
+	public int size() {
+		return searches.size();
+	}
+
+	/**
+	 * Run every pending search and hand each response (null if it failed) to its consumer on the
+	 * calling thread. A single search skips the msearch wrapping. The batch is empty afterward and can
+	 * be reused.
+	 *
+	 * @return false if the deadline passed before every search completed
+	 */
+	public boolean execute() {
+		if (searches.isEmpty()) {
+			return true;
+		}
+		List<SearchJSON> pending = new ArrayList<>(searches);
+		List<Consumer<SearchResponse<DeviceData>>> pendingConsumers = new ArrayList<>(consumers);
+		searches.clear();
+		consumers.clear();
+		List<SearchResponse<DeviceData>> responses = new ArrayList<>(Collections.nCopies(pending.size(), null));
+		boolean complete = true;
+		if (maxConcurrent > 1 && pending.size() > 1) {
+			complete = searchConcurrently(pending, responses);
+		} else {
+			List<SearchResponse<DeviceData>> results = search(pending);
+			for (int i = 0; i < results.size() && i < responses.size(); i++) {
+				responses.set(i, results.get(i));
+			}
+		}
+		for (int i = 0; i < pendingConsumers.size(); i++) {
+			pendingConsumers.get(i).accept(responses.get(i));
+		}
+		return complete;
+	}
+
+	private boolean searchConcurrently(List<SearchJSON> pending, List<SearchResponse<DeviceData>> responses) {
+		int chunkSize = Math.min(MULTI_SEARCH_BATCH_SIZE, Math.ceilDiv(pending.size(), maxConcurrent));
+		List<Callable<List<SearchResponse<DeviceData>>>> tasks = new ArrayList<>();
+		for (int start = 0; start < pending.size(); start += chunkSize) {
+			List<SearchJSON> chunk = pending.subList(start, Math.min(start + chunkSize, pending.size()));
+			Supplier<List<SearchResponse<DeviceData>>> work = TransactionUtil.withContext(() -> search(chunk));
+			tasks.add(() -> {
+				permits.acquire();
+				try {
+					return work.get();
+				} finally {
+					permits.release();
+				}
+			});
+		}
+		List<Future<List<SearchResponse<DeviceData>>>> futures;
+		try {
+			futures = executor.invokeAll(tasks, deadline, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("interrupted waiting for searches");
+			return false;
+		}
+		boolean complete = true;
+		for (int i = 0; i < futures.size(); i++) {
+			if (futures.get(i).isCancelled()) {
+				complete = false;
+				continue;
+			}
+			try {
+				List<SearchResponse<DeviceData>> results = futures.get(i).get();
+				for (int j = 0; j < results.size() && i * chunkSize + j < responses.size(); j++) {
+					responses.set(i * chunkSize + j, results.get(j));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				log.error("searchConcurrently", e.getCause());
+			}
+		}
+		if (!complete) {
+			log.warn("searches missed their " + deadline + "ms deadline, returning partial results");
+		}
+		return complete;
+	}
+
+	private List<SearchResponse<DeviceData>> search(List<SearchJSON> pending) {
+		return pending.size() == 1
+				? Collections.singletonList(component.search(pending.getFirst()))
+				: component.multiSearch(pending);
+	}
+}
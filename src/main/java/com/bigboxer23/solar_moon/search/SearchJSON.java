@@ -55,6 +55,9 @@ public class SearchJSON {
 		setIncludeSource(search.isIncludeSource());
 		setAdditionalFields(search.getAdditionalFields());
 		setFilterErrors(search.isFilterErrors());
+		setLargeEnergyConsumed(search.isLargeEnergyConsumed());
+		setId(search.getId());
+		setSortAsc(search.isSortAsc());
 	}
 
 	public SearchJSON(String customerId, String deviceId, long endDate, long startDate) {
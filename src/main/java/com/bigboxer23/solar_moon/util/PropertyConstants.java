@@ -18,6 +18,35 @@ public final class PropertyConstants {
 	/** S3 bucket name for FTP ingestion storage */
 	public static final String FTP_S3_BUCKET = "ftp.s3.bucket";
 
+	/** S3 bucket name exported report data is written to */
+	public static final String DOWNLOAD_S3_BUCKET = "download.s3.bucket";
+
+	/**
+	 * Slices a download export is streamed in concurrently, also the most slices one customer's exports
+	 * stream at once. Unset (or 1) streams each export serially
+	 */
+	public static final String DOWNLOAD_EXPORT_PARALLELISM = "download.export.parallelism";
+
+	/** Most devices (across all customers) the device cache holds, defaults to 10000 */
+	public static final String DEVICE_CACHE_MAX_DEVICES = "device.cache.max.devices";
+
+	/** Milliseconds a customer's cached devices are kept, defaults to an hour */
+	public static final String DEVICE_CACHE_TTL = "device.cache.ttl";
+
+	/**
+	 * Milliseconds between checks that a customer's cached devices are still current, also how long
+	 * a write from another process can go unseen. Defaults to 10 seconds
+	 */
+	public static final String DEVICE_CACHE_CHECK_INTERVAL = "device.cache.check.interval";
+
+	/**
+	 * Milliseconds within which repeat device update (last seen) writes for a device are skipped,
+	 * defaults to 5 minutes. Keep it under the device reporting interval (15 minutes for most), a
+	 * longer granularity lets the stored time fall a reading behind and the 45 minute quick check
+	 * flags devices early. Repeat updates inside it come from multi-reading uploads and retries
+	 */
+	public static final String DEVICE_UPDATE_GRANULARITY = "device.update.granularity";
+
 	/** OpenSearch cluster URL */
 	public static final String OPENSEARCH_URL = "opensearch.url";
 
@@ -27,6 +56,9 @@ public final class PropertyConstants {
 	/** OpenSearch password for authentication */
 	public static final String OPENSEARCH_PASSWORD = "opensearch.pw";
 
+	/** Maintain hourly/daily rollups on ingest and answer aligned searches from them (true/false) */
+	public static final String OPENSEARCH_ROLLUPS = "opensearch.rollups";
+
 	/** Email sender address for notifications */
 	public static final String EMAILER_INFO = "emailer.info";
 
@@ -44,4 +76,13 @@ public final class PropertyConstants {
 
 	/** OpenWeatherMap API key (legacy weather provider) */
 	public static final String OPENWEATHERMAP_API = "openweathermap.api";
+
+	/**
+	 * Most overview page searches in flight at once, across every page the process is rendering. Above
+	 * 1 enables concurrent overview assembly, unset (or 1) runs each page's searches sequentially
+	 */
+	public static final String OVERVIEW_SEARCH_CONCURRENCY = "overview.search.concurrency";
+
+	/** Milliseconds a concurrent overview page waits for its searches before returning partial data */
+	public static final String OVERVIEW_SEARCH_DEADLINE = "overview.search.deadline";
 }
@@ -0,0 +1,38 @@
+package com.bigboxer23.solar_moon.util;
+
+import com.bigboxer23.utils.properties.PropertyUtils;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import software.amazon.awssdk.utils.StringUtils;
+
+/** Typed reads of optional tuning properties, see {@link PropertyConstants} for the keys */
+public final class PropertyValues {
+
+	private PropertyValues() {
+		throw new UnsupportedOperationException("Utility class cannot be instantiated");
+	}
+
+	/** @return the property as an int, defaultValue if it's unset or blank */
+	public static int getInt(String key, int defaultValue) {
+		return parse(PropertyUtils.getProperty(key), Integer::parseInt, defaultValue);
+	}
+
+	/** @return the property as a long, defaultValue if it's unset or blank */
+	public static long getLong(String key, long defaultValue) {
+		return parse(PropertyUtils.getProperty(key), Long::parseLong, defaultValue);
+	}
+
+	/** @return the property (in milliseconds) as a duration, defaultValue if it's unset or blank */
+	public static Duration getDuration(String key, Duration defaultValue) {
+		return Duration.ofMillis(getLong(key, defaultValue.toMillis()));
+	}
+
+	static <T> T parse(String value, Function<String, T> parser, T defaultValue) {
+		return Optional.ofNullable(value)
+				.filter(v -> !StringUtils.isBlank(v))
+				.map(String::trim)
+				.map(parser)
+				.orElse(defaultValue);
+	}
+}
@@ -0,0 +1,109 @@
+package com.bigboxer23.solar_moon.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Timezone lookup from a compact grid of quarter degree cells, loaded lazily from a resource, instead
+ * of walking {@link TimezoneMapper}'s decision tree. Cells that are one timezone throughout answer
+ * directly. Cells crossing a border or coast, and anything if the resource can't be read, fall back to
+ * TimezoneMapper, so its (very large) class is only loaded for coordinates that need it. Answers are
+ * memoized per coordinate. The resource is built by {@code TimezoneGridGenerator}.
+ */
+@Slf4j
+public class TimezoneGrid {
+	static final String RESOURCE = "timezone-grid.bin";
+
+	static final int VERSION = 1;
+
+	static final int CELLS_PER_DEGREE = 4;
+
+	static final int ROWS = 180 * CELLS_PER_DEGREE;
+
+	static final int COLUMNS = 360 * CELLS_PER_DEGREE;
+
+	/** Cell holding more than one timezone */
+	static final short MIXED = -1;
+
+	/** Comfortably more than the distinct site coordinates we see */
+	public static final int DEFAULT_MEMO_SIZE = 10000;
+
+	private static final Cache<Long, String> memo = Caffeine.newBuilder().maximumSize(DEFAULT_MEMO_SIZE).build();
+
+	/**
+	 * Each row of cells as runs of the same cell: runs rowStarts[row] until rowStarts[row + 1] are the
+	 * row's, each run holding its cell value and the column it ends before
+	 */
+	private record Grid(String[] names, int[] rowStarts, short[] values, short[] ends) {
+		short getCell(int row, int column) {
+			int index = Arrays.binarySearch(ends, rowStarts[row], rowStarts[row + 1], (short) column);
+			return values[index >= 0 ? index + 1 : -index - 1];
+		}
+	}
+
+	/** Loaded on first lookup */
+	private static class GridHolder {
+		private static final Grid GRID = load();
+	}
+
+	/** Same answers as {@link TimezoneMapper#latLngToTimezoneString(double, double)} */
+	public static String latLngToTimezoneString(double lat, double lng) {
+		float latitude = (float) lat;
+		float longitude = (float) lng;
+		long key = ((long) Float.floatToIntBits(latitude) << 32) | (Float.floatToIntBits(longitude) & 0xffffffffL);
+		return memo.get(key, k -> lookup(latitude, longitude));
+	}
+
+	static String lookup(float lat, float lng) {
+		Grid grid = GridHolder.GRID;
+		if (grid != null && lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180) {
+			short cell = grid.getCell(
+					Math.min(ROWS - 1, (int) ((lat + 90d) * CELLS_PER_DEGREE)),
+					Math.min(COLUMNS - 1, (int) ((lng + 180d) * CELLS_PER_DEGREE)));
+			if (cell != MIXED) {
+				return grid.names()[cell];
+			}
+		}
+		return TimezoneMapper.latLngToTimezoneString(lat, lng);
+	}
+
+	private static Grid load() {
+		InputStream resource = TimezoneGrid.class.getResourceAsStream("/" + RESOURCE);
+		if (resource == null) {
+			log.warn(RESOURCE + " not found, timezones will be looked up in TimezoneMapper");
+			return null;
+		}
+		try (InputStream stream = new GZIPInputStream(resource)) {
+			// one bulk read, decoding through a stream a value at a time is slow before the JIT kicks in
+			ByteBuffer buffer = ByteBuffer.wrap(stream.readAllBytes());
+			if (buffer.getInt() != VERSION || buffer.getInt() != CELLS_PER_DEGREE) {
+				log.warn(RESOURCE + " is for a different grid, timezones will be looked up in TimezoneMapper");
+				return null;
+			}
+			String[] names = new String[buffer.getShort()];
+			for (int i = 0; i < names.length; i++) {
+				byte[] name = new byte[buffer.getShort()];
+				buffer.get(name);
+				names[i] = new String(name, StandardCharsets.UTF_8);
+			}
+			short[] values = new short[buffer.getInt()];
+			short[] ends = new short[values.length];
+			int[] rowStarts = new int[ROWS + 1];
+			for (int row = 0; row < ROWS; row++) {
+				rowStarts[row + 1] = rowStarts[row] + buffer.getShort();
+			}
+			buffer.asShortBuffer().get(values).get(ends);
+			return new Grid(names, rowStarts, values, ends);
+		} catch (IOException | RuntimeException e) {
+			log.warn("couldn't load " + RESOURCE + ", timezones will be looked up in TimezoneMapper", e);
+			return null;
+		}
+	}
+}
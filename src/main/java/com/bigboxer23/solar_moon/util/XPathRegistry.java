@@ -0,0 +1,79 @@
+package com.bigboxer23.solar_moon.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Holds compiled xpath expressions (MeterConstants, ISMAIngestConstants paths) and a document
+ * builder per thread. Neither the JAXP factories nor compiled expressions are thread-safe, so each
+ * thread compiles a constant path once and reuses it for every body it handles.
+ */
+public class XPathRegistry {
+	private static final ThreadLocal<XPath> xpath =
+			ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+
+	private static final ThreadLocal<Map<String, XPathExpression>> expressions = ThreadLocal.withInitial(HashMap::new);
+
+	private static final ThreadLocal<DocumentBuilder> documentBuilder = ThreadLocal.withInitial(() -> {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			return factory.newDocumentBuilder();
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	/**
+	 * Parse the xml once so multiple expressions can be evaluated against the same document
+	 *
+	 * @param xml
+	 * @return parsed document
+	 * @throws XPathExpressionException if the body isn't valid xml, matching what evaluating an
+	 *     expression against the raw body would throw
+	 */
+	public static Document parse(String xml) throws XPathExpressionException {
+		DocumentBuilder builder = documentBuilder.get();
+		// reset() doesn't keep the handler, set each time so failures aren't printed to stderr
+		builder.setErrorHandler(new DefaultHandler());
+		try {
+			return builder.parse(new InputSource(new StringReader(xml)));
+		} catch (SAXException | IOException e) {
+			throw new XPathExpressionException(e);
+		} finally {
+			builder.reset();
+		}
+	}
+
+	public static XPathExpression compile(String path) throws XPathExpressionException {
+		Map<String, XPathExpression> compiled = expressions.get();
+		XPathExpression expression = compiled.get(path);
+		if (expression == null) {
+			expression = xpath.get().compile(path);
+			compiled.put(path, expression);
+		}
+		return expression;
+	}
+
+	public static NodeList getNodeList(Document document, String path) throws XPathExpressionException {
+		return (NodeList) compile(path).evaluate(document, XPathConstants.NODESET);
+	}
+}
@@ -5,6 +5,7 @@ import static com.bigboxer23.solar_moon.util.PropertyConstants.PIRATE_WEATHER_AP
 import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
 import com.bigboxer23.solar_moon.web.TransactionUtil;
 import com.bigboxer23.utils.command.RetryingCommand;
@@ -86,6 +87,7 @@ public class PirateWeatherComponent {
 						(site) -> site.getLatitude() + ":" + site.getLongitude(),
 						Function.identity(),
 						(existing, replacement) -> existing));
+		IComponentRegistry.locationComponent.precomputeSunTimes(sites.values(), LocationComponent.PRECOMPUTE_DAYS);
 		sites.values().forEach(site -> {
 			TransactionUtil.updateCustomerId(site.getClientId());
 			long lastUpdate = getLastUpdate(site.getLatitude(), site.getLongitude());
@@ -4,6 +4,8 @@ import com.bigboxer23.solar_moon.lambda.data.LambdaRequest;
 import com.bigboxer23.solar_moon.util.TokenGenerator;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.function.Supplier;
 import org.slf4j.MDC;
 import software.amazon.awssdk.utils.StringUtils;
 
@@ -66,6 +68,43 @@ public class TransactionUtil {
 		MDC.put("service.name", service);
 	}
 
+	/**
+	 * Wrap a task so it logs with the calling thread's MDC (transaction, customer, device) when run
+	 * on another thread
+	 */
+	public static Runnable withContext(Runnable task) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			setContext(context);
+			try {
+				task.run();
+			} finally {
+				MDC.clear();
+			}
+		};
+	}
+
+	/** @see #withContext(Runnable) */
+	public static <T> Supplier<T> withContext(Supplier<T> task) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			setContext(context);
+			try {
+				return task.get();
+			} finally {
+				MDC.clear();
+			}
+		};
+	}
+
+	private static void setContext(Map<String, String> context) {
+		if (context == null) {
+			MDC.clear();
+			return;
+		}
+		MDC.setContextMap(context);
+	}
+
 	private static void addToMDC(String transactionId, String remoteAddress, String hostName, String customerId) {
 		MDC.put("transaction.id", transactionId);
 		MDC.put("transaction.remote", remoteAddress);
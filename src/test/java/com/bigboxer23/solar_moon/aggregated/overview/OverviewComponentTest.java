@@ -13,6 +13,7 @@ import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchConstants;
+import com.bigboxer23.solar_moon.search.SearchBatch;
 import com.bigboxer23.solar_moon.search.SearchJSON;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
@@ -63,6 +64,7 @@ public class OverviewComponentTest {
 		private final SubscriptionComponent subscriptionComponent;
 		private final OpenSearchComponent osComponent;
 		private final SitesOverviewComponent sitesOverviewComponent;
+		private SearchBatch searchBatch;
 
 		public TestableOverviewComponent(
 				DeviceComponent deviceComponent,
@@ -101,6 +103,11 @@ public class OverviewComponentTest {
 		protected SitesOverviewComponent getSitesOverviewComponent() {
 			return sitesOverviewComponent;
 		}
+
+		@Override
+		protected SearchBatch createSearchBatch() {
+			return searchBatch != null ? searchBatch : super.createSearchBatch();
+		}
 	}
 
 	@BeforeEach
@@ -121,7 +128,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -140,7 +147,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(Collections.emptyList());
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -155,7 +162,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(Collections.emptyList());
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -184,7 +191,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -204,7 +211,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -221,7 +228,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockOSComponent.getAverageEnergyConsumedPerDay(any(SearchJSON.class)))
 				.thenReturn(123.45);
 
@@ -286,16 +293,19 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockOSComponent.getAverageEnergyConsumedPerDay(any(SearchJSON.class)))
 				.thenReturn(100.0);
 
 		overviewComponent.getOverviewData(searchJson);
 
-		verify(mockOSComponent, atLeastOnce())
-				.search(argThat(search -> OpenSearchConstants.AVG_SEARCH_TYPE.equals(search.getType())));
-		verify(mockOSComponent, atLeastOnce())
-				.search(argThat(search -> OpenSearchConstants.AVG_TOTAL_SEARCH_TYPE.equals(search.getType())));
+		verify(mockOSComponent)
+				.multiSearch(argThat(searches -> searches.stream()
+						.anyMatch(search -> OpenSearchConstants.AVG_SEARCH_TYPE.equals(search.getType()))));
+		verify(mockOSComponent)
+				.multiSearch(argThat(searches -> searches.stream()
+						.anyMatch(search -> OpenSearchConstants.AVG_TOTAL_SEARCH_TYPE.equals(search.getType()))));
+		verify(mockOSComponent, never()).search(any(SearchJSON.class));
 		verify(mockOSComponent, atLeastOnce()).getAverageEnergyConsumedPerDay(any(SearchJSON.class));
 	}
 
@@ -310,7 +320,7 @@ public class OverviewComponentTest {
 
 		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
 		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 
 		OverviewData result = overviewComponent.getOverviewData(searchJson);
 
@@ -321,6 +331,47 @@ public class OverviewComponentTest {
 		assertTrue(result.getSitesOverviewData().containsKey("Site 2"));
 	}
 
+	private void stubMultiSearch() {
+		when(mockOSComponent.multiSearch(anyList()))
+				.thenAnswer(invocation ->
+						Collections.nCopies(invocation.getArgument(0, List.class).size(), mockSearchResponse));
+	}
+
+	@Test
+	void testGetOverviewData_flagsPartialWhenSearchesMissDeadline() {
+		SearchJSON searchJson = createSearchJSON();
+		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID))
+				.thenReturn(Collections.singletonList(createSiteDevice()));
+		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(Collections.emptyList());
+		stubMultiSearch();
+		overviewComponent.searchBatch = new SearchBatch(mockOSComponent) {
+			@Override
+			public boolean execute() {
+				super.execute();
+				return false;
+			}
+		};
+
+		OverviewData result = overviewComponent.getOverviewData(searchJson);
+
+		assertTrue(result.isPartial());
+	}
+
+	@Test
+	void testGetOverviewData_completeIsNotPartial() {
+		SearchJSON searchJson = createSearchJSON();
+		when(mockDeviceComponent.getDevicesForCustomerId(CUSTOMER_ID))
+				.thenReturn(Collections.singletonList(createSiteDevice()));
+		when(mockAlarmComponent.getAlarms(CUSTOMER_ID)).thenReturn(Collections.emptyList());
+		stubMultiSearch();
+
+		OverviewData result = overviewComponent.getOverviewData(searchJson);
+
+		assertFalse(result.isPartial());
+		assertEquals(
+				mockSearchResponse, result.getSitesOverviewData().get(SITE_NAME).getWeeklyMaxPower());
+	}
+
 	private SearchJSON createSearchJSON() {
 		SearchJSON searchJson = new SearchJSON();
 		searchJson.setCustomerId(CUSTOMER_ID);
@@ -12,6 +12,7 @@ import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
+import com.bigboxer23.solar_moon.search.SearchBatch;
 import com.bigboxer23.solar_moon.search.SearchJSON;
 import com.bigboxer23.solar_moon.subscription.SubscriptionComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
@@ -68,6 +69,7 @@ public class SitesOverviewComponentTest {
 		private final SubscriptionComponent subscriptionComponent;
 		private final OpenSearchComponent osComponent;
 		private final LocationComponent locationComponent;
+		private SearchBatch searchBatch;
 
 		public TestableSitesOverviewComponent(
 				DeviceComponent deviceComponent,
@@ -106,6 +108,11 @@ public class SitesOverviewComponentTest {
 		protected LocationComponent getLocationComponent() {
 			return locationComponent;
 		}
+
+		@Override
+		protected SearchBatch createSearchBatch() {
+			return searchBatch != null ? searchBatch : super.createSearchBatch();
+		}
 	}
 
 	@BeforeEach
@@ -128,7 +135,7 @@ public class SitesOverviewComponentTest {
 		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(devices);
 		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockLocationComponent.getLocalTimeString(LATITUDE, LONGITUDE))
 				.thenReturn(Optional.of(LocalDateTime.now()));
 
@@ -164,7 +171,7 @@ public class SitesOverviewComponentTest {
 		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(devices);
 		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockLocationComponent.getLocalTimeString(LATITUDE, LONGITUDE))
 				.thenReturn(Optional.of(LocalDateTime.now()));
 
@@ -197,7 +204,7 @@ public class SitesOverviewComponentTest {
 		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(Collections.emptyList());
 		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(alarms);
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockLocationComponent.getLocalTimeString(LATITUDE, LONGITUDE))
 				.thenReturn(Optional.of(LocalDateTime.now()));
 
@@ -215,21 +222,21 @@ public class SitesOverviewComponentTest {
 		Device site = createSiteDevice();
 		DeviceData deviceData = createDeviceDataWithWeather();
 
-		when(mockOSComponent.getLastDeviceEntry(eq(SITE_ID), any())).thenReturn(deviceData);
+		when(mockOSComponent.getLastDeviceEntry(SITE_ID)).thenReturn(deviceData);
 
 		SiteWeatherData result = sitesOverviewComponent.getWeatherInformation(site);
 
 		assertNotNull(result);
 		assertEquals("Sunny", result.getWeatherSummary());
 		assertEquals(75.5f, result.getTemperature());
-		verify(mockOSComponent).getLastDeviceEntry(eq(SITE_ID), any());
+		verify(mockOSComponent).getLastDeviceEntry(SITE_ID);
 	}
 
 	@Test
 	void testGetWeatherInformation_withNoWeatherData_returnsNull() {
 		Device site = createSiteDevice();
 
-		when(mockOSComponent.getLastDeviceEntry(eq(SITE_ID), any())).thenReturn(null);
+		when(mockOSComponent.getLastDeviceEntry(SITE_ID)).thenReturn(null);
 
 		SiteWeatherData result = sitesOverviewComponent.getWeatherInformation(site);
 
@@ -242,7 +249,7 @@ public class SitesOverviewComponentTest {
 		DeviceData deviceData = new DeviceData();
 		deviceData.setWeatherSummary("");
 
-		when(mockOSComponent.getLastDeviceEntry(eq(SITE_ID), any())).thenReturn(deviceData);
+		when(mockOSComponent.getLastDeviceEntry(SITE_ID)).thenReturn(deviceData);
 
 		SiteWeatherData result = sitesOverviewComponent.getWeatherInformation(site);
 
@@ -331,7 +338,7 @@ public class SitesOverviewComponentTest {
 		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(devices);
 		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(Collections.emptyList());
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockLocationComponent.getLocalTimeString(LATITUDE, LONGITUDE))
 				.thenReturn(Optional.of(LocalDateTime.now()));
 
@@ -360,7 +367,7 @@ public class SitesOverviewComponentTest {
 		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(devices);
 		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(Collections.emptyList());
-		when(mockOSComponent.search(any(SearchJSON.class))).thenReturn(mockSearchResponse);
+		stubMultiSearch();
 		when(mockLocationComponent.getLocalTimeString(LATITUDE, LONGITUDE))
 				.thenReturn(Optional.of(LocalDateTime.now()));
 
@@ -375,6 +382,60 @@ public class SitesOverviewComponentTest {
 		assertFalse(result.getDeviceAvg().containsKey("device2"));
 	}
 
+	@Test
+	void testGetExtendedSiteOverviewData_issuesSingleMultiSearch() {
+		SearchJSON searchJson = createSearchJSON();
+		Device site = createSiteDevice();
+		List<Device> devices = Arrays.asList(createDevice("device1"), createDevice("device2"));
+
+		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
+		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(devices);
+		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(Collections.emptyList());
+		stubMultiSearch();
+
+		SitesSiteData result = sitesOverviewComponent.getExtendedSiteOverviewData(SITE_ID, searchJson);
+
+		// site total, avg, weekly max and time series, then avg, total, time series and weekly max per device
+		verify(mockOSComponent).multiSearch(argThat(searches -> searches.size() == 12
+				&& searches.stream().distinct().count() == 12));
+		verify(mockOSComponent, never()).search(any(SearchJSON.class));
+		assertEquals(mockSearchResponse, result.getTotal());
+		assertEquals(mockSearchResponse, result.getTimeSeries());
+		assertEquals(mockSearchResponse, result.getDeviceAvg().get("device2"));
+		assertEquals(mockSearchResponse, result.getDeviceWeeklyMaxPower().get("device1"));
+	}
+
+	@Test
+	void testGetExtendedSiteOverviewData_concurrentPartialResults() {
+		SearchJSON searchJson = createSearchJSON();
+		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(createSiteDevice()));
+		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
+				.thenReturn(Arrays.asList(createDevice("device1"), createDevice("device2")));
+		when(mockAlarmComponent.findAlarmsBySite(CUSTOMER_ID, SITE_ID)).thenReturn(Collections.emptyList());
+		// One search per request at this concurrency, anything for device2 misses the deadline
+		when(mockOSComponent.search(any(SearchJSON.class))).thenAnswer(invocation -> {
+			if ("device2".equals(invocation.getArgument(0, SearchJSON.class).getDeviceId())) {
+				Thread.sleep(5000);
+			}
+			return mockSearchResponse;
+		});
+		sitesOverviewComponent.searchBatch = new SearchBatch(mockOSComponent, 12, 200);
+
+		SitesSiteData result = sitesOverviewComponent.getExtendedSiteOverviewData(SITE_ID, searchJson);
+
+		assertTrue(result.isPartial());
+		assertEquals(mockSearchResponse, result.getTotal());
+		assertEquals(mockSearchResponse, result.getDeviceTimeSeries().get("device1"));
+		assertTrue(result.getDeviceTimeSeries().containsKey("device2"));
+		assertNull(result.getDeviceTimeSeries().get("device2"));
+	}
+
+	private void stubMultiSearch() {
+		when(mockOSComponent.multiSearch(anyList()))
+				.thenAnswer(invocation ->
+						Collections.nCopies(invocation.getArgument(0, List.class).size(), mockSearchResponse));
+	}
+
 	private SearchJSON createSearchJSON() {
 		SearchJSON searchJson = new SearchJSON();
 		searchJson.setCustomerId(CUSTOMER_ID);
@@ -10,13 +10,17 @@ import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.data.LinkedDevice;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.device.DeviceUpdateComponent;
+import com.bigboxer23.solar_moon.device.VirtualDeviceComponent;
+import com.bigboxer23.solar_moon.ingest.MeterConstants;
 import com.bigboxer23.solar_moon.maintenance.MaintenanceComponent;
 import com.bigboxer23.solar_moon.util.TimeConstants;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -71,6 +75,7 @@ public class AlarmComponentTest implements IAlarmConstants {
 		private final com.bigboxer23.solar_moon.search.OpenSearchComponent openSearchComponent;
 		private final com.bigboxer23.solar_moon.search.status.OpenSearchStatusComponent openSearchStatusComponent;
 		private final com.bigboxer23.solar_moon.notifications.NotificationComponent notificationComponent;
+		private final VirtualDeviceComponent virtualDeviceComponent = mock(VirtualDeviceComponent.class);
 		private Optional<LinkedDevice> linkedDeviceErrorResult = Optional.empty();
 		private boolean useRealLinkedDeviceErrored = false;
 
@@ -140,6 +145,11 @@ public class AlarmComponentTest implements IAlarmConstants {
 			return notificationComponent;
 		}
 
+		@Override
+		protected VirtualDeviceComponent getVirtualDeviceComponent() {
+			return virtualDeviceComponent;
+		}
+
 		@Override
 		protected Optional<LinkedDevice> isLinkedDeviceErrored(DeviceData deviceData, Device device) {
 			if (useRealLinkedDeviceErrored) {
@@ -533,6 +543,42 @@ public class AlarmComponentTest implements IAlarmConstants {
 						&& alarm.getEndDate() > 0));
 	}
 
+	@Test
+	void testResolveActiveAlarms_batch_queriesActiveAlarmsOncePerCustomer() {
+		DeviceData deviceData = createValidDeviceData();
+		DeviceData otherDeviceData = createValidDeviceData();
+		otherDeviceData.setDeviceId("other-device");
+		DeviceData otherCustomerData = createValidDeviceData();
+		otherCustomerData.setCustomerId("other-customer");
+		Alarm activeAlarm = createTestAlarm();
+		activeAlarm.setMessage(NO_DATA_RECENTLY + "12345");
+		when(mockRepository.findActiveAlarms(CUSTOMER_ID)).thenReturn(List.of(activeAlarm));
+		when(mockRepository.findActiveAlarms("other-customer")).thenReturn(Collections.emptyList());
+		when(mockRepository.update(any(Alarm.class))).thenReturn(Optional.of(activeAlarm));
+
+		alarmComponent.resolveActiveAlarms(List.of(deviceData, otherDeviceData, otherCustomerData));
+
+		verify(mockRepository, times(1)).findActiveAlarms(CUSTOMER_ID);
+		verify(mockRepository, times(1)).findActiveAlarms("other-customer");
+		verify(mockRepository, never()).findActiveAlarms();
+		verify(mockRepository, never()).findAlarmsByDevice(anyString(), anyString());
+		verify(mockDeviceUpdateComponent, times(2)).update(DEVICE_ID);
+		verify(mockDeviceUpdateComponent).update("other-device");
+		verify(mockRepository, times(1)).update(argThat(alarm -> ALARM_ID.equals(alarm.getAlarmId())
+				&& alarm.getState() == RESOLVED));
+	}
+
+	@Test
+	void testResolveActiveAlarms_batch_onlyOldData_skipsQuery() {
+		DeviceData oldData = createValidDeviceData();
+		oldData.setDate(new Date(System.currentTimeMillis() - TimeConstants.HOUR * 2));
+
+		alarmComponent.resolveActiveAlarms(List.of(oldData));
+
+		verify(mockRepository, never()).findActiveAlarms(anyString());
+		verify(mockDeviceUpdateComponent, never()).update(anyString());
+	}
+
 	@Test
 	void testResolveActiveAlarms_withEmailedAlarm_setsResolveEmailFlag() {
 		DeviceData deviceData = createValidDeviceData();
@@ -1215,7 +1261,7 @@ public class AlarmComponentTest implements IAlarmConstants {
 		device.setSiteId(SITE_ID);
 		device.setDisabled(true);
 
-		when(mockOpenSearchComponent.getLastDeviceEntry(eq(DEVICE_ID), any())).thenReturn(new DeviceData());
+		when(mockOpenSearchComponent.getLastDeviceEntry(DEVICE_ID)).thenReturn(new DeviceData());
 
 		Optional<Alarm> result = alarmComponent.checkDevice(device);
 
@@ -1230,7 +1276,7 @@ public class AlarmComponentTest implements IAlarmConstants {
 		device.setSiteId(SITE_ID);
 		device.setDisabled(false);
 
-		when(mockOpenSearchComponent.getLastDeviceEntry(eq(DEVICE_ID), any())).thenReturn(null);
+		when(mockOpenSearchComponent.getLastDeviceEntry(DEVICE_ID)).thenReturn(null);
 
 		Optional<Alarm> result = alarmComponent.checkDevice(device);
 
@@ -1288,7 +1334,7 @@ public class AlarmComponentTest implements IAlarmConstants {
 		DeviceData staleData = createValidDeviceData();
 		staleData.setDate(new Date(System.currentTimeMillis() - TimeConstants.HOUR * 2));
 
-		when(mockOpenSearchComponent.getLastDeviceEntry(eq(DEVICE_ID), any())).thenReturn(staleData);
+		when(mockOpenSearchComponent.getLastDeviceEntry(DEVICE_ID)).thenReturn(staleData);
 		when(mockOpenSearchStatusComponent.hasFailureWithinLastThirtyMinutes()).thenReturn(false);
 		when(mockRepository.findAlarmsByDevice(CUSTOMER_ID, DEVICE_ID)).thenReturn(Collections.emptyList());
 		when(mockRepository.update(any(Alarm.class))).thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
@@ -1310,7 +1356,7 @@ public class AlarmComponentTest implements IAlarmConstants {
 		DeviceData staleData = createValidDeviceData();
 		staleData.setDate(new Date(System.currentTimeMillis() - TimeConstants.HOUR * 2));
 
-		when(mockOpenSearchComponent.getLastDeviceEntry(eq(DEVICE_ID), any())).thenReturn(staleData);
+		when(mockOpenSearchComponent.getLastDeviceEntry(DEVICE_ID)).thenReturn(staleData);
 		when(mockOpenSearchStatusComponent.hasFailureWithinLastThirtyMinutes()).thenReturn(true);
 
 		Optional<Alarm> result = alarmComponent.checkDevice(device);
@@ -1326,6 +1372,8 @@ public class AlarmComponentTest implements IAlarmConstants {
 		List<Alarm> result = alarmComponent.quickCheckDevices();
 
 		assertTrue(result.isEmpty());
+		// sites past the deadline are written even with nothing ingesting
+		verify(alarmComponent.virtualDeviceComponent).writeExpiredSites();
 	}
 
 	@Test
@@ -1386,7 +1434,8 @@ public class AlarmComponentTest implements IAlarmConstants {
 
 		when(mockDeviceUpdateComponent.queryByTimeRange(anyLong())).thenReturn(List.of(updateData));
 		when(mockDeviceComponent.findDeviceById(DEVICE_ID)).thenReturn(Optional.of(device));
-		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(siteDevice));
+		when(mockDeviceComponent.findDevicesByIds(Set.of(SITE_ID), CUSTOMER_ID))
+				.thenReturn(Map.of(SITE_ID, siteDevice));
 		when(mockLocationComponent.isDay(any(Date.class), anyDouble(), anyDouble()))
 				.thenReturn(Optional.of(false));
 
@@ -1414,20 +1463,89 @@ public class AlarmComponentTest implements IAlarmConstants {
 		siteDevice.setLatitude(40.0);
 		siteDevice.setLongitude(-75.0);
 
-		Alarm alarm = createTestAlarm();
-
 		when(mockDeviceUpdateComponent.queryByTimeRange(anyLong())).thenReturn(List.of(updateData));
 		when(mockDeviceComponent.findDeviceById(DEVICE_ID)).thenReturn(Optional.of(device));
-		when(mockDeviceComponent.findDeviceById(SITE_ID, CUSTOMER_ID)).thenReturn(Optional.of(siteDevice));
+		when(mockDeviceComponent.findDevicesByIds(Set.of(SITE_ID), CUSTOMER_ID))
+				.thenReturn(Map.of(SITE_ID, siteDevice));
 		when(mockLocationComponent.isDay(any(Date.class), anyDouble(), anyDouble()))
 				.thenReturn(Optional.of(true));
-		when(mockRepository.findAlarmsByDevice(CUSTOMER_ID, DEVICE_ID)).thenReturn(Collections.emptyList());
-		when(mockRepository.update(any(Alarm.class))).thenReturn(Optional.of(alarm));
+		when(mockRepository.findActiveAlarms()).thenReturn(Collections.emptyList());
 
 		List<Alarm> result = alarmComponent.quickCheckDevices();
 
 		assertFalse(result.isEmpty());
-		verify(mockRepository).update(argThat(a -> a.getMessage().contains(NO_DATA_RECENTLY)));
+		verify(mockRepository).updateAlarms(argThat(alarms -> alarms.size() == 1
+				&& alarms.iterator().next().getMessage().contains(NO_DATA_RECENTLY)));
+		verify(mockRepository, never()).update(any(Alarm.class));
+	}
+
+	@Test
+	void testQuickCheckDevices_sharesLookupsAcrossDevices() {
+		Device device = createQuickCheckDevice(DEVICE_ID);
+		Device otherDevice = createQuickCheckDevice("other-device");
+		Alarm activeAlarm = createTestAlarm();
+		activeAlarm.setEmailed(DONT_EMAIL);
+		when(mockDeviceUpdateComponent.queryByTimeRange(anyLong()))
+				.thenReturn(List.of(createDeviceUpdate(DEVICE_ID), createDeviceUpdate("other-device")));
+		when(mockDeviceComponent.findDeviceById(DEVICE_ID)).thenReturn(Optional.of(device));
+		when(mockDeviceComponent.findDeviceById("other-device")).thenReturn(Optional.of(otherDevice));
+		when(mockDeviceComponent.findDevicesByIds(Set.of(SITE_ID), CUSTOMER_ID))
+				.thenReturn(Map.of(SITE_ID, createQuickCheckSite()));
+		when(mockLocationComponent.isDay(any(Date.class), anyDouble(), anyDouble()))
+				.thenReturn(Optional.of(true));
+		when(mockRepository.findActiveAlarms()).thenReturn(List.of(activeAlarm));
+
+		List<Alarm> result = alarmComponent.quickCheckDevices();
+
+		assertEquals(2, result.size());
+		assertTrue(result.contains(activeAlarm));
+		assertEquals(NEEDS_EMAIL, activeAlarm.getEmailed());
+		assertEquals(MESSAGE, activeAlarm.getMessage());
+		verify(mockMaintenanceComponent, times(1)).isInMaintenanceMode();
+		verify(mockLocationComponent, times(1)).isDay(any(Date.class), anyDouble(), anyDouble());
+		verify(mockRepository, times(1)).findActiveAlarms();
+		verify(mockRepository, times(1)).updateAlarms(anyCollection());
+		verify(mockRepository, never()).findAlarmsByDevice(anyString(), anyString());
+		verify(mockDeviceComponent, never()).findDeviceById(anyString(), anyString());
+	}
+
+	@Test
+	void testQuickCheckDevices_manyDevices_loadsAllDevicesOnce() {
+		List<com.bigboxer23.solar_moon.data.DeviceUpdateData> updates = new java.util.ArrayList<>();
+		List<Device> devices = new java.util.ArrayList<>();
+		for (int i = 0; i <= AlarmComponent.QUICK_CHECK_BULK_LOAD_THRESHOLD; i++) {
+			updates.add(createDeviceUpdate("device-" + i));
+			devices.add(createQuickCheckDevice("device-" + i));
+		}
+		updates.add(createDeviceUpdate("missing-device"));
+		when(mockDeviceUpdateComponent.queryByTimeRange(anyLong())).thenReturn(updates);
+		when(mockDeviceComponent.getDevices(false)).thenReturn(devices);
+		when(mockDeviceComponent.getDevices(true)).thenReturn(List.of(createQuickCheckSite()));
+		when(mockDeviceComponent.findDeviceById("missing-device")).thenReturn(Optional.empty());
+		when(mockLocationComponent.isDay(any(Date.class), anyDouble(), anyDouble()))
+				.thenReturn(Optional.of(true));
+		when(mockRepository.findActiveAlarms()).thenReturn(Collections.emptyList());
+
+		List<Alarm> result = alarmComponent.quickCheckDevices();
+
+		assertEquals(devices.size(), result.size());
+		verify(mockDeviceComponent, times(1)).findDeviceById(anyString());
+		verify(mockDeviceComponent, never()).findDevicesByIds(anyCollection(), anyString());
+		verify(mockRepository, times(1)).updateAlarms(anyCollection());
+	}
+
+	@Test
+	void testQuickCheckDevices_inMaintenanceMode_skipsLookups() {
+		when(mockDeviceUpdateComponent.queryByTimeRange(anyLong()))
+				.thenReturn(List.of(createDeviceUpdate(DEVICE_ID)));
+		when(mockMaintenanceComponent.isInMaintenanceMode()).thenReturn(true);
+
+		List<Alarm> result = alarmComponent.quickCheckDevices();
+
+		assertTrue(result.isEmpty());
+		verify(mockDeviceComponent, never()).findDeviceById(anyString());
+		verify(mockRepository, never()).findActiveAlarms();
+		verify(mockRepository, never()).updateAlarms(anyCollection());
 	}
 
 	@Test
@@ -1475,6 +1593,66 @@ public class AlarmComponentTest implements IAlarmConstants {
 		assertTrue(result);
 	}
 
+	@Test
+	void testIsDeviceOK_withProducingSiteDevice_returnsFalse() throws Exception {
+		Device device = setupLowProductionSiteDevice();
+		DeviceData otherData = new DeviceData(SITE_ID, CUSTOMER_ID, "device-456");
+		otherData.setTotalRealPower(3.0f);
+		when(mockOpenSearchComponent.getLastDeviceEntries(
+						List.of("device-456"), TimeConstants.HOUR * 2, MeterConstants.TOTAL_REAL_POWER))
+				.thenReturn(Map.of("device-456", otherData));
+		DeviceData deviceData = createValidDeviceData();
+		deviceData.setTotalRealPower(0.0f);
+
+		assertFalse(alarmComponent.isDeviceOK(device, deviceData, true));
+		verify(mockOpenSearchComponent, never()).getLastDeviceEntry(anyString());
+	}
+
+	@Test
+	void testIsDeviceOK_withIdleSiteDevices_returnsTrue() throws Exception {
+		Device device = setupLowProductionSiteDevice();
+		DeviceData otherData = new DeviceData(SITE_ID, CUSTOMER_ID, "device-456");
+		otherData.setTotalRealPower(0.0f);
+		when(mockOpenSearchComponent.getLastDeviceEntries(
+						List.of("device-456"), TimeConstants.HOUR * 2, MeterConstants.TOTAL_REAL_POWER))
+				.thenReturn(Map.of("device-456", otherData));
+		DeviceData deviceData = createValidDeviceData();
+		deviceData.setTotalRealPower(0.0f);
+
+		assertTrue(alarmComponent.isDeviceOK(device, deviceData, true));
+	}
+
+	@Test
+	void testIsDeviceOK_withNoSiteDeviceData_returnsTrue() throws Exception {
+		Device device = setupLowProductionSiteDevice();
+		when(mockOpenSearchComponent.getLastDeviceEntries(
+						List.of("device-456"), TimeConstants.HOUR * 2, MeterConstants.TOTAL_REAL_POWER))
+				.thenReturn(Collections.emptyMap());
+		DeviceData deviceData = createValidDeviceData();
+		deviceData.setTotalRealPower(0.0f);
+
+		assertTrue(alarmComponent.isDeviceOK(device, deviceData, true));
+	}
+
+	/** Device with low recent production in good weather, so the other site devices are checked */
+	private Device setupLowProductionSiteDevice() throws Exception {
+		Device device = new Device(DEVICE_ID, CUSTOMER_ID);
+		device.setSiteId(SITE_ID);
+		Device siteDevice = new Device(SITE_ID, CUSTOMER_ID);
+		siteDevice.setSiteId(SITE_ID);
+		siteDevice.setIsSite("1");
+		DeviceData recent = createValidDeviceData();
+		recent.setTotalRealPower(0.0f);
+		recent.setUVIndex(5.0f);
+		when(mockOpenSearchComponent.getRecentDeviceData(CUSTOMER_ID, DEVICE_ID, TimeConstants.HOUR * 2))
+				.thenReturn(List.of(recent));
+		when(mockLocationComponent.isDay(any(Date.class), anyDouble(), anyDouble()))
+				.thenReturn(Optional.of(true));
+		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
+				.thenReturn(List.of(device, siteDevice, new Device("device-456", CUSTOMER_ID)));
+		return device;
+	}
+
 	@Test
 	void testResolveActiveAlarms_withOldData_doesNotResolve() {
 		DeviceData deviceData = createValidDeviceData();
@@ -1627,6 +1805,29 @@ public class AlarmComponentTest implements IAlarmConstants {
 		return deviceData;
 	}
 
+	private com.bigboxer23.solar_moon.data.DeviceUpdateData createDeviceUpdate(String deviceId) {
+		com.bigboxer23.solar_moon.data.DeviceUpdateData updateData =
+				new com.bigboxer23.solar_moon.data.DeviceUpdateData();
+		updateData.setDeviceId(deviceId);
+		updateData.setLastUpdate(System.currentTimeMillis());
+		return updateData;
+	}
+
+	private Device createQuickCheckDevice(String deviceId) {
+		Device device = new Device();
+		device.setId(deviceId);
+		device.setClientId(CUSTOMER_ID);
+		device.setSiteId(SITE_ID);
+		return device;
+	}
+
+	private Device createQuickCheckSite() {
+		Device site = createQuickCheckDevice(SITE_ID);
+		site.setLatitude(40.0);
+		site.setLongitude(-75.0);
+		return site;
+	}
+
 	private Alarm createTestAlarm() {
 		Alarm alarm = new Alarm(ALARM_ID, CUSTOMER_ID, DEVICE_ID, SITE_ID);
 		alarm.setMessage(MESSAGE);
@@ -14,8 +14,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
 import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
@@ -26,6 +28,9 @@ public class DynamoDbAlarmRepositoryTest implements IAlarmConstants {
 	@Mock
 	private DynamoDbTable<Alarm> mockTable;
 
+	@Mock
+	private DynamoDbEnhancedClient mockClient;
+
 	@Mock
 	private DynamoDbIndex<Alarm> mockIndex;
 
@@ -45,19 +50,27 @@ public class DynamoDbAlarmRepositoryTest implements IAlarmConstants {
 	private static class TestableDynamoDbAlarmRepository extends DynamoDbAlarmRepository {
 		private final DynamoDbTable<Alarm> table;
 
-		public TestableDynamoDbAlarmRepository(DynamoDbTable<Alarm> table) {
+		private final DynamoDbEnhancedClient client;
+
+		public TestableDynamoDbAlarmRepository(DynamoDbTable<Alarm> table, DynamoDbEnhancedClient client) {
 			this.table = table;
+			this.client = client;
 		}
 
 		@Override
 		protected DynamoDbTable<Alarm> getTable() {
 			return table;
 		}
+
+		@Override
+		protected DynamoDbEnhancedClient getClient() {
+			return client;
+		}
 	}
 
 	@BeforeEach
 	void setUp() {
-		repository = new TestableDynamoDbAlarmRepository(mockTable);
+		repository = new TestableDynamoDbAlarmRepository(mockTable, mockClient);
 	}
 
 	@Test
@@ -322,6 +335,20 @@ public class DynamoDbAlarmRepositoryTest implements IAlarmConstants {
 		assertTrue(result.isEmpty());
 	}
 
+	@Test
+	void testFindActiveAlarms_forCustomer_queriesCustomerOnly() {
+		List<Alarm> expectedAlarms = List.of(createTestAlarm());
+		when(mockTable.index(Alarm.STATE_CUSTOMER_INDEX)).thenReturn(mockIndex);
+		when(mockIndex.query(any(QueryConditional.class))).thenReturn(mockPageIterable);
+		when(mockPageIterable.stream()).thenReturn(java.util.stream.Stream.of(mockPage));
+		when(mockPage.items()).thenReturn(expectedAlarms);
+
+		assertEquals(expectedAlarms, repository.findActiveAlarms(CUSTOMER_ID));
+		assertTrue(repository.findActiveAlarms(" ").isEmpty());
+
+		verify(mockIndex, times(1)).query(any(QueryConditional.class));
+	}
+
 	@Test
 	void testFindAlarmsByStateAndDateLessThan_returnsMatchingAlarms() {
 		List<Alarm> expectedAlarms = List.of(createTestAlarm());
@@ -358,6 +385,21 @@ public class DynamoDbAlarmRepositoryTest implements IAlarmConstants {
 		verify(mockTable).deleteItem(alarm);
 	}
 
+	@Test
+	void testUpdateAlarms_writesOneBatch() {
+		Alarm alarm = createTestAlarm();
+		Alarm other = new Alarm("alarm-456", CUSTOMER_ID, DEVICE_ID, SITE_ID);
+		when(mockClient.batchWriteItem(any(Consumer.class))).thenReturn(mock(BatchWriteResult.class));
+
+		repository.updateAlarms(List.of(alarm, other));
+		repository.updateAlarms(Collections.emptyList());
+
+		verify(mockClient).batchWriteItem(any(Consumer.class));
+		verify(mockTable, never()).updateItem(any(Consumer.class));
+		assertTrue(alarm.getUpdatedAt() > 0);
+		assertTrue(other.getUpdatedAt() > 0);
+	}
+
 	@Test
 	void testGetTableName_returnsCorrectTableName() {
 		assertEquals("alarms", repository.getTableName());
@@ -1,9 +1,12 @@
 package com.bigboxer23.solar_moon.device;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -11,6 +14,7 @@ import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -19,6 +23,12 @@ public class CachingDeviceComponentTest {
 	private TestableCachingDeviceComponent cachingComponent;
 	private DeviceComponent mockBaseComponent;
 
+	@Mock
+	private DeviceRepository mockRepository;
+
+	@Mock
+	private DeviceVersionRepository mockVersionRepository;
+
 	private static final String CUSTOMER_ID = "test-customer-123";
 	private static final String DEVICE_ID = "device-123";
 	private static final String SITE_ID = "site-123";
@@ -26,20 +36,29 @@ public class CachingDeviceComponentTest {
 	private static class TestableCachingDeviceComponent extends CachingDeviceComponent {
 		private final DeviceComponent baseComponent;
 
-		public TestableCachingDeviceComponent(DeviceComponent baseComponent) {
+		private final DeviceVersionRepository versionRepository;
+
+		public TestableCachingDeviceComponent(
+				DeviceComponent baseComponent, DeviceVersionRepository versionRepository) {
 			this.baseComponent = baseComponent;
+			this.versionRepository = versionRepository;
 		}
 
 		@Override
 		protected DeviceRepository getRepository() {
 			return baseComponent.getRepository();
 		}
+
+		@Override
+		protected DeviceVersionRepository getVersionRepository() {
+			return versionRepository;
+		}
 	}
 
 	@BeforeEach
 	void setUp() {
 		mockBaseComponent = mock(DeviceComponent.class);
-		cachingComponent = spy(new TestableCachingDeviceComponent(mockBaseComponent));
+		cachingComponent = spy(new TestableCachingDeviceComponent(mockBaseComponent, mockVersionRepository));
 	}
 
 	@Test
@@ -200,6 +219,256 @@ public class CachingDeviceComponentTest {
 		cachingComponent.invalidateAllForCustomer(CUSTOMER_ID);
 	}
 
+	@Test
+	void testCustomerDevices_loadedOnceForAllLookups() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device site = createSiteDevice();
+		Device device = createTestDevice();
+		device.setDeviceKey("key-123");
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(site, device));
+
+		assertEquals(Optional.of(device), component.findDeviceById(DEVICE_ID, CUSTOMER_ID));
+		assertEquals(Optional.of(site), component.findDeviceByDeviceName(CUSTOMER_ID, "Test Site"));
+		assertEquals(List.of(site, device), component.getDevicesBySiteId(CUSTOMER_ID, SITE_ID));
+		assertEquals(List.of(site, device), component.getDevicesForCustomerId(CUSTOMER_ID));
+		assertSame(device, component.findDeviceByDeviceKey("key-123"));
+		assertTrue(component.findDeviceById("missing", CUSTOMER_ID).isEmpty());
+		assertTrue(component.getDevicesBySiteId(CUSTOMER_ID, "missing").isEmpty());
+
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockRepository, never()).findDeviceById(DEVICE_ID, CUSTOMER_ID);
+		verify(mockRepository, never()).findDeviceByDeviceKey(anyString());
+		// misses may be writes the index hasn't caught up with yet
+		verify(mockRepository).findDeviceById("missing", CUSTOMER_ID);
+		verify(mockRepository).getDevicesBySiteId(CUSTOMER_ID, "missing");
+	}
+
+	@Test
+	void testFindDeviceById_missReadFromTable() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device device = createTestDevice();
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(createSiteDevice()));
+		when(mockRepository.findDeviceById(DEVICE_ID, CUSTOMER_ID)).thenReturn(Optional.of(device));
+		when(mockRepository.findDeviceByDeviceName(CUSTOMER_ID, "Test Device")).thenReturn(Optional.of(device));
+
+		assertEquals(Optional.of(device), component.findDeviceById(DEVICE_ID, CUSTOMER_ID));
+		assertEquals(Optional.of(device), component.findDeviceByDeviceName(CUSTOMER_ID, "Test Device"));
+	}
+
+	@Test
+	void testFindDeviceByDeviceKey_servedFromCustomerOnceOwnerKnown() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device device = createTestDevice();
+		device.setDeviceKey("key-123");
+		when(mockRepository.findDeviceByDeviceKey("key-123")).thenReturn(Optional.of(device));
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(device));
+
+		assertSame(device, component.findDeviceByDeviceKey("key-123"));
+		assertSame(device, component.findDeviceByDeviceKey("key-123"));
+		assertSame(device, component.findDeviceByDeviceKey("key-123"));
+
+		verify(mockRepository, times(1)).findDeviceByDeviceKey("key-123");
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+	}
+
+	@Test
+	void testInvalidateAllForCustomer_keepsOtherCustomers() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		when(mockRepository.getDevicesForCustomerId(anyString())).thenReturn(List.of(createTestDevice()));
+		component.getDevicesForCustomerId(CUSTOMER_ID);
+		component.getDevicesForCustomerId("other-customer");
+
+		component.invalidateAllForCustomer(CUSTOMER_ID);
+		component.getDevicesForCustomerId(CUSTOMER_ID);
+		component.getDevicesForCustomerId("other-customer");
+
+		verify(mockRepository, times(2)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockRepository, times(1)).getDevicesForCustomerId("other-customer");
+	}
+
+	@Test
+	void testUpdateDevices_updatesCachedCustomer() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device device = createTestDevice();
+		Device updated = createTestDevice();
+		updated.setName("Updated");
+		Device added = new Device("device-456", CUSTOMER_ID, "Added Device");
+		added.setSiteId(SITE_ID);
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(device));
+		component.findDeviceById(DEVICE_ID, CUSTOMER_ID);
+
+		component.updateDevices(List.of(updated, added));
+
+		assertSame(updated, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+		assertSame(added, component.findDeviceByDeviceName(CUSTOMER_ID, "Added Device").get());
+		assertEquals(List.of(updated, added), component.getDevicesBySiteId(CUSTOMER_ID, SITE_ID));
+		verify(mockRepository).updateDevices(List.of(updated, added));
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockVersionRepository, times(1)).bump(CUSTOMER_ID);
+	}
+
+	@Test
+	void testUpdateDevices_failureInvalidatesCustomer() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device device = createTestDevice();
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(device));
+		doThrow(new IllegalStateException()).when(mockRepository).updateDevices(List.of(device));
+		component.findDeviceById(DEVICE_ID, CUSTOMER_ID);
+
+		assertThrows(IllegalStateException.class, () -> component.updateDevices(List.of(device)));
+		component.findDeviceById(DEVICE_ID, CUSTOMER_ID);
+
+		verify(mockRepository, times(2)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockVersionRepository).bump(CUSTOMER_ID);
+	}
+
+	@Test
+	void testUpdateDevice_writesDontReloadCustomer() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device site = createSiteDevice();
+		Device device = createTestDevice();
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(site, device));
+		when(mockRepository.update(any(Device.class)))
+				.thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+
+		for (int i = 0; i < 3; i++) {
+			Device updated = createTestDevice();
+			updated.setName("Update " + i);
+			component.updateDevice(updated);
+		}
+
+		assertEquals("Update 2", component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get().getName());
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockRepository, never()).findDeviceById(anyString(), anyString());
+		verify(mockVersionRepository, times(3)).bump(CUSTOMER_ID);
+	}
+
+	@Test
+	void testDeleteDevice_removedFromCachedCustomer() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device device = createTestDevice();
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(createSiteDevice(), device));
+
+		component.deleteDevice(DEVICE_ID, CUSTOMER_ID);
+
+		verify(mockRepository).delete(device);
+		assertEquals(1, component.getDevicesForCustomerId(CUSTOMER_ID).size());
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+	}
+
+	@Test
+	void testCustomerDevices_versionNotCheckedWithinInterval() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(createTestDevice()));
+
+		component.getDevicesForCustomerId(CUSTOMER_ID);
+		component.findDeviceById(DEVICE_ID, CUSTOMER_ID);
+		component.getDevicesBySiteId(CUSTOMER_ID, SITE_ID);
+
+		// read once while loading only
+		verify(mockVersionRepository, times(1)).findVersion(CUSTOMER_ID);
+		verify(mockRepository, times(1)).getDevicesForCustomerId(CUSTOMER_ID);
+	}
+
+	@Test
+	void testCustomerDevices_reloadedOnlyWhenVersionChanges() {
+		CachingDeviceComponent component = createRepositoryBackedComponent(Duration.ZERO);
+		Device device = createTestDevice();
+		Device updated = createTestDevice();
+		updated.setName("Updated elsewhere");
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(device), List.of(updated));
+		// load, unchanged check, changed check, reload
+		when(mockVersionRepository.findVersion(CUSTOMER_ID))
+				.thenReturn(settledVersion(1), settledVersion(1), settledVersion(2), settledVersion(2));
+
+		assertSame(device, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+		assertSame(updated, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+
+		verify(mockRepository, times(2)).getDevicesForCustomerId(CUSTOMER_ID);
+		verify(mockVersionRepository, never()).bump(anyString());
+	}
+
+	@Test
+	void testCustomerDevices_loadedRightAfterBumpReloadedAtNextCheck() {
+		CachingDeviceComponent component = createRepositoryBackedComponent(Duration.ZERO);
+		Device device = createTestDevice();
+		Device updated = createTestDevice();
+		updated.setName("Updated, index caught up");
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(device), List.of(updated));
+		// bumped just now, the index may still return devices from before the write
+		when(mockVersionRepository.findVersion(CUSTOMER_ID))
+				.thenReturn(Optional.of(new DeviceVersionData(CUSTOMER_ID, 1)), settledVersion(1));
+
+		// same version, but the first load was too soon after the bump to keep
+		assertSame(updated, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+		assertSame(updated, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+
+		verify(mockRepository, times(2)).getDevicesForCustomerId(CUSTOMER_ID);
+	}
+
+	@Test
+	void testCustomerDevices_loadedRightAfterBumpNotUsedForLookups() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		Device stale = createTestDevice();
+		Device device = createTestDevice();
+		device.setName("Written just before the load");
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(List.of(stale));
+		// bumped just now, the index may not show the write yet
+		when(mockVersionRepository.findVersion(CUSTOMER_ID))
+				.thenReturn(Optional.of(new DeviceVersionData(CUSTOMER_ID, 1)));
+		when(mockRepository.findDeviceById(DEVICE_ID, CUSTOMER_ID)).thenReturn(Optional.of(device));
+
+		assertSame(device, component.findDeviceById(DEVICE_ID, CUSTOMER_ID).get());
+		assertEquals(List.of(stale), component.getDevicesForCustomerId(CUSTOMER_ID));
+	}
+
+	@Test
+	void testGetSites_cachesResult() {
+		CachingDeviceComponent component = createRepositoryBackedComponent();
+		List<Device> sites = List.of(createSiteDevice());
+		when(mockRepository.getSites()).thenReturn(sites);
+
+		assertEquals(sites, component.getSites());
+		assertEquals(sites, component.getSites());
+
+		verify(mockRepository, times(1)).getSites();
+	}
+
+	private CachingDeviceComponent createRepositoryBackedComponent() {
+		return createRepositoryBackedComponent(Duration.ofMinutes(1));
+	}
+
+	private CachingDeviceComponent createRepositoryBackedComponent(Duration checkInterval) {
+		return new CachingDeviceComponent(100, Duration.ofHours(1), checkInterval) {
+			@Override
+			protected DeviceRepository getRepository() {
+				return mockRepository;
+			}
+
+			@Override
+			protected DeviceVersionRepository getVersionRepository() {
+				return mockVersionRepository;
+			}
+
+			@Override
+			protected void deleteDeviceData(Device device) {}
+		};
+	}
+
+	private Optional<DeviceVersionData> settledVersion(long version) {
+		DeviceVersionData versionData = new DeviceVersionData(CUSTOMER_ID, version);
+		versionData.setBumpedAt(0);
+		return Optional.of(versionData);
+	}
+
+	private Device createSiteDevice() {
+		Device site = new Device(SITE_ID, CUSTOMER_ID, "Test Site");
+		site.setIsSite("1");
+		site.setSiteId(SITE_ID);
+		site.setSite("Test Site");
+		return site;
+	}
+
 	private Device createTestDevice() {
 		Device device = new Device(DEVICE_ID, CUSTOMER_ID, "Test Device");
 		device.setName("Pretty Test Device");
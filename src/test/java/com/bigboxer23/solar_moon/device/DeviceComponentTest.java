@@ -1,15 +1,21 @@
 package com.bigboxer23.solar_moon.device;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -28,6 +34,8 @@ public class DeviceComponentTest {
 	private static class TestableDeviceComponent extends DeviceComponent {
 		private final DeviceRepository repository;
 
+		private final List<Device> dataDeleted = new ArrayList<>();
+
 		public TestableDeviceComponent(DeviceRepository repository) {
 			this.repository = repository;
 		}
@@ -38,19 +46,8 @@ public class DeviceComponentTest {
 		}
 
 		@Override
-		public void deleteDevice(String id, String customerId) {
-			Optional<Device> device = findDeviceById(id, customerId);
-			if (device.isEmpty()) {
-				return;
-			}
-			if (device.get().isDeviceSite()) {
-				getDevicesBySiteId(customerId, device.get().getId()).forEach(childDevice -> {
-					childDevice.setSite(NO_SITE);
-					childDevice.setSiteId(NO_SITE);
-					updateDevice(childDevice);
-				});
-			}
-			getRepository().delete(device.get());
+		protected void deleteDeviceData(Device device) {
+			dataDeleted.add(device);
 		}
 	}
 
@@ -252,7 +249,107 @@ public class DeviceComponentTest {
 		deviceComponent.deleteDevicesByCustomerId(CUSTOMER_ID);
 
 		verify(mockRepository).getDevicesForCustomerId(CUSTOMER_ID);
-		verify(mockRepository, times(2)).delete(any(Device.class));
+		verify(mockRepository).deleteDevices(devices);
+		verify(mockRepository, never()).delete(any(Device.class));
+	}
+
+	@Test
+	void testDeleteDevicesByCustomerId_unprocessedDevicesKeepTheirData() {
+		List<Device> devices = Arrays.asList(
+				createTestDevice("device-1", CUSTOMER_ID, "Device 1"),
+				createTestDevice("device-2", CUSTOMER_ID, "Device 2"));
+		when(mockRepository.getDevicesForCustomerId(CUSTOMER_ID)).thenReturn(devices);
+		doThrow(new BatchWriteException("devices", List.of(), List.of(devices.get(1))))
+				.when(mockRepository)
+				.deleteDevices(devices);
+
+		assertThrows(BatchWriteException.class, () -> deviceComponent.deleteDevicesByCustomerId(CUSTOMER_ID));
+
+		assertEquals(List.of(devices.get(0)), deviceComponent.dataDeleted);
+	}
+
+	@Test
+	void testUpdateDevice_failedChildRenameFailsUpdate() {
+		Device site = createSiteDevice();
+		Device renamed = createSiteDevice();
+		renamed.setName("Renamed Site");
+		when(mockRepository.findDeviceByDeviceName(CUSTOMER_ID, DEVICE_NAME)).thenReturn(Optional.of(site));
+		when(mockRepository.findDeviceById(DEVICE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
+		when(mockRepository.getDevicesBySiteId(CUSTOMER_ID, DEVICE_ID))
+				.thenReturn(List.of(createTestDevice("device-1", CUSTOMER_ID, "Device 1")));
+		doThrow(new BatchWriteException("devices", List.of(new Device()), List.of()))
+				.when(mockRepository)
+				.updateDevices(any());
+
+		assertThrows(BatchWriteException.class, () -> deviceComponent.updateDevice(renamed));
+
+		verify(mockRepository, never()).update(any(Device.class));
+	}
+
+	@Test
+	void testUpdateDevice_siteNotFoundIsStillSaved() {
+		Device site = createSiteDevice();
+		when(mockRepository.update(site)).thenReturn(Optional.of(site));
+
+		assertEquals(Optional.of(site), deviceComponent.updateDevice(site));
+
+		verify(mockRepository).findDeviceById(DEVICE_ID, CUSTOMER_ID);
+		verify(mockRepository, never()).updateDevices(any());
+	}
+
+	@Test
+	void testFindDevicesByIds_delegatesToRepository() {
+		Map<String, Device> expected = Map.of(DEVICE_ID, createTestDevice());
+		when(mockRepository.findDevicesByIds(List.of(DEVICE_ID), CUSTOMER_ID)).thenReturn(expected);
+
+		assertEquals(expected, deviceComponent.findDevicesByIds(List.of(DEVICE_ID), CUSTOMER_ID));
+	}
+
+	@Test
+	void testUpdateDevice_siteRenameUpdatesChildrenInOneBatch() {
+		Device site = createSiteDevice();
+		Device renamed = createSiteDevice();
+		renamed.setName("Renamed Site");
+		List<Device> children = List.of(
+				createSiteDevice(),
+				createTestDevice("device-1", CUSTOMER_ID, "Device 1"),
+				createTestDevice("device-2", CUSTOMER_ID, "Device 2"));
+		when(mockRepository.findDeviceByDeviceName(CUSTOMER_ID, DEVICE_NAME)).thenReturn(Optional.of(site));
+		when(mockRepository.findDeviceById(DEVICE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
+		when(mockRepository.getDevicesBySiteId(CUSTOMER_ID, DEVICE_ID)).thenReturn(children);
+		when(mockRepository.update(renamed)).thenReturn(Optional.of(renamed));
+
+		assertEquals(Optional.of(renamed), deviceComponent.updateDevice(renamed));
+
+		ArgumentCaptor<Collection<Device>> updated = ArgumentCaptor.forClass(Collection.class);
+		verify(mockRepository).updateDevices(updated.capture());
+		assertEquals(List.of(children.get(1), children.get(2)), List.copyOf(updated.getValue()));
+		assertTrue(updated.getValue().stream().allMatch(d -> "Renamed Site".equals(d.getSite())));
+		verify(mockRepository, times(1)).update(any(Device.class));
+	}
+
+	@Test
+	void testDeleteDevice_siteReparentsChildrenInOneBatch() {
+		Device site = createSiteDevice();
+		List<Device> children = List.of(
+				createSiteDevice(),
+				createTestDevice("device-1", CUSTOMER_ID, "Device 1"),
+				createTestDevice("device-2", CUSTOMER_ID, "Device 2"));
+		when(mockRepository.findDeviceById(DEVICE_ID, CUSTOMER_ID)).thenReturn(Optional.of(site));
+		when(mockRepository.getDevicesBySiteId(CUSTOMER_ID, DEVICE_ID)).thenReturn(children);
+
+		deviceComponent.deleteDevice(DEVICE_ID, CUSTOMER_ID);
+
+		ArgumentCaptor<Collection<Device>> updated = ArgumentCaptor.forClass(Collection.class);
+		verify(mockRepository).updateDevices(updated.capture());
+		assertEquals(2, updated.getValue().size());
+		assertTrue(updated.getValue().stream()
+				.allMatch(d -> DeviceComponent.NO_SITE.equals(d.getSiteId())
+						&& DeviceComponent.NO_SITE.equals(d.getSite())
+						&& d.getLatitude() == -1
+						&& d.getLongitude() == -1));
+		verify(mockRepository).delete(site);
+		verify(mockRepository, never()).update(any(Device.class));
 	}
 
 	private Device createTestDevice() {
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceUpdateData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -13,6 +14,7 @@ import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -38,6 +40,11 @@ public class DeviceUpdateComponentTest {
 			this.repository = repository;
 		}
 
+		public TestableDeviceUpdateComponent(DeviceUpdateRepository repository, long granularity) {
+			super(granularity);
+			this.repository = repository;
+		}
+
 		@Override
 		protected DeviceUpdateRepository getRepository() {
 			return repository;
@@ -88,6 +95,47 @@ public class DeviceUpdateComponentTest {
 		verify(mockRepository, never()).update(any(DeviceUpdateData.class));
 	}
 
+	@Test
+	void testUpdate_withinGranularity_skipsWrite() {
+		when(mockRepository.update(any(DeviceUpdateData.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME);
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME + TimeConstants.ONE_MINUTE);
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME - TimeConstants.ONE_MINUTE);
+		deviceUpdateComponent.update("other-device", TEST_TIME + TimeConstants.ONE_MINUTE);
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME + DeviceUpdateComponent.DEFAULT_GRANULARITY);
+
+		ArgumentCaptor<DeviceUpdateData> written = ArgumentCaptor.forClass(DeviceUpdateData.class);
+		verify(mockRepository, times(3)).update(written.capture());
+		assertEquals(
+				List.of(
+						TEST_TIME,
+						TEST_TIME + TimeConstants.ONE_MINUTE,
+						TEST_TIME + DeviceUpdateComponent.DEFAULT_GRANULARITY),
+				written.getAllValues().stream()
+						.map(DeviceUpdateData::getLastUpdate)
+						.toList());
+	}
+
+	@Test
+	void testUpdate_zeroGranularity_writesEveryUpdate() {
+		deviceUpdateComponent = new TestableDeviceUpdateComponent(mockRepository, 0);
+
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME);
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME);
+
+		verify(mockRepository, times(2)).update(any(DeviceUpdateData.class));
+	}
+
+	@Test
+	void testDelete_forgetsWrittenUpdate() {
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME);
+		deviceUpdateComponent.delete(DEVICE_ID);
+		deviceUpdateComponent.update(DEVICE_ID, TEST_TIME + TimeConstants.ONE_MINUTE);
+
+		verify(mockRepository, times(2)).update(any(DeviceUpdateData.class));
+	}
+
 	@Test
 	void testDelete_withValidDeviceId_deletesSuccessfully() {
 		deviceUpdateComponent.delete(DEVICE_ID);
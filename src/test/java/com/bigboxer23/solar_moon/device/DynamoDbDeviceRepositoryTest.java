@@ -5,10 +5,15 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.dynamodb.BatchWriteException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,8 +21,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetResultPageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
 import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
@@ -40,6 +49,9 @@ public class DynamoDbDeviceRepositoryTest {
 	@Mock
 	private Page<Device> mockPage;
 
+	@Mock
+	private DynamoDbEnhancedClient mockClient;
+
 	private DynamoDbDeviceRepository repository;
 
 	private static final String CUSTOMER_ID = "customer-123";
@@ -51,19 +63,27 @@ public class DynamoDbDeviceRepositoryTest {
 	private static class TestableDynamoDbDeviceRepository extends DynamoDbDeviceRepository {
 		private final DynamoDbTable<Device> table;
 
-		public TestableDynamoDbDeviceRepository(DynamoDbTable<Device> table) {
+		private final DynamoDbEnhancedClient client;
+
+		public TestableDynamoDbDeviceRepository(DynamoDbTable<Device> table, DynamoDbEnhancedClient client) {
 			this.table = table;
+			this.client = client;
 		}
 
 		@Override
 		protected DynamoDbTable<Device> getTable() {
 			return table;
 		}
+
+		@Override
+		protected DynamoDbEnhancedClient getClient() {
+			return client;
+		}
 	}
 
 	@BeforeEach
 	void setUp() {
-		repository = new TestableDynamoDbDeviceRepository(mockTable);
+		repository = new TestableDynamoDbDeviceRepository(mockTable, mockClient);
 	}
 
 	@Test
@@ -451,6 +471,93 @@ public class DynamoDbDeviceRepositoryTest {
 		verify(mockTable, never()).deleteItem(any(Device.class));
 	}
 
+	@Test
+	void testFindDevicesByIds_batchesOneHundredKeysPerCall() {
+		List<String> ids = new ArrayList<>(
+				IntStream.range(0, 150).mapToObj(i -> "device-" + i).toList());
+		ids.add("device-0");
+		ids.add(" ");
+		BatchGetResultPageIterable firstPage = mock(BatchGetResultPageIterable.class);
+		BatchGetResultPageIterable secondPage = mock(BatchGetResultPageIterable.class);
+		Device first = new Device("device-0", CUSTOMER_ID, "Device 0");
+		Device second = new Device("device-149", CUSTOMER_ID, "Device 149");
+		when(firstPage.resultsForTable(mockTable)).thenReturn(() -> List.of(first).iterator());
+		when(secondPage.resultsForTable(mockTable)).thenReturn(() -> List.of(second).iterator());
+		when(mockClient.batchGetItem(any(Consumer.class))).thenReturn(firstPage, secondPage);
+
+		Map<String, Device> result = repository.findDevicesByIds(ids, CUSTOMER_ID);
+
+		assertEquals(Map.of("device-0", first, "device-149", second), result);
+		verify(mockClient, times(2)).batchGetItem(any(Consumer.class));
+	}
+
+	@Test
+	void testFindDevicesByIds_withBlankCustomerId_returnsEmpty() {
+		assertTrue(repository.findDevicesByIds(List.of(DEVICE_ID), "").isEmpty());
+		assertTrue(repository.findDevicesByIds(Collections.emptyList(), CUSTOMER_ID).isEmpty());
+		verifyNoInteractions(mockClient);
+	}
+
+	@Test
+	void testUpdateDevices_retriesUnprocessedPuts() {
+		List<Device> devices = IntStream.range(0, 30)
+				.mapToObj(i -> new Device("device-" + i, CUSTOMER_ID, "Device " + i))
+				.toList();
+		BatchWriteResult throttled = mock(BatchWriteResult.class);
+		BatchWriteResult processed = mock(BatchWriteResult.class);
+		when(throttled.unprocessedPutItemsForTable(mockTable)).thenReturn(List.of(devices.getFirst()));
+		when(processed.unprocessedPutItemsForTable(mockTable)).thenReturn(Collections.emptyList());
+		when(mockClient.batchWriteItem(any(Consumer.class))).thenReturn(throttled, processed, processed);
+
+		repository.updateDevices(devices);
+
+		// 25 + 5 items, then the unprocessed item again
+		verify(mockClient, times(3)).batchWriteItem(any(Consumer.class));
+		assertTrue(devices.stream().allMatch(device -> device.getUpdatedAt() > 0));
+	}
+
+	@Test
+	void testDeleteDevices_writesDeleteKeys() {
+		Device device = createDevice();
+		BatchWriteResult result = mock(BatchWriteResult.class);
+		when(mockTable.keyFrom(device))
+				.thenReturn(Key.builder()
+						.partitionValue(DEVICE_ID)
+						.sortValue(CUSTOMER_ID)
+						.build());
+		when(mockClient.batchWriteItem(any(Consumer.class))).thenReturn(result);
+
+		repository.deleteDevices(List.of(device));
+		repository.deleteDevices(Collections.emptyList());
+
+		verify(mockClient).batchWriteItem(any(Consumer.class));
+		verify(mockTable, never()).deleteItem(any(Device.class));
+	}
+
+	@Test
+	void testDeleteDevices_throwsWithDevicesLeftUnprocessed() {
+		Device deleted = new Device("device-1", CUSTOMER_ID, "Device 1");
+		Device throttled = new Device("device-2", CUSTOMER_ID, "Device 2");
+		Key throttledKey =
+				Key.builder().partitionValue("device-2").sortValue(CUSTOMER_ID).build();
+		when(mockTable.keyFrom(deleted))
+				.thenReturn(Key.builder()
+						.partitionValue("device-1")
+						.sortValue(CUSTOMER_ID)
+						.build());
+		when(mockTable.keyFrom(throttled)).thenReturn(throttledKey);
+		BatchWriteResult result = mock(BatchWriteResult.class);
+		when(result.unprocessedDeleteItemsForTable(mockTable)).thenReturn(List.of(throttledKey));
+		when(mockClient.batchWriteItem(any(Consumer.class))).thenReturn(result);
+
+		BatchWriteException e =
+				assertThrows(BatchWriteException.class, () -> repository.deleteDevices(List.of(deleted, throttled)));
+
+		assertEquals(List.of(throttled), e.getUnprocessedDeletes());
+		assertTrue(e.getUnprocessedPuts().isEmpty());
+		verify(mockClient, times(5)).batchWriteItem(any(Consumer.class));
+	}
+
 	@Test
 	void testGetTableName_returnsCorrectTableName() {
 		assertEquals("devices", repository.getTableName());
@@ -0,0 +1,72 @@
+package com.bigboxer23.solar_moon.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.DeviceVersionData;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+
+@ExtendWith(MockitoExtension.class)
+public class DynamoDbDeviceVersionRepositoryTest {
+	private static final String CUSTOMER_ID = "customer-123";
+
+	@Mock
+	private DynamoDbTable<DeviceVersionData> mockTable;
+
+	private DynamoDbDeviceVersionRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		repository = new DynamoDbDeviceVersionRepository() {
+			@Override
+			protected DynamoDbTable<DeviceVersionData> getTable() {
+				return mockTable;
+			}
+		};
+	}
+
+	@Test
+	void testFindVersion() {
+		when(mockTable.getItem(any(Consumer.class)))
+				.thenReturn(null)
+				.thenReturn(new DeviceVersionData(CUSTOMER_ID, 42));
+
+		assertTrue(repository.findVersion(CUSTOMER_ID).isEmpty());
+		assertEquals(42, repository.findVersion(CUSTOMER_ID).orElseThrow().getVersion());
+	}
+
+	@Test
+	void testFindVersion_blankCustomer() {
+		assertTrue(repository.findVersion(" ").isEmpty());
+		verifyNoInteractions(mockTable);
+	}
+
+	@Test
+	void testBump_storesNewVersion() {
+		ArgumentCaptor<DeviceVersionData> stored = ArgumentCaptor.forClass(DeviceVersionData.class);
+
+		long first = repository.bump(CUSTOMER_ID);
+		long second = repository.bump(CUSTOMER_ID);
+
+		verify(mockTable, times(2)).putItem(stored.capture());
+		assertNotEquals(0, first);
+		assertNotEquals(first, second);
+		assertEquals(second, stored.getValue().getVersion());
+		assertEquals(CUSTOMER_ID, stored.getValue().getCustomerId());
+		assertTrue(stored.getValue().getExpiration() > System.currentTimeMillis() / 1000);
+		assertTrue(stored.getValue().getBumpedAt() > 0);
+	}
+
+	@Test
+	void testGetTableName() {
+		assertEquals("device_versions", repository.getTableName());
+	}
+}
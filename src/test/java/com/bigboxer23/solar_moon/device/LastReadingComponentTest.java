@@ -0,0 +1,166 @@
+package com.bigboxer23.solar_moon.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.data.LastReadingData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class LastReadingComponentTest {
+	private static final String DEVICE_ID = "device-123";
+
+	private static final String CUSTOMER_ID = "customer-123";
+
+	@Mock
+	private LastReadingRepository mockRepository;
+
+	private LastReadingComponent component;
+
+	@BeforeEach
+	void setUp() {
+		component = new LastReadingComponent() {
+			@Override
+			protected LastReadingRepository getRepository() {
+				return mockRepository;
+			}
+		};
+	}
+
+	@Test
+	void testGetLastReading_readsRepositoryOnce() throws Exception {
+		DeviceData data = createDeviceData(DEVICE_ID, 1000);
+		when(mockRepository.findByDeviceId(DEVICE_ID)).thenReturn(Optional.of(toStored(data)));
+
+		assertEquals(1000f, component.getLastReading(DEVICE_ID).orElseThrow().getTotalEnergyConsumed());
+		assertTrue(component.getLastReading(DEVICE_ID).isPresent());
+
+		verify(mockRepository, times(1)).findByDeviceId(DEVICE_ID);
+	}
+
+	@Test
+	void testGetLastReading_missing() {
+		when(mockRepository.findByDeviceId(DEVICE_ID)).thenReturn(Optional.empty());
+
+		assertTrue(component.getLastReading(DEVICE_ID).isEmpty());
+	}
+
+	@Test
+	void testGetLastReading_blankDeviceId() {
+		assertTrue(component.getLastReading(null).isEmpty());
+
+		verifyNoInteractions(mockRepository);
+	}
+
+	@Test
+	void testGetLastReadings_onlyMissingFromRepository() throws Exception {
+		when(mockRepository.update(any())).thenReturn(true);
+		component.update(List.of(createDeviceData(DEVICE_ID, 1000)));
+		DeviceData other = createDeviceData("device-456", 500);
+		when(mockRepository.findByDeviceIds(List.of("device-456"))).thenReturn(Map.of("device-456", toStored(other)));
+
+		Map<String, DeviceData> readings = component.getLastReadings(List.of(DEVICE_ID, "device-456", "device-789"));
+
+		assertEquals(2, readings.size());
+		assertEquals(1000f, readings.get(DEVICE_ID).getTotalEnergyConsumed());
+		assertEquals(500f, readings.get("device-456").getTotalEnergyConsumed());
+	}
+
+	@Test
+	void testUpdate_writesThrough() {
+		when(mockRepository.update(any())).thenReturn(true);
+
+		component.update(List.of(createDeviceData(DEVICE_ID, 1000)));
+
+		verify(mockRepository).update(argThat(stored -> DEVICE_ID.equals(stored.getDeviceId())
+				&& CUSTOMER_ID.equals(stored.getCustomerId())
+				&& stored.getReading() != null));
+		assertEquals(1000f, component.getLastReading(DEVICE_ID).orElseThrow().getTotalEnergyConsumed());
+		verify(mockRepository, never()).findByDeviceId(any());
+	}
+
+	@Test
+	void testUpdate_cachesCopies() {
+		when(mockRepository.update(any())).thenReturn(true);
+		DeviceData data = createDeviceData(DEVICE_ID, 1000);
+
+		component.update(List.of(data));
+		data.setTotalEnergyConsumed(5);
+		component.getLastReading(DEVICE_ID).orElseThrow().setTotalEnergyConsumed(10);
+
+		assertEquals(1000f, component.getLastReading(DEVICE_ID).orElseThrow().getTotalEnergyConsumed());
+		assertEquals(
+				1000f,
+				component.getLastReadings(List.of(DEVICE_ID)).get(DEVICE_ID).getTotalEnergyConsumed());
+	}
+
+	@Test
+	void testUpdate_olderReadingIgnored() {
+		when(mockRepository.update(any())).thenReturn(true);
+		DeviceData newer = createDeviceData(DEVICE_ID, 1000);
+		DeviceData older = createDeviceData(DEVICE_ID, 900);
+		older.setDate(new Date(newer.getDate().getTime() - 60000));
+
+		component.update(List.of(newer));
+		component.update(List.of(older));
+
+		verify(mockRepository, times(1)).update(any());
+		assertEquals(1000f, component.getLastReading(DEVICE_ID).orElseThrow().getTotalEnergyConsumed());
+	}
+
+	@Test
+	void testUpdate_rejectedByRepositoryInvalidatesCache() throws Exception {
+		when(mockRepository.update(any())).thenReturn(true, false);
+		DeviceData stored = createDeviceData(DEVICE_ID, 2000);
+		when(mockRepository.findByDeviceId(DEVICE_ID)).thenReturn(Optional.of(toStored(stored)));
+
+		component.update(List.of(createDeviceData(DEVICE_ID, 1000)));
+		component.update(List.of(createDeviceData(DEVICE_ID, 1500)));
+
+		assertEquals(2000f, component.getLastReading(DEVICE_ID).orElseThrow().getTotalEnergyConsumed());
+		verify(mockRepository).findByDeviceId(DEVICE_ID);
+	}
+
+	@Test
+	void testUpdate_skipsDataWithoutDeviceOrDate() {
+		DeviceData noDate = new DeviceData();
+		noDate.setDeviceId(DEVICE_ID);
+
+		component.update(List.of(new DeviceData(), noDate));
+
+		verifyNoInteractions(mockRepository);
+	}
+
+	@Test
+	void testDelete() {
+		when(mockRepository.update(any())).thenReturn(true);
+		when(mockRepository.findByDeviceId(DEVICE_ID)).thenReturn(Optional.empty());
+		component.update(List.of(createDeviceData(DEVICE_ID, 1000)));
+
+		component.delete(DEVICE_ID);
+
+		verify(mockRepository).delete(DEVICE_ID);
+		assertTrue(component.getLastReading(DEVICE_ID).isEmpty());
+	}
+
+	private DeviceData createDeviceData(String deviceId, float totalEnergyConsumed) {
+		DeviceData data = new DeviceData();
+		data.setDeviceId(deviceId);
+		data.setCustomerId(CUSTOMER_ID);
+		data.setDate(new Date());
+		data.setTotalEnergyConsumed(totalEnergyConsumed);
+		return data;
+	}
+
+	private LastReadingData toStored(DeviceData data) throws Exception {
+		return new LastReadingData(data, new ObjectMapper().writeValueAsString(data));
+	}
+}
@@ -12,6 +12,7 @@ import com.bigboxer23.solar_moon.util.TimeConstants;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -374,6 +375,30 @@ public class LinkedDeviceComponentTest {
 		assertNotNull(deviceData.getInformationalErrorString());
 	}
 
+	@Test
+	void testAddLinkedDeviceData_batch_queriesOncePerCustomer() {
+		Device device = createDevice();
+		Device otherDevice = new Device("device-456", CUSTOMER_ID, "Other Device");
+		otherDevice.setSerialNumber("serial-456");
+		Device noSerial = new Device("device-789", CUSTOMER_ID, "No Serial");
+		DeviceData data = createDeviceData();
+		DeviceData otherData = createDeviceData();
+		DeviceData noSerialData = createDeviceData();
+		LinkedDevice linkedDevice = createLinkedDevice();
+		linkedDevice.setCriticalAlarm(ISolectriaConstants.AC_Voltage_Low);
+		when(mockRepository.findBySerialNumbers(List.of(SERIAL_NUMBER, "serial-456"), CUSTOMER_ID))
+				.thenReturn(Map.of(SERIAL_NUMBER, linkedDevice));
+
+		linkedDeviceComponent.addLinkedDeviceData(
+				List.of(device, otherDevice, noSerial), List.of(data, otherData, noSerialData));
+
+		verify(mockRepository, times(1)).findBySerialNumbers(anyCollection(), eq(CUSTOMER_ID));
+		verify(mockRepository, never()).findBySerialNumber(anyString(), anyString());
+		assertEquals(ISolectriaConstants.AC_Voltage_Low, data.getCriticalError());
+		assertEquals(-1, otherData.getCriticalError());
+		assertEquals(-1, noSerialData.getCriticalError());
+	}
+
 	private LinkedDevice createLinkedDevice() {
 		return new LinkedDevice(
 				SERIAL_NUMBER,
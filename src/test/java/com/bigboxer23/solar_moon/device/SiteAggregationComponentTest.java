@@ -0,0 +1,172 @@
+package com.bigboxer23.solar_moon.device;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class SiteAggregationComponentTest {
+	private static final String SITE_ID = "site-123";
+
+	private static final String CUSTOMER_ID = "customer-123";
+
+	private static final Date DATE = new Date(1736937000000L); // 2025-01-15 10:30 UTC
+
+	private static final long INTERVAL = SiteAggregationComponent.getInterval(DATE);
+
+	@Mock
+	private SiteIntervalRepository mockRepository;
+
+	private SiteAggregationComponent component;
+
+	private final Device virtualDevice = new Device("virtual-123", CUSTOMER_ID, "Virtual");
+
+	@BeforeEach
+	void setUp() {
+		component = new SiteAggregationComponent() {
+			@Override
+			protected SiteIntervalRepository getRepository() {
+				return mockRepository;
+			}
+		};
+	}
+
+	@Test
+	void testAdd_firstDeviceOfSeveral() {
+		when(mockRepository.save(any())).thenReturn(true);
+
+		assertTrue(component.add(createDeviceData("device-1", 10f), virtualDevice, 2).isEmpty());
+
+		verify(mockRepository).save(argThat(saved -> saved.getDeviceIds().equals(Set.of("device-1"))
+				&& saved.getEnergyConsumed() == 10f
+				&& !saved.isEmitted()
+				&& SiteIntervalData.PENDING.equals(saved.getPending())
+				&& saved.getDeadline() == saved.getCreatedAt() + SiteAggregationComponent.DEADLINE));
+	}
+
+	@Test
+	void testAdd_lastDeviceEmits() {
+		SiteIntervalData stored = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		stored.getDeviceIds().add("device-1");
+		stored.setEnergyConsumed(10f);
+		mockStored(stored);
+		when(mockRepository.save(any())).thenReturn(true);
+
+		Optional<SiteIntervalData> ready = component.add(createDeviceData("device-2", 5f), virtualDevice, 2);
+
+		assertTrue(ready.isPresent());
+		assertEquals(15f, ready.get().getEnergyConsumed());
+		assertTrue(ready.get().isEmitted());
+		assertNull(ready.get().getPending());
+	}
+
+	@Test
+	void testAdd_retriesOnConflict() {
+		SiteIntervalData stored = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		stored.getDeviceIds().add("device-1");
+		stored.setEnergyConsumed(10f);
+		// conflicting write from another invocation
+		when(mockRepository.findById(anyString())).thenReturn(Optional.empty(), Optional.of(stored));
+		when(mockRepository.save(any())).thenReturn(false, true);
+
+		Optional<SiteIntervalData> ready = component.add(createDeviceData("device-2", 5f), virtualDevice, 2);
+
+		assertEquals(15f, ready.get().getEnergyConsumed());
+		verify(mockRepository, times(2)).save(any());
+	}
+
+	@Test
+	void testAdd_pastDeadlineEmitsPartial() {
+		SiteIntervalData stored = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		stored.getDeviceIds().add("device-1");
+		stored.setEnergyConsumed(10f);
+		stored.setCreatedAt(System.currentTimeMillis() - SiteAggregationComponent.DEADLINE);
+		mockStored(stored);
+		when(mockRepository.save(any())).thenReturn(true);
+
+		Optional<SiteIntervalData> ready = component.add(createDeviceData("device-2", 5f), virtualDevice, 3);
+
+		assertTrue(ready.isPresent());
+		assertEquals(2, ready.get().getDeviceIds().size());
+	}
+
+	@Test
+	void testExpirePastDeadline_writesPendingIntervals() {
+		SiteIntervalData stale = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		stale.getDeviceIds().add("device-1");
+		stale.setCreatedAt(System.currentTimeMillis() - SiteAggregationComponent.DEADLINE);
+		when(mockRepository.findPendingPastDeadline(anyLong())).thenReturn(List.of(stale));
+		mockStored(stale);
+		when(mockRepository.save(any())).thenReturn(true);
+
+		assertEquals(List.of(stale), component.expirePastDeadline());
+		assertTrue(stale.isEmitted());
+		assertNull(stale.getPending());
+	}
+
+	@Test
+	void testExpirePastDeadline_skipsIntervalsWrittenSinceFound() {
+		SiteIntervalData found = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		found.setCreatedAt(System.currentTimeMillis() - SiteAggregationComponent.DEADLINE);
+		SiteIntervalData stored = new SiteIntervalData(createDeviceData("device-1", 10f), INTERVAL);
+		stored.setCreatedAt(found.getCreatedAt());
+		stored.setEmitted(true);
+		when(mockRepository.findPendingPastDeadline(anyLong())).thenReturn(List.of(found));
+		mockStored(stored);
+
+		assertTrue(component.expirePastDeadline().isEmpty());
+
+		verify(mockRepository, never()).save(any());
+	}
+
+	@Test
+	void testAdd_doesNotReadOtherIntervals() {
+		when(mockRepository.save(any())).thenReturn(true);
+
+		component.add(createDeviceData("device-1", 10f), virtualDevice, 2);
+
+		verify(mockRepository, times(1)).findById(SiteIntervalData.getId(SITE_ID, INTERVAL));
+		verify(mockRepository, times(1)).findById(anyString());
+	}
+
+	@Test
+	void testFold() {
+		assertEquals(5f, SiteAggregationComponent.fold(-1, 5f, false));
+		assertEquals(15f, SiteAggregationComponent.fold(10f, 5f, false));
+		assertEquals(5f, SiteAggregationComponent.fold(10f, 15f, true));
+		assertEquals(10f, SiteAggregationComponent.fold(10f, -1, false));
+		assertEquals(-1f, SiteAggregationComponent.fold(-1, -1, true));
+	}
+
+	@Test
+	void testGetInterval() {
+		assertEquals(INTERVAL, SiteAggregationComponent.getInterval(new Date(DATE.getTime() + 2 * 60 * 1000)));
+		assertEquals(INTERVAL, SiteAggregationComponent.getInterval(new Date(DATE.getTime() - 2 * 60 * 1000)));
+		assertEquals(0, INTERVAL % TimeConstants.FIFTEEN_MINUTES);
+	}
+
+	private void mockStored(SiteIntervalData stored) {
+		when(mockRepository.findById(anyString()))
+				.thenAnswer(invocation -> stored.getId().equals(invocation.getArgument(0))
+						? Optional.of(stored)
+						: Optional.empty());
+	}
+
+	private DeviceData createDeviceData(String deviceId, float energyConsumed) {
+		DeviceData data = new DeviceData(SITE_ID, CUSTOMER_ID, deviceId);
+		data.setDate(DATE);
+		data.setEnergyConsumed(energyConsumed);
+		return data;
+	}
+}
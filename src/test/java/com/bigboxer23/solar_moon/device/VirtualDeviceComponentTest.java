@@ -6,18 +6,16 @@ import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
-import com.bigboxer23.solar_moon.dynamodb.DynamoLockUtils;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.weather.PirateWeatherComponent;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Date;
+import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opensearch.client.ResponseException;
 
@@ -41,70 +39,112 @@ public class VirtualDeviceComponentTest {
 
 	private TestableVirtualDeviceComponent virtualDeviceComponent;
 
+	private final InMemorySiteIntervalRepository siteIntervalRepository = new InMemorySiteIntervalRepository();
+
+	private final Date date = new Date();
+
 	private static final String CUSTOMER_ID = "test-customer-123";
-	private static final String DEVICE_ID = "device-123";
 	private static final String VIRTUAL_DEVICE_ID = "virtual-device-123";
 	private static final String SITE_ID = "site-123";
 
-	private static class TestableVirtualDeviceComponent extends VirtualDeviceComponent {
-		private final DeviceComponent deviceComponent;
-		private final OpenSearchComponent osComponent;
-		private final LocationComponent locationComponent;
-		private final PirateWeatherComponent weatherComponent;
-		private final LinkedDeviceComponent linkedDeviceComponent;
-
-		public TestableVirtualDeviceComponent(
-				DeviceComponent deviceComponent,
-				OpenSearchComponent osComponent,
-				LocationComponent locationComponent,
-				PirateWeatherComponent weatherComponent,
-				LinkedDeviceComponent linkedDeviceComponent) {
-			this.deviceComponent = deviceComponent;
-			this.osComponent = osComponent;
-			this.locationComponent = locationComponent;
-			this.weatherComponent = weatherComponent;
-			this.linkedDeviceComponent = linkedDeviceComponent;
+	/** Keeps site intervals in memory, copying on read and write like the stored item would */
+	static class InMemorySiteIntervalRepository implements SiteIntervalRepository {
+		private final Map<String, SiteIntervalData> items = new HashMap<>();
+
+		@Override
+		public Optional<SiteIntervalData> findById(String id) {
+			return Optional.ofNullable(items.get(id)).map(InMemorySiteIntervalRepository::copy);
 		}
 
+		@Override
+		public boolean save(SiteIntervalData siteInterval) {
+			SiteIntervalData stored = items.get(siteInterval.getId());
+			if (!Objects.equals(stored == null ? null : stored.getVersion(), siteInterval.getVersion())) {
+				return false;
+			}
+			SiteIntervalData copy = copy(siteInterval);
+			copy.setVersion(siteInterval.getVersion() == null ? 1 : siteInterval.getVersion() + 1);
+			items.put(copy.getId(), copy);
+			return true;
+		}
+
+		@Override
+		public List<SiteIntervalData> findPendingPastDeadline(long time) {
+			return items.values().stream()
+					.filter(siteInterval -> !siteInterval.isEmitted() && siteInterval.getDeadline() <= time)
+					.map(InMemorySiteIntervalRepository::copy)
+					.toList();
+		}
+
+		private static SiteIntervalData copy(SiteIntervalData siteInterval) {
+			SiteIntervalData copy = new SiteIntervalData();
+			copy.setId(siteInterval.getId());
+			copy.setSiteId(siteInterval.getSiteId());
+			copy.setCustomerId(siteInterval.getCustomerId());
+			copy.setInterval(siteInterval.getInterval());
+			copy.setDate(siteInterval.getDate());
+			copy.setDeviceIds(new HashSet<>(siteInterval.getDeviceIds()));
+			copy.setEnergyConsumed(siteInterval.getEnergyConsumed());
+			copy.setTotalRealPower(siteInterval.getTotalRealPower());
+			copy.setTotalEnergyConsumed(siteInterval.getTotalEnergyConsumed());
+			copy.setInformationalError(siteInterval.getInformationalError());
+			copy.setCriticalError(siteInterval.getCriticalError());
+			copy.setEmitted(siteInterval.isEmitted());
+			copy.setDeadline(siteInterval.getDeadline());
+			copy.setVersion(siteInterval.getVersion());
+			copy.setCreatedAt(siteInterval.getCreatedAt());
+			copy.setUpdatedAt(siteInterval.getUpdatedAt());
+			return copy;
+		}
+	}
+
+	private class TestableVirtualDeviceComponent extends VirtualDeviceComponent {
+		private final SiteAggregationComponent siteAggregationComponent = new SiteAggregationComponent() {
+			@Override
+			protected SiteIntervalRepository getRepository() {
+				return siteIntervalRepository;
+			}
+		};
+
 		@Override
 		protected DeviceComponent getDeviceComponent() {
-			return deviceComponent;
+			return mockDeviceComponent;
 		}
 
 		@Override
 		protected OpenSearchComponent getOSComponent() {
-			return osComponent;
+			return mockOSComponent;
 		}
 
 		@Override
 		protected LocationComponent getLocationComponent() {
-			return locationComponent;
+			return mockLocationComponent;
 		}
 
 		@Override
 		protected PirateWeatherComponent getWeatherComponent() {
-			return weatherComponent;
+			return mockWeatherComponent;
 		}
 
 		@Override
 		protected LinkedDeviceComponent getLinkedDeviceComponent() {
-			return linkedDeviceComponent;
+			return mockLinkedDeviceComponent;
+		}
+
+		@Override
+		protected SiteAggregationComponent getSiteAggregationComponent() {
+			return siteAggregationComponent;
 		}
 	}
 
 	@BeforeEach
 	void setUp() {
-		virtualDeviceComponent = new TestableVirtualDeviceComponent(
-				mockDeviceComponent,
-				mockOSComponent,
-				mockLocationComponent,
-				mockWeatherComponent,
-				mockLinkedDeviceComponent);
+		virtualDeviceComponent = new TestableVirtualDeviceComponent();
 	}
 
 	@Test
 	void testHandleVirtualDevice_withNoSiteId_doesNothing() {
-		DeviceData deviceData = createDeviceData();
+		DeviceData deviceData = createDeviceData("physical-1");
 		deviceData.setSiteId(DeviceComponent.NO_SITE);
 
 		virtualDeviceComponent.handleVirtualDevice(deviceData);
@@ -115,446 +155,214 @@ public class VirtualDeviceComponentTest {
 
 	@Test
 	void testHandleVirtualDevice_withNoVirtualDevice_doesNothing() {
-		DeviceData deviceData = createDeviceData();
-		Device physicalDevice = createPhysicalDevice("physical-1");
-
 		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Collections.singletonList(physicalDevice));
+				.thenReturn(Collections.singletonList(createPhysicalDevice("physical-1")));
 
-		virtualDeviceComponent.handleVirtualDevice(deviceData);
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1"));
 
 		verify(mockDeviceComponent).getDevicesBySiteId(CUSTOMER_ID, SITE_ID);
 		verifyNoInteractions(mockOSComponent);
 	}
 
 	@Test
-	void testHandleVirtualDevice_withMismatchedDeviceCount_doesNothing() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
-		Device physicalDevice2 = createPhysicalDevice("physical-2");
+	void testHandleVirtualDevice_waitsForAllDevices() throws Exception {
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), createPhysicalDevice("physical-2"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1, physicalDevice2));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
 
-		virtualDeviceComponent.handleVirtualDevice(deviceData);
+		verify(mockOSComponent, never()).logData(any(), anyList(), anyBoolean());
 
-		verify(mockDeviceComponent).getDevicesBySiteId(CUSTOMER_ID, SITE_ID);
-		verify(mockOSComponent).getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class));
-		verify(mockOSComponent, never()).logData(any(), anyList());
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-2", 30f, 15f, 300f));
+
+		DeviceData logged = captureLogged();
+		assertEquals(80f, logged.getEnergyConsumed());
+		assertEquals(40f, logged.getTotalRealPower());
+		assertEquals(800f, logged.getTotalEnergyConsumed());
+		assertTrue(logged.isVirtual());
+		assertEquals(VIRTUAL_DEVICE_ID, logged.getDeviceId());
+		assertEquals(date, logged.getDate());
+		verify(mockOSComponent, never()).getDevicesForSiteByTimePeriod(any(), any(), any());
+		verify(mockOSComponent, never()).getSiteDevicesCountByTimePeriod(any(), any(), any());
+	}
+
+	@Test
+	void testHandleVirtualDevice_duplicateReadingNotCounted() throws Exception {
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), createPhysicalDevice("physical-2"));
+
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+
+		verify(mockOSComponent, never()).logData(any(), anyList(), anyBoolean());
 	}
 
 	@Test
 	void testHandleVirtualDevice_withDisabledDevices_countsOnlyEnabled() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
 		Device physicalDevice2 = createPhysicalDevice("physical-2");
 		physicalDevice2.setDisabled(true);
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), physicalDevice2);
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1, physicalDevice2));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(50f);
-			deviceData1.setTotalRealPower(25f);
-			deviceData1.setTotalEnergyConsumed(500f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Collections.singletonList(deviceData1));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), anyList());
-		}
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+
+		verify(mockOSComponent).logData(any(Date.class), anyList(), eq(true));
 	}
 
 	@Test
 	void testHandleVirtualDevice_withValidData_aggregatesCorrectly() throws Exception {
-		DeviceData deviceData = createDeviceData();
 		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+		mockSite(virtualDevice, createPhysicalDevice("physical-1"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(50f);
-			deviceData1.setTotalRealPower(25f);
-			deviceData1.setTotalEnergyConsumed(500f);
-
-			DeviceData deviceData2 = createDeviceData();
-			deviceData2.setEnergyConsumed(30f);
-			deviceData2.setTotalRealPower(15f);
-			deviceData2.setTotalEnergyConsumed(300f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Arrays.asList(deviceData1, deviceData2));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockLocationComponent).addLocationData(any(DeviceData.class), eq(virtualDevice));
-			verify(mockWeatherComponent).addWeatherData(any(DeviceData.class), eq(virtualDevice));
-			verify(mockLinkedDeviceComponent).addLinkedDeviceDataVirtual(any(DeviceData.class), anyList());
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(80f, logged.getEnergyConsumed());
-				assertEquals(40f, logged.getTotalRealPower());
-				assertEquals(800f, logged.getTotalEnergyConsumed());
-				assertTrue(logged.isVirtual());
-				assertEquals(VIRTUAL_DEVICE_ID, logged.getDeviceId());
-				return true;
-			}));
-		}
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+
+		verify(mockLocationComponent).addLocationData(any(DeviceData.class), eq(virtualDevice));
+		verify(mockWeatherComponent).addWeatherData(any(DeviceData.class), eq(virtualDevice));
+		verify(mockLinkedDeviceComponent).addLinkedDeviceDataVirtual(any(DeviceData.class), anyList());
+		DeviceData logged = captureLogged();
+		assertEquals(50f, logged.getEnergyConsumed());
+		assertEquals(25f, logged.getTotalRealPower());
+		assertEquals(500f, logged.getTotalEnergyConsumed());
 	}
 
 	@Test
 	void testHandleVirtualDevice_withSubtractionMode_subtractsValues() throws Exception {
-		DeviceData deviceData = createDeviceData();
 		Device virtualDevice = createVirtualDevice();
 		virtualDevice.setSubtraction(true);
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+		mockSite(virtualDevice, createPhysicalDevice("physical-1"), createPhysicalDevice("physical-2"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(50f);
-			deviceData1.setTotalRealPower(25f);
-			deviceData1.setTotalEnergyConsumed(500f);
-
-			DeviceData deviceData2 = createDeviceData();
-			deviceData2.setEnergyConsumed(30f);
-			deviceData2.setTotalRealPower(15f);
-			deviceData2.setTotalEnergyConsumed(300f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Arrays.asList(deviceData1, deviceData2));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(20f, logged.getEnergyConsumed());
-				assertEquals(10f, logged.getTotalRealPower());
-				assertEquals(200f, logged.getTotalEnergyConsumed());
-				return true;
-			}));
-		}
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 30f, 15f, 300f));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-2", 50f, 25f, 500f));
+
+		DeviceData logged = captureLogged();
+		assertEquals(20f, logged.getEnergyConsumed());
+		assertEquals(10f, logged.getTotalRealPower());
+		assertEquals(200f, logged.getTotalEnergyConsumed());
 	}
 
 	@Test
 	void testHandleVirtualDevice_withNegativeValues_clampsToZero() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(-50f);
-			deviceData1.setTotalRealPower(-25f);
-			deviceData1.setTotalEnergyConsumed(-500f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Collections.singletonList(deviceData1));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(0f, logged.getEnergyConsumed());
-				assertEquals(0f, logged.getTotalRealPower());
-				assertEquals(0f, logged.getTotalEnergyConsumed());
-				return true;
-			}));
-		}
-	}
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", -50f, -25f, -500f));
 
-	@Test
-	void testHandleVirtualDevice_withDeviceSite_setsSiteFlag() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		virtualDevice.setIsSite("1");
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
-
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(50f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Collections.singletonList(deviceData1));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertTrue(logged.isSite());
-				assertTrue(logged.isVirtual());
-				return true;
-			}));
-		}
+		DeviceData logged = captureLogged();
+		assertEquals(0f, logged.getEnergyConsumed());
+		assertEquals(0f, logged.getTotalRealPower());
+		assertEquals(0f, logged.getTotalEnergyConsumed());
 	}
 
 	@Test
-	void testHandleVirtualDevice_withNoVirtualDeviceFound_logsWarning() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+	void testHandleVirtualDevice_filtersNegativeDeviceValues() throws Exception {
+		mockSite(
+				createVirtualDevice(),
+				createPhysicalDevice("physical-1"),
+				createPhysicalDevice("physical-2"),
+				createPhysicalDevice("physical-3"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1))
-				.thenReturn(Collections.singletonList(physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent, never()).logData(any(), anyList());
-		}
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 100f, 1f, 1f));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-2", -50f, 1f, 1f));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-3", 50f, 1f, 1f));
+
+		assertEquals(150f, captureLogged().getEnergyConsumed());
 	}
 
 	@Test
-	void testHandleVirtualDevice_withResponseException_logsError() throws Exception {
-		DeviceData deviceData = createDeviceData();
+	void testHandleVirtualDevice_withDeviceSite_setsSiteFlag() throws Exception {
 		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+		virtualDevice.setIsSite("1");
+		mockSite(virtualDevice, createPhysicalDevice("physical-1"));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 1f, 1f));
 
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
+		DeviceData logged = captureLogged();
+		assertTrue(logged.isSite());
+		assertTrue(logged.isVirtual());
+	}
 
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(50f);
+	@Test
+	void testHandleVirtualDevice_combinesDeviceErrors() throws Exception {
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), createPhysicalDevice("physical-2"));
+		DeviceData deviceData1 = createDeviceData("physical-1", 1f, 1f, 1f);
+		deviceData1.setCriticalError(1);
+		DeviceData deviceData2 = createDeviceData("physical-2", 1f, 1f, 1f);
+		deviceData2.setCriticalError(4);
+
+		virtualDeviceComponent.handleVirtualDevice(deviceData1);
+		virtualDeviceComponent.handleVirtualDevice(deviceData2);
+
+		verify(mockLinkedDeviceComponent)
+				.addLinkedDeviceDataVirtual(
+						any(DeviceData.class),
+						argThat(children -> children.size() == 1
+								&& children.getFirst().getCriticalError() == 5
+								&& children.getFirst().getInformationalError() == -1));
+	}
 
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Collections.singletonList(deviceData1));
-			doThrow(ResponseException.class).when(mockOSComponent).logData(any(Date.class), anyList());
+	@Test
+	void testHandleVirtualDevice_lateReadingRewritesSite() throws Exception {
+		Device physicalDevice2 = createPhysicalDevice("physical-2");
+		physicalDevice2.setDisabled(true);
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), physicalDevice2);
 
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-2", 30f, 15f, 300f));
 
-			verify(mockOSComponent).logData(any(Date.class), anyList());
-		}
+		verify(mockOSComponent, times(2)).logData(any(Date.class), anyList(), eq(true));
 	}
 
 	@Test
-	void testHandleVirtualDevice_filtersNegativeDeviceValues() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+	void testHandleVirtualDevice_withResponseException_logsError() throws Exception {
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"));
+		doThrow(ResponseException.class).when(mockOSComponent).logData(any(Date.class), anyList(), eq(true));
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(100f);
-
-			DeviceData deviceData2 = createDeviceData();
-			deviceData2.setEnergyConsumed(-50f);
-
-			DeviceData deviceData3 = createDeviceData();
-			deviceData3.setEnergyConsumed(50f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Arrays.asList(deviceData1, deviceData2, deviceData3));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(150f, logged.getEnergyConsumed());
-				return true;
-			}));
-		}
+		assertDoesNotThrow(
+				() -> virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 1f, 1f)));
+
+		verify(mockOSComponent).logData(any(Date.class), anyList(), eq(true));
 	}
 
 	@Test
-	void testHandleVirtualDevice_withEmptyDeviceList_returnsNegativeOne() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+	void testWriteExpiredSites_writesSiteMissingADevice() throws Exception {
+		mockSite(createVirtualDevice(), createPhysicalDevice("physical-1"), createPhysicalDevice("physical-2"));
+		virtualDeviceComponent.handleVirtualDevice(createDeviceData("physical-1", 50f, 25f, 500f));
+		verify(mockOSComponent, never()).logData(any(), anyList(), anyBoolean());
+
+		virtualDeviceComponent.writeExpiredSites();
+		verify(mockOSComponent, never()).logData(any(), anyList(), anyBoolean());
+
+		long now = System.currentTimeMillis();
+		siteIntervalRepository.items.values().forEach(siteInterval -> {
+			siteInterval.setCreatedAt(now - SiteAggregationComponent.DEADLINE);
+			siteInterval.setDeadline(now);
+		});
+		virtualDeviceComponent.writeExpiredSites();
+
+		assertEquals(50f, captureLogged().getEnergyConsumed());
+		assertTrue(siteIntervalRepository.findPendingPastDeadline(now).isEmpty());
+	}
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Collections.emptyList());
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(0f, logged.getEnergyConsumed());
-				assertEquals(0f, logged.getTotalRealPower());
-				assertEquals(0f, logged.getTotalEnergyConsumed());
-				return true;
-			}));
-		}
+	private void mockSite(Device... devices) {
+		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID)).thenReturn(Arrays.asList(devices));
 	}
 
-	@Test
-	void testHandleVirtualDevice_withAllNegativeValues_returnsNegativeOne() throws Exception {
-		DeviceData deviceData = createDeviceData();
-		Device virtualDevice = createVirtualDevice();
-		Device physicalDevice1 = createPhysicalDevice("physical-1");
+	@SuppressWarnings("unchecked")
+	private DeviceData captureLogged() throws ResponseException {
+		ArgumentCaptor<List<DeviceData>> logged = ArgumentCaptor.forClass(List.class);
+		verify(mockOSComponent).logData(any(Date.class), logged.capture(), eq(true));
+		assertEquals(1, logged.getValue().size());
+		return logged.getValue().getFirst();
+	}
 
-		when(mockDeviceComponent.getDevicesBySiteId(CUSTOMER_ID, SITE_ID))
-				.thenReturn(Arrays.asList(virtualDevice, physicalDevice1));
-		when(mockOSComponent.getSiteDevicesCountByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-				.thenReturn(1);
-
-		try (MockedStatic<DynamoLockUtils> mockLockUtils = mockStatic(DynamoLockUtils.class)) {
-			mockLockUtils
-					.when(() -> DynamoLockUtils.doLockedCommand(anyString(), any(Runnable.class)))
-					.thenAnswer(invocation -> {
-						Runnable command = invocation.getArgument(1);
-						command.run();
-						return null;
-					});
-
-			DeviceData deviceData1 = createDeviceData();
-			deviceData1.setEnergyConsumed(-100f);
-			deviceData1.setTotalRealPower(-50f);
-
-			DeviceData deviceData2 = createDeviceData();
-			deviceData2.setEnergyConsumed(-30f);
-			deviceData2.setTotalRealPower(-15f);
-
-			when(mockOSComponent.getDevicesForSiteByTimePeriod(eq(CUSTOMER_ID), eq(SITE_ID), any(Date.class)))
-					.thenReturn(Arrays.asList(deviceData1, deviceData2));
-
-			virtualDeviceComponent.handleVirtualDevice(deviceData);
-
-			verify(mockOSComponent).logData(any(Date.class), argThat(list -> {
-				assertNotNull(list);
-				assertEquals(1, list.size());
-				DeviceData logged = list.getFirst();
-				assertEquals(0f, logged.getEnergyConsumed());
-				assertEquals(0f, logged.getTotalRealPower());
-				return true;
-			}));
-		}
+	private DeviceData createDeviceData(String deviceId) {
+		DeviceData data = new DeviceData(SITE_ID, CUSTOMER_ID, deviceId);
+		data.setDate(date);
+		return data;
 	}
 
-	private DeviceData createDeviceData() {
-		DeviceData data = new DeviceData(SITE_ID, CUSTOMER_ID, DEVICE_ID);
-		data.setDate(new Date());
-		data.setEnergyConsumed(100.0f);
-		data.setTotalRealPower(50.0f);
-		data.setTotalEnergyConsumed(1000.0f);
+	private DeviceData createDeviceData(
+			String deviceId, float energyConsumed, float totalRealPower, float totalEnergyConsumed) {
+		DeviceData data = createDeviceData(deviceId);
+		data.setEnergyConsumed(energyConsumed);
+		data.setTotalRealPower(totalRealPower);
+		data.setTotalEnergyConsumed(totalEnergyConsumed);
 		return data;
 	}
 
@@ -1,15 +1,37 @@
 package com.bigboxer23.solar_moon.download;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.data.DownloadRequest;
+import com.bigboxer23.solar_moon.search.OpenSearchComponent;
+import com.bigboxer23.solar_moon.search.SearchJSON;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
 
 @ExtendWith(MockitoExtension.class)
 public class DownloadComponentTest {
@@ -17,9 +39,17 @@ public class DownloadComponentTest {
 	@Mock
 	private DownloadRepository mockRepository;
 
+	@Mock
+	private OpenSearchComponent mockOSComponent;
+
+	@Mock
+	private S3Client mockS3Client;
+
 	private TestableDownloadComponent downloadComponent;
 
-	private static class TestableDownloadComponent extends DownloadComponent {
+	private int parallelism = 1;
+
+	private class TestableDownloadComponent extends DownloadComponent {
 		private final DownloadRepository repository;
 
 		public TestableDownloadComponent(DownloadRepository repository) {
@@ -31,6 +61,26 @@ public class DownloadComponentTest {
 		protected DownloadRepository getRepository() {
 			return repository;
 		}
+
+		@Override
+		protected OpenSearchComponent getOpenSearchComponent() {
+			return mockOSComponent;
+		}
+
+		@Override
+		protected S3Client getS3Client() {
+			return mockS3Client;
+		}
+
+		@Override
+		protected String getBucket() {
+			return "bucket";
+		}
+
+		@Override
+		protected int getParallelism() {
+			return parallelism;
+		}
 	}
 
 	@BeforeEach
@@ -130,4 +180,218 @@ public class DownloadComponentTest {
 
 		verify(mockRepository).delete(request);
 	}
+
+	@Test
+	void testExport_streamsGzippedCsvToS3() throws IOException {
+		DownloadRequest request = new DownloadRequest("customer-123");
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(3L);
+		DeviceData first = createData("device1", 1.5f);
+		DeviceData second = createData("device2", 2.5f);
+		second.setWeatherSummary("Rain, \"heavy\"");
+		DeviceData third = createData("device1", 3.5f);
+		when(mockOSComponent.streamData(eq(search), anyInt(), any())).thenAnswer(invocation -> {
+			Consumer<List<DeviceData>> pages = invocation.getArgument(2);
+			pages.accept(List.of(first, second));
+			pages.accept(List.of(third));
+			return 3L;
+		});
+		mockUpload();
+		ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+		when(mockS3Client.uploadPart(any(UploadPartRequest.class), body.capture()))
+				.thenReturn(UploadPartResponse.builder().eTag("etag1").build());
+		List<Long> progress = new ArrayList<>();
+		when(mockRepository.update(request)).thenAnswer(invocation -> {
+			progress.add(request.getPercentComplete());
+			return Optional.of(request);
+		});
+
+		DownloadRequest result = downloadComponent.export(request, search);
+
+		assertEquals("customer-123/" + request.getRequestId() + ".csv.gz", result.getS3Key());
+		assertEquals(List.of(66L, 99L, 100L), progress);
+		List<String> lines = gunzip(body.getValue()).lines().toList();
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).startsWith("@timestamp,siteId,device-id,"));
+		assertTrue(lines.get(1).startsWith(first.getDate().toInstant() + ",site1,device1,"));
+		assertTrue(lines.get(2).endsWith(",\"Rain, \"\"heavy\"\"\""));
+		verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+		verify(mockS3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+	}
+
+	@Test
+	void testExport_failureAbortsUpload() throws IOException {
+		DownloadRequest request = new DownloadRequest("customer-123");
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(3L);
+		when(mockOSComponent.streamData(eq(search), anyInt(), any())).thenThrow(new IOException("Test error"));
+		mockUpload();
+
+		assertThrows(IOException.class, () -> downloadComponent.export(request, search));
+
+		assertNull(request.getS3Key());
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		verify(mockS3Client, never()).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+		verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+		verify(mockRepository, never()).update(any());
+	}
+
+	@Test
+	void testExport_slicesMergedInTimestampOrder() throws IOException {
+		parallelism = 2;
+		DownloadRequest request = new DownloadRequest("customer-123");
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(4L);
+		when(mockOSComponent.openPointInTime()).thenReturn("pit1");
+		mockSlice(search, 0, List.of(createReading("device1", 1000), createReading("device1", 3000)));
+		mockSlice(search, 1, List.of(createReading("device2", 2000), createReading("device0", 3000)));
+		mockUpload();
+		ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+		when(mockS3Client.uploadPart(any(UploadPartRequest.class), body.capture()))
+				.thenReturn(UploadPartResponse.builder().eTag("etag1").build());
+		when(mockRepository.update(request)).thenReturn(Optional.of(request));
+
+		downloadComponent.export(request, search);
+
+		List<String> lines = gunzip(body.getValue()).lines().toList();
+		assertEquals(
+				List.of("device1", "device2", "device0", "device1"),
+				lines.subList(1, lines.size()).stream()
+						.map(line -> line.split(",")[2])
+						.toList());
+		assertEquals(100, request.getPercentComplete());
+		verify(mockOSComponent).closePointInTime("pit1");
+		verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	void testExport_sliceFailureAbortsUpload() throws IOException {
+		parallelism = 2;
+		DownloadRequest request = new DownloadRequest("customer-123");
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(4L);
+		when(mockOSComponent.openPointInTime()).thenReturn("pit1");
+		mockSlice(search, 0, List.of());
+		when(mockOSComponent.streamData(eq("pit1"), eq(search), eq(1), eq(2), anyInt(), any()))
+				.thenThrow(new IOException("Test error"));
+		mockUpload();
+
+		assertThrows(IOException.class, () -> downloadComponent.export(request, search));
+
+		verify(mockOSComponent).closePointInTime("pit1");
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		verify(mockS3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	void testExport_waitingSlicesDontOpenPointInTime() throws Exception {
+		parallelism = 2;
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(0L);
+		when(mockOSComponent.openPointInTime()).thenReturn("pit1");
+		CountDownLatch streaming = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(mockOSComponent.streamData(eq("pit1"), eq(search), anyInt(), eq(2), anyInt(), any()))
+				.thenAnswer(invocation -> {
+					streaming.countDown();
+					release.await();
+					return 0L;
+				});
+		mockUpload();
+		when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+				.thenReturn(UploadPartResponse.builder().eTag("etag1").build());
+		ExecutorService exports = Executors.newFixedThreadPool(2);
+		try {
+			Future<DownloadRequest> first =
+					exports.submit(() -> downloadComponent.export(new DownloadRequest("customer-456"), search));
+			assertTrue(streaming.await(5, TimeUnit.SECONDS));
+			Future<DownloadRequest> second =
+					exports.submit(() -> downloadComponent.export(new DownloadRequest("customer-456"), search));
+
+			// the second export waits for the customer's permit before opening its point in time
+			verify(mockOSComponent, after(200).times(1)).openPointInTime();
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			second.get(5, TimeUnit.SECONDS);
+		} finally {
+			release.countDown();
+			exports.shutdownNow();
+		}
+
+		verify(mockOSComponent, times(2)).openPointInTime();
+		verify(mockOSComponent, times(2)).closePointInTime("pit1");
+	}
+
+	@Test
+	void testExport_progressWriteDoesntBlockOtherExports() throws Exception {
+		DownloadRequest blocked = new DownloadRequest("customer-123");
+		DownloadRequest other = new DownloadRequest("customer-456");
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.count(search)).thenReturn(1L);
+		when(mockOSComponent.streamData(eq(search), anyInt(), any())).thenAnswer(invocation -> {
+			Consumer<List<DeviceData>> pages = invocation.getArgument(2);
+			pages.accept(List.of(createReading("device1", 1000)));
+			return 1L;
+		});
+		mockUpload();
+		when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+				.thenReturn(UploadPartResponse.builder().eTag("etag1").build());
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(mockRepository.update(blocked)).thenAnswer(invocation -> {
+			writing.countDown();
+			release.await();
+			return Optional.of(blocked);
+		});
+		when(mockRepository.update(other)).thenReturn(Optional.of(other));
+		ExecutorService exports = Executors.newFixedThreadPool(2);
+		try {
+			Future<DownloadRequest> first = exports.submit(() -> downloadComponent.export(blocked, search));
+			assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+			// the other export's progress and completion writes go through while the first is stuck
+			assertEquals(100, exports.submit(() -> downloadComponent.export(other, search))
+					.get(5, TimeUnit.SECONDS)
+					.getPercentComplete());
+			release.countDown();
+			assertNotNull(first.get(5, TimeUnit.SECONDS).getS3Key());
+		} finally {
+			release.countDown();
+			exports.shutdownNow();
+		}
+	}
+
+	private void mockSlice(SearchJSON search, int slice, List<DeviceData> page) throws IOException {
+		when(mockOSComponent.streamData(eq("pit1"), eq(search), eq(slice), eq(2), anyInt(), any()))
+				.thenAnswer(invocation -> {
+					Consumer<List<DeviceData>> pages = invocation.getArgument(5);
+					pages.accept(page);
+					return (long) page.size();
+				});
+	}
+
+	private DeviceData createReading(String deviceId, long time) {
+		DeviceData data = new DeviceData("site1", "customer-123", deviceId);
+		data.setDate(new Date(time));
+		return data;
+	}
+
+	private void mockUpload() {
+		when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+				.thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+	}
+
+	private DeviceData createData(String deviceId, float energy) {
+		DeviceData data = new DeviceData("site1", "customer-123", deviceId);
+		data.setDate(new Date());
+		data.setEnergyConsumed(energy);
+		return data;
+	}
+
+	private String gunzip(RequestBody body) throws IOException {
+		try (InputStream content = body.contentStreamProvider().newStream();
+				InputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(content.readAllBytes()))) {
+			return new String(unzipped.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
 }
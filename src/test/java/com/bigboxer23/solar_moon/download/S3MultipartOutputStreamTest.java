@@ -0,0 +1,93 @@
+package com.bigboxer23.solar_moon.download;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+@ExtendWith(MockitoExtension.class)
+public class S3MultipartOutputStreamTest {
+	@Mock
+	private S3Client mockS3Client;
+
+	/** Content of each uploaded part, in upload order */
+	private final List<String> parts = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		when(mockS3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+				.thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+	}
+
+	@Test
+	void testWrite_splitsIntoParts() throws IOException {
+		mockUploadPart();
+		S3MultipartOutputStream stream = new S3MultipartOutputStream(mockS3Client, "bucket", "key", 4);
+
+		stream.write("abcdef".getBytes());
+		stream.write('g');
+		stream.write('h');
+		assertEquals(List.of("abcd", "efgh"), parts);
+		stream.write("ij".getBytes());
+		stream.close();
+		stream.close();
+
+		assertEquals(List.of("abcd", "efgh", "ij"), parts);
+		ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+				ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+		verify(mockS3Client).completeMultipartUpload(complete.capture());
+		assertEquals("upload1", complete.getValue().uploadId());
+		assertEquals(
+				List.of(1, 2, 3),
+				complete.getValue().multipartUpload().parts().stream()
+						.map(CompletedPart::partNumber)
+						.toList());
+	}
+
+	@Test
+	void testClose_emptyStreamUploadsOnePart() throws IOException {
+		mockUploadPart();
+
+		new S3MultipartOutputStream(mockS3Client, "bucket", "key", 4).close();
+
+		assertEquals(List.of(""), parts);
+		verify(mockS3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+	}
+
+	@Test
+	void testAbort() {
+		S3MultipartOutputStream stream = new S3MultipartOutputStream(mockS3Client, "bucket", "key", 4);
+
+		stream.abort();
+
+		assertThrows(IOException.class, () -> stream.write('a'));
+		verify(mockS3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+		verify(mockS3Client, never()).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+	}
+
+	private void mockUploadPart() {
+		when(mockS3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+				.thenAnswer(invocation -> {
+					RequestBody body = invocation.getArgument(1);
+					try (InputStream content = body.contentStreamProvider().newStream()) {
+						parts.add(new String(content.readAllBytes()));
+					}
+					return UploadPartResponse.builder()
+							.eTag("etag" + parts.size())
+							.build();
+				});
+	}
+}
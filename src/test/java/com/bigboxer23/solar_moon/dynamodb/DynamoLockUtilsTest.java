@@ -0,0 +1,119 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.services.dynamodbv2.AcquireLockOptions;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBLockClient;
+import com.amazonaws.services.dynamodbv2.LockItem;
+import com.amazonaws.services.dynamodbv2.model.LockCurrentlyUnavailableException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@Execution(ExecutionMode.SAME_THREAD)
+public class DynamoLockUtilsTest {
+	@Mock
+	private AmazonDynamoDBLockClient mockLockClient;
+
+	@Mock
+	private LockItem mockLock;
+
+	@BeforeEach
+	void setUp() {
+		DynamoLockUtils.setLockClient(mockLockClient);
+		DynamoLockUtils.getMetrics().reset();
+	}
+
+	@AfterEach
+	void tearDown() {
+		DynamoLockUtils.setLockClient(null);
+	}
+
+	@Test
+	void testDoLockedCommand_runsAndReleases() throws Exception {
+		when(mockLockClient.tryAcquireLock(any(AcquireLockOptions.class))).thenReturn(Optional.of(mockLock));
+		AtomicInteger runs = new AtomicInteger();
+
+		DynamoLockUtils.doLockedCommand("key", runs::incrementAndGet);
+		DynamoLockUtils.doLockedCommand("key", runs::incrementAndGet);
+
+		assertEquals(2, runs.get());
+		verify(mockLockClient, times(2)).releaseLock(mockLock);
+		assertEquals(2, DynamoLockUtils.getMetrics().getAcquired());
+		assertEquals(0, DynamoLockUtils.getMetrics().getContentionRate());
+	}
+
+	@Test
+	void testDoLockedCommand_heldInProcessSkipsDynamo() throws Exception {
+		when(mockLockClient.tryAcquireLock(any(AcquireLockOptions.class))).thenReturn(Optional.of(mockLock));
+		AtomicInteger runs = new AtomicInteger();
+
+		DynamoLockUtils.doLockedCommand("key", () -> {
+			runs.incrementAndGet();
+			DynamoLockUtils.doLockedCommand("key", runs::incrementAndGet);
+		});
+
+		assertEquals(1, runs.get());
+		verify(mockLockClient, times(1)).tryAcquireLock(any(AcquireLockOptions.class));
+		assertEquals(1, DynamoLockUtils.getMetrics().getContended());
+		assertEquals(0.5, DynamoLockUtils.getMetrics().getContentionRate());
+	}
+
+	@Test
+	void testDoLockedCommand_differentKeysDontContend() throws Exception {
+		when(mockLockClient.tryAcquireLock(any(AcquireLockOptions.class))).thenReturn(Optional.of(mockLock));
+		AtomicInteger runs = new AtomicInteger();
+
+		DynamoLockUtils.doLockedCommand("key1", () -> DynamoLockUtils.doLockedCommand("key2", runs::incrementAndGet));
+
+		assertEquals(1, runs.get());
+		assertEquals(0, DynamoLockUtils.getMetrics().getContended());
+	}
+
+	@Test
+	void testDoLockedCommand_heldElsewhere() throws Exception {
+		when(mockLockClient.tryAcquireLock(any(AcquireLockOptions.class)))
+				.thenThrow(new LockCurrentlyUnavailableException("held"));
+		AtomicInteger runs = new AtomicInteger();
+
+		DynamoLockUtils.doLockedCommand("key", runs::incrementAndGet);
+
+		assertEquals(0, runs.get());
+		verify(mockLockClient, never()).releaseLock(any());
+		assertEquals(1, DynamoLockUtils.getMetrics().getContended());
+	}
+
+	@Test
+	void testDoLockedCommand_releasesWhenCommandThrows() throws Exception {
+		when(mockLockClient.tryAcquireLock(any(AcquireLockOptions.class))).thenReturn(Optional.of(mockLock));
+
+		assertThrows(IllegalStateException.class, () -> DynamoLockUtils.doLockedCommand("key", () -> {
+			throw new IllegalStateException();
+		}));
+
+		verify(mockLockClient).releaseLock(mockLock);
+		AtomicInteger runs = new AtomicInteger();
+		DynamoLockUtils.doLockedCommand("key", runs::incrementAndGet);
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	void testMetrics_loggedOncePerInterval() {
+		LockMetrics metrics = new LockMetrics();
+		long now = LockMetrics.LOG_INTERVAL * 10;
+
+		assertTrue(metrics.logIfDue(now));
+		assertFalse(metrics.logIfDue(now + LockMetrics.LOG_INTERVAL - 1));
+		assertTrue(metrics.logIfDue(now + LockMetrics.LOG_INTERVAL));
+	}
+}
@@ -0,0 +1,132 @@
+package com.bigboxer23.solar_moon.dynamodb;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.bigboxer23.solar_moon.data.Alarm;
+import com.bigboxer23.solar_moon.data.Device;
+import com.bigboxer23.solar_moon.data.DeviceUpdateData;
+import com.bigboxer23.solar_moon.data.DynamoDBLock;
+import com.bigboxer23.solar_moon.weather.StoredWeatherData;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.IndexMetadata;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+public class StaticTableSchemasTest {
+	@Test
+	void testDeviceMatchesBean() {
+		Device device = new Device("device-123", "customer-123", "Device Name");
+		device.setAddress("http://127.0.0.1");
+		device.setUser("user");
+		device.setPassword("password");
+		device.setType("type");
+		device.setSubtraction(true);
+		device.setVirtual(true);
+		device.setDeviceKey("key");
+		device.setIsSite("1");
+		device.setDisabled(true);
+		device.setNotificationsDisabled(true);
+		device.setMock("mock");
+		device.setCity("Minneapolis");
+		device.setState("MN");
+		device.setCountry("US");
+		device.setLatitude(44.98);
+		device.setLongitude(-93.27);
+		device.setSerialNumber("serial");
+		device.markCreated();
+		assertMatchesBean(StaticTableSchemas.DEVICE, device);
+	}
+
+	@Test
+	void testAlarmMatchesBean() {
+		Alarm alarm = new Alarm("alarm-123", "customer-123", "device-123", "site-123");
+		alarm.setStartDate(1L);
+		alarm.setLastUpdate(2L);
+		alarm.setEndDate(3L);
+		alarm.setMessage("message");
+		alarm.setState(1);
+		alarm.setEmailed(4L);
+		alarm.setResolveEmailed(5L);
+		alarm.setDeviceDisabled(true);
+		alarm.markCreated();
+		assertMatchesBean(StaticTableSchemas.ALARM, alarm);
+	}
+
+	@Test
+	void testAlarmIgnoredFieldsNotStored() {
+		Alarm alarm = new Alarm("alarm-123", "customer-123");
+		alarm.setDeviceName("name");
+		alarm.setDeviceSite("site");
+		Map<String, AttributeValue> item = StaticTableSchemas.ALARM.itemToMap(alarm, true);
+		assertFalse(item.containsKey("deviceName"));
+		assertFalse(item.containsKey("deviceSite"));
+	}
+
+	@Test
+	void testDeviceUpdateMatchesBean() {
+		assertMatchesBean(StaticTableSchemas.DEVICE_UPDATE, new DeviceUpdateData("device-123", 1L));
+	}
+
+	@Test
+	void testStoredWeatherMatchesBean() {
+		StoredWeatherData weather = new StoredWeatherData(44.98, -93.27, "{}", 1L);
+		weather.markCreated();
+		assertMatchesBean(StaticTableSchemas.STORED_WEATHER, weather);
+	}
+
+	@Test
+	void testGet() {
+		assertSame(StaticTableSchemas.DEVICE, StaticTableSchemas.get(Device.class).orElseThrow());
+		assertTrue(StaticTableSchemas.get(DynamoDBLock.class).isEmpty());
+	}
+
+	@Test
+	void testTableSchemaUsesStaticSchema() {
+		AbstractDynamodbComponent<Device> devices = createComponent(Device.class);
+		assertSame(StaticTableSchemas.DEVICE, devices.getTableSchema());
+		AbstractDynamodbComponent<DynamoDBLock> locks = createComponent(DynamoDBLock.class);
+		assertFalse(locks.getTableSchema() instanceof StaticTableSchema);
+		assertSame(locks.getTableSchema(), createComponent(DynamoDBLock.class).getTableSchema());
+	}
+
+	private <T> void assertMatchesBean(TableSchema<T> schema, T item) {
+		@SuppressWarnings("unchecked")
+		TableSchema<T> bean = TableSchema.fromBean((Class<T>) item.getClass());
+		assertEquals(new HashSet<>(bean.attributeNames()), new HashSet<>(schema.attributeNames()));
+		assertEquals(getKeys(bean.tableMetadata()), getKeys(schema.tableMetadata()));
+
+		Map<String, AttributeValue> map = schema.itemToMap(item, true);
+		assertEquals(bean.itemToMap(item, true), map);
+		assertEquals(item, schema.mapToItem(map));
+		assertEquals(bean.mapToItem(map), schema.mapToItem(map));
+	}
+
+	/** index name -> partition key/sort key for the primary and every secondary index */
+	private Set<String> getKeys(TableMetadata metadata) {
+		return metadata.indices().stream()
+				.map(IndexMetadata::name)
+				.map(index -> index + ":" + metadata.indexPartitionKey(index) + "/"
+						+ metadata.indexSortKey(index).orElse(""))
+				.collect(Collectors.toSet());
+	}
+
+	private <T> AbstractDynamodbComponent<T> createComponent(Class<T> clazz) {
+		return new AbstractDynamodbComponent<>() {
+			@Override
+			protected String getTableName() {
+				return clazz.getSimpleName();
+			}
+
+			@Override
+			protected Class<T> getObjectClass() {
+				return clazz;
+			}
+		};
+	}
+}
@@ -8,17 +8,21 @@ import com.bigboxer23.solar_moon.IComponentRegistry;
 import com.bigboxer23.solar_moon.alarm.AlarmComponent;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.data.SiteIntervalData;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.device.LinkedDeviceComponent;
+import com.bigboxer23.solar_moon.device.SiteAggregationComponent;
+import com.bigboxer23.solar_moon.device.SiteIntervalRepository;
 import com.bigboxer23.solar_moon.device.VirtualDeviceComponent;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import com.bigboxer23.solar_moon.weather.PirateWeatherComponent;
 import java.lang.reflect.Field;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,6 +30,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.MDC;
 
 @ExtendWith(MockitoExtension.class)
 @Execution(ExecutionMode.SAME_THREAD)
@@ -160,6 +165,87 @@ class IngestComponentTest {
 		assertTrue(result.isSite());
 	}
 
+	@Test
+	void testHandleDevice_enrichmentKeepsTransactionContext() throws Exception {
+		Device device = createTestDevice();
+		DeviceData deviceData = createTestDeviceData();
+		Map<String, String> seen = new ConcurrentHashMap<>();
+		doAnswer(invocation -> seen.put("weather", MDC.get("transaction.id")))
+				.when(mockWeatherComponent)
+				.addWeatherData(any(), any());
+		doAnswer(invocation -> seen.put("linked", MDC.get("transaction.id")))
+				.when(mockLinkedDeviceComponent)
+				.addLinkedDeviceData(device, deviceData);
+		MDC.put("transaction.id", "transaction-1");
+		try {
+			component.handleDevice(device, deviceData);
+		} finally {
+			MDC.clear();
+		}
+
+		assertEquals(Map.of("weather", "transaction-1", "linked", "transaction-1"), seen);
+	}
+
+	@Test
+	void testHandleDevice_alarmsSeeDaylight() throws Exception {
+		Device device = createTestDevice();
+		DeviceData deviceData = createTestDeviceData();
+		doAnswer(invocation -> {
+					deviceData.setDaylight(true);
+					return null;
+				})
+				.when(mockLocationComponent)
+				.addLocationData(any(), any());
+		AtomicBoolean daylight = new AtomicBoolean();
+		doAnswer(invocation -> {
+					daylight.set(deviceData.isDaylight());
+					return null;
+				})
+				.when(mockAlarmComponent)
+				.resolveActiveAlarms(deviceData);
+
+		component.handleDevice(device, deviceData);
+
+		assertTrue(daylight.get());
+	}
+
+	@Test
+	void testHandleDevice_enrichesConcurrently() throws Exception {
+		Device device = createTestDevice();
+		DeviceData deviceData = createTestDeviceData();
+		CountDownLatch linkedStarted = new CountDownLatch(1);
+		AtomicBoolean overlapped = new AtomicBoolean();
+		doAnswer(invocation -> {
+					linkedStarted.countDown();
+					return null;
+				})
+				.when(mockLinkedDeviceComponent)
+				.addLinkedDeviceData(device, deviceData);
+		// the weather lookup only finishes if the linked device lookup can run alongside it
+		doAnswer(invocation -> {
+					overlapped.set(linkedStarted.await(5, TimeUnit.SECONDS));
+					return null;
+				})
+				.when(mockWeatherComponent)
+				.addWeatherData(any(), any());
+
+		component.handleDevice(device, deviceData);
+
+		assertTrue(overlapped.get());
+	}
+
+	@Test
+	void testHandleDevice_enrichmentFailurePropagates() {
+		Device device = createTestDevice();
+		DeviceData deviceData = createTestDeviceData();
+		doThrow(new IllegalStateException("linked"))
+				.when(mockLinkedDeviceComponent)
+				.addLinkedDeviceData(device, deviceData);
+
+		assertThrows(IllegalStateException.class, () -> component.handleDevice(device, deviceData));
+		verifyNoInteractions(mockVirtualDeviceComponent);
+	}
+
 	@Test
 	void testMaybeCorrectForRollover_noRollover() {
 		float result = component.maybeCorrectForRollover(100f, 200f);
@@ -386,6 +472,154 @@ class IngestComponentTest {
 		assertEquals(0f, result.getEnergyConsumed());
 	}
 
+	@Test
+	void testHandleDevices_batchesLookupsAndWrite() throws Exception {
+		Device device1 = createTestDevice();
+		Device device2 = createTestDevice();
+		device2.setId("device-2");
+		DeviceData data1 = createTestDeviceData();
+		data1.setTotalEnergyConsumed(1500f);
+		DeviceData data2 = createTestDeviceData();
+		data2.setDeviceId("device-2");
+		data2.setDate(data1.getDate());
+		data2.setTotalEnergyConsumed(600f);
+		List<IngestItem> items = List.of(new IngestItem(device1, data1), new IngestItem(device2, data2));
+
+		Device site = createTestDevice();
+		site.setId("site-1");
+		when(mockDeviceComponent.findDeviceById("site-1", "customer-1")).thenReturn(Optional.of(site));
+		when(mockOSComponent.getTotalEnergyConsumed(anyCollection()))
+				.thenReturn(Map.of("device-1", 1000f, "device-2", 500f));
+		when(mockOSComponent.bulkLogData(any(Date.class), eq(List.of(data1, data2))))
+				.thenReturn(Arrays.asList(null, null));
+
+		List<IngestItem> result = component.handleDevices(items);
+
+		assertTrue(result.stream().allMatch(IngestItem::isSuccess));
+		assertEquals(500f, data1.getEnergyConsumed());
+		assertEquals(100f, data2.getEnergyConsumed());
+		verify(mockDeviceComponent, times(1)).findDeviceById("site-1", "customer-1");
+		verify(mockOSComponent, never()).getTotalEnergyConsumed(anyString());
+		verify(mockOSComponent, never()).logData(any(), any());
+		verify(mockAlarmComponent).resolveActiveAlarms(List.of(data1, data2));
+		verify(mockLinkedDeviceComponent).addLinkedDeviceData(List.of(device1, device2), List.of(data1, data2));
+		verify(mockVirtualDeviceComponent).handleVirtualDevice(data1);
+		verify(mockVirtualDeviceComponent).handleVirtualDevice(data2);
+	}
+
+	@Test
+	void testHandleDevices_mapsErrorsToInput() throws Exception {
+		Device device1 = createTestDevice();
+		Device device2 = createTestDevice();
+		device2.setId("device-2");
+		DeviceData data1 = createTestDeviceData();
+		DeviceData data2 = createTestDeviceData();
+		data2.setDeviceId("device-2");
+		List<IngestItem> items = List.of(
+				new IngestItem(device1, data1), new IngestItem(null, createTestDeviceData()), new IngestItem(device2, data2));
+
+		when(mockDeviceComponent.findDeviceById("site-1", "customer-1")).thenReturn(Optional.empty());
+		when(mockOSComponent.bulkLogData(any(Date.class), eq(List.of(data1, data2))))
+				.thenReturn(Arrays.asList(null, "mapper_parsing_exception"));
+
+		List<IngestItem> result = component.handleDevices(items);
+
+		assertTrue(result.get(0).isSuccess());
+		assertFalse(result.get(1).isSuccess());
+		assertEquals("mapper_parsing_exception", result.get(2).getError());
+		verify(mockVirtualDeviceComponent).handleVirtualDevice(data1);
+		verify(mockVirtualDeviceComponent, never()).handleVirtualDevice(data2);
+	}
+
+	@Test
+	void testHandleDevices_sameDeviceTwiceUsesEarlierReading() throws Exception {
+		Device device = createTestDevice();
+		DeviceData first = createTestDeviceData();
+		first.setTotalEnergyConsumed(1100f);
+		DeviceData second = createTestDeviceData();
+		second.setDate(new Date(first.getDate().getTime() + 1000));
+		second.setTotalEnergyConsumed(1150f);
+
+		when(mockDeviceComponent.findDeviceById("site-1", "customer-1")).thenReturn(Optional.empty());
+		when(mockOSComponent.getTotalEnergyConsumed(anyCollection())).thenReturn(Map.of("device-1", 1000f));
+		when(mockOSComponent.bulkLogData(any(Date.class), anyList())).thenReturn(Arrays.asList(null, null));
+
+		component.handleDevices(List.of(new IngestItem(device, first), new IngestItem(device, second)));
+
+		assertEquals(100f, first.getEnergyConsumed());
+		assertEquals(50f, second.getEnergyConsumed());
+	}
+
+	@Test
+	void testHandleDevices_sumsEverySiteDevice() throws Exception {
+		Map<String, SiteIntervalData> siteIntervals = new HashMap<>();
+		SiteAggregationComponent siteAggregationComponent = new SiteAggregationComponent() {
+			@Override
+			protected SiteIntervalRepository getRepository() {
+				return new SiteIntervalRepository() {
+					@Override
+					public Optional<SiteIntervalData> findById(String id) {
+						return Optional.ofNullable(siteIntervals.get(id));
+					}
+
+					@Override
+					public boolean save(SiteIntervalData siteInterval) {
+						siteIntervals.put(siteInterval.getId(), siteInterval);
+						return true;
+					}
+
+					@Override
+					public List<SiteIntervalData> findPendingPastDeadline(long time) {
+						return Collections.emptyList();
+					}
+				};
+			}
+		};
+		setFinalStatic(IComponentRegistry.class.getField("virtualDeviceComponent"), new VirtualDeviceComponent() {
+			@Override
+			protected SiteAggregationComponent getSiteAggregationComponent() {
+				return siteAggregationComponent;
+			}
+		});
+		Device virtualDevice = createTestDevice();
+		virtualDevice.setId("site-1");
+		virtualDevice.setVirtual(true);
+		List<Device> devices = new ArrayList<>(List.of(virtualDevice));
+		List<IngestItem> items = new ArrayList<>();
+		Date date = new Date();
+		for (int i = 1; i <= 3; i++) {
+			Device device = createTestDevice();
+			device.setId("device-" + i);
+			devices.add(device);
+			DeviceData data = createTestDeviceData();
+			data.setDeviceId(device.getId());
+			data.setDate(date);
+			data.setTotalRealPower(i * 10f);
+			items.add(new IngestItem(device, data));
+		}
+		when(mockDeviceComponent.findDeviceById("site-1", "customer-1")).thenReturn(Optional.of(virtualDevice));
+		when(mockDeviceComponent.getDevicesBySiteId("customer-1", "site-1")).thenReturn(devices);
+		when(mockOSComponent.bulkLogData(any(Date.class), anyList())).thenReturn(Arrays.asList(null, null, null));
+
+		component.handleDevices(items);
+
+		verify(mockOSComponent)
+				.logData(
+						any(Date.class),
+						argThat(logged -> logged.size() == 1
+								&& logged.getFirst().isVirtual()
+								&& logged.getFirst().getTotalRealPower() == 60f),
+						eq(true));
+	}
+
+	@Test
+	void testHandleDevices_noValidItems() throws Exception {
+		List<IngestItem> result = component.handleDevices(List.of(new IngestItem(null, null)));
+
+		assertFalse(result.getFirst().isSuccess());
+		verifyNoInteractions(mockOSComponent);
+	}
+
 	private Device createTestDevice() {
 		Device device = new Device();
 		device.setId("device-1");
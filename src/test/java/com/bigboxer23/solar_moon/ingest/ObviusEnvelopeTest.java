@@ -0,0 +1,96 @@
+package com.bigboxer23.solar_moon.ingest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.xml.xpath.XPathExpressionException;
+import org.junit.jupiter.api.Test;
+
+class ObviusEnvelopeTest {
+	private static final String VALID_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<DAS>"
+			+ "<mode>STREAM</mode>"
+			+ "<serial>ABC123456</serial>"
+			+ "<devices>"
+			+ "<device>"
+			+ "<name>TestDevice</name>"
+			+ "<records>"
+			+ "<record>"
+			+ "<time zone=\"EST\">2025-01-15 10:30:00</time>"
+			+ "<error text=\"Ok\">0</error>"
+			+ "<point name=\"Total Energy Consumption\" value=\"1000.5\"/>"
+			+ "<point name=\"Total Real Power\" value=\"500.2\"/>"
+			+ "</record>"
+			+ "</records>"
+			+ "</device>"
+			+ "</devices>"
+			+ "</DAS>";
+
+	@Test
+	void testParse_allFields() throws XPathExpressionException {
+		ObviusEnvelope envelope = ObviusEnvelope.parse(VALID_XML);
+
+		assertEquals("STREAM", envelope.getMode());
+		assertEquals("ABC123456", envelope.getSerialNumber());
+		assertEquals("TestDevice", envelope.getDeviceName());
+		assertEquals("2025-01-15 10:30:00", envelope.getTime());
+		assertEquals("EST", envelope.getTimeZone());
+		assertEquals("Ok errorCode:0", envelope.getError());
+		assertEquals(2, envelope.getPoints().size());
+		assertEquals("Total Real Power", envelope.getPoints().get(1).getName());
+		assertEquals("500.2", envelope.getPoints().get(1).getValue());
+	}
+
+	@Test
+	void testParse_emptyDocument() throws XPathExpressionException {
+		ObviusEnvelope envelope = ObviusEnvelope.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?><DAS></DAS>");
+
+		assertNull(envelope.getMode());
+		assertNull(envelope.getSerialNumber());
+		assertNull(envelope.getDeviceName());
+		assertNull(envelope.getTime());
+		assertNull(envelope.getError());
+		assertTrue(envelope.getPoints().isEmpty());
+	}
+
+	@Test
+	void testParse_firstMatchWins() throws XPathExpressionException {
+		String xml = "<DAS><devices>"
+				+ "<device><name>First</name><records><record>"
+				+ "<time zone=\"EST\">2025-01-15 10:30:00</time>"
+				+ "<error text=\"Fault\">5</error>"
+				+ "<point name=\"a\" value=\"1\"/>"
+				+ "</record></records></device>"
+				+ "<device><name>Second</name><records><record>"
+				+ "<time zone=\"CST\">2025-01-16 10:30:00</time>"
+				+ "<error text=\"Ok\">0</error>"
+				+ "<point name=\"b\" value=\"2\"/>"
+				+ "</record></records></device>"
+				+ "</devices></DAS>";
+
+		ObviusEnvelope envelope = ObviusEnvelope.parse(xml);
+
+		assertEquals("First", envelope.getDeviceName());
+		assertEquals("EST", envelope.getTimeZone());
+		assertEquals("Fault errorCode:5", envelope.getError());
+		assertEquals(2, envelope.getPoints().size());
+	}
+
+	@Test
+	void testParse_ignoresElementsOutsideOfPaths() throws XPathExpressionException {
+		String xml = "<DAS><name>NotADevice</name><devices><device><records><record>"
+				+ "<point name=\"a\" value=\"1\"/>"
+				+ "</record></records></device></devices>"
+				+ "<point name=\"b\" value=\"2\"/></DAS>";
+
+		ObviusEnvelope envelope = ObviusEnvelope.parse(xml);
+
+		assertNull(envelope.getDeviceName());
+		assertEquals(1, envelope.getPoints().size());
+		assertEquals("a", envelope.getPoints().getFirst().getName());
+	}
+
+	@Test
+	void testParse_malformedXml() {
+		assertThrows(XPathExpressionException.class, () -> ObviusEnvelope.parse("<DAS><devices></DAS>"));
+	}
+}
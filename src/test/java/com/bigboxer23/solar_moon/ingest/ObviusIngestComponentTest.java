@@ -546,6 +546,33 @@ class ObviusIngestComponentTest {
 		verify(mockAlarmComponent).faultDetected(eq("customer-1"), eq("device-1"), eq("site-1"), anyString());
 	}
 
+	@Test
+	void testParseDeviceInformation_handlesMissingValueAttribute() {
+		String xmlMissingValue = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<DAS>"
+				+ "<devices>"
+				+ "<device>"
+				+ "<name>TestDevice</name>"
+				+ "<records>"
+				+ "<record>"
+				+ "<time zone=\"EST\">2025-01-15 10:30:00</time>"
+				+ "<error text=\"Ok\">0</error>"
+				+ "<point name=\"Total Energy Consumption\"/>"
+				+ "</record>"
+				+ "</records>"
+				+ "</device>"
+				+ "</devices>"
+				+ "</DAS>";
+
+		when(mockMappingComponent.getMappings("customer-1")).thenReturn(Collections.emptyList());
+
+		DeviceData result =
+				component.parseDeviceInformation(xmlMissingValue, "site-1", "TestDevice", "customer-1", "device-1");
+
+		assertNotNull(result);
+		verify(mockAlarmComponent).faultDetected(eq("customer-1"), eq("device-1"), eq("site-1"), anyString());
+	}
+
 	private Device createTestDevice() {
 		Device device = new Device();
 		device.setId("device-1");
@@ -11,6 +11,7 @@ import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
 import com.bigboxer23.solar_moon.device.DeviceComponent;
 import com.bigboxer23.solar_moon.ingest.IngestComponent;
+import com.bigboxer23.solar_moon.ingest.IngestItem;
 import com.bigboxer23.solar_moon.location.LocationComponent;
 import com.bigboxer23.solar_moon.search.OpenSearchComponent;
 import java.lang.reflect.Field;
@@ -124,15 +125,8 @@ class SMAIngestComponentTest {
 					device.setSite("Test Site");
 					return device;
 				});
-		when(IComponentRegistry.generationComponent.handleDevice(any(Device.class), any(DeviceData.class)))
-				.thenAnswer(invocation -> {
-					DeviceData deviceData = new DeviceData();
-					deviceData.setDeviceId("device-1");
-					deviceData.setCustomerId("customer-1");
-					deviceData.setSiteId("site-1");
-					deviceData.setDate(new Date());
-					return deviceData;
-				});
+		when(IComponentRegistry.generationComponent.handleDevices(anyList()))
+				.thenAnswer(invocation -> invocation.getArgument(0));
 
 		component = new SMAIngestComponent() {
 			@Override
@@ -151,6 +145,13 @@ class SMAIngestComponentTest {
 		setFinalStatic(IComponentRegistry.class.getField("OSComponent"), originalOSComponent);
 	}
 
+	@SuppressWarnings("unchecked")
+	private List<IngestItem> captureIngestedItems() throws Exception {
+		ArgumentCaptor<List<IngestItem>> captor = ArgumentCaptor.forClass(List.class);
+		verify(mockGenerationComponent).handleDevices(captor.capture());
+		return captor.getValue();
+	}
+
 	private void setFinalStatic(Field field, Object newValue) throws Exception {
 		field.setAccessible(true);
 
@@ -176,28 +177,28 @@ class SMAIngestComponentTest {
 	void testIngestXMLFile_nullXml() throws Exception {
 		component.ingestXMLFile(null, "customer-1");
 
-		verify(mockGenerationComponent, never()).handleDevice(any(), any());
+		verify(mockGenerationComponent, never()).handleDevices(anyList());
 	}
 
 	@Test
 	void testIngestXMLFile_emptyXml() throws Exception {
 		component.ingestXMLFile("", "customer-1");
 
-		verify(mockGenerationComponent, never()).handleDevice(any(), any());
+		verify(mockGenerationComponent, never()).handleDevices(anyList());
 	}
 
 	@Test
 	void testIngestXMLFile_nullCustomerId() throws Exception {
 		component.ingestXMLFile(VALID_SMA_XML, null);
 
-		verify(mockGenerationComponent, never()).handleDevice(any(), any());
+		verify(mockGenerationComponent, never()).handleDevices(anyList());
 	}
 
 	@Test
 	void testIngestXMLFile_emptyCustomerId() throws Exception {
 		component.ingestXMLFile(VALID_SMA_XML, "");
 
-		verify(mockGenerationComponent, never()).handleDevice(any(), any());
+		verify(mockGenerationComponent, never()).handleDevices(anyList());
 	}
 
 	@Test
@@ -205,7 +206,7 @@ class SMAIngestComponentTest {
 	void testIngestXMLFile_validXml() throws Exception {
 		component.ingestXMLFile(VALID_SMA_XML, "customer-1");
 
-		verify(mockGenerationComponent, atLeastOnce()).handleDevice(any(Device.class), any(DeviceData.class));
+		verify(mockGenerationComponent, atLeastOnce()).handleDevices(anyList());
 	}
 
 	@Test
@@ -375,7 +376,7 @@ class SMAIngestComponentTest {
 
 		component.ingestXMLFile(VALID_SMA_XML, "customer-1");
 
-		verify(mockGenerationComponent, atLeastOnce()).handleDevice(any(Device.class), any(DeviceData.class));
+		verify(mockGenerationComponent, atLeastOnce()).handleDevices(anyList());
 	}
 
 	@Test
@@ -402,7 +403,7 @@ class SMAIngestComponentTest {
 		component.ingestXMLFile(VALID_SMA_XML, "customer-1");
 
 		verify(mockDeviceComponent).getDevicesBySiteId("customer-1", "site-1");
-		verify(mockGenerationComponent, atLeast(2)).handleDevice(any(), any());
+		assertTrue(captureIngestedItems().size() >= 2);
 	}
 
 	@Test
@@ -429,7 +430,7 @@ class SMAIngestComponentTest {
 
 		component.ingestXMLFile(VALID_SMA_XML, "customer-1");
 
-		verify(mockGenerationComponent, times(1)).handleDevice(any(), any());
+		assertEquals(1, captureIngestedItems().size());
 	}
 
 	@Test
@@ -451,10 +452,8 @@ class SMAIngestComponentTest {
 
 		component.ingestXMLFile(zeroYieldXml, "customer-1");
 
-		ArgumentCaptor<DeviceData> captor = ArgumentCaptor.forClass(DeviceData.class);
-		verify(mockGenerationComponent).handleDevice(any(), captor.capture());
-
-		assertEquals(500f, captor.getValue().getTotalEnergyConsumed());
+		assertEquals(
+				500f, captureIngestedItems().getFirst().getDeviceData().getTotalEnergyConsumed());
 	}
 
 	@Test
@@ -462,10 +461,7 @@ class SMAIngestComponentTest {
 	void testIngestXMLFile_convertsPowerToKw() throws Exception {
 		component.ingestXMLFile(VALID_SMA_XML, "customer-1");
 
-		ArgumentCaptor<DeviceData> captor = ArgumentCaptor.forClass(DeviceData.class);
-		verify(mockGenerationComponent).handleDevice(any(), captor.capture());
-
-		assertEquals(5.0f, captor.getValue().getTotalRealPower());
+		assertEquals(5.0f, captureIngestedItems().getFirst().getDeviceData().getTotalRealPower());
 	}
 
 	private Device createTestDevice() {
@@ -5,10 +5,12 @@ import static org.junit.jupiter.api.Assertions.*;
 import com.bigboxer23.solar_moon.TestConstants;
 import com.bigboxer23.solar_moon.data.Device;
 import com.bigboxer23.solar_moon.data.DeviceData;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -339,4 +341,57 @@ public class LocationComponentTest implements TestConstants {
 		assertTrue(result.isPresent());
 		assertEquals("Australia/Sydney", result.get());
 	}
+
+	@Test
+	public void testIsDay_memoizedPerLocalDate() {
+		LocalDateTime noon = LocalDateTime.of(2024, 6, 21, 12, 0);
+		ZoneId chicago = ZoneId.of("America/Chicago");
+
+		assertTrue(component
+				.isDay(Date.from(noon.atZone(chicago).toInstant()), testLatitude, testLongitude)
+				.orElseThrow());
+		assertFalse(component
+				.isDay(Date.from(noon.withHour(23).atZone(chicago).toInstant()), testLatitude, testLongitude)
+				.orElseThrow());
+		// 3am UTC on the 22nd is still the 21st in Chicago
+		assertFalse(component
+				.isDay(Date.from(noon.plusHours(15).atZone(ZoneId.of("UTC")).toInstant()), testLatitude, testLongitude)
+				.orElseThrow());
+
+		assertEquals(1, component.getSunTimesStats().missCount());
+		assertEquals(2, component.getSunTimesStats().hitCount());
+	}
+
+	@Test
+	public void testPrecomputeSunTimes() {
+		Device site = new Device();
+		site.setLatitude(testLatitude);
+		site.setLongitude(testLongitude);
+		Device noLocation = new Device();
+		noLocation.setLatitude(-1);
+		noLocation.setLongitude(-1);
+
+		component.precomputeSunTimes(List.of(site, noLocation), 2);
+		component.isDay(new Date(), testLatitude, testLongitude);
+
+		assertEquals(2, component.getSunTimesStats().missCount());
+		assertEquals(1, component.getSunTimesStats().hitCount());
+	}
+
+	@Test
+	public void testGetSunTimes_polarNight() {
+		assertTrue(component.getSunTimes(80, 0, LocalDate.of(2024, 12, 21)).isEmpty());
+		assertTrue(component
+				.isDay(Date.from(LocalDateTime.of(2024, 12, 21, 12, 0).atZone(ZoneId.of("UTC")).toInstant()), 80, 0)
+				.isEmpty());
+	}
+
+	@Test
+	public void testSunTimes_isDay() {
+		LocationComponent.SunTimes sunTimes = new LocationComponent.SunTimes(1000, 2000);
+		assertFalse(sunTimes.isDay(999));
+		assertTrue(sunTimes.isDay(1000));
+		assertTrue(sunTimes.isDay(1999));
+		assertFalse(sunTimes.isDay(2000));
+	}
 }
@@ -0,0 +1,331 @@
+package com.bigboxer23.solar_moon.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.ErrorCause;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+
+@ExtendWith(MockitoExtension.class)
+class BufferedBulkWriterTest {
+	private static final long NEVER = 60 * 60 * 1000;
+
+	@Mock
+	private OpenSearchClient mockClient;
+
+	private BufferedBulkWriter writer;
+
+	@AfterEach
+	void tearDown() {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+
+	@Test
+	void testFlush_writesInBatchesOfMaxDocuments() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		when(mockClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+			batchSizes.add(invocation.getArgument(0, BulkRequest.class).operations().size());
+			return response;
+		});
+		writer = new BufferedBulkWriter(() -> mockClient, 2, Long.MAX_VALUE, NEVER, 1000, 3);
+		for (int i = 0; i < 5; i++) {
+			writer.add(createDeviceData("device-" + i));
+		}
+
+		assertTrue(writer.flush().isEmpty());
+
+		assertEquals(0, writer.size());
+		assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(batchSizes.stream().allMatch(size -> size <= 2));
+	}
+
+	@Test
+	void testAdd_maxDocumentsTriggersWrite() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 2, Long.MAX_VALUE, NEVER, 1000, 3);
+
+		writer.add(createDeviceData("device-1"));
+		writer.add(createDeviceData("device-2"));
+
+		verify(mockClient, timeout(2000)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testAdd_maxBytesTriggersWrite() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		long maxBytes = BufferedBulkWriter.FIXED_DOCUMENT_BYTES * 2;
+		writer = new BufferedBulkWriter(() -> mockClient, 100, maxBytes, NEVER, 1000, 3);
+
+		writer.add(createDeviceData("device-1"));
+		writer.add(createDeviceData("device-2"));
+
+		verify(mockClient, timeout(2000)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testEstimateBytes_countsVariableStrings() {
+		DeviceData data = createDeviceData("device-1");
+		data.setWeatherSummary("Rain");
+
+		assertEquals(BufferedBulkWriter.FIXED_DOCUMENT_BYTES + 12, BufferedBulkWriter.estimateBytes(data));
+	}
+
+	@Test
+	void testAdd_maxLatencyTriggersWrite() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, 50, 1000, 3);
+
+		writer.add(createDeviceData("device-1"));
+
+		verify(mockClient, timeout(2000)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testFlush_retriesRetryableItems() throws Exception {
+		BulkResponse failedResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(failedResponse.errors()).thenReturn(true);
+		when(failedResponse.items()).thenReturn(Arrays.asList(okItem, rejectedItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(429);
+		BulkResponse okResponse = mock(BulkResponse.class);
+		when(okResponse.errors()).thenReturn(false);
+		List<Integer> batchSizes = new ArrayList<>();
+		when(mockClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+			batchSizes.add(invocation.getArgument(0, BulkRequest.class).operations().size());
+			return batchSizes.size() == 1 ? failedResponse : okResponse;
+		});
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3);
+		writer.add(createDeviceData("device-1"));
+		writer.add(createDeviceData("device-2"));
+
+		assertTrue(writer.flush().isEmpty());
+
+		assertEquals(List.of(2, 1), batchSizes);
+	}
+
+	@Test
+	void testFlush_returnsNonRetryableFailures() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(response.errors()).thenReturn(true);
+		when(response.items()).thenReturn(Collections.singletonList(rejectedItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(400);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3);
+		DeviceData data = createDeviceData("device-1");
+		writer.add(data);
+
+		assertEquals(List.of(data), writer.flush());
+
+		verify(mockClient, times(1)).bulk(any(BulkRequest.class));
+		assertTrue(writer.flush().isEmpty());
+	}
+
+	@Test
+	void testFlush_retriesDocumentsOfFailedRollup() throws Exception {
+		BulkResponse failedResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(failedResponse.errors()).thenReturn(true);
+		when(failedResponse.items()).thenReturn(Arrays.asList(okItem, okItem, rejectedItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(429);
+		BulkResponse okResponse = mock(BulkResponse.class);
+		when(okResponse.errors()).thenReturn(false);
+		List<Integer> batchSizes = new ArrayList<>();
+		when(mockClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+			batchSizes.add(invocation.getArgument(0, BulkRequest.class).operations().size());
+			return batchSizes.size() == 1 ? failedResponse : okResponse;
+		});
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3)
+				.withRollups(RollupQueries::getUpdates);
+		writer.add(createDeviceData("device-1"));
+
+		assertTrue(writer.flush().isEmpty());
+
+		// document, hourly and daily rollups, then all three again
+		assertEquals(List.of(3, 3), batchSizes);
+	}
+
+	@Test
+	void testFlush_returnsDocumentsOfNonRetryableRollupFailure() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(response.errors()).thenReturn(true);
+		when(response.items()).thenReturn(Arrays.asList(okItem, okItem, okItem, rejectedItem, okItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(400);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3)
+				.withRollups(RollupQueries::getUpdates);
+		DeviceData first = createDeviceData("device-1");
+		DeviceData second = createDeviceData("device-2");
+		writer.add(first);
+		writer.add(second);
+
+		// operations are both documents, then hourly and daily rollups of device-1 then device-2
+		assertEquals(List.of(first), writer.flush());
+
+		verify(mockClient, times(1)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testFlush_givesUpAfterMaxRetries() throws Exception {
+		when(mockClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("connection reset"));
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 2);
+		writer.add(createDeviceData("device-1"));
+
+		assertEquals(1, writer.flush().size());
+
+		verify(mockClient, times(3)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testFlush_retriesRetryableRequestFailure() throws Exception {
+		OpenSearchException rejected = mock(OpenSearchException.class);
+		when(rejected.status()).thenReturn(429);
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenThrow(rejected).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3);
+		writer.add(createDeviceData("device-1"));
+
+		assertTrue(writer.flush().isEmpty());
+
+		verify(mockClient, times(2)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testFlush_returnsNonRetryableRequestFailure() throws Exception {
+		OpenSearchException rejected = mock(OpenSearchException.class);
+		when(rejected.status()).thenReturn(400);
+		when(mockClient.bulk(any(BulkRequest.class))).thenThrow(rejected);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 3);
+		writer.add(createDeviceData("device-1"));
+
+		assertEquals(1, writer.flush().size());
+
+		verify(mockClient, times(1)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testFlush_runtimeExceptionRetriedThenFailed() throws Exception {
+		when(mockClient.bulk(any(BulkRequest.class))).thenThrow(new IllegalStateException("transport closed"));
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1000, 1);
+		writer.add(createDeviceData("device-1"));
+
+		assertEquals(1, writer.flush().size());
+
+		verify(mockClient, times(2)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testAdd_blocksWhenQueueFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+			release.await();
+			return response;
+		});
+		writer = new BufferedBulkWriter(() -> mockClient, 1, Long.MAX_VALUE, NEVER, 1, 3);
+		// written (and held in bulk), then waiting in the queue
+		writer.add(createDeviceData("device-1"));
+		verify(mockClient, timeout(2000)).bulk(any(BulkRequest.class));
+		writer.add(createDeviceData("device-2"));
+
+		Thread producer = new Thread(() -> {
+			try {
+				writer.add(createDeviceData("device-3"));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		Thread.sleep(100);
+		assertTrue(producer.isAlive());
+
+		release.countDown();
+		producer.join(2000);
+		assertFalse(producer.isAlive());
+		writer.flush();
+		verify(mockClient, times(3)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testAdd_fullQueueBelowMaxDocumentsTriggersWrite() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 1, 3);
+
+		writer.add(createDeviceData("device-1"));
+		writer.add(createDeviceData("device-2"));
+
+		verify(mockClient, timeout(2000)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testConstructor_rejectsInvalidLimits() {
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> new BufferedBulkWriter(() -> mockClient, 0, Long.MAX_VALUE, NEVER, 1, 3));
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 0, 3));
+	}
+
+	@Test
+	void testAdd_setsMissingDate() throws Exception {
+		BulkResponse response = mock(BulkResponse.class);
+		when(response.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(response);
+		writer = new BufferedBulkWriter(() -> mockClient, 100, Long.MAX_VALUE, NEVER, 10, 3);
+		DeviceData data = new DeviceData();
+		data.setDeviceId("device-1");
+
+		writer.add(data);
+
+		assertNotNull(data.getDate());
+		assertEquals(1, writer.size());
+	}
+
+	private DeviceData createDeviceData(String deviceId) {
+		DeviceData data = new DeviceData();
+		data.setDeviceId(deviceId);
+		data.setDate(new Date());
+		return data;
+	}
+}
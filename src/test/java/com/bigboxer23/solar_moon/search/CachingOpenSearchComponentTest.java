@@ -0,0 +1,291 @@
+package com.bigboxer23.solar_moon.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.device.LastReadingComponent;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.aggregations.Aggregate;
+import org.opensearch.client.opensearch._types.aggregations.Buckets;
+import org.opensearch.client.opensearch._types.aggregations.StringTermsAggregate;
+import org.opensearch.client.opensearch.core.*;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchItem;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingOpenSearchComponentTest {
+	private static final long START = TimeConstants.DAY * 19000;
+
+	@Mock
+	private OpenSearchClient mockClient;
+
+	@Mock
+	private LastReadingComponent mockLastReadingComponent;
+
+	@Mock
+	private SearchResponse<DeviceData> mockResponse;
+
+	private CachingOpenSearchComponent component;
+
+	@BeforeEach
+	void setUp() {
+		component = new CachingOpenSearchComponent(100, Duration.ofMinutes(1), Duration.ofMinutes(1)) {
+			@Override
+			protected OpenSearchClient getClient() {
+				return mockClient;
+			}
+
+			@Override
+			protected LastReadingComponent getLastReadingComponent() {
+				return mockLastReadingComponent;
+			}
+		};
+	}
+
+	@Test
+	void testSearch_cachesAlignedSearch() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		SearchJSON toSecond = createSearch("site1", START);
+		toSecond.setEndDate(START + TimeConstants.HOUR - TimeConstants.SECOND);
+
+		assertSame(mockResponse, component.search(createSearch("site1", START)));
+		assertSame(mockResponse, component.search(toSecond));
+
+		verify(mockClient, times(1)).search(any(SearchRequest.class), eq(DeviceData.class));
+		assertEquals(1, component.getSearchCacheStats().hitCount());
+		assertEquals(1, component.getSearchCacheStats().missCount());
+	}
+
+	@Test
+	void testSearch_unalignedSearchSentAsIs() throws IOException {
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(DeviceData.class))).thenReturn(mockResponse);
+		long start = START + TimeConstants.ONE_MINUTE * 7;
+		long end = START + TimeConstants.ONE_MINUTE * 52;
+		SearchJSON search = createSearch("site1", start);
+		search.setEndDate(end);
+
+		component.search(search);
+		component.search(search);
+
+		verify(mockClient, times(2)).search(any(SearchRequest.class), eq(DeviceData.class));
+		String query = OpenSearchUtils.queryToJson(request.getValue().query());
+		assertTrue(query.contains(new Date(start).toInstant().toString()));
+		assertTrue(query.contains(new Date(end).toInstant().toString()));
+		assertEquals(0, component.getSearchCacheStats().requestCount());
+	}
+
+	@Test
+	void testSearch_failedSearchNotCached() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class)))
+				.thenThrow(new IOException("Test error"))
+				.thenReturn(mockResponse);
+
+		assertNull(component.search(createSearch("site1", START)));
+		assertSame(mockResponse, component.search(createSearch("site1", START)));
+	}
+
+	@Test
+	void testSearch_dataSearchNotCached() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		SearchJSON search = createSearch("site1", START);
+		search.setType(OpenSearchConstants.DATA_SEARCH_TYPE);
+
+		component.search(search);
+		component.search(search);
+
+		verify(mockClient, times(2)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testBulkLogData_invalidatesAffectedSearches() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+		component.search(createSearch("site1", START));
+		component.search(createSearch("site2", START));
+
+		component.bulkLogData(new Date(), List.of(createData("site1", START + TimeConstants.FIFTEEN_MINUTES)));
+		component.search(createSearch("site1", START));
+		component.search(createSearch("site2", START));
+
+		// site1 searched again, site2 still cached
+		verify(mockClient, times(3)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testBulkLogData_keepsSearchesOutsideWrittenRange() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(mock(BulkResponse.class));
+		component.search(createSearch("site1", START));
+
+		component.bulkLogData(new Date(), List.of(createData("site1", START + TimeConstants.DAY * 2)));
+		component.search(createSearch("site1", START));
+
+		verify(mockClient, times(1)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testBulkLogData_invalidatesOnlyMatchingDeviceSearches() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(mock(BulkResponse.class));
+		SearchJSON device1 = createSearch(null, START);
+		device1.setDeviceId("device1");
+		SearchJSON device2 = createSearch(null, START);
+		device2.setDeviceId("device2");
+		SearchJSON customer = createSearch(null, START);
+		component.search(device1);
+		component.search(device2);
+		component.search(customer);
+
+		component.bulkLogData(new Date(), List.of(createData("site1", START + TimeConstants.FIFTEEN_MINUTES)));
+		component.search(device1);
+		component.search(device2);
+		component.search(customer);
+
+		// device1 and the customer wide search are searched again, device2 still cached
+		verify(mockClient, times(5)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testBulkLogData_reloadedSearchInvalidatedAgain() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(mock(BulkResponse.class));
+		List<DeviceData> written = List.of(createData("site1", START + TimeConstants.FIFTEEN_MINUTES));
+		component.search(createSearch("site1", START));
+
+		component.bulkLogData(new Date(), written);
+		component.search(createSearch("site1", START));
+		component.bulkLogData(new Date(), written);
+		component.search(createSearch("site1", START));
+
+		verify(mockClient, times(3)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testDeleteByCustomerId_invalidatesCustomer() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		StringTermsAggregate terms = mock(StringTermsAggregate.class);
+		when(terms.buckets()).thenReturn(Buckets.of(b -> b.array(List.of())));
+		Aggregate devices = mock(Aggregate.class);
+		when(devices.sterms()).thenReturn(terms);
+		SearchResponse<Map> devicesResponse = mock(SearchResponse.class);
+		when(devicesResponse.aggregations()).thenReturn(Map.of("terms", devices));
+		when(mockClient.search(any(SearchRequest.class), eq(Map.class))).thenReturn(devicesResponse);
+		component.search(createSearch("site1", START));
+
+		component.deleteByCustomerId("customer1");
+		component.search(createSearch("site1", START));
+
+		verify(mockClient, times(2)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testMultiSearch_onlySendsUncached() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(mockResponse);
+		component.search(createSearch("site1", START));
+		MultiSearchItem<DeviceData> site2 = mock(MultiSearchItem.class);
+		MultiSearchItem<DeviceData> site3 = mock(MultiSearchItem.class);
+		MsearchResponse<DeviceData> msearchResponse = mock(MsearchResponse.class);
+		when(msearchResponse.responses()).thenReturn(List.of(mockResponseItem(site2), mockResponseItem(site3)));
+		ArgumentCaptor<MsearchRequest> request = ArgumentCaptor.forClass(MsearchRequest.class);
+		when(mockClient.msearch(request.capture(), eq(DeviceData.class))).thenReturn(msearchResponse);
+
+		List<SearchResponse<DeviceData>> responses = component.multiSearch(List.of(
+				createSearch("site1", START), createSearch("site2", START), createSearch("site3", START)));
+
+		assertEquals(2, request.getValue().searches().size());
+		assertSame(mockResponse, responses.get(0));
+		assertSame(site2, responses.get(1));
+		assertSame(site3, responses.get(2));
+		assertSame(site2, component.search(createSearch("site2", START)));
+	}
+
+	@Test
+	void testGetCacheKey_onlyAlignedRanges() {
+		SearchJSON search = createSearch("site1", START);
+		search.setEndDate(START + TimeConstants.HOUR - TimeConstants.SECOND);
+
+		SearchJSON key = CachingOpenSearchComponent.getCacheKey(search).orElseThrow();
+
+		assertEquals(START, key.getStartDate());
+		assertEquals(START + TimeConstants.HOUR - 1, key.getEndDate());
+		assertEquals(START + TimeConstants.HOUR - TimeConstants.SECOND, search.getEndDate());
+		assertEquals(key, CachingOpenSearchComponent.getCacheKey(createSearch("site1", START)).orElseThrow());
+		assertTrue(CachingOpenSearchComponent.getCacheKey(createSearch("site1", START + TimeConstants.ONE_MINUTE))
+				.isEmpty());
+		search.setEndDate(START + TimeConstants.HOUR);
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isEmpty());
+		search.setEndDate(START + TimeConstants.HOUR - 1);
+		search.setBucketSize("1M");
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isEmpty());
+	}
+
+	@Test
+	void testGetCacheKey_timezone() {
+		// local midnight in Chicago, CST is UTC-6
+		SearchJSON search = createSearch("site1", START + TimeConstants.HOUR * 6);
+		search.setEndDate(START + TimeConstants.DAY + TimeConstants.HOUR * 6 - 1);
+		search.setBucketSize("1d");
+		search.setTimeZone("America/Chicago");
+
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isPresent());
+
+		search.setTimeZone("UTC");
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isEmpty());
+
+		search.setTimeZone("Not/AZone");
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isEmpty());
+		search.setTimeZone("-25:00");
+		assertTrue(CachingOpenSearchComponent.getCacheKey(search).isEmpty());
+	}
+
+	@Test
+	void testIsAffected() {
+		SearchJSON key =
+				CachingOpenSearchComponent.getCacheKey(createSearch("site1", START)).orElseThrow();
+		assertTrue(CachingOpenSearchComponent.isAffected(key, createData("site1", START + TimeConstants.ONE_MINUTE)));
+		assertFalse(CachingOpenSearchComponent.isAffected(key, createData("site2", START + TimeConstants.ONE_MINUTE)));
+		assertFalse(CachingOpenSearchComponent.isAffected(key, createData("site1", START + TimeConstants.DAY)));
+
+		key.setSiteId(null);
+		assertTrue(CachingOpenSearchComponent.isAffected(key, createData("site2", START + TimeConstants.ONE_MINUTE)));
+	}
+
+	/** Total search over the hour holding start, 30m buckets */
+	private SearchJSON createSearch(String siteId, long start) {
+		SearchJSON search = new SearchJSON();
+		search.setCustomerId("customer1");
+		search.setSiteId(siteId);
+		search.setStartDate(start);
+		search.setEndDate(START + TimeConstants.HOUR - 1);
+		search.setType(OpenSearchConstants.TOTAL_SEARCH_TYPE);
+		search.setTimeZone("UTC");
+		return search;
+	}
+
+	private DeviceData createData(String siteId, long time) {
+		DeviceData data = new DeviceData(siteId, "customer1", "device1");
+		data.setDate(new Date(time));
+		return data;
+	}
+
+	private MultiSearchResponseItem<DeviceData> mockResponseItem(MultiSearchItem<DeviceData> result) {
+		MultiSearchResponseItem<DeviceData> item = mock(MultiSearchResponseItem.class);
+		when(item.isResult()).thenReturn(true);
+		when(item.result()).thenReturn(result);
+		return item;
+	}
+}
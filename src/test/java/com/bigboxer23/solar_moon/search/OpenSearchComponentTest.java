@@ -5,6 +5,8 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.device.LastReadingComponent;
+import com.bigboxer23.solar_moon.ingest.MeterConstants;
 import com.bigboxer23.solar_moon.ops.LogEntry;
 import com.bigboxer23.solar_moon.util.TimeConstants;
 import java.io.IOException;
@@ -12,9 +14,11 @@ import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opensearch.client.ResponseException;
+import org.opensearch.client.json.JsonData;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.*;
 import org.opensearch.client.opensearch._types.aggregations.Aggregate;
@@ -24,8 +28,12 @@ import org.opensearch.client.opensearch._types.aggregations.MaxAggregate;
 import org.opensearch.client.opensearch._types.aggregations.StringTermsAggregate;
 import org.opensearch.client.opensearch._types.aggregations.StringTermsBucket;
 import org.opensearch.client.opensearch._types.aggregations.SumAggregate;
+import org.opensearch.client.opensearch._types.aggregations.TopHitsAggregate;
 import org.opensearch.client.opensearch.core.*;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
 import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchItem;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
 import org.opensearch.client.opensearch.core.search.Hit;
 import org.opensearch.client.opensearch.core.search.HitsMetadata;
 import org.opensearch.client.opensearch.indices.DeleteIndexRequest;
@@ -40,8 +48,13 @@ class OpenSearchComponentTest {
 	@Mock
 	private OpenSearchIndicesClient mockIndicesClient;
 
+	@Mock
+	private LastReadingComponent mockLastReadingComponent;
+
 	private OpenSearchComponent component;
 
+	private boolean rollupsEnabled;
+
 	@BeforeEach
 	void setUp() {
 		component = new OpenSearchComponent() {
@@ -49,6 +62,16 @@ class OpenSearchComponentTest {
 			protected OpenSearchClient getClient() {
 				return mockClient;
 			}
+
+			@Override
+			protected boolean isRollupEnabled() {
+				return rollupsEnabled;
+			}
+
+			@Override
+			protected LastReadingComponent getLastReadingComponent() {
+				return mockLastReadingComponent;
+			}
 		};
 	}
 
@@ -117,6 +140,244 @@ class OpenSearchComponentTest {
 		assertThrows(ResponseException.class, () -> component.logData(fetchDate, Collections.singletonList(data)));
 	}
 
+	@Test
+	void testBulkLogData_mapsErrorsToInput() throws IOException {
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem errorItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+
+		when(bulkResponse.errors()).thenReturn(true);
+		when(bulkResponse.items()).thenReturn(Arrays.asList(okItem, errorItem));
+		when(errorItem.error()).thenReturn(errorCause);
+		when(errorCause.reason()).thenReturn("mapper_parsing_exception");
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+
+		DeviceData data1 = new DeviceData();
+		data1.setDeviceId("device1");
+		DeviceData data2 = new DeviceData();
+		data2.setDeviceId("device2");
+
+		List<String> errors = component.bulkLogData(new Date(), Arrays.asList(data1, data2));
+
+		assertEquals(2, errors.size());
+		assertNull(errors.get(0));
+		assertEquals("mapper_parsing_exception", errors.get(1));
+	}
+
+	@Test
+	void testBulkLogData_appendsRollupOperations() throws IOException {
+		rollupsEnabled = true;
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		ArgumentCaptor<BulkRequest> request = ArgumentCaptor.forClass(BulkRequest.class);
+		when(mockClient.bulk(request.capture())).thenReturn(bulkResponse);
+		DeviceData data = new DeviceData("site1", "customer1", "device1");
+		data.setDaylight(true);
+
+		List<String> errors = component.bulkLogData(new Date(), Collections.singletonList(data));
+
+		assertEquals(1, errors.size());
+		// raw document first, then hourly and daily rollups for all readings and daylight readings
+		assertEquals(5, request.getValue().operations().size());
+		assertTrue(request.getValue().operations().getFirst().isIndex());
+		assertTrue(request.getValue().operations().stream().skip(1).allMatch(BulkOperation::isUpdate));
+	}
+
+	@Test
+	void testBulkLogData_retriesFailedRollup() throws IOException {
+		rollupsEnabled = true;
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(bulkResponse.errors()).thenReturn(true);
+		when(bulkResponse.items()).thenReturn(Arrays.asList(okItem, okItem, rejectedItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(429);
+		BulkResponse retryResponse = mock(BulkResponse.class);
+		when(retryResponse.items()).thenReturn(Collections.singletonList(okItem));
+		List<Integer> operationCounts = new ArrayList<>();
+		when(mockClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+			operationCounts.add(invocation.getArgument(0, BulkRequest.class).operations().size());
+			return operationCounts.size() == 1 ? bulkResponse : retryResponse;
+		});
+		DeviceData data = new DeviceData("site1", "customer1", "device1");
+
+		List<String> errors = component.bulkLogData(new Date(), Collections.singletonList(data));
+
+		// raw document with hourly and daily rollups, then only the rejected rollup
+		assertEquals(List.of(3, 1), operationCounts);
+		assertNull(errors.getFirst());
+		verify(mockLastReadingComponent).update(List.of(data));
+	}
+
+	@Test
+	void testBulkLogData_failedRollupReportedOnReading() throws IOException {
+		rollupsEnabled = true;
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem rejectedItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(bulkResponse.errors()).thenReturn(true);
+		when(bulkResponse.items()).thenReturn(Arrays.asList(okItem, okItem, rejectedItem));
+		when(rejectedItem.error()).thenReturn(errorCause);
+		when(rejectedItem.status()).thenReturn(400);
+		when(errorCause.reason()).thenReturn("script_exception");
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+		DeviceData data = new DeviceData("site1", "customer1", "device1");
+
+		List<String> errors = component.bulkLogData(new Date(), Collections.singletonList(data));
+
+		assertEquals(List.of("rollup: script_exception"), errors);
+		verify(mockClient, times(1)).bulk(any(BulkRequest.class));
+		verify(mockLastReadingComponent).update(Collections.emptyList());
+	}
+
+	@Test
+	void testBulkLogData_updatesLastReadingForWrittenData() throws IOException {
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem errorItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+
+		when(bulkResponse.errors()).thenReturn(true);
+		when(bulkResponse.items()).thenReturn(Arrays.asList(okItem, errorItem));
+		when(errorItem.error()).thenReturn(errorCause);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+
+		DeviceData data1 = new DeviceData();
+		data1.setDeviceId("device1");
+		DeviceData data2 = new DeviceData();
+		data2.setDeviceId("device2");
+
+		component.bulkLogData(new Date(), Arrays.asList(data1, data2));
+
+		verify(mockLastReadingComponent).update(List.of(data1));
+	}
+
+	@Test
+	void testFlushBufferedData_updatesLastReadingForWrittenData() throws Exception {
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		BulkResponseItem okItem = mock(BulkResponseItem.class);
+		BulkResponseItem errorItem = mock(BulkResponseItem.class);
+		ErrorCause errorCause = mock(ErrorCause.class);
+		when(bulkResponse.errors()).thenReturn(true);
+		when(bulkResponse.items()).thenReturn(Arrays.asList(okItem, errorItem));
+		when(errorItem.error()).thenReturn(errorCause);
+		when(errorItem.status()).thenReturn(400);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+		DeviceData data1 = new DeviceData("site1", "customer1", "device1");
+		DeviceData data2 = new DeviceData("site1", "customer1", "device2");
+
+		component.logDataBuffered(new Date(), Arrays.asList(data1, data2));
+		verify(mockLastReadingComponent, never()).update(any());
+
+		assertEquals(List.of(data2), component.flushBufferedData());
+		verify(mockLastReadingComponent).update(List.of(data1));
+	}
+
+	@Test
+	void testBulkLogData_withIOException_marksAllFailed() throws IOException {
+		when(mockClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("Test error"));
+
+		DeviceData data1 = new DeviceData();
+		data1.setDeviceId("device1");
+		DeviceData data2 = new DeviceData();
+		data2.setDeviceId("device2");
+
+		List<String> errors = component.bulkLogData(new Date(), Arrays.asList(data1, data2));
+
+		assertEquals(Arrays.asList("Test error", "Test error"), errors);
+	}
+
+	@Test
+	void testBulkLogData_waitForSearch() throws IOException {
+		BulkResponse bulkResponse = mock(BulkResponse.class);
+		when(bulkResponse.errors()).thenReturn(false);
+		when(mockClient.bulk(any(BulkRequest.class))).thenReturn(bulkResponse);
+		DeviceData data = new DeviceData();
+		data.setDeviceId("device1");
+
+		component.bulkLogData(new Date(), List.of(data), true);
+		component.bulkLogData(new Date(), List.of(data));
+
+		verify(mockClient).bulk(argThat((BulkRequest request) -> request.refresh() == Refresh.WaitFor));
+		verify(mockClient).bulk(argThat((BulkRequest request) -> request.refresh() == null));
+	}
+
+	@Test
+	void testBulkLogData_empty() throws IOException {
+		assertTrue(component.bulkLogData(new Date(), Collections.emptyList()).isEmpty());
+
+		verify(mockClient, never()).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testGetTotalEnergyConsumed_batch() throws IOException {
+		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
+		HitsMetadata<DeviceData> hitsMetadata = mock(HitsMetadata.class);
+		Hit<DeviceData> hit = mock(Hit.class);
+		DeviceData deviceData = new DeviceData();
+		deviceData.setDeviceId("device1");
+		deviceData.setTotalEnergyConsumed(100.5f);
+
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(searchResponse);
+		when(searchResponse.hits()).thenReturn(hitsMetadata);
+		when(hitsMetadata.hits()).thenReturn(Collections.singletonList(hit));
+		when(hit.source()).thenReturn(deviceData);
+
+		Map<String, Float> result = component.getTotalEnergyConsumed(List.of("device1", "device2"));
+
+		assertEquals(1, result.size());
+		assertEquals(100.5f, result.get("device1"));
+		verify(mockClient, times(1)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testGetTotalEnergyConsumed_batchUsesLastReadings() throws IOException {
+		DeviceData stored = new DeviceData();
+		stored.setDeviceId("device1");
+		stored.setTotalEnergyConsumed(50f);
+		when(mockLastReadingComponent.getLastReadings(List.of("device1", "device2")))
+				.thenReturn(Map.of("device1", stored));
+		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
+		HitsMetadata<DeviceData> hitsMetadata = mock(HitsMetadata.class);
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(searchResponse);
+		when(searchResponse.hits()).thenReturn(hitsMetadata);
+		when(hitsMetadata.hits()).thenReturn(Collections.emptyList());
+
+		Map<String, Float> result = component.getTotalEnergyConsumed(List.of("device1", "device2"));
+
+		assertEquals(Map.of("device1", 50f), result);
+		verify(mockClient, times(1)).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testGetTotalEnergyConsumed_batchAllStored() throws IOException {
+		DeviceData stored = new DeviceData();
+		stored.setDeviceId("device1");
+		stored.setTotalEnergyConsumed(50f);
+		when(mockLastReadingComponent.getLastReadings(List.of("device1"))).thenReturn(Map.of("device1", stored));
+
+		assertEquals(Map.of("device1", 50f), component.getTotalEnergyConsumed(List.of("device1")));
+
+		verify(mockClient, never()).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testGetTotalEnergyConsumed_batchEmpty() throws IOException {
+		assertTrue(component.getTotalEnergyConsumed(Collections.emptyList()).isEmpty());
+
+		verify(mockClient, never()).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testGetTotalEnergyConsumed_batchIOException() throws IOException {
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenThrow(new IOException("Test"));
+
+		assertTrue(component.getTotalEnergyConsumed(List.of("device1")).isEmpty());
+	}
+
 	@Test
 	void testGetTotalEnergyConsumed_success() throws IOException {
 		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
@@ -136,6 +397,17 @@ class OpenSearchComponentTest {
 		verify(mockClient).search(any(SearchRequest.class), eq(DeviceData.class));
 	}
 
+	@Test
+	void testGetTotalEnergyConsumed_fromLastReading() throws IOException {
+		DeviceData stored = new DeviceData();
+		stored.setTotalEnergyConsumed(75f);
+		when(mockLastReadingComponent.getLastReading("device1")).thenReturn(Optional.of(stored));
+
+		assertEquals(75f, component.getTotalEnergyConsumed("device1"));
+
+		verify(mockClient, never()).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
 	@Test
 	void testGetTotalEnergyConsumed_noHits() throws IOException {
 		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
@@ -212,6 +484,33 @@ class OpenSearchComponentTest {
 		assertEquals(deviceData, result);
 	}
 
+	@Test
+	void testGetLastDeviceEntry_fromLastReading() throws IOException {
+		DeviceData stored = new DeviceData();
+		when(mockLastReadingComponent.getLastReading("device1")).thenReturn(Optional.of(stored));
+
+		assertSame(stored, component.getLastDeviceEntry("device1"));
+
+		verify(mockClient, never()).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testGetLastDeviceEntry_missStoresSearchResult() throws IOException {
+		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
+		HitsMetadata<DeviceData> hitsMetadata = mock(HitsMetadata.class);
+		Hit<DeviceData> hit = mock(Hit.class);
+		DeviceData deviceData = new DeviceData();
+
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class))).thenReturn(searchResponse);
+		when(searchResponse.hits()).thenReturn(hitsMetadata);
+		when(hitsMetadata.hits()).thenReturn(Collections.singletonList(hit));
+		when(hit.source()).thenReturn(deviceData);
+
+		assertSame(deviceData, component.getLastDeviceEntry("device1"));
+
+		verify(mockLastReadingComponent).update(Collections.singletonList(deviceData));
+	}
+
 	@Test
 	void testGetLastDeviceEntry_noHits() throws IOException {
 		SearchResponse<DeviceData> searchResponse = mock(SearchResponse.class);
@@ -240,15 +539,33 @@ class OpenSearchComponentTest {
 	void testDeleteByCustomerId() throws IOException {
 		DeleteByQueryResponse response = mock(DeleteByQueryResponse.class);
 		when(mockClient.deleteByQuery(any(DeleteByQueryRequest.class))).thenReturn(response);
+		mockDevicesWithData("device1", "device2");
 
 		assertDoesNotThrow(() -> component.deleteByCustomerId("customer1"));
 
 		verify(mockClient).deleteByQuery(any(DeleteByQueryRequest.class));
+		verify(mockLastReadingComponent).delete("device1");
+		verify(mockLastReadingComponent).delete("device2");
+	}
+
+	@Test
+	void testDeleteByCustomerId_includesRollups() throws IOException {
+		rollupsEnabled = true;
+		ArgumentCaptor<DeleteByQueryRequest> request = ArgumentCaptor.forClass(DeleteByQueryRequest.class);
+		when(mockClient.deleteByQuery(request.capture())).thenReturn(mock(DeleteByQueryResponse.class));
+		mockDevicesWithData();
+
+		component.deleteByCustomerId("customer1");
+
+		assertEquals(
+				List.of(OpenSearchConstants.INDEX_NAME, OpenSearchConstants.ROLLUP_INDEX_NAME),
+				request.getValue().index());
 	}
 
 	@Test
 	void testDeleteByCustomerId_ioException() throws IOException {
 		when(mockClient.deleteByQuery(any(DeleteByQueryRequest.class))).thenThrow(new IOException("Test error"));
+		mockDevicesWithData();
 
 		assertDoesNotThrow(() -> component.deleteByCustomerId("customer1"));
 	}
@@ -289,15 +606,18 @@ class OpenSearchComponentTest {
 	void testDeleteBySiteId() throws IOException {
 		DeleteByQueryResponse response = mock(DeleteByQueryResponse.class);
 		when(mockClient.deleteByQuery(any(DeleteByQueryRequest.class))).thenReturn(response);
+		mockDevicesWithData("device1");
 
 		assertDoesNotThrow(() -> component.deleteBySiteId("site1", "customer1"));
 
 		verify(mockClient).deleteByQuery(any(DeleteByQueryRequest.class));
+		verify(mockLastReadingComponent).delete("device1");
 	}
 
 	@Test
 	void testDeleteBySiteId_ioException() throws IOException {
 		when(mockClient.deleteByQuery(any(DeleteByQueryRequest.class))).thenThrow(new IOException("Test error"));
+		mockDevicesWithData();
 
 		assertDoesNotThrow(() -> component.deleteBySiteId("site1", "customer1"));
 	}
@@ -310,6 +630,7 @@ class OpenSearchComponentTest {
 		assertDoesNotThrow(() -> component.deleteByDeviceId("device1", "customer1"));
 
 		verify(mockClient).deleteByQuery(any(DeleteByQueryRequest.class));
+		verify(mockLastReadingComponent).delete("device1");
 	}
 
 	@Test
@@ -430,29 +751,175 @@ class OpenSearchComponentTest {
 
 	@Test
 	void testGetSiteDevicesCountByTimePeriod_success() throws IOException {
-		SearchResponse<Map> searchResponse = mock(SearchResponse.class);
-		HitsMetadata<Map> hitsMetadata = mock(HitsMetadata.class);
-		Hit<Map> hit1 = mock(Hit.class);
-		Hit<Map> hit2 = mock(Hit.class);
-
-		when(mockClient.search(any(SearchRequest.class), eq(Map.class))).thenReturn(searchResponse);
-		when(searchResponse.hits()).thenReturn(hitsMetadata);
-		when(hitsMetadata.hits()).thenReturn(Arrays.asList(hit1, hit2));
+		CountResponse countResponse = mock(CountResponse.class);
+		when(countResponse.count()).thenReturn(12L);
+		ArgumentCaptor<CountRequest> request = ArgumentCaptor.forClass(CountRequest.class);
+		when(mockClient.count(request.capture())).thenReturn(countResponse);
 
 		int result = component.getSiteDevicesCountByTimePeriod("customer1", "site1", new Date());
 
-		assertEquals(2, result);
+		assertEquals(12, result);
+		assertEquals(List.of(OpenSearchConstants.INDEX_NAME), request.getValue().index());
+		verify(mockClient, never()).search(any(SearchRequest.class), any());
 	}
 
 	@Test
 	void testGetSiteDevicesCountByTimePeriod_ioException() throws IOException {
-		when(mockClient.search(any(SearchRequest.class), eq(Map.class))).thenThrow(new IOException("Test error"));
+		when(mockClient.count(any(CountRequest.class))).thenThrow(new IOException("Test error"));
 
 		int result = component.getSiteDevicesCountByTimePeriod("customer1", "site1", new Date());
 
 		assertEquals(-1, result);
 	}
 
+	@Test
+	void testStreamData_pagesWithSearchAfter() throws IOException {
+		CreatePitResponse pit = mock(CreatePitResponse.class);
+		when(pit.pitId()).thenReturn("pit1");
+		when(mockClient.createPit(any(CreatePitRequest.class))).thenReturn(pit);
+		DeviceData first = new DeviceData("site1", "customer1", "device1");
+		DeviceData second = new DeviceData("site1", "customer1", "device2");
+		DeviceData third = new DeviceData("site1", "customer1", "device1");
+		List<FieldValue> lastSort = List.of(FieldValue.of(1000L), FieldValue.of("device2"));
+		SearchResponse<DeviceData> firstPage = streamPage(List.of(first, second), lastSort);
+		SearchResponse<DeviceData> lastPage = streamPage(List.of(third), null);
+		ArgumentCaptor<SearchRequest> requests = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(requests.capture(), eq(DeviceData.class)))
+				.thenReturn(firstPage)
+				.thenReturn(lastPage);
+		List<List<DeviceData>> pages = new ArrayList<>();
+
+		SearchJSON search = createMultiSearchJSON("device1", OpenSearchConstants.DATA_SEARCH_TYPE);
+		long streamed = component.streamData(search, 2, pages::add);
+
+		assertEquals(3, streamed);
+		assertEquals(List.of(List.of(first, second), List.of(third)), pages);
+		assertTrue(requests.getAllValues().getFirst().searchAfter().isEmpty());
+		assertEquals(lastSort, requests.getAllValues().get(1).searchAfter());
+		assertEquals("pit1", requests.getAllValues().get(1).pit().id());
+		assertTrue(requests.getAllValues().get(1).index().isEmpty());
+		verify(mockClient).deletePit(any(DeletePitRequest.class));
+	}
+
+	@Test
+	void testStreamData_slice() throws IOException {
+		SearchResponse<DeviceData> page = streamPage(List.of(new DeviceData("site1", "customer1", "device1")), null);
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(DeviceData.class))).thenReturn(page);
+		SearchJSON search = createMultiSearchJSON("device1", OpenSearchConstants.DATA_SEARCH_TYPE);
+
+		assertEquals(1, component.streamData("pit1", search, 1, 4, 2, data -> {}));
+
+		assertEquals("1", request.getValue().slice().id());
+		assertEquals(4, (int) request.getValue().slice().max());
+		verify(mockClient, never()).createPit(any(CreatePitRequest.class));
+	}
+
+	@Test
+	void testStreamData_deletesPitOnFailure() throws IOException {
+		CreatePitResponse pit = mock(CreatePitResponse.class);
+		when(pit.pitId()).thenReturn("pit1");
+		when(mockClient.createPit(any(CreatePitRequest.class))).thenReturn(pit);
+		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class)))
+				.thenThrow(new IOException("Test error"));
+		SearchJSON search = createMultiSearchJSON("device1", OpenSearchConstants.DATA_SEARCH_TYPE);
+
+		assertThrows(IOException.class, () -> component.streamData(search, 2, page -> {}));
+
+		verify(mockClient).deletePit(any(DeletePitRequest.class));
+	}
+
+	@Test
+	void testGetLastDeviceEntries() throws IOException {
+		DeviceData stored = new DeviceData("site1", "customer1", "device1");
+		stored.setDate(new Date());
+		DeviceData old = new DeviceData("site1", "customer1", "device4");
+		old.setDate(new Date(System.currentTimeMillis() - TimeConstants.DAY));
+		when(mockLastReadingComponent.getLastReadings(List.of("device1", "device2", "device3", "device4")))
+				.thenReturn(Map.of("device1", stored, "device4", old));
+		DeviceData fetched = new DeviceData("site1", "customer1", "device2");
+		fetched.setTotalRealPower(3.5f);
+		SearchResponse<Map> searchResponse = mock(SearchResponse.class);
+		when(searchResponse.aggregations()).thenReturn(Map.of("terms", latestPerDevice("device2", fetched)));
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(Map.class))).thenReturn(searchResponse);
+
+		Map<String, DeviceData> result = component.getLastDeviceEntries(
+				List.of("device1", "device2", "device3", "device4"),
+				TimeConstants.HOUR,
+				MeterConstants.TOTAL_REAL_POWER);
+
+		assertEquals(2, result.size());
+		assertSame(stored, result.get("device1"));
+		assertSame(fetched, result.get("device2"));
+		assertEquals(0, request.getValue().size());
+		String query = OpenSearchUtils.queryToJson(request.getValue().query());
+		assertTrue(query.contains("\"gte\""));
+		assertFalse(query.contains("device4"));
+		assertTrue(request.getValue().aggregations().get("terms").aggregations().containsKey("latest"));
+		verify(mockLastReadingComponent, never()).update(any());
+	}
+
+	@Test
+	void testGetLastDeviceEntries_storedReadingTooOld() throws IOException {
+		when(mockLastReadingComponent.getLastReadings(List.of("device1")))
+				.thenReturn(Map.of("device1", new DeviceData("site1", "customer1", "device1")));
+
+		// the stored reading is the latest, so an old one isn't searched for
+		assertTrue(component.getLastDeviceEntries(List.of("device1"), TimeConstants.HOUR)
+				.isEmpty());
+		verifyNoInteractions(mockClient);
+	}
+
+	@Test
+	void testGetLastDeviceEntries_ioException() throws IOException {
+		when(mockLastReadingComponent.getLastReadings(List.of("device1"))).thenReturn(Collections.emptyMap());
+		when(mockClient.search(any(SearchRequest.class), eq(Map.class))).thenThrow(new IOException("Test error"));
+
+		assertTrue(component.getLastDeviceEntries(List.of("device1"), TimeConstants.HOUR)
+				.isEmpty());
+	}
+
+	private void mockDevicesWithData(String... deviceIds) throws IOException {
+		List<StringTermsBucket> buckets = new ArrayList<>();
+		for (String deviceId : deviceIds) {
+			StringTermsBucket bucket = mock(StringTermsBucket.class);
+			when(bucket.key()).thenReturn(deviceId);
+			buckets.add(bucket);
+		}
+		StringTermsAggregate terms = mock(StringTermsAggregate.class);
+		when(terms.buckets())
+				.thenReturn(org.opensearch.client.opensearch._types.aggregations.Buckets.of(b -> b.array(buckets)));
+		Aggregate aggregate = mock(Aggregate.class);
+		when(aggregate.sterms()).thenReturn(terms);
+		SearchResponse<Map> response = mock(SearchResponse.class);
+		when(response.aggregations()).thenReturn(Map.of("terms", aggregate));
+		when(mockClient.search(any(SearchRequest.class), eq(Map.class))).thenReturn(response);
+	}
+
+	private Aggregate latestPerDevice(String deviceId, DeviceData data) {
+		JsonData source = mock(JsonData.class);
+		when(source.to(DeviceData.class)).thenReturn(data);
+		Hit<JsonData> hit = mock(Hit.class);
+		when(hit.source()).thenReturn(source);
+		HitsMetadata<JsonData> hits = mock(HitsMetadata.class);
+		when(hits.hits()).thenReturn(List.of(hit));
+		TopHitsAggregate topHits = mock(TopHitsAggregate.class);
+		when(topHits.hits()).thenReturn(hits);
+		Aggregate latest = mock(Aggregate.class);
+		when(latest.topHits()).thenReturn(topHits);
+		StringTermsBucket bucket = mock(StringTermsBucket.class);
+		when(bucket.key()).thenReturn(deviceId);
+		when(bucket.aggregations()).thenReturn(Map.of("latest", latest));
+		StringTermsAggregate terms = mock(StringTermsAggregate.class);
+		when(terms.buckets())
+				.thenReturn(org.opensearch.client.opensearch._types.aggregations.Buckets.of(
+						b -> b.array(List.of(bucket))));
+		Aggregate aggregate = mock(Aggregate.class);
+		when(aggregate.sterms()).thenReturn(terms);
+		return aggregate;
+	}
+
 	@Test
 	void testSearchLogs_success() throws IOException {
 		SearchResponse<LogEntry> searchResponse = mock(SearchResponse.class);
@@ -503,6 +970,51 @@ class OpenSearchComponentTest {
 		verify(mockClient).search(any(SearchRequest.class), eq(DeviceData.class));
 	}
 
+	@Test
+	void testSearch_alignedSearchUsesRollups() throws IOException {
+		rollupsEnabled = true;
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(DeviceData.class))).thenReturn(mock(SearchResponse.class));
+
+		component.search(createRollupSearchJSON(TimeConstants.DAY * 100));
+
+		assertEquals(List.of(OpenSearchConstants.ROLLUP_INDEX_NAME), request.getValue().index());
+		assertTrue(request.getValue().aggregations().containsKey("2"));
+		assertTrue(request.getValue().query().bool().filter().stream()
+				.anyMatch(query -> query.isTerm()
+						&& query.term().field().equals(OpenSearchQueries.getKeywordField(RollupQueries.ROLLUP))
+						&& query.term().value().stringValue().equals(RollupQueries.DAILY)));
+	}
+
+	@Test
+	void testSearch_unalignedSearchUsesRawIndex() throws IOException {
+		rollupsEnabled = true;
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(DeviceData.class))).thenReturn(mock(SearchResponse.class));
+
+		component.search(createRollupSearchJSON(TimeConstants.DAY * 100 + TimeConstants.FIFTEEN_MINUTES));
+
+		assertEquals(List.of(OpenSearchConstants.INDEX_NAME), request.getValue().index());
+	}
+
+	@Test
+	void testSearch_rollupsDisabled() throws IOException {
+		ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+		when(mockClient.search(request.capture(), eq(DeviceData.class))).thenReturn(mock(SearchResponse.class));
+
+		component.search(createRollupSearchJSON(TimeConstants.DAY * 100));
+
+		assertEquals(List.of(OpenSearchConstants.INDEX_NAME), request.getValue().index());
+	}
+
+	private SearchJSON createRollupSearchJSON(long start) {
+		SearchJSON searchJSON = new SearchJSON("customer1", "device1", TimeConstants.DAY * 107 - 1, start);
+		searchJSON.setType(OpenSearchConstants.TOTAL_ENERGY_CONSUMED_SEARCH_TYPE);
+		searchJSON.setBucketSize("1d");
+		searchJSON.setTimeZone("UTC");
+		return searchJSON;
+	}
+
 	@Test
 	void testSearch_ioException() throws IOException {
 		when(mockClient.search(any(SearchRequest.class), eq(DeviceData.class)))
@@ -519,6 +1031,95 @@ class OpenSearchComponentTest {
 		assertNull(result);
 	}
 
+	@Test
+	void testMultiSearch_mapsResponsesBackInOrder() throws IOException {
+		MultiSearchItem<DeviceData> first = mock(MultiSearchItem.class);
+		MultiSearchItem<DeviceData> third = mock(MultiSearchItem.class);
+		MsearchResponse<DeviceData> response = mock(MsearchResponse.class);
+		when(response.responses())
+				.thenReturn(List.of(mockResponseItem(first), mockResponseItem(null), mockResponseItem(third)));
+		ArgumentCaptor<MsearchRequest> request = ArgumentCaptor.forClass(MsearchRequest.class);
+		when(mockClient.msearch(request.capture(), eq(DeviceData.class))).thenReturn(response);
+
+		List<SearchResponse<DeviceData>> results = component.multiSearch(List.of(
+				createMultiSearchJSON("device1", OpenSearchConstants.AVG_SEARCH_TYPE),
+				createMultiSearchJSON("device2", OpenSearchConstants.TOTAL_SEARCH_TYPE),
+				createMultiSearchJSON("device3", OpenSearchConstants.AVG_SEARCH_TYPE)));
+
+		assertEquals(3, results.size());
+		assertSame(first, results.get(0));
+		assertNull(results.get(1));
+		assertSame(third, results.get(2));
+		assertEquals(3, request.getValue().searches().size());
+		assertEquals(
+				List.of(OpenSearchConstants.INDEX_NAME),
+				request.getValue().searches().getFirst().header().index());
+		assertTrue(request.getValue().searches().get(0).body().aggregations().containsKey("avg"));
+		assertTrue(request.getValue().searches().get(1).body().aggregations().containsKey("total"));
+		assertNotNull(request.getValue().searches().get(2).body().query());
+		verify(mockClient, never()).search(any(SearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testMultiSearch_splitsIntoBatches() throws IOException {
+		when(mockClient.msearch(any(MsearchRequest.class), eq(DeviceData.class)))
+				.thenAnswer(invocation -> {
+					MsearchResponse<DeviceData> response = mock(MsearchResponse.class);
+					List<MultiSearchResponseItem<DeviceData>> items = new ArrayList<>();
+					for (int i = 0; i < invocation.getArgument(0, MsearchRequest.class).searches().size(); i++) {
+						items.add(mockResponseItem(mock(MultiSearchItem.class)));
+					}
+					when(response.responses()).thenReturn(items);
+					return response;
+				});
+		List<SearchJSON> searches = new ArrayList<>();
+		for (int i = 0; i < OpenSearchConstants.MULTI_SEARCH_BATCH_SIZE + 10; i++) {
+			searches.add(createMultiSearchJSON("device" + i, OpenSearchConstants.AVG_SEARCH_TYPE));
+		}
+
+		List<SearchResponse<DeviceData>> results = component.multiSearch(searches);
+
+		assertEquals(searches.size(), results.size());
+		assertTrue(results.stream().allMatch(Objects::nonNull));
+		verify(mockClient, times(2)).msearch(any(MsearchRequest.class), eq(DeviceData.class));
+	}
+
+	@Test
+	void testMultiSearch_ioException() throws IOException {
+		when(mockClient.msearch(any(MsearchRequest.class), eq(DeviceData.class)))
+				.thenThrow(new IOException("Test error"));
+
+		List<SearchResponse<DeviceData>> results = component.multiSearch(List.of(
+				createMultiSearchJSON("device1", OpenSearchConstants.AVG_SEARCH_TYPE),
+				createMultiSearchJSON("device2", OpenSearchConstants.TOTAL_SEARCH_TYPE)));
+
+		assertEquals(2, results.size());
+		assertTrue(results.stream().allMatch(Objects::isNull));
+	}
+
+	@Test
+	void testMultiSearch_empty() {
+		assertTrue(component.multiSearch(Collections.emptyList()).isEmpty());
+		verifyNoInteractions(mockClient);
+	}
+
+	private SearchJSON createMultiSearchJSON(String deviceId, String type) {
+		SearchJSON searchJSON = new SearchJSON("customer1", deviceId, System.currentTimeMillis(), 0);
+		searchJSON.setType(type);
+		searchJSON.setBucketSize("1h");
+		searchJSON.setTimeZone("UTC");
+		return searchJSON;
+	}
+
+	private MultiSearchResponseItem<DeviceData> mockResponseItem(MultiSearchItem<DeviceData> result) {
+		MultiSearchResponseItem<DeviceData> item = mock(MultiSearchResponseItem.class);
+		when(item.isResult()).thenReturn(result != null);
+		if (result != null) {
+			when(item.result()).thenReturn(result);
+		}
+		return item;
+	}
+
 	@Test
 	void testUpdateByQuery_success() throws IOException {
 		UpdateByQueryResponse updateResponse = mock(UpdateByQueryResponse.class);
@@ -742,4 +1343,21 @@ class OpenSearchComponentTest {
 
 		assertFalse(result);
 	}
+
+	private SearchResponse<DeviceData> streamPage(List<DeviceData> datas, List<FieldValue> lastSort) {
+		List<Hit<DeviceData>> hits = new ArrayList<>();
+		for (DeviceData data : datas) {
+			Hit<DeviceData> hit = mock(Hit.class);
+			when(hit.source()).thenReturn(data);
+			hits.add(hit);
+		}
+		if (lastSort != null) {
+			when(hits.getLast().sort()).thenReturn(lastSort);
+		}
+		HitsMetadata<DeviceData> metadata = mock(HitsMetadata.class);
+		when(metadata.hits()).thenReturn(hits);
+		SearchResponse<DeviceData> response = mock(SearchResponse.class);
+		when(response.hits()).thenReturn(metadata);
+		return response;
+	}
 }
@@ -0,0 +1,168 @@
+package com.bigboxer23.solar_moon.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import com.bigboxer23.solar_moon.ingest.MeterConstants;
+import com.bigboxer23.solar_moon.util.TimeConstants;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+
+public class RollupQueriesTest implements OpenSearchConstants, MeterConstants {
+	private static final long NOW = TimeConstants.DAY * 20000;
+
+	private static final long START = TimeConstants.DAY * 19000;
+
+	@Test
+	void testGetGranularity_daily() {
+		SearchJSON search = createSearch(TOTAL_SEARCH_TYPE, START, START + TimeConstants.DAY * 7 - 1);
+		assertEquals(Optional.of(RollupQueries.DAILY), RollupQueries.getGranularity(search, NOW));
+
+		search.setEndDate(START + TimeConstants.DAY * 7 - TimeConstants.SECOND);
+		assertEquals(Optional.of(RollupQueries.DAILY), RollupQueries.getGranularity(search, NOW));
+	}
+
+	@Test
+	void testGetGranularity_hourly() {
+		SearchJSON search = createSearch(AVG_SEARCH_TYPE, START + TimeConstants.HOUR, START + TimeConstants.DAY - 1);
+		assertEquals(Optional.of(RollupQueries.HOURLY), RollupQueries.getGranularity(search, NOW));
+	}
+
+	@Test
+	void testGetGranularity_rangeEndingNowNeedsNoAlignedEnd() {
+		SearchJSON search = createSearch(TOTAL_SEARCH_TYPE, NOW - TimeConstants.DAY, NOW + 1234);
+		assertEquals(Optional.of(RollupQueries.DAILY), RollupQueries.getGranularity(search, NOW));
+	}
+
+	@Test
+	void testGetGranularity_unaligned() {
+		SearchJSON search =
+				createSearch(TOTAL_SEARCH_TYPE, START + TimeConstants.FIFTEEN_MINUTES, START + TimeConstants.DAY - 1);
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+		assertTrue(RollupQueries.getGranularity(
+						createSearch(TOTAL_SEARCH_TYPE, START, START + TimeConstants.FIFTEEN_MINUTES), NOW)
+				.isEmpty());
+	}
+
+	@Test
+	void testGetGranularity_histogram() {
+		SearchJSON search = createSearch(TIME_SERIES_SEARCH_TYPE, START, START + TimeConstants.DAY * 30 - 1);
+		search.setBucketSize("1d");
+		assertEquals(Optional.of(RollupQueries.DAILY), RollupQueries.getGranularity(search, NOW));
+
+		search.setBucketSize("3h");
+		assertEquals(Optional.of(RollupQueries.HOURLY), RollupQueries.getGranularity(search, NOW));
+
+		search.setBucketSize("30m");
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+	}
+
+	@Test
+	void testGetGranularity_histogramTimezone() {
+		// local midnight in Chicago is an hour boundary in UTC, but not a day boundary
+		SearchJSON search = createSearch(
+				TOTAL_ENERGY_CONSUMED_SEARCH_TYPE,
+				START + TimeConstants.HOUR * 6,
+				START + TimeConstants.DAY * 7 + TimeConstants.HOUR * 6 - 1);
+		search.setBucketSize("1d");
+		search.setTimeZone("America/Chicago");
+		assertEquals(Optional.of(RollupQueries.HOURLY), RollupQueries.getGranularity(search, NOW));
+
+		search.setStartDate(START + TimeConstants.HOUR * 6 + TimeConstants.THIRTY_MINUTES);
+		search.setTimeZone("Asia/Kolkata");
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+	}
+
+	@Test
+	void testGetGranularity_unsupportedSearches() {
+		SearchJSON search = createSearch(DATA_SEARCH_TYPE, START, START + TimeConstants.DAY - 1);
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+
+		search = createSearch(TIME_SERIES_WITH_ERRORS_SEARCH_TYPE, START, START + TimeConstants.DAY - 1);
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+
+		search = createSearch(TOTAL_SEARCH_TYPE, START, START + TimeConstants.DAY - 1);
+		search.setDeviceName("Inverter 1");
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+
+		search = createSearch(TOTAL_SEARCH_TYPE, START, START + TimeConstants.DAY - 1);
+		search.setFilterErrors(true);
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+
+		search = createSearch(TOTAL_SEARCH_TYPE, START, START + TimeConstants.DAY - 1);
+		search.setLargeEnergyConsumed(true);
+		assertTrue(RollupQueries.getGranularity(search, NOW).isEmpty());
+	}
+
+	@Test
+	void testGetInterval() {
+		assertEquals(TimeConstants.HOUR * 3, RollupQueries.getInterval("3h"));
+		assertEquals(TimeConstants.DAY * 7, RollupQueries.getInterval("7d"));
+		assertEquals(TimeConstants.THIRTY_MINUTES, RollupQueries.getInterval("30m"));
+		assertEquals(-1, RollupQueries.getInterval("1M"));
+		assertEquals(-1, RollupQueries.getInterval(null));
+	}
+
+	@Test
+	void testGetUpdateOperations() {
+		DeviceData first = createData(START + TimeConstants.FIFTEEN_MINUTES, 1.5f, 10, true);
+		DeviceData second = createData(START + TimeConstants.THIRTY_MINUTES, 2.5f, 20, false);
+		DeviceData nextHour = createData(START + TimeConstants.HOUR, 3, 30, false);
+
+		List<BulkOperation> operations = RollupQueries.getUpdateOperations(List.of(first, second, nextHour));
+
+		// 2 hourly + 1 daily, and daylight only hourly + daily for the first reading
+		assertEquals(5, operations.size());
+		assertTrue(operations.stream().allMatch(BulkOperation::isUpdate));
+		assertTrue(operations.stream()
+				.allMatch(operation -> operation.update().index().equals(ROLLUP_INDEX_NAME)));
+		assertEquals(
+				Set.of(
+						"device1:1h:false:" + START,
+						"device1:1h:true:" + START,
+						"device1:1h:false:" + (START + TimeConstants.HOUR),
+						"device1:1d:false:" + START,
+						"device1:1d:true:" + START),
+				operations.stream().map(operation -> operation.update().id()).collect(Collectors.toSet()));
+	}
+
+	@Test
+	void testGetDocument() {
+		DeviceData first = createData(START + TimeConstants.FIFTEEN_MINUTES, 1.5f, 10, true);
+		DeviceData second = createData(START + TimeConstants.THIRTY_MINUTES, 2.5f, 20, false);
+		RollupQueries.Rollup rollup = RollupQueries.Rollup.of(first, RollupQueries.HOURLY, false);
+		List<Map<String, Object>> readings = List.of(
+				Map.of("t", TimeConstants.FIFTEEN_MINUTES, "e", 1.5f, "p", 10f),
+				Map.of("t", TimeConstants.THIRTY_MINUTES, "e", 2.5f, "p", 20f));
+
+		Map<String, Object> document = RollupQueries.getDocument(second, rollup, readings);
+
+		assertEquals(START, rollup.bucket());
+		assertEquals(new Date(START).toInstant().toString(), document.get(TIMESTAMP));
+		assertEquals(RollupQueries.HOURLY, document.get(RollupQueries.ROLLUP));
+		assertEquals(false, document.get(DAYLIGHT));
+		assertEquals(4.0, document.get(ENG_CONS));
+		assertEquals(List.of(10f, 20f), document.get(TOTAL_REAL_POWER));
+		assertEquals(2, document.get(RollupQueries.READING_COUNT));
+		assertEquals("device1", document.get(DEVICE_ID));
+		assertEquals("site1", document.get(SITE_ID));
+	}
+
+	private SearchJSON createSearch(String type, long start, long end) {
+		SearchJSON search = new SearchJSON("customer1", "device1", end, start);
+		search.setType(type);
+		search.setTimeZone("UTC");
+		return search;
+	}
+
+	private DeviceData createData(long time, float energy, float power, boolean daylight) {
+		DeviceData data = new DeviceData("site1", "customer1", "device1");
+		data.setDate(new Date(time));
+		data.setEnergyConsumed(energy);
+		data.setTotalRealPower(power);
+		data.setDaylight(daylight);
+		return data;
+	}
+}
@@ -0,0 +1,218 @@
+package com.bigboxer23.solar_moon.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.bigboxer23.solar_moon.data.DeviceData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+@ExtendWith(MockitoExtension.class)
+public class SearchBatchTest {
+	@Mock
+	private OpenSearchComponent mockOSComponent;
+
+	@Mock
+	private SearchResponse<DeviceData> firstResponse;
+
+	@Mock
+	private SearchResponse<DeviceData> secondResponse;
+
+	/** Response for each search from {@link #createSearches(int)}, keyed by device id */
+	private final Map<String, SearchResponse<DeviceData>> responses = new HashMap<>();
+
+	@Test
+	void testExecute_empty() {
+		new SearchBatch(mockOSComponent).execute();
+		verifyNoInteractions(mockOSComponent);
+	}
+
+	@Test
+	void testExecute_singleSearchSkipsMultiSearch() {
+		SearchJSON search = new SearchJSON();
+		when(mockOSComponent.search(search)).thenReturn(firstResponse);
+		List<SearchResponse<DeviceData>> received = new ArrayList<>();
+
+		new SearchBatch(mockOSComponent).add(search, received::add).execute();
+
+		assertEquals(List.of(firstResponse), received);
+		verify(mockOSComponent, never()).multiSearch(anyList());
+	}
+
+	@Test
+	void testExecute_dispatchesResponsesInOrder() {
+		SearchJSON first = new SearchJSON();
+		SearchJSON second = new SearchJSON();
+		SearchJSON third = new SearchJSON();
+		when(mockOSComponent.multiSearch(List.of(first, second, third)))
+				.thenReturn(Arrays.asList(firstResponse, null, secondResponse));
+		List<SearchResponse<DeviceData>> received = Arrays.asList(new SearchResponse[3]);
+		SearchBatch batch = new SearchBatch(mockOSComponent)
+				.add(first, response -> received.set(0, response))
+				.add(second, response -> received.set(1, response))
+				.add(third, response -> received.set(2, response));
+		assertEquals(3, batch.size());
+
+		batch.execute();
+
+		assertSame(firstResponse, received.get(0));
+		assertNull(received.get(1));
+		assertSame(secondResponse, received.get(2));
+		assertEquals(0, batch.size());
+		verify(mockOSComponent, never()).search(any(SearchJSON.class));
+	}
+
+	@Test
+	void testExecute_missingResponsesAreNull() {
+		when(mockOSComponent.multiSearch(anyList())).thenReturn(List.of(firstResponse));
+		List<SearchResponse<DeviceData>> received = new ArrayList<>();
+
+		new SearchBatch(mockOSComponent)
+				.add(new SearchJSON(), received::add)
+				.add(new SearchJSON(), received::add)
+				.execute();
+
+		assertEquals(Arrays.asList(firstResponse, null), received);
+	}
+
+	@Test
+	void testExecute_concurrentDispatchesInOrder() {
+		List<SearchJSON> searches = createSearches(7);
+		when(mockOSComponent.multiSearch(anyList())).thenAnswer(invocation -> responsesFor(invocation.getArgument(0)));
+		when(mockOSComponent.search(any(SearchJSON.class)))
+				.thenAnswer(invocation -> responseFor(invocation.getArgument(0)));
+		List<SearchResponse<DeviceData>> received = Arrays.asList(new SearchResponse[searches.size()]);
+		SearchBatch batch = new SearchBatch(mockOSComponent, 3, 5000, new Semaphore(3));
+		for (int i = 0; i < searches.size(); i++) {
+			int index = i;
+			batch.add(searches.get(i), response -> received.set(index, response));
+		}
+
+		assertTrue(batch.execute());
+
+		for (int i = 0; i < searches.size(); i++) {
+			assertSame(responses.get("device" + i), received.get(i));
+		}
+		// 7 searches over 3 requests: two msearch of 3 and a single search
+		verify(mockOSComponent, times(2)).multiSearch(anyList());
+		verify(mockOSComponent).search(any(SearchJSON.class));
+	}
+
+	@Test
+	void testExecute_capsConcurrency() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		when(mockOSComponent.multiSearch(anyList())).thenAnswer(invocation -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			Thread.sleep(50);
+			inFlight.decrementAndGet();
+			return responsesFor(invocation.getArgument(0));
+		});
+		List<SearchJSON> searches = createSearches(OpenSearchConstants.MULTI_SEARCH_BATCH_SIZE * 4);
+		List<SearchResponse<DeviceData>> received = new ArrayList<>();
+		SearchBatch batch = new SearchBatch(mockOSComponent, 2, 5000, new Semaphore(2));
+		searches.forEach(search -> batch.add(search, received::add));
+
+		assertTrue(batch.execute());
+
+		assertEquals(searches.size(), received.size());
+		assertTrue(received.stream().allMatch(response -> response != null));
+		assertTrue(maxInFlight.get() <= 2);
+		verify(mockOSComponent, times(4)).multiSearch(anyList());
+	}
+
+	@Test
+	void testExecute_concurrentBatchesShareCap() throws Exception {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		when(mockOSComponent.multiSearch(anyList())).thenAnswer(invocation -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			Thread.sleep(50);
+			inFlight.decrementAndGet();
+			return responsesFor(invocation.getArgument(0));
+		});
+		Semaphore permits = new Semaphore(2);
+		List<SearchBatch> batches = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			SearchBatch batch = new SearchBatch(mockOSComponent, 2, 5000, permits);
+			createSearches(4).forEach(search -> batch.add(search, response -> {}));
+			batches.add(batch);
+		}
+
+		try (ExecutorService pages = Executors.newFixedThreadPool(batches.size())) {
+			List<Future<Boolean>> results = pages.invokeAll(
+					batches.stream().map(batch -> (Callable<Boolean>) batch::execute).toList());
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		}
+
+		// 3 pages of 2 requests each, never more than the shared 2 in flight
+		assertTrue(maxInFlight.get() <= 2);
+		verify(mockOSComponent, times(6)).multiSearch(anyList());
+	}
+
+	@Test
+	void testExecute_deadlineReturnsPartialResults() {
+		CountDownLatch never = new CountDownLatch(1);
+		when(mockOSComponent.multiSearch(anyList())).thenAnswer(invocation -> {
+			List<SearchJSON> searches = invocation.getArgument(0);
+			if (searches.getFirst().getDeviceId().equals("device0")) {
+				never.await(5, TimeUnit.SECONDS);
+			}
+			return responsesFor(searches);
+		});
+		List<SearchResponse<DeviceData>> received = Arrays.asList(new SearchResponse[4]);
+		SearchBatch batch = new SearchBatch(mockOSComponent, 2, 200, new Semaphore(2));
+		List<SearchJSON> searches = createSearches(4);
+		for (int i = 0; i < searches.size(); i++) {
+			int index = i;
+			batch.add(searches.get(i), response -> received.set(index, response));
+		}
+
+		long start = System.currentTimeMillis();
+		assertFalse(batch.execute());
+
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertNull(received.get(0));
+		assertNull(received.get(1));
+		assertNotNull(received.get(2));
+		assertNotNull(received.get(3));
+	}
+
+	private List<SearchJSON> createSearches(int count) {
+		List<SearchJSON> searches = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SearchJSON search = new SearchJSON();
+			search.setDeviceId("device" + i);
+			searches.add(search);
+			responses.put(search.getDeviceId(), mock(SearchResponse.class));
+		}
+		return searches;
+	}
+
+	private List<SearchResponse<DeviceData>> responsesFor(List<SearchJSON> searches) {
+		return searches.stream().map(this::responseFor).toList();
+	}
+
+	private SearchResponse<DeviceData> responseFor(SearchJSON search) {
+		return responses.get(search.getDeviceId());
+	}
+}
@@ -0,0 +1,26 @@
+package com.bigboxer23.solar_moon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertyValuesTest {
+
+	@Test
+	public void testParse_usesDefaultWhenUnsetOrBlank() {
+		assertEquals(5, PropertyValues.parse(null, Integer::parseInt, 5));
+		assertEquals(5, PropertyValues.parse("", Integer::parseInt, 5));
+		assertEquals(5, PropertyValues.parse("  ", Integer::parseInt, 5));
+	}
+
+	@Test
+	public void testParse_trimsValue() {
+		assertEquals(12, PropertyValues.parse(" 12 ", Integer::parseInt, 5));
+		assertEquals(60000L, PropertyValues.parse("60000\n", Long::parseLong, 0L));
+	}
+
+	@Test
+	public void testParse_invalidValueThrows() {
+		assertThrows(NumberFormatException.class, () -> PropertyValues.parse("ten", Integer::parseInt, 5));
+	}
+}
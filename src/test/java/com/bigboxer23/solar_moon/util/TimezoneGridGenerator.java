@@ -0,0 +1,119 @@
+package com.bigboxer23.solar_moon.util;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the {@link TimezoneGrid} resource from {@link TimezoneMapper}. Each cell is sampled on a
+ * lattice, plus either side of every split the decision tree makes inside the cell (so slivers between
+ * close splits aren't missed). Cells where every sample agrees store that timezone, the rest are marked
+ * mixed and looked up in TimezoneMapper. Re-run whenever TimezoneMapper is regenerated, from the
+ * project root after compiling tests:
+ *
+ * <p>{@code java -cp target/classes:target/test-classes com.bigboxer23.solar_moon.util.TimezoneGridGenerator}
+ */
+public class TimezoneGridGenerator {
+	private static final int SAMPLES = 16;
+
+	private static final String MAPPER_SOURCE = "src/main/java/com/bigboxer23/solar_moon/util/TimezoneMapper.java";
+
+	private static final Pattern SPLIT = Pattern.compile("(lat|lng) < (-?\\d+\\.\\d+)f");
+
+	public static void main(String[] args) throws IOException {
+		String out = args.length > 0 ? args[0] : "src/main/resources/" + TimezoneGrid.RESOURCE;
+		TreeSet<Float> latSplits = new TreeSet<>();
+		TreeSet<Float> lngSplits = new TreeSet<>();
+		Matcher matcher = SPLIT.matcher(Files.readString(Path.of(MAPPER_SOURCE)));
+		while (matcher.find()) {
+			(matcher.group(1).equals("lat") ? latSplits : lngSplits).add(Float.parseFloat(matcher.group(2)));
+		}
+		int rows = TimezoneGrid.ROWS;
+		int columns = TimezoneGrid.COLUMNS;
+		double cellSize = 1d / TimezoneGrid.CELLS_PER_DEGREE;
+		Map<String, Integer> ids = new HashMap<>();
+		for (String name : TimezoneMapper.timezoneStrings) {
+			ids.putIfAbsent(name, ids.size());
+		}
+		short[] cells = new short[rows * columns];
+		int mixed = 0;
+		for (int row = 0; row < rows; row++) {
+			List<Float> lats = getSamples(-90 + row * cellSize, cellSize, latSplits);
+			for (int column = 0; column < columns; column++) {
+				List<Float> lngs = getSamples(-180 + column * cellSize, cellSize, lngSplits);
+				String zone = getZone(lats, lngs);
+				cells[row * columns + column] = zone != null ? ids.get(zone).shortValue() : TimezoneGrid.MIXED;
+				mixed += zone != null ? 0 : 1;
+			}
+		}
+		String[] names = new String[ids.size()];
+		ids.forEach((name, id) -> names[id] = name);
+		try (DataOutputStream stream = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(out))))) {
+			stream.writeInt(TimezoneGrid.VERSION);
+			stream.writeInt(TimezoneGrid.CELLS_PER_DEGREE);
+			stream.writeShort(names.length);
+			for (String name : names) {
+				stream.writeUTF(name);
+			}
+			// each row as runs of the same cell, most of the grid is ocean or large zones
+			List<short[]> runs = new ArrayList<>();
+			List<Integer> rowRuns = new ArrayList<>();
+			for (int row = 0; row < rows; row++) {
+				int count = 0;
+				for (int column = 0; column < columns; column++) {
+					short cell = cells[row * columns + column];
+					if (count == 0 || runs.getLast()[0] != cell) {
+						runs.add(new short[] {cell, 0});
+						count++;
+					}
+					runs.getLast()[1] = (short) (column + 1);
+				}
+				rowRuns.add(count);
+			}
+			stream.writeInt(runs.size());
+			for (int count : rowRuns) {
+				stream.writeShort(count);
+			}
+			for (short[] next : runs) {
+				stream.writeShort(next[0]);
+			}
+			for (short[] next : runs) {
+				stream.writeShort(next[1]);
+			}
+		}
+		System.out.println(out + ": " + mixed + " of " + cells.length + " cells mixed");
+	}
+
+	/** The cell's timezone, null if samples disagree */
+	private static String getZone(List<Float> lats, List<Float> lngs) {
+		String zone = null;
+		for (float lat : lats) {
+			for (float lng : lngs) {
+				String sample = TimezoneMapper.latLngToTimezoneString(lat, lng);
+				if (zone != null && !zone.equals(sample)) {
+					return null;
+				}
+				zone = sample;
+			}
+		}
+		return zone;
+	}
+
+	/** Lattice across the cell's edges, and the values either side of each split within it */
+	private static List<Float> getSamples(double start, double size, TreeSet<Float> splits) {
+		Set<Float> samples = new TreeSet<>();
+		for (int i = 0; i < SAMPLES; i++) {
+			samples.add((float) (start + size * i / (SAMPLES - 1)));
+		}
+		for (float split : splits.subSet((float) start, true, (float) (start + size), true)) {
+			samples.add(split);
+			samples.add(Math.nextDown(split));
+		}
+		return new ArrayList<>(samples);
+	}
+}
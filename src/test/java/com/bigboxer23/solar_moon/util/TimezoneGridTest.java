@@ -0,0 +1,54 @@
+package com.bigboxer23.solar_moon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TimezoneGridTest {
+	/** Every coordinate {@link TimezoneMapperTest} checks */
+	private static final double[][] MAPPER_TEST_COORDINATES = {
+		{40.7128, -74.0060}, {51.5074, -0.1278}, {35.6762, 139.6503}, {-33.8688, 151.2093},
+		{34.0522, -118.2437}, {48.8566, 2.3522}, {55.7558, 37.6173}, {39.9042, 116.4074},
+		{-33.9249, 18.4241}, {-23.5505, -46.6333}, {25.2048, 55.2708}, {41.8781, -87.6298},
+		{39.7392, -104.9903}, {61.2181, -149.9003}, {21.3099, -157.8581}, {52.5200, 13.4050},
+		{1.3521, 103.8198}, {-36.8485, 174.7633}, {19.0760, 72.8777}, {19.4326, -99.1332},
+		{49.2827, -123.1207}, {43.6532, -79.3832}, {-34.6037, -58.3816}, {90.0, 0.0},
+		{-90.0, 0.0}, {0.0, 0.0}, {0.0, 180.0}
+	};
+
+	@Test
+	public void testLatLngToTimezoneString_matchesMapperTestCases() {
+		for (double[] coordinate : MAPPER_TEST_COORDINATES) {
+			assertEquals(
+					TimezoneMapper.latLngToTimezoneString(coordinate[0], coordinate[1]),
+					TimezoneGrid.latLngToTimezoneString(coordinate[0], coordinate[1]),
+					coordinate[0] + "," + coordinate[1]);
+		}
+	}
+
+	@Test
+	public void testLatLngToTimezoneString_examples() {
+		assertEquals("America/New_York", TimezoneGrid.latLngToTimezoneString(40.7128, -74.0060));
+		assertEquals("America/Chicago", TimezoneGrid.latLngToTimezoneString(44.986, -93.37777));
+		assertEquals("Asia/Tokyo", TimezoneGrid.latLngToTimezoneString(35.6762, 139.6503));
+		assertEquals("Australia/Sydney", TimezoneGrid.latLngToTimezoneString(-33.8688, 151.2093));
+	}
+
+	@Test
+	public void testLookup_matchesMapperEverywhere() {
+		Random random = new Random(23);
+		for (int i = 0; i < 200000; i++) {
+			float lat = (float) (random.nextDouble() * 180 - 90);
+			float lng = (float) (random.nextDouble() * 360 - 180);
+			assertEquals(
+					TimezoneMapper.latLngToTimezoneString(lat, lng), TimezoneGrid.lookup(lat, lng), lat + "," + lng);
+		}
+	}
+
+	@Test
+	public void testLookup_outOfRangeUsesMapper() {
+		assertEquals(TimezoneMapper.latLngToTimezoneString(95, 200), TimezoneGrid.lookup(95, 200));
+		assertEquals(TimezoneMapper.latLngToTimezoneString(Float.NaN, 0), TimezoneGrid.lookup(Float.NaN, 0));
+	}
+}
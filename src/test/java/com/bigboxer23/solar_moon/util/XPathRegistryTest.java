@@ -0,0 +1,73 @@
+package com.bigboxer23.solar_moon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+public class XPathRegistryTest {
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<ClusterController>"
+			+ "<CurrentPublic><Key>1:Power</Key><Mean>10</Mean></CurrentPublic>"
+			+ "<CurrentPublic><Key>2:Power</Key><Mean>20</Mean></CurrentPublic>"
+			+ "<MeanPublic><Key>1:Total yield</Key><Mean>100</Mean></MeanPublic>"
+			+ "</ClusterController>";
+
+	@Test
+	public void testCompile_sameThreadReusesExpression() throws XPathExpressionException {
+		XPathExpression first = XPathRegistry.compile("/ClusterController/CurrentPublic");
+		XPathExpression second = XPathRegistry.compile("/ClusterController/CurrentPublic");
+
+		assertSame(first, second);
+	}
+
+	@Test
+	public void testCompile_otherThreadGetsOwnExpression() throws Exception {
+		XPathExpression local = XPathRegistry.compile("/ClusterController/MeanPublic");
+		XPathExpression other = CompletableFuture.supplyAsync(() -> {
+					try {
+						return XPathRegistry.compile("/ClusterController/MeanPublic");
+					} catch (XPathExpressionException e) {
+						throw new RuntimeException(e);
+					}
+				})
+				.get();
+
+		assertNotSame(local, other);
+	}
+
+	@Test
+	public void testGetNodeList_multiplePathsOneDocument() throws XPathExpressionException {
+		Document document = XPathRegistry.parse(XML);
+
+		NodeList current = XPathRegistry.getNodeList(document, "/ClusterController/CurrentPublic");
+		NodeList mean = XPathRegistry.getNodeList(document, "/ClusterController/MeanPublic");
+
+		assertEquals(2, current.getLength());
+		assertEquals(1, mean.getLength());
+	}
+
+	@Test
+	public void testParse_documentBuilderReusable() throws XPathExpressionException {
+		XPathRegistry.parse(XML);
+		Document document = XPathRegistry.parse("<DAS><mode>LOGFILEUPLOAD</mode></DAS>");
+
+		assertEquals(
+				"LOGFILEUPLOAD",
+				XPathRegistry.getNodeList(document, "/DAS/mode").item(0).getTextContent());
+	}
+
+	@Test
+	public void testParse_invalidXml() {
+		assertThrows(XPathExpressionException.class, () -> XPathRegistry.parse("<DAS><mode></DAS>"));
+	}
+
+	@Test
+	public void testCompile_invalidPath() {
+		assertThrows(XPathExpressionException.class, () -> XPathRegistry.compile("/DAS/["));
+	}
+}